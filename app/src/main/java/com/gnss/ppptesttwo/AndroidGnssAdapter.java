@@ -0,0 +1,69 @@
+package com.gnss.ppptesttwo;
+
+import android.location.GnssClock;
+import android.location.GnssMeasurement;
+import android.location.GnssMeasurementsEvent;
+import android.os.Build;
+
+import com.gnss.ppptesttwo.raw.RawClock;
+import com.gnss.ppptesttwo.raw.RawEpoch;
+import com.gnss.ppptesttwo.raw.RawMeasurement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copies the measurements delivered by the Android location framework into the platform
+ * neutral model of the core library.
+ */
+public final class AndroidGnssAdapter {
+
+    private AndroidGnssAdapter() {
+    }
+
+    public static RawEpoch toRawEpoch(GnssMeasurementsEvent event) {
+        List<RawMeasurement> measurements = new ArrayList<>(event.getMeasurements().size());
+        for (GnssMeasurement measurement : event.getMeasurements()) {
+            measurements.add(toRawMeasurement(measurement));
+        }
+        return new RawEpoch(toRawClock(event.getClock()), measurements);
+    }
+
+    public static RawClock toRawClock(GnssClock clock) {
+        RawClock raw = new RawClock(clock.getTimeNanos(),
+                clock.hasFullBiasNanos() ? clock.getFullBiasNanos() : 0,
+                clock.hasBiasNanos() ? clock.getBiasNanos() : 0.0);
+        if (clock.hasBiasUncertaintyNanos())
+            raw.setBiasUncertaintyNanos(clock.getBiasUncertaintyNanos());
+        if (clock.hasDriftNanosPerSecond())
+            raw.setDriftNanosPerSecond(clock.getDriftNanosPerSecond());
+        if (clock.hasDriftUncertaintyNanosPerSecond())
+            raw.setDriftUncertaintyNanosPerSecond(clock.getDriftUncertaintyNanosPerSecond());
+        if (clock.hasLeapSecond())
+            raw.setLeapSecond(clock.getLeapSecond());
+        raw.setHardwareClockDiscontinuityCount(clock.getHardwareClockDiscontinuityCount());
+        return raw;
+    }
+
+    public static RawMeasurement toRawMeasurement(GnssMeasurement measurement) {
+        RawMeasurement raw = new RawMeasurement();
+        raw.setSvid(measurement.getSvid());
+        raw.setConstellationType(measurement.getConstellationType());
+        raw.setTimeOffsetNanos(measurement.getTimeOffsetNanos());
+        raw.setState(measurement.getState());
+        raw.setReceivedSvTimeNanos(measurement.getReceivedSvTimeNanos());
+        raw.setReceivedSvTimeUncertaintyNanos(measurement.getReceivedSvTimeUncertaintyNanos());
+        raw.setCn0DbHz(measurement.getCn0DbHz());
+        raw.setPseudorangeRateMetersPerSecond(measurement.getPseudorangeRateMetersPerSecond());
+        raw.setPseudorangeRateUncertaintyMetersPerSecond(measurement.getPseudorangeRateUncertaintyMetersPerSecond());
+        raw.setAccumulatedDeltaRangeState(measurement.getAccumulatedDeltaRangeState());
+        raw.setAccumulatedDeltaRangeMeters(measurement.getAccumulatedDeltaRangeMeters());
+        raw.setAccumulatedDeltaRangeUncertaintyMeters(measurement.getAccumulatedDeltaRangeUncertaintyMeters());
+        if (measurement.hasCarrierFrequencyHz())
+            raw.setCarrierFrequencyHz(measurement.getCarrierFrequencyHz());
+        raw.setMultipathIndicator(measurement.getMultipathIndicator());
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && measurement.hasCodeType())
+            raw.setCodeType(measurement.getCodeType());
+        return raw;
+    }
+}
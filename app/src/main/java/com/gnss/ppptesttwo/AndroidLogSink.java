@@ -0,0 +1,16 @@
+package com.gnss.ppptesttwo;
+
+import android.util.Log;
+
+/**
+ * Forwards the messages of the core library to logcat.
+ */
+public class AndroidLogSink implements GnssLog.Sink {
+
+    @Override
+    public void log(int priority, String tag, String message, Throwable error) {
+        if (error != null)
+            message = message + '\n' + Log.getStackTraceString(error);
+        Log.println(priority, tag, message);
+    }
+}
@@ -22,17 +22,25 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 
+import com.gnss.ppptesttwo.adjust.PositionSolution;
 import com.gnss.ppptesttwo.adjust.WeightedLeastSquares;
 import com.gnss.ppptesttwo.constellations.Constellation;
 import com.gnss.ppptesttwo.constellations.GalileoConstellation;
 import com.gnss.ppptesttwo.constellations.GnssConstellation;
 import com.gnss.ppptesttwo.constellations.GpsConstellation;
+import com.gnss.ppptesttwo.download.NavigationPrefetcher;
+import com.gnss.ppptesttwo.download.SchemeTransport;
 import com.gnss.ppptesttwo.navifromftp.Coordinates;
 import com.gnss.ppptesttwo.navifromftp.RinexNavigationGalileo;
 import com.gnss.ppptesttwo.navifromftp.RinexNavigationGps;
+import com.gnss.ppptesttwo.navifromftp.SuplNavigation;
+import com.gnss.ppptesttwo.output.AsyncSolutionWriter;
+import com.gnss.ppptesttwo.output.CsvSolutionFormat;
+import com.gnss.ppptesttwo.output.RinexObservationWriter;
+import com.gnss.ppptesttwo.raw.RawEpoch;
+import com.gnss.ppptesttwo.recording.RawRecorder;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -97,11 +105,18 @@ public class MainActivity extends AppCompatActivity {
 
     private Handler handler;
 
+    /**
+     * 导航文件的后台预取
+     */
+    private NavigationPrefetcher prefetcher;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        GnssLog.setSink(new AndroidLogSink());
+
         mLocationManager = (LocationManager) this.getSystemService(LOCATION_SERVICE);
 
         //这个是解决主线程没有网络连接问题的代码
@@ -197,9 +212,24 @@ public class MainActivity extends AppCompatActivity {
     }
     private void updateGnssConstellation()
     {
+        stopPrefetch();
         mGnssConstellation=new GnssConstellation(isGps, isGalileo, isGlonass, isBeidou);
     }
 
+    private void stopPrefetch()
+    {
+        if (prefetcher == null)
+            return;
+        prefetcher.close();
+        prefetcher = null;
+    }
+
+    @Override
+    protected void onDestroy() {
+        stopPrefetch();
+        super.onDestroy();
+    }
+
 
     private LocationListener mLocationListener = new LocationListener() {
         @Override
@@ -209,8 +239,6 @@ public class MainActivity extends AppCompatActivity {
                 if (location != null && !poseinitialized) {
                     mLocation = location;
                     pose = Coordinates.globalGeodInstance(mLocation.getLatitude(), mLocation.getLongitude(), mLocation.getAltitude());
-                    writeToFile(pose.getX()+","+pose.getY()+","+pose.getZ());
-                    writeToFile("\n");
                     poseinitialized = true;
 
                 }
@@ -259,24 +287,43 @@ public class MainActivity extends AppCompatActivity {
 //
 //                }
 
-                mGnssConstellation.updateMeasurements(eventArgs);
+                RawEpoch rawEpoch = AndroidGnssAdapter.toRawEpoch(eventArgs);
+                //原始观测存档，紧凑二进制格式，可用于事后重新处理
+                RawRecorder recorder = rawRecorder;
+                if (recorder != null) {
+                    try {
+                        recorder.record(rawEpoch);
+                    } catch (IOException e) {
+                        Log.e(TAG, "Raw recording stopped", e);
+                        closeRawRecorder();
+                    }
+                }
+                mGnssConstellation.updateMeasurements(rawEpoch);
+                //RINEX观测文件同样在后台线程写入
+                if (rinexWriter != null)
+                    rinexWriter.offer(mGnssConstellation.getTime(), mGnssConstellation.getMeasuredSatellites());
                 mGnssConstellation.calculateSatPosition(pose);
 
-                double  currenttime=mGnssConstellation.getTime().getGpsTime();//获取GPS周内秒
+                if (pose == null) {
+                    //冷启动：还没有近似位置时直接由本历元的伪距解算初始位置，不等待系统定位
+                    pose = mWeightedLeastSquares.coldStart(mGnssConstellation);
+                    if (pose != null) {
+                        poseinitialized = true;
+                        //有了近似位置后重新计算高度角截止和误差改正
+                        mGnssConstellation.calculateSatPosition(pose);
+                    }
+                }
 
                 if(mGnssConstellation.getUsedConstellationSize()>=5)
                 {
                     pose=mWeightedLeastSquares.calculatePose(mGnssConstellation);
-                    try {
-                        out.write(currenttime+","+pose.getX()+","+pose.getY()+","+pose.getZ());
-                        out.write("\n");
-                        out.flush();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-
-                    //writeToFile(currenttime+","+pose.getX()+","+pose.getY()+","+pose.getZ());
-                    //writeToFile("\n");
+                    //写文件在后台线程进行，不阻塞测量回调
+                    PositionSolution solution = mWeightedLeastSquares.getSolution();
+                    if (solution == null) {
+                        //解算失败时pose是发散的迭代值，下一历元重新冷启动
+                        pose = null;
+                    } else if (solutionWriter != null)
+                        solutionWriter.offer(mGnssConstellation.getTime(), solution);
                 }
 
 
@@ -397,19 +444,22 @@ public class MainActivity extends AppCompatActivity {
         public void onClick(View v) {
             switch (v.getId()) {
                 case R.id.bt_ftp:
-                    handler.post(new Runnable() {
-                        @Override
-                        public void run() {
-                            try {
-                                //mRinexNavigationGps.getFromFTP(NASA_NAVIGATION_HOURLY);
-                                //mRinexNavigationGalileo.getFromFTP(NASA_NAVIGATION_HOURLY_Galileo);
-                                mGnssConstellation.init();
-                            } catch (Exception e) {
-                                e.printStackTrace();
+                    //导航文件在后台线程下载，并在每小时更新时自动预取
+                    stopPrefetch();
+                    prefetcher = mGnssConstellation.startPrefetch(new SchemeTransport(),
+                            new File(getCacheDir(), "rnp-cache"));
+                    //有概略位置时先用SUPL获取星历，几秒内即可解算，RINEX下载完成后自动合并
+                    if (mLocation != null) {
+                        final GnssConstellation constellation = mGnssConstellation;
+                        final double latitude = mLocation.getLatitude();
+                        final double longitude = mLocation.getLongitude();
+                        new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                constellation.assist(new SuplNavigation(), latitude, longitude);
                             }
-                        }
-                    });
-
+                        }, "SuplNavigation").start();
+                    }
                     break;
                 case R.id.bt_start:
                     isRecordStart = true;
@@ -427,7 +477,9 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    private FileWriter out = null;
+    private AsyncSolutionWriter solutionWriter = null;
+    private RawRecorder rawRecorder = null;
+    private RinexObservationWriter rinexWriter = null;
     private void createFile() {
         Date date = new Date();
 
@@ -446,7 +498,10 @@ public class MainActivity extends AppCompatActivity {
             if (!rootFile.exists()) rootFile.mkdirs();
 
             File file = new File(rootFile, fileName);
-            out = new FileWriter(file);
+            solutionWriter = AsyncSolutionWriter.open(file, new CsvSolutionFormat());
+            rawRecorder = RawRecorder.open(new File(rootFile, "bt" + dateString + "." + yearString + "graw"));
+            rinexWriter = RinexObservationWriter.open(new File(rootFile, "bt" + dateString + "." + yearString + "o"),
+                    "ANDROID", pose);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -456,21 +511,44 @@ public class MainActivity extends AppCompatActivity {
     private void closeFile()
     {
         Log.i(TAG, "CloseFile");
+        closeRawRecorder();
+        closeRinexWriter();
+        if (solutionWriter == null)
+            return;
+        try {
+            solutionWriter.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        Log.i(TAG, "CloseFile, solutions written = " + solutionWriter.getWritten() + ", dropped = " + solutionWriter.getDropped());
+        solutionWriter = null;
+    }
+
+    private void closeRinexWriter()
+    {
+        if (rinexWriter == null)
+            return;
         try {
-            out.close();
+            rinexWriter.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
+        Log.i(TAG, "CloseFile, RINEX epochs written = " + rinexWriter.getWritten() + ", dropped = " + rinexWriter.getDropped());
+        rinexWriter = null;
     }
 
-    private void writeToFile(String str)
+    private void closeRawRecorder()
     {
+        if (rawRecorder == null)
+            return;
         try {
-            out.write(str);
+            rawRecorder.close();
         } catch (IOException e) {
             e.printStackTrace();
-            System.out.println("威胁如");
         }
+        Log.i(TAG, "CloseFile, raw epochs recorded = " + rawRecorder.getEpochs() + ", dropped = " + rawRecorder.getDropped()
+                + ", bytes = " + rawRecorder.getBytesWritten());
+        rawRecorder = null;
     }
 
 }
@@ -0,0 +1,76 @@
+package com.gnss.ppptesttwo.benchmarks;
+
+import com.gnss.ppptesttwo.corrections.TopocentricCoordinates;
+import com.gnss.ppptesttwo.navifromftp.Coordinates;
+import com.gnss.ppptesttwo.navifromftp.ReceiverFrame;
+import com.gnss.ppptesttwo.navifromftp.SatellitePosition;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Coordinates} conversions and the satellite elevation / azimuth, through the
+ * matrix based {@code computeLocal} and through {@link TopocentricCoordinates}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CoordinatesBenchmark {
+
+    private static final int SATELLITES = 32;
+
+    private final TopocentricCoordinates topo = new TopocentricCoordinates();
+    private SatellitePosition[] satellites;
+    private Coordinates receiver;
+    private ReceiverFrame frame;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        satellites = NavigationFixtures.skyPositions(SATELLITES, 1L);
+        receiver = NavigationFixtures.receiver();
+        frame = ReceiverFrame.of(receiver);
+    }
+
+    private SatellitePosition nextSatellite() {
+        next = (next + 1) & (SATELLITES - 1);
+        return satellites[next];
+    }
+
+    @Benchmark
+    public Coordinates geodeticToEcef() {
+        return Coordinates.globalGeodInstance(NavigationFixtures.RX_LAT, NavigationFixtures.RX_LON, NavigationFixtures.RX_HEIGHT);
+    }
+
+    @Benchmark
+    public double ecefToGeodetic() {
+        Coordinates c = Coordinates.globalXYZInstance(receiver.getX(), receiver.getY(), receiver.getZ());
+        c.computeGeodetic();
+        return c.getGeodeticHeight();
+    }
+
+    @Benchmark
+    public double computeLocal() {
+        receiver.computeLocal(nextSatellite());
+        return receiver.getU();
+    }
+
+    @Benchmark
+    public double topocentricFromCoordinates() {
+        return topo.computeTopocentric(receiver, nextSatellite()).getElevation();
+    }
+
+    @Benchmark
+    public double topocentricFromFrame() {
+        SatellitePosition sat = nextSatellite();
+        return topo.computeTopocentric(frame, sat.getX(), sat.getY(), sat.getZ()).getElevation();
+    }
+}
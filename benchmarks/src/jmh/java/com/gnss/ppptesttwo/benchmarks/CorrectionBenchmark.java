@@ -0,0 +1,78 @@
+package com.gnss.ppptesttwo.benchmarks;
+
+import com.gnss.ppptesttwo.GnssTime;
+import com.gnss.ppptesttwo.corrections.IonoCorrection;
+import com.gnss.ppptesttwo.corrections.ShapiroCorrection;
+import com.gnss.ppptesttwo.corrections.TropoCorrection;
+import com.gnss.ppptesttwo.navifromftp.NavigationIono;
+import com.gnss.ppptesttwo.navifromftp.ReceiverFrame;
+import com.gnss.ppptesttwo.navifromftp.SatellitePosition;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pseudorange corrections for one satellite, with the receiver frame built once per epoch
+ * as the constellations do, plus the cost of building that frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CorrectionBenchmark {
+
+    private static final int SATELLITES = 32;
+
+    private final IonoCorrection iono = new IonoCorrection();
+    private final TropoCorrection tropo = new TropoCorrection();
+    private final ShapiroCorrection shapiro = new ShapiroCorrection();
+
+    private SatellitePosition[] satellites;
+    private ReceiverFrame receiver;
+    private NavigationIono navigationIono;
+    private GnssTime time;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        satellites = NavigationFixtures.skyPositions(SATELLITES, 1L);
+        receiver = ReceiverFrame.of(NavigationFixtures.receiver());
+        navigationIono = NavigationFixtures.iono();
+        time = NavigationFixtures.START.plusSeconds(43200.0);
+    }
+
+    private SatellitePosition nextSatellite() {
+        next = (next + 1) & (SATELLITES - 1);
+        return satellites[next];
+    }
+
+    @Benchmark
+    public double iono() {
+        iono.calculateCorrection(time, receiver, nextSatellite(), navigationIono);
+        return iono.getCorrection();
+    }
+
+    @Benchmark
+    public double tropo() {
+        tropo.calculateCorrection(time, receiver, nextSatellite(), navigationIono);
+        return tropo.getCorrection();
+    }
+
+    @Benchmark
+    public double shapiro() {
+        shapiro.calculateCorrection(time, receiver, nextSatellite(), navigationIono);
+        return shapiro.getCorrection();
+    }
+
+    @Benchmark
+    public ReceiverFrame receiverFrame() {
+        return new ReceiverFrame(receiver.getOrigin());
+    }
+}
@@ -0,0 +1,77 @@
+package com.gnss.ppptesttwo.benchmarks;
+
+import com.gnss.ppptesttwo.navifromftp.EphGalileo;
+import com.gnss.ppptesttwo.navifromftp.EphGps;
+import com.gnss.ppptesttwo.navifromftp.RinexNavigationParserGps;
+import com.gnss.ppptesttwo.navifromftp.SatellitePosition;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Satellite position from broadcast ephemerides, per satellite: the Keplerian model of
+ * GPS and Galileo, and the GLONASS Runge-Kutta integration over 15 minutes (15 steps).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EphemerisBenchmark {
+
+    private static final int SATELLITES = 32;
+    private static final double SECONDS_OF_WEEK = 3600.0;
+    private static final double PSEUDORANGE = 22000e3;
+
+    private final EphGps[] gps = new EphGps[SATELLITES];
+    private final EphGalileo[] galileo = new EphGalileo[SATELLITES];
+    private final EphGps[] glonass = new EphGps[SATELLITES];
+
+    /**
+     * The position code lives in the parser base class, any parser instance gives access to it
+     */
+    private final RinexNavigationParserGps ephemerisSystem = new RinexNavigationParserGps((File) null);
+
+    private long unixTime;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        unixTime = NavigationFixtures.START.plusSeconds(SECONDS_OF_WEEK).getMillis();
+        for (int i = 0; i < SATELLITES; i++) {
+            gps[i] = NavigationFixtures.gpsEphemeris(i, SATELLITES);
+            galileo[i] = NavigationFixtures.galileoEphemeris(i, SATELLITES);
+            glonass[i] = NavigationFixtures.glonassEphemeris(i, SATELLITES, SECONDS_OF_WEEK, 900.0);
+        }
+    }
+
+    private int nextSatellite() {
+        next = (next + 1) & (SATELLITES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public SatellitePosition gps() {
+        int i = nextSatellite();
+        return ephemerisSystem.computeSatPositionAndVelocities(unixTime, PSEUDORANGE, i + 1, 'G', gps[i], 0.0);
+    }
+
+    @Benchmark
+    public SatellitePosition galileo() {
+        int i = nextSatellite();
+        return ephemerisSystem.computeSatPositionAndVelocitiesGalileo(unixTime, PSEUDORANGE, i + 1, 'E', galileo[i], 0.0);
+    }
+
+    @Benchmark
+    public SatellitePosition glonass() {
+        int i = nextSatellite();
+        return ephemerisSystem.computeSatPositionAndVelocities(unixTime, PSEUDORANGE, i + 1, 'R', glonass[i], 0.0);
+    }
+}
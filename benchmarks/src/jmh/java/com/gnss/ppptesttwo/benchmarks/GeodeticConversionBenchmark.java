@@ -0,0 +1,81 @@
+package com.gnss.ppptesttwo.benchmarks;
+
+import com.gnss.ppptesttwo.navifromftp.Coordinates;
+import com.gnss.ppptesttwo.navifromftp.Ecef;
+import com.gnss.ppptesttwo.navifromftp.Geodetic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ECEF to geodetic conversion: the previous one-step formula against the closed form,
+ * and the cost of a repeated conversion of the same receiver position.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GeodeticConversionBenchmark {
+
+    private static final int POINTS = 1024;
+
+    private final double[] xyz = new double[POINTS * 3];
+    private Ecef[] positions;
+    private Coordinates receiver;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        positions = new Ecef[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            double lat = Math.toRadians(random.nextDouble() * 180.0 - 90.0);
+            double lon = Math.toRadians(random.nextDouble() * 360.0 - 180.0);
+            double r = 6378137.0 + random.nextDouble() * 2000.0;
+            xyz[i * 3] = r * Math.cos(lat) * Math.cos(lon);
+            xyz[i * 3 + 1] = r * Math.cos(lat) * Math.sin(lon);
+            xyz[i * 3 + 2] = r * Math.sin(lat);
+            positions[i] = new Ecef(xyz[i * 3], xyz[i * 3 + 1], xyz[i * 3 + 2]);
+        }
+        receiver = Coordinates.globalXYZInstance(xyz[0], xyz[1], xyz[2]);
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & (POINTS - 1);
+        return next * 3;
+    }
+
+    @Benchmark
+    public Geodetic legacy() {
+        int i = nextIndex();
+        return new Ecef(xyz[i], xyz[i + 1], xyz[i + 2]).toGeodeticLegacy();
+    }
+
+    @Benchmark
+    public Geodetic closedForm() {
+        int i = nextIndex();
+        return new Ecef(xyz[i], xyz[i + 1], xyz[i + 2]).toGeodetic();
+    }
+
+    /**
+     * Same receiver position on every call, as in the per-satellite corrections of an epoch
+     */
+    @Benchmark
+    public Geodetic memoized() {
+        return positions[0].toGeodetic();
+    }
+
+    @Benchmark
+    public double coordinatesComputeGeodetic() {
+        receiver.computeGeodetic();
+        return receiver.getGeodeticHeight();
+    }
+}
@@ -0,0 +1,469 @@
+package com.gnss.ppptesttwo.benchmarks;
+
+import com.gnss.ppptesttwo.Constants;
+import com.gnss.ppptesttwo.GnssTime;
+import com.gnss.ppptesttwo.constellations.GnssConstellation;
+import com.gnss.ppptesttwo.constellations.SkyFixtures;
+import com.gnss.ppptesttwo.navifromftp.Coordinates;
+import com.gnss.ppptesttwo.navifromftp.EphGalileo;
+import com.gnss.ppptesttwo.navifromftp.EphGps;
+import com.gnss.ppptesttwo.navifromftp.IonoGalileo;
+import com.gnss.ppptesttwo.navifromftp.IonoGps;
+import com.gnss.ppptesttwo.navifromftp.NavigationIono;
+import com.gnss.ppptesttwo.navifromftp.RinexNavigationParserGps;
+import com.gnss.ppptesttwo.navifromftp.SatellitePosition;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic inputs shared by the benchmarks: navigation files in the formats the app
+ * downloads, broadcast ephemerides, a synthetic epoch of observations from
+ * {@link SkyFixtures} and a matching observation file.
+ * <p>
+ * Everything is generated from fixed orbital elements and seeds, so no data file needs
+ * to be stored and the runs are comparable over time.
+ */
+final class NavigationFixtures {
+
+    static final int GPS_WEEK = SkyFixtures.GPS_WEEK;
+    static final GnssTime START = SkyFixtures.START;
+    static final double RX_LAT = SkyFixtures.RX_LAT;
+    static final double RX_LON = SkyFixtures.RX_LON;
+    static final double RX_HEIGHT = SkyFixtures.RX_HEIGHT;
+    static final double RX_CLOCK_BIAS = SkyFixtures.RX_CLOCK_BIAS;
+
+    private static final int GPS_EPOCH_INTERVAL = 7200;
+    private static final int GALILEO_EPOCH_INTERVAL = 3600;
+    private static final double GPS_SQRT_A = 5153.7;
+    private static final double GALILEO_SQRT_A = 5440.6;
+    private static final double GLONASS_RADIUS = 25510000.0;
+
+    private NavigationFixtures() {
+    }
+
+    static Coordinates receiver() {
+        return SkyFixtures.receiver();
+    }
+
+    /**
+     * @return a RINEX 2.11 GPS navigation file with one record per satellite every two hours
+     */
+    static byte[] gpsNavigation(int satellites, int epochs) {
+        StringBuilder sb = new StringBuilder();
+        headerLine(sb, String.format(Locale.US, "%9.2f           N: GPS NAV DATA", 2.11), "RINEX VERSION / TYPE");
+        headerLine(sb, "  " + d12(1.1176e-8) + d12(7.4506e-9) + d12(-5.9605e-8) + d12(-5.9605e-8), "ION ALPHA");
+        headerLine(sb, "  " + d12(90112.0) + d12(0.0) + d12(-196610.0) + d12(-65536.0), "ION BETA");
+        headerLine(sb, "", "END OF HEADER");
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            int toe = epoch * GPS_EPOCH_INTERVAL;
+            int[] date = epochDate(toe);
+            for (int i = 0; i < satellites; i++) {
+                double[] k = kepler(i, satellites, GPS_SQRT_A, 0.96, toe);
+                sb.append(String.format(Locale.US, "%2d %02d %2d %2d %2d %2d%5.1f", i + 1, date[0] % 100,
+                        date[1], date[2], date[3], date[4], 0.0));
+                sb.append(d19(k[AF0])).append(d19(k[AF1])).append(d19(0.0)).append('\n');
+                gpsLine(sb, epoch, k[CRS], k[DELTA_N], k[M0]);
+                gpsLine(sb, k[CUC], k[E], k[CUS], k[SQRT_A]);
+                gpsLine(sb, toe, k[CIC], k[OMEGA0], k[CIS]);
+                gpsLine(sb, k[I0], k[CRC], k[OMEGA], k[OMEGA_DOT]);
+                gpsLine(sb, k[IDOT], 1.0, GPS_WEEK, 0.0);
+                gpsLine(sb, 2.0, 0.0, k[TGD], epoch);
+                sb.append("   ").append(d19(toe)).append(d19(4.0)).append('\n');
+            }
+        }
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return a RINEX 3.04 Galileo navigation file with one record per satellite every hour
+     */
+    static byte[] galileoNavigation(int satellites, int epochs) {
+        StringBuilder sb = new StringBuilder();
+        headerLine(sb, String.format(Locale.US, "%9.2f           N: GNSS NAV DATA    E: GALILEO", 3.04), "RINEX VERSION / TYPE");
+        headerLine(sb, "GAL  " + d12(62.75) + d12(0.1953) + d12(0.0041) + d12(0.0), "IONOSPHERIC CORR");
+        headerLine(sb, "", "END OF HEADER");
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            int toe = epoch * GALILEO_EPOCH_INTERVAL;
+            int[] date = epochDate(toe);
+            for (int i = 0; i < satellites; i++) {
+                double[] k = kepler(i, satellites, GALILEO_SQRT_A, 0.977, toe);
+                sb.append(String.format(Locale.US, "E%02d %04d %02d %02d %02d %02d %02d", i + 1,
+                        date[0], date[1], date[2], date[3], date[4], 0));
+                sb.append(d19(k[AF0])).append(d19(k[AF1])).append(d19(0.0)).append('\n');
+                galileoLine(sb, epoch, k[CRS], k[DELTA_N], k[M0]);
+                galileoLine(sb, k[CUC], k[E], k[CUS], k[SQRT_A]);
+                galileoLine(sb, toe, k[CIC], k[OMEGA0], k[CIS]);
+                galileoLine(sb, k[I0], k[CRC], k[OMEGA], k[OMEGA_DOT]);
+                galileoLine(sb, k[IDOT], 517.0, GPS_WEEK, 0.0);
+                galileoLine(sb, 3.12, 0.0, k[TGD], 0.0);
+                sb.append("    ").append(d19(toe + 60.0)).append('\n');
+            }
+        }
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return a RINEX 3.04 observation file of the receiver tracking the satellites of
+     * {@code navigation} above 10 degrees, one epoch per second from {@link #START} + 60 s.
+     * The C1C pseudoranges hold the geometric range, the satellite clock, the receiver clock
+     * bias and 1 m of noise, but no atmospheric delay.
+     */
+    static byte[] gpsObservation(byte[] navigation, int epochs) {
+        RinexNavigationParserGps parser = new RinexNavigationParserGps(new ByteArrayInputStream(navigation), null);
+        parser.init();
+        Coordinates rx = receiver();
+        double phi = Math.toRadians(RX_LAT), lam = Math.toRadians(RX_LON);
+        double ux = Math.cos(phi) * Math.cos(lam), uy = Math.cos(phi) * Math.sin(lam), uz = Math.sin(phi);
+        double minSinElevation = Math.sin(Math.toRadians(10.0));
+        Random random = new Random(11L);
+
+        StringBuilder sb = new StringBuilder();
+        headerLine(sb, String.format(Locale.US, "%9.2f           OBSERVATION DATA    G (GPS)", 3.04), "RINEX VERSION / TYPE");
+        headerLine(sb, String.format(Locale.US, "%14.4f%14.4f%14.4f", rx.getX(), rx.getY(), rx.getZ()), "APPROX POSITION XYZ");
+        headerLine(sb, "G    2 C1C S1C", "SYS / # / OBS TYPES");
+        headerLine(sb, "", "END OF HEADER");
+        StringBuilder records = new StringBuilder();
+        for (int epoch = 0; epoch < epochs; epoch++) {
+            int seconds = 60 + epoch;
+            long millis = START.getMillis() + seconds * 1000L;
+            records.setLength(0);
+            int tracked = 0;
+            for (int sat = 1; sat <= 32; sat++) {
+                double range = 0.0;
+                SatellitePosition position = null;
+                for (int iteration = 0; iteration < 3; iteration++) {
+                    position = parser.getSatPositionAndVelocities(millis, range, sat, 'G', 0.0);
+                    if (position == null) {
+                        break;
+                    }
+                    double dx = position.getX() - rx.getX(), dy = position.getY() - rx.getY(), dz = position.getZ() - rx.getZ();
+                    range = Math.sqrt(dx * dx + dy * dy + dz * dz);
+                }
+                if (position == null || range == 0.0) {
+                    continue;
+                }
+                double sinElevation = ((position.getX() - rx.getX()) * ux + (position.getY() - rx.getY()) * uy
+                        + (position.getZ() - rx.getZ()) * uz) / range;
+                if (sinElevation < minSinElevation) {
+                    continue;
+                }
+                double pr = range - Constants.SPEED_OF_LIGHT * position.getSatelliteClockError() + RX_CLOCK_BIAS
+                        + random.nextGaussian();
+                records.append(String.format(Locale.US, "G%02d%14.3f  %14.3f  %n", sat, pr, 30.0 + 20.0 * sinElevation));
+                tracked++;
+            }
+            int[] date = epochDate(seconds);
+            sb.append(String.format(Locale.US, "> %04d %02d %02d %02d %02d%11.7f  0%3d%n", date[0], date[1], date[2],
+                    date[3], date[4], (double) (seconds % 60), tracked));
+            sb.append(records);
+        }
+        return sb.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    static EphGps gpsEphemeris(int index, int satellites) {
+        EphGps eph = new EphGps();
+        eph.setSatType('G');
+        eph.setSatID(index + 1);
+        eph.setWeek(GPS_WEEK);
+        fill(eph, kepler(index, satellites, GPS_SQRT_A, 0.96, 0));
+        return eph;
+    }
+
+    static EphGalileo galileoEphemeris(int index, int satellites) {
+        EphGalileo eph = new EphGalileo();
+        eph.setSatType('E');
+        eph.setSatID(index + 1);
+        eph.setWeek(GPS_WEEK);
+        double[] k = kepler(index, satellites, GALILEO_SQRT_A, 0.977, 0);
+        eph.setToe(k[TOE]);
+        eph.setToc(k[TOE]);
+        eph.setAf0(k[AF0]);
+        eph.setAf1(k[AF1]);
+        eph.setTgd(k[TGD]);
+        eph.setRootA(k[SQRT_A]);
+        eph.setE(k[E]);
+        eph.setM0(k[M0]);
+        eph.setDeltaN(k[DELTA_N]);
+        eph.setOmega0(k[OMEGA0]);
+        eph.setOmega(k[OMEGA]);
+        eph.setOmegaDot(k[OMEGA_DOT]);
+        eph.setI0(k[I0]);
+        eph.setiDot(k[IDOT]);
+        eph.setCrs(k[CRS]);
+        eph.setCrc(k[CRC]);
+        eph.setCus(k[CUS]);
+        eph.setCuc(k[CUC]);
+        eph.setCis(k[CIS]);
+        eph.setCic(k[CIC]);
+        return eph;
+    }
+
+    /**
+     * GLONASS ephemeris as broadcast: PZ-90 state vector at {@code toe}, which the
+     * ephemeris code integrates to the requested time.
+     *
+     * @param secondsOfWeek GPS seconds of week the position will be computed for
+     * @param secondsSinceToe time between {@code toe} and that epoch; it sets the number of
+     * 60 s integration steps
+     */
+    static EphGps glonassEphemeris(int index, int satellites, double secondsOfWeek, double secondsSinceToe) {
+        EphGps eph = new EphGps();
+        eph.setSatType('R');
+        eph.setSatID(index + 1);
+        eph.setWeek(GPS_WEEK);
+        // toe is broadcast in UTC(SU), the integrator adds the leap seconds back
+        double toe = secondsOfWeek - START.getLeapSeconds() - secondsSinceToe;
+        eph.setToe(toe);
+        eph.setToc(toe);
+        double raan = 2.0 * Math.PI * (index % 3) / 3.0;
+        double u = 2.0 * Math.PI * index / satellites;
+        double inc = Math.toRadians(64.8);
+        double v = Math.sqrt(3.986004418e14 / GLONASS_RADIUS);
+        double cu = Math.cos(u), su = Math.sin(u), ci = Math.cos(inc), si = Math.sin(inc);
+        double co = Math.cos(raan), so = Math.sin(raan);
+        eph.setX(GLONASS_RADIUS * (co * cu - so * su * ci));
+        eph.setY(GLONASS_RADIUS * (so * cu + co * su * ci));
+        eph.setZ(GLONASS_RADIUS * su * si);
+        eph.setXv(v * (-co * su - so * cu * ci));
+        eph.setYv(v * (-so * su + co * cu * ci));
+        eph.setZv(v * cu * si);
+        eph.setXa(0.0);
+        eph.setYa(0.0);
+        eph.setZa(0.0);
+        eph.setTauN(-1.2e-5f);
+        eph.setGammaN(1e-12f);
+        return eph;
+    }
+
+    static NavigationIono iono() {
+        final IonoGps gps = new IonoGps();
+        gps.setAlpha(new float[]{1.1176e-8f, 7.4506e-9f, -5.9605e-8f, -5.9605e-8f});
+        gps.setBeta(new float[]{90112.0f, 0.0f, -196610.0f, -65536.0f});
+        final IonoGalileo galileo = new IonoGalileo();
+        galileo.setAlpha(new float[]{62.75f, 0.1953f, 0.0041f, 0.0f});
+        return new NavigationIono() {
+            @Override
+            public IonoGps getIonoGps() {
+                return gps;
+            }
+
+            @Override
+            public IonoGalileo getIonoGalileo() {
+                return galileo;
+            }
+        };
+    }
+
+    static SatellitePosition[] skyPositions(int satellites, long seed) {
+        return SkyFixtures.skyPositions(satellites, seed);
+    }
+
+    static GnssConstellation constellation(int satellites, long seed) {
+        return SkyFixtures.constellation(satellites, seed);
+    }
+
+    /**
+     * Compresses with the LZW scheme of the Unix {@code compress} tool (.Z), 16-bit codes in
+     * block mode, as found on the IGS servers.
+     */
+    static byte[] compress(byte[] data) {
+        final int maxBits = 16;
+        final int maxMaxCode = 1 << maxBits;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+        out.write(0x1f);
+        out.write(0x9d);
+        out.write(0x80 | maxBits);
+
+        Map<Integer, Integer> table = new HashMap<>();
+        BitWriter bits = new BitWriter(out);
+        int freeEntry = 257;
+        int codesWritten = 0;
+        int codesAtWidth = 0;
+        int nBits = 9;
+        int ent = data.length > 0 ? data[0] & 0xFF : -1;
+        for (int i = 1; i <= data.length; i++) {
+            int c = i < data.length ? data[i] & 0xFF : -1;
+            if (c >= 0) {
+                Integer code = table.get((ent << 8) | c);
+                if (code != null) {
+                    ent = code;
+                    continue;
+                }
+            }
+            // the decoder widens the codes once its own table, one entry behind, is full
+            if (codesWritten > 0 && Math.min(256 + codesWritten, maxMaxCode) > (1 << nBits) - 1 && nBits < maxBits) {
+                while (codesAtWidth % 8 != 0) {
+                    bits.write(0, nBits);
+                    codesAtWidth++;
+                }
+                nBits++;
+                codesAtWidth = 0;
+            }
+            bits.write(ent, nBits);
+            codesWritten++;
+            codesAtWidth++;
+            if (c >= 0) {
+                if (freeEntry < maxMaxCode) {
+                    table.put((ent << 8) | c, freeEntry++);
+                }
+                ent = c;
+            }
+        }
+        bits.flush();
+        return out.toByteArray();
+    }
+
+    /**
+     * Discards {@link System#out}, which the parsers write every record to
+     *
+     * @return the stream to restore afterwards
+     */
+    static PrintStream silenceStdout() {
+        PrintStream original = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        return original;
+    }
+
+    // orbital element indices
+    private static final int TOE = 0, AF0 = 1, AF1 = 2, TGD = 3, SQRT_A = 4, E = 5, M0 = 6,
+            DELTA_N = 7, OMEGA0 = 8, OMEGA = 9, OMEGA_DOT = 10, I0 = 11, IDOT = 12,
+            CRS = 13, CRC = 14, CUS = 15, CUC = 16, CIS = 17, CIC = 18;
+
+    /**
+     * Elements of satellite {@code index} in a six-plane constellation, referred to {@code toe}
+     */
+    private static double[] kepler(int index, int satellites, double sqrtA, double inclination, int toe) {
+        int perPlane = (satellites + 5) / 6;
+        int plane = index % 6;
+        int slot = index / 6;
+        double meanMotion = Math.sqrt(3.986005e14) / (sqrtA * sqrtA * sqrtA);
+        double[] k = new double[19];
+        k[TOE] = toe;
+        k[AF0] = 1e-5 * ((index % 7) - 3);
+        k[AF1] = 1e-12 * ((index % 3) - 1);
+        k[TGD] = -5e-9;
+        k[SQRT_A] = sqrtA;
+        k[E] = 0.005 + 0.001 * (index % 5);
+        k[M0] = wrap(2.0 * Math.PI * slot / perPlane + 0.3 * plane + meanMotion * toe);
+        k[DELTA_N] = 4.5e-9;
+        k[OMEGA0] = wrap(Math.PI / 3.0 * plane - 7.2921151467e-5 * toe);
+        k[OMEGA] = wrap(0.7 * index);
+        k[OMEGA_DOT] = -8.0e-9;
+        k[I0] = inclination + 0.001 * plane;
+        k[IDOT] = 1e-10;
+        k[CRS] = 20.0;
+        k[CRC] = 200.0;
+        k[CUS] = 8e-6;
+        k[CUC] = 1e-6;
+        k[CIS] = -5e-8;
+        k[CIC] = 5e-8;
+        return k;
+    }
+
+    private static void fill(EphGps eph, double[] k) {
+        eph.setToe(k[TOE]);
+        eph.setToc(k[TOE]);
+        eph.setAf0(k[AF0]);
+        eph.setAf1(k[AF1]);
+        eph.setTgd(k[TGD]);
+        eph.setRootA(k[SQRT_A]);
+        eph.setE(k[E]);
+        eph.setM0(k[M0]);
+        eph.setDeltaN(k[DELTA_N]);
+        eph.setOmega0(k[OMEGA0]);
+        eph.setOmega(k[OMEGA]);
+        eph.setOmegaDot(k[OMEGA_DOT]);
+        eph.setI0(k[I0]);
+        eph.setiDot(k[IDOT]);
+        eph.setCrs(k[CRS]);
+        eph.setCrc(k[CRC]);
+        eph.setCus(k[CUS]);
+        eph.setCuc(k[CUC]);
+        eph.setCis(k[CIS]);
+        eph.setCic(k[CIC]);
+    }
+
+    private static double wrap(double angle) {
+        double twoPi = 2.0 * Math.PI;
+        angle = angle % twoPi;
+        return angle > Math.PI ? angle - twoPi : angle;
+    }
+
+    /**
+     * @return year, month, day, hour, minute of the epoch {@code seconds} after {@link #START},
+     * on the GPS time scale like the navigation records
+     */
+    private static int[] epochDate(int seconds) {
+        LocalDateTime date = LocalDateTime.ofEpochSecond(START.getMillis() / 1000L + seconds, 0, ZoneOffset.UTC);
+        return new int[]{date.getYear(), date.getMonthValue(), date.getDayOfMonth(), date.getHour(), date.getMinute()};
+    }
+
+    private static void gpsLine(StringBuilder sb, double a, double b, double c, double d) {
+        sb.append("   ").append(d19(a)).append(d19(b)).append(d19(c)).append(d19(d)).append('\n');
+    }
+
+    private static void galileoLine(StringBuilder sb, double a, double b, double c, double d) {
+        sb.append("    ").append(d19(a)).append(d19(b)).append(d19(c)).append(d19(d)).append('\n');
+    }
+
+    private static void headerLine(StringBuilder sb, String content, String label) {
+        sb.append(String.format(Locale.US, "%-60s%s", content, label)).append('\n');
+    }
+
+    private static String d19(double value) {
+        return String.format(Locale.US, "%19.12E", value).replace('E', 'D');
+    }
+
+    private static String d12(double value) {
+        return String.format(Locale.US, "%12.4E", value).replace('E', 'D');
+    }
+
+    /**
+     * Packs codes least significant bit first, like {@code compress}
+     */
+    private static final class BitWriter {
+        private final ByteArrayOutputStream out;
+        private long buffer;
+        private int count;
+
+        BitWriter(ByteArrayOutputStream out) {
+            this.out = out;
+        }
+
+        void write(int code, int nBits) {
+            buffer |= ((long) code) << count;
+            count += nBits;
+            while (count >= 8) {
+                out.write((int) (buffer & 0xFF));
+                buffer >>>= 8;
+                count -= 8;
+            }
+        }
+
+        void flush() {
+            if (count > 0) {
+                out.write((int) (buffer & 0xFF));
+            }
+            buffer = 0;
+            count = 0;
+        }
+    }
+}
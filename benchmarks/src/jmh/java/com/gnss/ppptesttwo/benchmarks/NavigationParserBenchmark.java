@@ -0,0 +1,71 @@
+package com.gnss.ppptesttwo.benchmarks;
+
+import com.gnss.ppptesttwo.navifromftp.RinexNavigationParserGalileo;
+import com.gnss.ppptesttwo.navifromftp.RinexNavigationParserGps;
+import com.gnss.ppptesttwo.navifromftp.UncompressInputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of a stored daily navigation file: 32 GPS satellites every two hours in RINEX 2,
+ * 24 Galileo satellites every hour in RINEX 3, and the GPS file read through the .Z
+ * decompressor as it comes from the FTP servers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NavigationParserBenchmark {
+
+    private byte[] gps;
+    private byte[] gpsCompressed;
+    private byte[] galileo;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        gps = NavigationFixtures.gpsNavigation(32, 12);
+        gpsCompressed = NavigationFixtures.compress(gps);
+        galileo = NavigationFixtures.galileoNavigation(24, 24);
+        stdout = NavigationFixtures.silenceStdout();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public int parseGps() {
+        RinexNavigationParserGps parser = new RinexNavigationParserGps(new ByteArrayInputStream(gps), null);
+        parser.init();
+        return parser.getEphSize();
+    }
+
+    @Benchmark
+    public int parseGpsCompressed() throws IOException {
+        RinexNavigationParserGps parser = new RinexNavigationParserGps(
+                new UncompressInputStream(new ByteArrayInputStream(gpsCompressed)), null);
+        parser.init();
+        return parser.getEphSize();
+    }
+
+    @Benchmark
+    public int parseGalileo() {
+        RinexNavigationParserGalileo parser = new RinexNavigationParserGalileo(new ByteArrayInputStream(galileo), null);
+        parser.init();
+        return parser.getEphSize();
+    }
+}
@@ -0,0 +1,61 @@
+package com.gnss.ppptesttwo.benchmarks;
+
+import com.gnss.ppptesttwo.adjust.WeightedLeastSquares;
+import com.gnss.ppptesttwo.constellations.GnssConstellation;
+import com.gnss.ppptesttwo.navifromftp.Coordinates;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One epoch of {@link WeightedLeastSquares#calculatePose}, from an approximate position
+ * 100 m off, with RAIM enabled as in the app.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PositionSolverBenchmark {
+
+    @Param({"8", "16", "32", "64"})
+    public int satellites;
+
+    private final WeightedLeastSquares solver = new WeightedLeastSquares();
+    private GnssConstellation constellation;
+    private Coordinates approximate;
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        constellation = NavigationFixtures.constellation(satellites, 7L);
+        Coordinates rx = NavigationFixtures.receiver();
+        approximate = Coordinates.globalXYZInstance(rx.getX() + 60.0, rx.getY() - 50.0, rx.getZ() + 60.0);
+        stdout = NavigationFixtures.silenceStdout();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public Coordinates calculatePose() {
+        constellation.setRxPos(approximate);
+        return solver.calculatePose(constellation);
+    }
+
+    @Benchmark
+    public Coordinates coldStart() {
+        return solver.coldStart(constellation);
+    }
+}
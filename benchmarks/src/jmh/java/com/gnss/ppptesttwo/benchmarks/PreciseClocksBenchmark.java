@@ -0,0 +1,119 @@
+package com.gnss.ppptesttwo.benchmarks;
+
+import com.gnss.ppptesttwo.precise.PreciseClocks;
+import com.gnss.ppptesttwo.precise.RinexClockParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A day of 30 s RINEX clocks (120 satellites, 50 stations): streaming the text against
+ * loading the binary cache, and the clocks of one 10 Hz epoch of 40 satellites.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PreciseClocksBenchmark {
+
+    private static final int EPOCHS = 2880;
+    private static final int INTERVAL = 30;
+    private static final String SYSTEMS = "GREC";
+    private static final int PER_SYSTEM = 30;
+    private static final int STATIONS = 50;
+
+    private File product;
+    private File cache;
+    private PreciseClocks clocks;
+    private double start;
+    private double time;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        product = File.createTempFile("clk", ".clk");
+        cache = File.createTempFile("clk", ".bin");
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(product), StandardCharsets.US_ASCII));
+        try {
+            day(out);
+        } finally {
+            out.close();
+        }
+        cache.delete();
+        clocks = PreciseClocks.load(product, cache);
+        start = clocks.getStartMillis() / 1000.0;
+        time = start + 40000;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        product.delete();
+        cache.delete();
+    }
+
+    @Benchmark
+    public double epochClocks() {
+        time += 0.1;
+        if (time > start + 80000) {
+            time = start + 40000;
+        }
+        double sum = 0;
+        for (int i = 0; i < 40; i++) {
+            sum += clocks.getClockBias(SYSTEMS.charAt(i % 4), i / 4 + 1, time);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public PreciseClocks parseText() throws IOException {
+        InputStream is = new FileInputStream(product);
+        try {
+            return RinexClockParser.parse(is);
+        } finally {
+            is.close();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public PreciseClocks loadCache() throws IOException {
+        return PreciseClocks.read(cache);
+    }
+
+    private static void day(Writer out) throws IOException {
+        out.write(String.format(Locale.US, "%9s%11s%-20s%-20s%s\n", "3.00", "", "C", "M", "RINEX VERSION / TYPE"));
+        out.write(String.format(Locale.US, "%-60s%s\n", "   GPS", "TIME SYSTEM ID"));
+        out.write(String.format(Locale.US, "%-60s%s\n", "", "END OF HEADER"));
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            int seconds = epoch * INTERVAL;
+            String date = String.format(Locale.US, "2020 03 01 %02d %02d %9.6f", seconds / 3600, seconds / 60 % 60, (double) (seconds % 60));
+            for (int station = 0; station < STATIONS; station++) {
+                out.write(String.format(Locale.US, "AR S%03d %s  1   %19.12E\n", station, date, 1e-9 * station + 1e-13 * seconds));
+            }
+            for (int s = 0; s < SYSTEMS.length(); s++) {
+                for (int prn = 1; prn <= PER_SYSTEM; prn++) {
+                    out.write(String.format(Locale.US, "AS %c%02d  %s  2   %19.12E %19.12E\n",
+                            SYSTEMS.charAt(s), prn, date, 1e-5 * prn + 1e-12 * seconds, 1.2e-11));
+                }
+            }
+        }
+    }
+}
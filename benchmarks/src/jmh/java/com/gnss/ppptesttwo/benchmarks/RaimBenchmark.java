@@ -0,0 +1,83 @@
+package com.gnss.ppptesttwo.benchmarks;
+
+import com.gnss.ppptesttwo.adjust.AdjustFixtures;
+import com.gnss.ppptesttwo.adjust.NormalEquations;
+import com.gnss.ppptesttwo.adjust.RaimFde;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * All leave-one-out solutions of an epoch: downdating the Cholesky factor as
+ * {@link RaimFde} does, against rebuilding and refactoring the normal equations for each
+ * excluded satellite. Also the full fault detection and exclusion with one faulty range.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RaimBenchmark {
+
+    private static final int P = NormalEquations.N_PARAMS;
+
+    @Param({"8", "16", "32", "64"})
+    public int satellites;
+
+    private final RaimFde raim = new RaimFde();
+    private final NormalEquations normal = new NormalEquations();
+    private final double[] solution = new double[P];
+    private double[] h;
+    private double[] w;
+    private double[] y;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(11);
+        h = AdjustFixtures.geometry(satellites, random);
+        w = AdjustFixtures.weights(satellites);
+        y = AdjustFixtures.noise(satellites, random);
+        y[satellites / 2] += 150.0;
+    }
+
+    @Benchmark
+    public double leaveOneOutDowndate() {
+        raim.factorSet(satellites, h, w, y);
+        double sum = 0.0;
+        for (int i = 0; i < satellites; i++) {
+            raim.leaveOneOut(i, solution);
+            sum += solution[0];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double leaveOneOutNaive() {
+        double sum = 0.0;
+        for (int i = 0; i < satellites; i++) {
+            normal.reset();
+            for (int k = 0; k < satellites; k++) {
+                if (k != i) {
+                    normal.add(h, k, w[k], y[k]);
+                }
+            }
+            normal.factor();
+            normal.solve(solution);
+            sum += solution[0];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public RaimFde.Result faultDetectionAndExclusion() {
+        return raim.process(satellites, h, w, y, NavigationFixtures.RX_LAT, NavigationFixtures.RX_LON);
+    }
+}
@@ -0,0 +1,81 @@
+package com.gnss.ppptesttwo.benchmarks;
+
+import com.gnss.ppptesttwo.raw.RawEpoch;
+import com.gnss.ppptesttwo.recording.RawRecorder;
+import com.gnss.ppptesttwo.recording.RawRecordingReader;
+import com.gnss.ppptesttwo.replay.RinexObservationReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording of ten minutes of raw measurements in the binary format, per epoch, and the
+ * reading back.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RawRecorderBenchmark {
+
+    private static final int EPOCHS = 600;
+
+    private final List<RawEpoch> epochs = new ArrayList<>();
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] observation = NavigationFixtures.gpsObservation(NavigationFixtures.gpsNavigation(32, 12), EPOCHS);
+        try (RinexObservationReader reader = new RinexObservationReader(new ByteArrayInputStream(observation))) {
+            RawEpoch epoch;
+            while ((epoch = reader.next()) != null) {
+                epochs.add(epoch);
+            }
+        }
+        file = File.createTempFile("recording", ".graw");
+        record();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EPOCHS)
+    public long record() throws IOException {
+        try (RawRecorder recorder = RawRecorder.open(file, true)) {
+            for (int i = 0; i < epochs.size(); i++) {
+                recorder.record(epochs.get(i));
+            }
+            return recorder.getBytesWritten();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EPOCHS)
+    public int read() throws IOException {
+        int measurements = 0;
+        try (RawRecordingReader reader = new RawRecordingReader(file)) {
+            RawEpoch epoch;
+            while ((epoch = reader.next()) != null) {
+                measurements += epoch.getMeasurements().size();
+            }
+        }
+        return measurements;
+    }
+}
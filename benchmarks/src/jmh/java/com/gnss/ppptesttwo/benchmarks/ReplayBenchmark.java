@@ -0,0 +1,105 @@
+package com.gnss.ppptesttwo.benchmarks;
+
+import com.gnss.ppptesttwo.adjust.WeightedLeastSquares;
+import com.gnss.ppptesttwo.constellations.GnssConstellation;
+import com.gnss.ppptesttwo.raw.RawEpoch;
+import com.gnss.ppptesttwo.replay.ReplayEngine;
+import com.gnss.ppptesttwo.replay.ReplayReport;
+import com.gnss.ppptesttwo.replay.RinexEpoch;
+import com.gnss.ppptesttwo.replay.RinexObservationReader;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replay of a ten minute RINEX observation file through the whole pipeline, per epoch,
+ * the reading into raw measurements and the parsing alone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReplayBenchmark {
+
+    private static final int EPOCHS = 600;
+
+    private byte[] observation;
+    private GnssConstellation constellation;
+    private final WeightedLeastSquares solver = new WeightedLeastSquares();
+    private final RinexEpoch epoch = new RinexEpoch();
+    private PrintStream stdout;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        stdout = NavigationFixtures.silenceStdout();
+        byte[] navigation = NavigationFixtures.gpsNavigation(32, 12);
+        observation = NavigationFixtures.gpsObservation(navigation, EPOCHS);
+        File file = File.createTempFile("replay", ".nav");
+        try {
+            Files.write(file.toPath(), navigation);
+            constellation = new GnssConstellation(true, false, false, false);
+            constellation.initFromFiles(file, null);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EPOCHS)
+    public ReplayReport replay() throws IOException {
+        try (RinexObservationReader reader = reader()) {
+            return new ReplayEngine(constellation, solver).run(reader);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EPOCHS)
+    public int read() throws IOException {
+        int measurements = 0;
+        try (RinexObservationReader reader = reader()) {
+            RawEpoch epoch;
+            while ((epoch = reader.next()) != null) {
+                measurements += epoch.getMeasurements().size();
+            }
+        }
+        return measurements;
+    }
+
+    /**
+     * Parsing alone, into the reused primitive epoch
+     */
+    @Benchmark
+    @OperationsPerInvocation(EPOCHS)
+    public int parse() throws IOException {
+        int measurements = 0;
+        try (RinexObservationReader reader = reader()) {
+            while (reader.readEpoch(epoch)) {
+                measurements += epoch.size();
+            }
+        }
+        return measurements;
+    }
+
+    private RinexObservationReader reader() throws IOException {
+        return new RinexObservationReader(new ByteArrayInputStream(observation));
+    }
+}
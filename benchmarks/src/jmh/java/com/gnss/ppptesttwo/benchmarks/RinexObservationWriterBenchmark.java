@@ -0,0 +1,70 @@
+package com.gnss.ppptesttwo.benchmarks;
+
+import com.gnss.ppptesttwo.GnssTime;
+import com.gnss.ppptesttwo.constellations.Pseudorange;
+import com.gnss.ppptesttwo.constellations.SatelliteParameters;
+import com.gnss.ppptesttwo.output.RinexObservationWriter;
+import com.gnss.ppptesttwo.raw.RawMeasurement;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RINEX observation output of one minute at 10 Hz with 40 signals per epoch: queueing and
+ * formatting, per epoch. The ring holds the whole minute so that no epoch is dropped.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RinexObservationWriterBenchmark {
+
+    private static final int EPOCHS = 600;
+    private static final GnssTime START = GnssTime.ofGpsCalendar(2020, 4, 7, 12, 0, 0.0);
+
+    private final List<SatelliteParameters> satellites = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < 40; i++) {
+            SatelliteParameters satellite = new SatelliteParameters(1 + i % 32, new Pseudorange(2.0e7 + 1.0e5 * i, 0.0));
+            satellite.setConstellationType(i < 32 ? RawMeasurement.CONSTELLATION_GPS : RawMeasurement.CONSTELLATION_GALILEO);
+            satellite.setCarrierPhase(1.05e8 + 3.3e4 * i);
+            satellite.setDoppler(-2500.0 + 123.4 * i);
+            satellite.setSignalStrength(30.0 + i % 15);
+            satellites.add(satellite);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EPOCHS)
+    public long write() throws IOException {
+        RinexObservationWriter writer = new RinexObservationWriter(Channels.newChannel(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }), "BENCH", null, EPOCHS, RinexObservationWriter.DEFAULT_FLUSH_BYTES,
+                RinexObservationWriter.DEFAULT_FLUSH_INTERVAL_MILLIS);
+        for (int i = 0; i < EPOCHS; i++) {
+            writer.offer(START.plusNanos(i * 100000000L), satellites);
+        }
+        writer.close();
+        return writer.getWritten();
+    }
+}
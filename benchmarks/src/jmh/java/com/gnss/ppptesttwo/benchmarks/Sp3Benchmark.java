@@ -0,0 +1,140 @@
+package com.gnss.ppptesttwo.benchmarks;
+
+import com.gnss.ppptesttwo.precise.Sp3Interpolator;
+import com.gnss.ppptesttwo.precise.Sp3Orbits;
+import com.gnss.ppptesttwo.precise.Sp3Parser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A day of multi-GNSS SP3 at 5 minutes (120 satellites, 288 epochs): parsing the text
+ * against loading the binary cache, and one 10 Hz epoch of 40 satellites interpolated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Sp3Benchmark {
+
+    private static final int EPOCHS = 288;
+    private static final double INTERVAL = 300;
+    private static final String SYSTEMS = "GREC";
+    private static final int PER_SYSTEM = 30;
+
+    private File product;
+    private File cache;
+    private Sp3Interpolator interpolator;
+    private int[] slots;
+    private double[] out;
+    private double time;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        product = File.createTempFile("sp3", ".sp3");
+        cache = File.createTempFile("sp3", ".bin");
+        OutputStream os = new FileOutputStream(product);
+        try {
+            os.write(day().getBytes(StandardCharsets.US_ASCII));
+        } finally {
+            os.close();
+        }
+        cache.delete();
+        interpolator = new Sp3Interpolator(Sp3Orbits.load(product, cache));
+        slots = new int[40];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = interpolator.getOrbits().slot(SYSTEMS.charAt(i % 4), i / 4 + 1);
+        }
+        out = new double[6];
+        time = 40000;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        product.delete();
+        cache.delete();
+    }
+
+    @Benchmark
+    public double interpolateEpoch() {
+        // 10 Hz: the windows move to the next node every 3000 epochs
+        time += 0.1;
+        if (time > 80000) {
+            time = 40000;
+        }
+        double sum = 0;
+        for (int slot : slots) {
+            interpolator.interpolate(slot, time, out);
+            sum += out[0];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Sp3Orbits parseText() throws IOException {
+        InputStream is = new FileInputStream(product);
+        try {
+            return Sp3Parser.parse(is);
+        } finally {
+            is.close();
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Sp3Orbits loadCache() throws IOException {
+        return Sp3Orbits.read(cache);
+    }
+
+    private static String day() {
+        int count = SYSTEMS.length() * PER_SYSTEM;
+        StringBuilder sb = new StringBuilder(count * EPOCHS * 61);
+        sb.append(String.format(Locale.US, "#dP%4d %2d %2d %2d %2d %11.8f %7d ORBIT IGS14 FIT  IGS\n", 2020, 3, 1, 0, 0, 0.0, EPOCHS));
+        sb.append(String.format(Locale.US, "## %4d %15.8f %14.8f %5d %15.13f\n", 2095, 0.0, INTERVAL, 58909, 0.0));
+        StringBuilder list = new StringBuilder();
+        for (int s = 0; s < SYSTEMS.length(); s++) {
+            for (int prn = 1; prn <= PER_SYSTEM; prn++) {
+                list.append(SYSTEMS.charAt(s)).append(String.format(Locale.US, "%02d", prn));
+            }
+        }
+        for (int line = 0; line * 17 < count; line++) {
+            sb.append(line == 0 ? String.format(Locale.US, "+  %3d   ", count) : "+        ")
+                    .append(list, line * 17 * 3, Math.min(count, (line + 1) * 17) * 3).append('\n');
+        }
+        sb.append("%c M  cc GPS ccc cccc cccc cccc cccc ccccc ccccc ccccc ccccc\n");
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            int seconds = (int) (epoch * INTERVAL);
+            sb.append(String.format(Locale.US, "*  %4d %2d %2d %2d %2d %11.8f\n",
+                    2020, 3, 1, seconds / 3600, seconds / 60 % 60, 0.0));
+            for (int satellite = 0; satellite < count; satellite++) {
+                double u = 2 * Math.PI * seconds / 43082 + satellite * 0.7;
+                double node = satellite * 0.3;
+                sb.append('P').append(list, satellite * 3, satellite * 3 + 3)
+                        .append(String.format(Locale.US, "%14.6f%14.6f%14.6f%14.6f\n",
+                                26560 * (Math.cos(node) * Math.cos(u) - Math.sin(node) * 0.57 * Math.sin(u)),
+                                26560 * (Math.sin(node) * Math.cos(u) + Math.cos(node) * 0.57 * Math.sin(u)),
+                                26560 * 0.82 * Math.sin(u),
+                                100 + satellite * 0.001 * seconds / 300));
+            }
+        }
+        sb.append("EOF\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,53 @@
+package com.gnss.ppptesttwo.benchmarks;
+
+import com.gnss.ppptesttwo.navifromftp.UncompressInputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link UncompressInputStream} on a compressed daily GPS navigation file
+ * (230 kB, 28 kB compressed), read with the buffer sizes of a {@code BufferedReader} and
+ * of a bulk copy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UncompressBenchmark {
+
+    @Param({"8192", "65536"})
+    public int bufferSize;
+
+    private byte[] compressed;
+    private byte[] buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        compressed = NavigationFixtures.compress(NavigationFixtures.gpsNavigation(32, 12));
+        buffer = new byte[bufferSize];
+    }
+
+    @Benchmark
+    public long uncompress() throws IOException {
+        long total = 0;
+        try (InputStream in = new UncompressInputStream(new ByteArrayInputStream(compressed))) {
+            int n;
+            while ((n = in.read(buffer, 0, buffer.length)) > 0) {
+                total += n;
+            }
+        }
+        return total;
+    }
+}
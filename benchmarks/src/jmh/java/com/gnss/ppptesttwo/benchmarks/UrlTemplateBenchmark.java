@@ -0,0 +1,62 @@
+package com.gnss.ppptesttwo.benchmarks;
+
+import com.gnss.ppptesttwo.Time;
+import com.gnss.ppptesttwo.UrlTemplate;
+import com.gnss.ppptesttwo.navifromftp.RinexNavigationGps;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of the CDDIS hourly navigation URL: {@link Time#formatTemplate} as it was,
+ * with eight regex passes and a {@code DecimalFormat} per field, against the compiled
+ * {@link UrlTemplate} appending to a reused buffer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class UrlTemplateBenchmark {
+
+    private static final String TEMPLATE = RinexNavigationGps.NASA_NAVIGATION_HOURLY;
+
+    private UrlTemplate compiled;
+    private StringBuilder buffer;
+    private long time;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        compiled = UrlTemplate.of(TEMPLATE);
+        buffer = new StringBuilder(128);
+        // 2020-03-01 13:20 GPS time
+        time = 1583068800000L;
+    }
+
+    @Benchmark
+    public String regexReplace() {
+        Time t = new Time(time);
+        String tmpl = TEMPLATE.replaceAll("\\$\\{wwww\\}", new java.text.DecimalFormat("0000").format(t.getGpsWeek()));
+        tmpl = tmpl.replaceAll("\\$\\{d\\}", new java.text.DecimalFormat("0").format(t.getGpsWeekDay()));
+        tmpl = tmpl.replaceAll("\\$\\{ddd\\}", new java.text.DecimalFormat("000").format(t.getDayOfYear()));
+        tmpl = tmpl.replaceAll("\\$\\{yy\\}", new java.text.DecimalFormat("00").format(t.getYear2c()));
+        tmpl = tmpl.replaceAll("\\$\\{yyyy\\}", new java.text.DecimalFormat("0000").format(t.getYear()));
+        int hour = t.getGpsHourInDay();
+        tmpl = tmpl.replaceAll("\\$\\{hh\\}", new java.text.DecimalFormat("00").format(hour));
+        tmpl = tmpl.replaceAll("\\$\\{hh4\\}", new java.text.DecimalFormat("00").format(hour / 2 * 2));
+        return tmpl.replaceAll("\\$\\{h\\}", t.getHourOfDayLetter());
+    }
+
+    @Benchmark
+    public int compiledRender() {
+        buffer.setLength(0);
+        compiled.render(time, buffer);
+        return buffer.length();
+    }
+}
@@ -0,0 +1,95 @@
+package com.gnss.ppptesttwo;
+
+/**
+ * Logging entry point of the positioning code, with the same methods as
+ * {@code android.util.Log} so that the call sites read the same on every platform.
+ * <p>
+ * Messages go to a pluggable {@link Sink}: the Android app forwards them to logcat, a
+ * server or a benchmark can print them or drop them. Without a sink nothing is logged,
+ * and no message string is passed on.
+ */
+public final class GnssLog {
+
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+
+    public interface Sink {
+        /**
+         * @param priority one of {@link #VERBOSE} to {@link #ERROR}
+         * @param error may be null
+         */
+        void log(int priority, String tag, String message, Throwable error);
+    }
+
+    private static volatile Sink sink;
+
+    private GnssLog() {
+    }
+
+    /**
+     * @param newSink destination of all messages, null to disable logging
+     */
+    public static void setSink(Sink newSink) {
+        sink = newSink;
+    }
+
+    public static Sink getSink() {
+        return sink;
+    }
+
+    /**
+     * @return a sink printing messages of at least {@code minPriority} to {@code System.err}
+     */
+    public static Sink stderr(final int minPriority) {
+        return new Sink() {
+            @Override
+            public void log(int priority, String tag, String message, Throwable error) {
+                if (priority < minPriority) {
+                    return;
+                }
+                System.err.println("VDIWE".charAt(priority - VERBOSE) + "/" + tag + ": " + message);
+                if (error != null) {
+                    error.printStackTrace();
+                }
+            }
+        };
+    }
+
+    public static void v(String tag, String message) {
+        log(VERBOSE, tag, message, null);
+    }
+
+    public static void d(String tag, String message) {
+        log(DEBUG, tag, message, null);
+    }
+
+    public static void i(String tag, String message) {
+        log(INFO, tag, message, null);
+    }
+
+    public static void w(String tag, String message) {
+        log(WARN, tag, message, null);
+    }
+
+    public static void w(String tag, String message, Throwable error) {
+        log(WARN, tag, message, error);
+    }
+
+    public static void e(String tag, String message) {
+        log(ERROR, tag, message, null);
+    }
+
+    public static void e(String tag, String message, Throwable error) {
+        log(ERROR, tag, message, error);
+    }
+
+    private static void log(int priority, String tag, String message, Throwable error) {
+        Sink current = sink;
+        if (current != null) {
+            current.log(priority, tag, message, error);
+        }
+    }
+}
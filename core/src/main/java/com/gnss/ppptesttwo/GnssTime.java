@@ -0,0 +1,266 @@
+package com.gnss.ppptesttwo;
+
+import java.util.Locale;
+
+/**
+ * Immutable GNSS time stamp, stored as a single long of nanoseconds since the GPS epoch
+ * (1980-01-06 00:00:00 GPS time).
+ * <p>
+ * Unlike {@link Time} it holds no calendar or formatter, so it is cheap enough to be
+ * created per satellite per epoch. Conversions:
+ * <ul>
+ * <li>GPS week / seconds of week, and the "unix time" used across the app (milliseconds
+ * since 1970 on the GPS time scale, the same value as {@link Time#getMsec()})</li>
+ * <li>UTC, through a precomputed leap second table searched by bisection</li>
+ * <li>Galileo System Time: same scale as GPS, weeks counted from 1999-08-22</li>
+ * <li>BeiDou Time: 14 s behind GPS, weeks counted from 2006-01-01</li>
+ * </ul>
+ */
+public final class GnssTime implements Comparable<GnssTime> {
+
+    public static final long NANOS_PER_SECOND = 1000000000L;
+    public static final long SECONDS_PER_WEEK = Constants.DAYS_IN_WEEK * Constants.SEC_IN_DAY;
+    public static final long NANOS_PER_WEEK = SECONDS_PER_WEEK * NANOS_PER_SECOND;
+
+    /**
+     * GPS epoch in milliseconds since 1970
+     */
+    public static final long GPS_EPOCH_MILLIS = Constants.UNIX_GPS_DAYS_DIFF * Constants.SEC_IN_DAY * Constants.MILLISEC_IN_SEC;
+
+    /**
+     * First GST week (1999-08-22) in GPS weeks
+     */
+    public static final int GST_WEEK_OFFSET = 1024;
+
+    /**
+     * First BDT week (2006-01-01) in GPS weeks
+     */
+    public static final int BDT_WEEK_OFFSET = 1356;
+
+    /**
+     * BDT lags GPS time by the leap seconds accumulated between 1980 and 2006
+     */
+    public static final long BDT_GPS_OFFSET_SECONDS = 14;
+
+    /**
+     * UTC dates (year, month) at 00:00 of which GPS-UTC grew by one second
+     */
+    private static final int[][] LEAP_DATES = {
+            {1981, 7}, {1982, 7}, {1983, 7}, {1985, 7}, {1988, 1}, {1990, 1}, {1991, 1},
+            {1992, 7}, {1993, 7}, {1994, 7}, {1996, 1}, {1997, 7}, {1999, 1}, {2006, 1},
+            {2009, 1}, {2012, 7}, {2015, 7}, {2017, 1}
+    };
+
+    /**
+     * Leap instants as UTC seconds since 1970, ascending; GPS-UTC is {@code i + 1} from entry {@code i} on
+     */
+    private static final long[] LEAP_UTC_SECONDS = new long[LEAP_DATES.length];
+
+    /**
+     * Same instants in GPS seconds since the GPS epoch
+     */
+    private static final long[] LEAP_GPS_SECONDS = new long[LEAP_DATES.length];
+
+    static {
+        long gpsEpochSeconds = Constants.UNIX_GPS_DAYS_DIFF * Constants.SEC_IN_DAY;
+        for (int i = 0; i < LEAP_DATES.length; i++) {
+            long utc = daysFromCivil(LEAP_DATES[i][0], LEAP_DATES[i][1], 1) * Constants.SEC_IN_DAY;
+            LEAP_UTC_SECONDS[i] = utc;
+            LEAP_GPS_SECONDS[i] = utc - gpsEpochSeconds + i + 1;
+        }
+    }
+
+    private final long gpsNanos;
+
+    private GnssTime(long gpsNanos) {
+        this.gpsNanos = gpsNanos;
+    }
+
+    public static GnssTime ofGpsNanos(long gpsNanos) {
+        return new GnssTime(gpsNanos);
+    }
+
+    public static GnssTime ofGpsWeek(int week, double secondsOfWeek) {
+        return new GnssTime(week * NANOS_PER_WEEK + Math.round(secondsOfWeek * NANOS_PER_SECOND));
+    }
+
+    /**
+     * @param millis milliseconds since 1970 on the GPS time scale (no leap seconds)
+     */
+    public static GnssTime ofMillis(long millis) {
+        return new GnssTime((millis - GPS_EPOCH_MILLIS) * 1000000L);
+    }
+
+    /**
+     * @param utcMillis UTC milliseconds since 1970, e.g. {@link System#currentTimeMillis()}
+     */
+    public static GnssTime fromUtcMillis(long utcMillis) {
+        long utcSeconds = Math.floorDiv(utcMillis, Constants.MILLISEC_IN_SEC);
+        int leap = countNotAfter(LEAP_UTC_SECONDS, utcSeconds);
+        return new GnssTime((utcMillis - GPS_EPOCH_MILLIS + leap * Constants.MILLISEC_IN_SEC) * 1000000L);
+    }
+
+    /**
+     * Calendar date and time of day on the GPS time scale, as in RINEX observation epochs
+     */
+    public static GnssTime ofGpsCalendar(int year, int month, int day, int hour, int minute, double second) {
+        long days = daysFromCivil(year, month, day) - Constants.UNIX_GPS_DAYS_DIFF;
+        long seconds = days * Constants.SEC_IN_DAY + hour * 3600L + minute * 60L;
+        return new GnssTime(seconds * NANOS_PER_SECOND + Math.round(second * NANOS_PER_SECOND));
+    }
+
+    public static GnssTime ofGalileoWeek(int week, double secondsOfWeek) {
+        return ofGpsWeek(week + GST_WEEK_OFFSET, secondsOfWeek);
+    }
+
+    public static GnssTime ofBeidouWeek(int week, double secondsOfWeek) {
+        return ofGpsWeek(week + BDT_WEEK_OFFSET, secondsOfWeek + BDT_GPS_OFFSET_SECONDS);
+    }
+
+    public long getGpsNanos() {
+        return gpsNanos;
+    }
+
+    /**
+     * @return seconds since the GPS epoch
+     */
+    public double getGpsSeconds() {
+        return gpsNanos / (double) NANOS_PER_SECOND;
+    }
+
+    public int getGpsWeek() {
+        return (int) Math.floorDiv(gpsNanos, NANOS_PER_WEEK);
+    }
+
+    public double getGpsSecondsOfWeek() {
+        return Math.floorMod(gpsNanos, NANOS_PER_WEEK) / (double) NANOS_PER_SECOND;
+    }
+
+    /**
+     * @return milliseconds since 1970 on the GPS time scale, as used by the ephemeris code
+     */
+    public long getMillis() {
+        return Math.floorDiv(gpsNanos, 1000000L) + GPS_EPOCH_MILLIS;
+    }
+
+    /**
+     * @return GPS-UTC at this instant [s]
+     */
+    public int getLeapSeconds() {
+        return countNotAfter(LEAP_GPS_SECONDS, Math.floorDiv(gpsNanos, NANOS_PER_SECOND));
+    }
+
+    /**
+     * @return UTC milliseconds since 1970
+     */
+    public long toUtcMillis() {
+        return getMillis() - getLeapSeconds() * Constants.MILLISEC_IN_SEC;
+    }
+
+    public int getGalileoWeek() {
+        return getGpsWeek() - GST_WEEK_OFFSET;
+    }
+
+    public double getGalileoSecondsOfWeek() {
+        return getGpsSecondsOfWeek();
+    }
+
+    public int getBeidouWeek() {
+        return (int) Math.floorDiv(gpsNanos - BDT_GPS_OFFSET_SECONDS * NANOS_PER_SECOND, NANOS_PER_WEEK) - BDT_WEEK_OFFSET;
+    }
+
+    public double getBeidouSecondsOfWeek() {
+        return Math.floorMod(gpsNanos - BDT_GPS_OFFSET_SECONDS * NANOS_PER_SECOND, NANOS_PER_WEEK) / (double) NANOS_PER_SECOND;
+    }
+
+    public GnssTime plusSeconds(double seconds) {
+        return new GnssTime(gpsNanos + Math.round(seconds * NANOS_PER_SECOND));
+    }
+
+    public GnssTime plusNanos(long nanos) {
+        return new GnssTime(gpsNanos + nanos);
+    }
+
+    /**
+     * @return this minus {@code other} [s]
+     */
+    public double secondsSince(GnssTime other) {
+        return (gpsNanos - other.gpsNanos) / (double) NANOS_PER_SECOND;
+    }
+
+    /**
+     * @return the equivalent {@link Time}, for the calendar and template helpers
+     */
+    public Time toTime() {
+        long millis = getMillis();
+        double fraction = (Math.floorMod(gpsNanos, 1000000L)) / 1e6;
+        return new Time(millis, fraction);
+    }
+
+    @Override
+    public int compareTo(GnssTime other) {
+        return Long.compare(gpsNanos, other.gpsNanos);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof GnssTime && ((GnssTime) o).gpsNanos == gpsNanos;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (gpsNanos ^ (gpsNanos >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "GPS %d %.9f", getGpsWeek(), getGpsSecondsOfWeek());
+    }
+
+    /**
+     * @return number of entries of the ascending table {@code table} that are {@code <= value}
+     */
+    private static int countNotAfter(long[] table, long value) {
+        int lo = 0;
+        int hi = table.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (table[mid] <= value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date [H. Hinnant, chrono-compatible
+     * low-level date algorithms]
+     */
+    public static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yoe = y - era * 400;
+        int doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097L + doe - 719468;
+    }
+
+    /**
+     * Inverse of {@link #daysFromCivil}
+     * @return year, month (1-12) and day of month
+     */
+    public static int[] civilFromDays(long days) {
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int doe = (int) (z - era * 146097);
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doy + 2) / 153;
+        int day = doy - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        return new int[]{(int) year, month, day};
+    }
+}
@@ -21,12 +21,10 @@
 package com.gnss.ppptesttwo;
 
 import java.text.DateFormat;
-import java.text.DecimalFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.Calendar;
 import java.util.Date;
-import java.util.GregorianCalendar;
+import java.util.Locale;
 import java.util.TimeZone;
 
 /**
@@ -40,82 +38,36 @@ public class Time {
 	private long msec; /* time in milliseconds since January 1, 1970 (UNIX standard) */
 	private double fraction; /* fraction of millisecond */
 
-	private Date[] leapDates;
-	private Calendar gc =  GregorianCalendar.getInstance();
-	TimeZone zone = TimeZone.getTimeZone("GMT Time");
-	DateFormat df = new SimpleDateFormat("yyyy MM dd HH mm ss.SSS");
-	DateFormat logTime = new SimpleDateFormat("HHmmss.SSS");
-
-	void initleapDates() throws ParseException {
-		leapDates = new Date[19];
-		leapDates[0]  = df.parse("1980 01 06 00 00 00.0");
-		leapDates[1]  = df.parse("1981 07 01 00 00 00.0");
-		leapDates[2]  = df.parse("1982 07 01 00 00 00.0");
-		leapDates[3]  = df.parse("1983 07 01 00 00 00.0");
-		leapDates[4]  = df.parse("1985 07 01 00 00 00.0");
-		leapDates[5]  = df.parse("1988 01 01 00 00 00.0");
-		leapDates[6]  = df.parse("1990 01 01 00 00 00.0");
-		leapDates[7]  = df.parse("1991 01 01 00 00 00.0");
-		leapDates[8]  = df.parse("1992 07 01 00 00 00.0");
-		leapDates[9]  = df.parse("1993 07 01 00 00 00.0");
-		leapDates[10] = df.parse("1994 07 01 00 00 00.0");
-		leapDates[11] = df.parse("1996 01 01 00 00 00.0");
-		leapDates[12] = df.parse("1997 07 01 00 00 00.0");
-		leapDates[13] = df.parse("1999 01 01 00 00 00.0");
-		leapDates[14] = df.parse("2006 01 01 00 00 00.0");
-		leapDates[15] = df.parse("2009 01 01 00 00 00.0");
-		leapDates[16] = df.parse("2012 07 01 00 00 00.0");
-		leapDates[17] = df.parse("2015 07 01 00 00 00.0");
-		leapDates[18] = df.parse("2017 01 01 00 00 00.0");
-	}
+	/* calendar fields (GMT) of msec, computed on first use */
+	private int year = -1;
+	private int month;
+	private int dayOfYear;
+
+	private static final String DATE_PATTERN = "yyyy MM dd HH mm ss.SSS";
 
 	public Time(long msec){
-		df.setTimeZone(zone);
-		gc.setTimeZone(zone);
-		this.gc.setTimeInMillis(msec);
 		this.msec = msec;
 		this.fraction = 0;
 	}
 	public Time(long msec, double fraction){
-		df.setTimeZone(zone);
-		gc.setTimeZone(zone);
 		this.msec = msec;
-		this.gc.setTimeInMillis(msec);
 		this.fraction = fraction;
 	}
 	public Time(String dateStr) throws ParseException {
-		df.setTimeZone(zone);
-		gc.setTimeZone(zone);
 		this.msec = dateStringToTime(dateStr);
-		this.gc.setTimeInMillis(this.msec);
 		this.fraction = 0;
 	}
 	public Time(int gpsWeek, double weekSec){
-		df.setTimeZone(zone);
-		gc.setTimeZone(zone);
 		double fullTime = (Constants.UNIX_GPS_DAYS_DIFF * Constants.SEC_IN_DAY + gpsWeek*Constants.DAYS_IN_WEEK*Constants.SEC_IN_DAY + weekSec) * 1000L;
 		this.msec = (long) (fullTime);
 		this.fraction = fullTime - this.msec;
-		this.gc.setTimeInMillis(this.msec);
 	}
 
 	public Time(int week, double weekSec, char satID){
-		if (satID == 'E') {
-			df.setTimeZone(zone);
-			gc.setTimeZone(zone);
-			double fullTime = (Constants.UNIX_GST_DAYS_DIFF * Constants.SEC_IN_DAY + week * Constants.DAYS_IN_WEEK * Constants.SEC_IN_DAY + weekSec) * 1000L;
-			this.msec = (long) (fullTime);
-			this.fraction = fullTime - this.msec;
-			this.gc.setTimeInMillis(this.msec);
-		}
-		else {
-			df.setTimeZone(zone);
-			gc.setTimeZone(zone);
-			double fullTime = (Constants.UNIX_GPS_DAYS_DIFF * Constants.SEC_IN_DAY + week * Constants.DAYS_IN_WEEK * Constants.SEC_IN_DAY + weekSec) * 1000L;
-			this.msec = (long) (fullTime);
-			this.fraction = fullTime - this.msec;
-			this.gc.setTimeInMillis(this.msec);
-		}
+		long daysDiff = satID == 'E' ? Constants.UNIX_GST_DAYS_DIFF : Constants.UNIX_GPS_DAYS_DIFF;
+		double fullTime = (daysDiff * Constants.SEC_IN_DAY + week * Constants.DAYS_IN_WEEK * Constants.SEC_IN_DAY + weekSec) * 1000L;
+		this.msec = (long) (fullTime);
+		this.fraction = fullTime - this.msec;
 	}
 
 	/**
@@ -123,18 +75,24 @@ public class Time {
 	 * @return
 	 * @throws ParseException
 	 */
-	private long dateStringToTime(String dateStr) throws ParseException {
-
-		long dateTime = 0;
-
+	private static long dateStringToTime(String dateStr) throws ParseException {
+		// "yyyy MM dd HH mm ss.SSS", as produced by the RINEX parsers
+		String[] fields = dateStr.trim().split("\\s+");
+		if (fields.length != 6) {
+			throw new ParseException("Unparseable date: \"" + dateStr + "\"", 0);
+		}
 		try {
-			Date dateObj = df.parse(dateStr);
-			dateTime = dateObj.getTime();
-		} catch (ParseException e) {
-			throw e;
+			int year = Integer.parseInt(fields[0]);
+			int month = Integer.parseInt(fields[1]);
+			int day = Integer.parseInt(fields[2]);
+			int hour = Integer.parseInt(fields[3]);
+			int minute = Integer.parseInt(fields[4]);
+			double seconds = Double.parseDouble(fields[5]);
+			long days = GnssTime.daysFromCivil(year, month, day);
+			return ((days * 24 + hour) * 60 + minute) * 60000L + Math.round(seconds * 1000.0);
+		} catch (NumberFormatException e) {
+			throw new ParseException("Unparseable date: \"" + dateStr + "\"", 0);
 		}
-
-		return dateTime;
 	}
 
 //	/**
@@ -197,13 +155,24 @@ public class Time {
 		return (int)((time%(Constants.SEC_IN_DAY))/Constants.SEC_IN_HOUR);
 	}
 	public int getYear(){
-		return gc.get(Calendar.YEAR);
+		computeCalendar();
+		return year;
 	}
 	public int getYear2c(){
-		return gc.get(Calendar.YEAR)-2000;
+		return getYear()-2000;
 	}
 	public int getDayOfYear(){
-		return gc.get(Calendar.DAY_OF_YEAR);
+		computeCalendar();
+		return dayOfYear;
+	}
+
+	private void computeCalendar(){
+		if (year >= 0) return;
+		long days = Math.floorDiv(msec, Constants.SEC_IN_DAY * Constants.MILLISEC_IN_SEC);
+		int[] ymd = GnssTime.civilFromDays(days);
+		month = ymd[1];
+		dayOfYear = (int) (days - GnssTime.daysFromCivil(ymd[0], 1, 1)) + 1;
+		year = ymd[0];
 	}
 	public String getHourOfDayLetter(){
 		char c = (char)('a'+getGpsHourInDay());
@@ -225,28 +194,7 @@ public class Time {
 	 *
 	 */
 	public String formatTemplate(String template){
-		String tmpl = template.replaceAll("\\$\\{wwww\\}", (new DecimalFormat("0000")).format(this.getGpsWeek()));
-		tmpl = tmpl.replaceAll("\\$\\{d\\}", (new DecimalFormat("0")).format(this.getGpsWeekDay()));
-		tmpl = tmpl.replaceAll("\\$\\{ddd\\}", (new DecimalFormat("000")).format(this.getDayOfYear()));
-		tmpl = tmpl.replaceAll("\\$\\{yy\\}", (new DecimalFormat("00")).format(this.getYear2c()));
-		tmpl = tmpl.replaceAll("\\$\\{yyyy\\}", (new DecimalFormat("0000")).format(this.getYear()));
-		int hh4 = this.getGpsHourInDay();
-		tmpl = tmpl.replaceAll("\\$\\{hh\\}", (new DecimalFormat("00")).format(hh4));
-		if(0<=hh4&&hh4<2) hh4=0;
-		if(2<=hh4&&hh4<4) hh4=2;
-		if(4<=hh4&&hh4<6) hh4=4;
-		if(6<=hh4&&hh4<8) hh4=6;
-		if(8<=hh4&&hh4<10) hh4=8;
-		if(10<=hh4&&hh4<12) hh4=10;
-		if(12<=hh4&&hh4<14) hh4=12;
-		if(14<=hh4&&hh4<16) hh4=14;
-		if(16<=hh4&&hh4<18) hh4=16;
-		if(18<=hh4&&hh4<20) hh4=18;
-		if(20<=hh4&&hh4<22) hh4=20;
-		if(22<=hh4&&hh4<24) hh4=22;
-		tmpl = tmpl.replaceAll("\\$\\{hh4\\}", (new DecimalFormat("00")).format(hh4));
-		tmpl = tmpl.replaceAll("\\$\\{h\\}", this.getHourOfDayLetter());
-		return tmpl;
+		return UrlTemplate.of(template).format(msec);
 	}
 
 	public double getGpsTime(){
@@ -259,24 +207,7 @@ public class Time {
 	}
 
 	public int getLeapSeconds(){
-		if( leapDates == null )
-			try {
-				initleapDates();
-			} catch (Exception e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
-
-		int leapSeconds = leapDates.length - 1;
-		double delta;
-		for (int d = 0; d < leapDates.length; d++) {
-			delta = leapDates[d].getTime() - msec;
-			if (delta > 0) {
-				leapSeconds = d - 1;
-				break;
-			}
-		}
-		return leapSeconds;
+		return GnssTime.ofMillis(msec).getLeapSeconds();
 	}
 
 	//
@@ -309,6 +240,7 @@ public class Time {
 	 */
 	public void setMsec(long msec) {
 		this.msec = msec;
+		this.year = -1;
 	}
 
 	/**
@@ -330,24 +262,39 @@ public class Time {
 	}
 
 	public String toString(){
-		return df.format(gc.getTime())+" "+gc.getTime();
+		Date date = new Date(msec);
+		return formatter(DATE_PATTERN).format(date)+" "+date;
 	}
 
 	public String toLogString(){
-		return logTime.format(gc.getTime());
+		return formatter("HHmmss.SSS").format(new Date(msec));
 	}
 
+	/**
+	 * @return month of the year, 0-based like {@link java.util.Calendar#MONTH}
+	 */
 	public int getMonth() {
-
-		return df.getCalendar().get(Calendar.MONTH);
-
-
+		computeCalendar();
+		return month - 1;
 	}
 
 	public int getHourUTC() {
+		return (int) (Math.floorMod(msec, Constants.SEC_IN_DAY * Constants.MILLISEC_IN_SEC) / (Constants.SEC_IN_HOUR * Constants.MILLISEC_IN_SEC));
+	}
 
-		return df.getCalendar().get(Calendar.HOUR_OF_DAY);
-
+	/**
+	 * @return GMT formatter, created only when a string is actually needed
+	 */
+	private static DateFormat formatter(String pattern) {
+		DateFormat df = new SimpleDateFormat(pattern, Locale.US);
+		df.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return df;
+	}
 
+	/**
+	 * @return the same instant as an immutable {@link GnssTime}
+	 */
+	public GnssTime toGnssTime() {
+		return GnssTime.ofGpsNanos((msec - GnssTime.GPS_EPOCH_MILLIS) * 1000000L + Math.round(fraction * 1e6));
 	}
 }
@@ -0,0 +1,250 @@
+package com.gnss.ppptesttwo;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A product URL template (see {@link Time#formatTemplate}) compiled once into a list of
+ * literal and field tokens.
+ * <p>
+ * Rendering appends the tokens for a time to a caller's {@link StringBuilder}: no regular
+ * expression, formatter or intermediate string, and the calendar is only computed when the
+ * template has a year or day of year field. Instances are immutable and shared.
+ */
+public final class UrlTemplate {
+
+    private static final long HOUR_MILLIS = Constants.SEC_IN_HOUR * Constants.MILLISEC_IN_SEC;
+    private static final long DAY_MILLIS = Constants.SEC_IN_DAY * Constants.MILLISEC_IN_SEC;
+    private static final long WEEK_MILLIS = Constants.DAYS_IN_WEEK * DAY_MILLIS;
+
+    private static final int LITERAL = 0;
+    private static final int GPS_WEEK = 1;
+    private static final int WEEK_DAY = 2;
+    private static final int DAY_OF_YEAR = 3;
+    private static final int YEAR_2 = 4;
+    private static final int YEAR_4 = 5;
+    private static final int HOUR = 6;
+    private static final int TWO_HOURS = 7;
+    private static final int HOUR_LETTER = 8;
+
+    private static final String[] FIELDS = {null, "wwww", "d", "ddd", "yy", "yyyy", "hh", "hh4", "h"};
+
+    private static final ConcurrentHashMap<String, UrlTemplate> COMPILED = new ConcurrentHashMap<>();
+
+    private final String template;
+    private final int[] kinds;
+    private final String[] literals;
+    private final boolean calendar;
+    private final long periodMillis;
+
+    private UrlTemplate(String template) {
+        this.template = template;
+        List<Integer> kindList = new ArrayList<>();
+        List<String> literalList = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < template.length()) {
+            int field = -1;
+            int end = -1;
+            if (template.startsWith("${", i)) {
+                end = template.indexOf('}', i);
+                field = end < 0 ? -1 : field(template.substring(i + 2, end));
+            }
+            if (field < 0) {
+                // unknown fields are kept as they are
+                literal.append(template.charAt(i++));
+                continue;
+            }
+            if (literal.length() > 0) {
+                kindList.add(LITERAL);
+                literalList.add(literal.toString());
+                literal.setLength(0);
+            }
+            kindList.add(field);
+            literalList.add(null);
+            i = end + 1;
+        }
+        if (literal.length() > 0) {
+            kindList.add(LITERAL);
+            literalList.add(literal.toString());
+        }
+        kinds = new int[kindList.size()];
+        boolean usesCalendar = false;
+        long period = -1;
+        for (int k = 0; k < kinds.length; k++) {
+            kinds[k] = kindList.get(k);
+            usesCalendar |= kinds[k] == DAY_OF_YEAR || kinds[k] == YEAR_2 || kinds[k] == YEAR_4;
+            long fieldPeriod = periodOf(kinds[k]);
+            if (fieldPeriod > 0 && (period < 0 || fieldPeriod < period)) {
+                period = fieldPeriod;
+            }
+        }
+        literals = literalList.toArray(new String[0]);
+        calendar = usesCalendar;
+        periodMillis = period;
+    }
+
+    /**
+     * @return the compiled template, compiled at the first call for {@code template}
+     */
+    public static UrlTemplate of(String template) {
+        UrlTemplate compiled = COMPILED.get(template);
+        if (compiled == null) {
+            compiled = new UrlTemplate(template);
+            UrlTemplate previous = COMPILED.putIfAbsent(template, compiled);
+            if (previous != null) {
+                compiled = previous;
+            }
+        }
+        return compiled;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * @return time covered by one rendered path: an hour for {@code ${hh}} or {@code ${h}},
+     * two hours for {@code ${hh4}}, a day for {@code ${ddd}} or {@code ${d}}, a week for
+     * {@code ${wwww}} alone; -1 without any of them
+     */
+    public long getPeriodMillis() {
+        return periodMillis;
+    }
+
+    /**
+     * Appends the path of {@code unixMillis} to {@code out}
+     *
+     * @param unixMillis GPS time in milliseconds since 1970, as {@link Time#getMsec()}
+     */
+    public void render(long unixMillis, StringBuilder out) {
+        long gpsSeconds = unixMillis / Constants.MILLISEC_IN_SEC - Constants.UNIX_GPS_DAYS_DIFF * Constants.SEC_IN_DAY;
+        int hour = (int) (gpsSeconds % Constants.SEC_IN_DAY / Constants.SEC_IN_HOUR);
+        int year = 0;
+        int dayOfYear = 0;
+        if (calendar) {
+            long days = Math.floorDiv(unixMillis, DAY_MILLIS);
+            year = GnssTime.civilFromDays(days)[0];
+            dayOfYear = (int) (days - GnssTime.daysFromCivil(year, 1, 1)) + 1;
+        }
+        for (int k = 0; k < kinds.length; k++) {
+            switch (kinds[k]) {
+                case LITERAL:
+                    out.append(literals[k]);
+                    break;
+                case GPS_WEEK:
+                    appendPadded(out, (int) (gpsSeconds / (Constants.DAYS_IN_WEEK * Constants.SEC_IN_DAY)), 4);
+                    break;
+                case WEEK_DAY:
+                    appendPadded(out, (int) (gpsSeconds % (Constants.DAYS_IN_WEEK * Constants.SEC_IN_DAY) / Constants.SEC_IN_DAY), 1);
+                    break;
+                case DAY_OF_YEAR:
+                    appendPadded(out, dayOfYear, 3);
+                    break;
+                case YEAR_2:
+                    appendPadded(out, year - 2000, 2);
+                    break;
+                case YEAR_4:
+                    appendPadded(out, year, 4);
+                    break;
+                case HOUR:
+                    appendPadded(out, hour, 2);
+                    break;
+                case TWO_HOURS:
+                    appendPadded(out, hour - hour % 2, 2);
+                    break;
+                case HOUR_LETTER:
+                    out.append((char) ('a' + hour));
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown token " + kinds[k]);
+            }
+        }
+    }
+
+    /**
+     * @return the path of {@code unixMillis}
+     */
+    public String format(long unixMillis) {
+        StringBuilder out = new StringBuilder(template.length() + 8);
+        render(unixMillis, out);
+        return out.toString();
+    }
+
+    /**
+     * Lists every path holding data of {@code [fromMillis, toMillis)}, e.g. to plan the
+     * download of archived days.
+     *
+     * @return the paths in time order, each once
+     * @throws IllegalArgumentException when the template has no hour, day or week field
+     */
+    public List<String> paths(long fromMillis, long toMillis) {
+        if (periodMillis < 0) {
+            throw new IllegalArgumentException("No hour, day or week field in " + template);
+        }
+        List<String> paths = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        StringBuilder out = new StringBuilder(template.length() + 8);
+        // periods are aligned on the GPS epoch, which starts a week
+        long origin = Constants.UNIX_GPS_DAYS_DIFF * DAY_MILLIS;
+        for (long t = Math.floorDiv(fromMillis - origin, periodMillis) * periodMillis + origin; t < toMillis; t += periodMillis) {
+            out.setLength(0);
+            render(t, out);
+            String path = out.toString();
+            if (seen.add(path)) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+
+    @Override
+    public String toString() {
+        return template;
+    }
+
+    private static int field(String name) {
+        for (int kind = GPS_WEEK; kind < FIELDS.length; kind++) {
+            if (FIELDS[kind].equals(name)) {
+                return kind;
+            }
+        }
+        return -1;
+    }
+
+    private static long periodOf(int kind) {
+        switch (kind) {
+            case HOUR:
+            case HOUR_LETTER:
+                return HOUR_MILLIS;
+            case TWO_HOURS:
+                return 2 * HOUR_MILLIS;
+            case DAY_OF_YEAR:
+            case WEEK_DAY:
+                return DAY_MILLIS;
+            case GPS_WEEK:
+                return WEEK_MILLIS;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Appends {@code value} with at least {@code width} digits, as {@code DecimalFormat("00..")}
+     */
+    private static void appendPadded(StringBuilder out, int value, int width) {
+        if (value < 0) {
+            out.append('-');
+            value = -value;
+        }
+        for (int limit = 10, digits = 1; digits < width; limit *= 10, digits++) {
+            if (value < limit) {
+                out.append('0');
+            }
+        }
+        out.append(value);
+    }
+}
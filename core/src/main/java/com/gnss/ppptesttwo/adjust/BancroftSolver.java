@@ -0,0 +1,130 @@
+package com.gnss.ppptesttwo.adjust;
+
+/**
+ * Direct algebraic solution of the pseudorange equations [Bancroft, "An algebraic solution
+ * of the GPS equations", 1985], used to get a receiver position and clock bias from a
+ * single epoch without any prior.
+ * <p>
+ * With {@code a_i = [s_i, rho_i]} (satellite position and pseudorange) and the Lorentz
+ * inner product {@code <a, b> = a1 b1 + a2 b2 + a3 b3 - a4 b4}, every observation gives
+ * {@code <a_i, a_i>/2 - <a_i, y> + <y, y>/2 = 0} for the unknown {@code y = [r, cdt]}.
+ * The linear part is solved in the least squares sense through the 4x4 normal matrix
+ * {@code B' B}, and the remaining scalar {@code <y, y>/2} comes from a quadratic equation.
+ * Of the two roots, the one with the smaller pseudorange residuals is kept.
+ * <p>
+ * The result is only as good as the uncorrected pseudoranges (tens of meters); it is a
+ * starting point for {@link WeightedLeastSquares}, not a final fix.
+ */
+public class BancroftSolver {
+
+    private static final int P = NormalEquations.N_PARAMS;
+
+    /**
+     * Radius of a sphere around the Earth center inside which the solution must lie [m]
+     */
+    private static final double MAX_GEOCENTRIC_RADIUS = 6378137.0 + 1e5;
+
+    private final NormalEquations normal = new NormalEquations();
+    private final double[] be = new double[P];
+    private final double[] u = new double[P];
+    private final double[] v = new double[P];
+    private final double[] candidate = new double[P];
+    private final double[] work = new double[P];
+    private final double[] roots = new double[2];
+
+    private double[] b = new double[0];
+
+    /**
+     * @param n number of satellites, at least 4
+     * @param satPos satellite ECEF coordinates, {@code n x 3} row-major [m]
+     * @param pseudoranges pseudoranges corrected for the satellite clock [m]
+     * @param out receiver X, Y, Z [m] and clock bias [m]
+     * @return false if the geometry is degenerate or no root gives a plausible position
+     */
+    public boolean solve(int n, double[] satPos, double[] pseudoranges, double[] out) {
+        if (n < P) {
+            return false;
+        }
+        if (b.length < n * P) {
+            b = new double[n * P];
+        }
+
+        normal.reset();
+        for (int k = 0; k < P; k++) {
+            be[k] = 0.0;
+        }
+        for (int i = 0; i < n; i++) {
+            b[i * P] = satPos[i * 3];
+            b[i * P + 1] = satPos[i * 3 + 1];
+            b[i * P + 2] = satPos[i * 3 + 2];
+            b[i * P + 3] = pseudoranges[i];
+            double alpha = 0.5 * lorentz(b, i * P, b, i * P);
+            normal.add(b, i, 1.0, alpha);
+            for (int k = 0; k < P; k++) {
+                be[k] += b[i * P + k];
+            }
+        }
+        if (!normal.factor()) {
+            return false;
+        }
+        // u = B+ e, v = B+ alpha
+        NormalEquations.solve(normal.getFactor(), be, u, work);
+        normal.solve(v);
+
+        double e = lorentz(u, 0, u, 0);
+        double f = lorentz(u, 0, v, 0) - 1.0;
+        double g = lorentz(v, 0, v, 0);
+
+        int nRoots;
+        if (Math.abs(e) < 1e-30) {
+            if (f == 0.0) {
+                return false;
+            }
+            roots[0] = -g / (2.0 * f);
+            nRoots = 1;
+        } else {
+            double disc = f * f - e * g;
+            if (disc < 0.0) {
+                // noise can push a near double root below zero
+                disc = 0.0;
+            }
+            double sq = Math.sqrt(disc);
+            roots[0] = (-f + sq) / e;
+            roots[1] = (-f - sq) / e;
+            nRoots = 2;
+        }
+
+        double bestCost = Double.MAX_VALUE;
+        for (int r = 0; r < nRoots; r++) {
+            // y = M (v + lambda u), M = diag(1, 1, 1, -1)
+            for (int k = 0; k < P; k++) {
+                candidate[k] = v[k] + roots[r] * u[k];
+            }
+            candidate[3] = -candidate[3];
+
+            double radius = Math.sqrt(candidate[0] * candidate[0] + candidate[1] * candidate[1]
+                    + candidate[2] * candidate[2]);
+            if (radius > MAX_GEOCENTRIC_RADIUS || Double.isNaN(radius)) {
+                continue;
+            }
+            double cost = 0.0;
+            for (int i = 0; i < n; i++) {
+                double dx = satPos[i * 3] - candidate[0];
+                double dy = satPos[i * 3 + 1] - candidate[1];
+                double dz = satPos[i * 3 + 2] - candidate[2];
+                double res = pseudoranges[i] - Math.sqrt(dx * dx + dy * dy + dz * dz) - candidate[3];
+                cost += res * res;
+            }
+            if (cost < bestCost) {
+                bestCost = cost;
+                System.arraycopy(candidate, 0, out, 0, P);
+            }
+        }
+        return bestCost != Double.MAX_VALUE;
+    }
+
+    private static double lorentz(double[] a, int offA, double[] c, int offC) {
+        return a[offA] * c[offC] + a[offA + 1] * c[offC + 1] + a[offA + 2] * c[offC + 2]
+                - a[offA + 3] * c[offC + 3];
+    }
+}
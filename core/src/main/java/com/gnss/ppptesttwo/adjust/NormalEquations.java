@@ -0,0 +1,217 @@
+package com.gnss.ppptesttwo.adjust;
+
+/**
+ * Normal equations of the linearized pseudorange positioning problem
+ * (three position components plus the receiver clock bias), kept in primitive
+ * arrays so that they can be accumulated, factored and updated without
+ * allocating per epoch.
+ * <p>
+ * The normal matrix {@code N = H' W H} is factored as {@code N = L L'} (Cholesky).
+ * Removing an observation from the system is a rank-one downdate of {@code L},
+ * which costs O(p^2) instead of the O(n p^2) needed to rebuild and refactor.
+ */
+public class NormalEquations {
+
+    /**
+     * Number of unknowns: X, Y, Z and receiver clock bias
+     */
+    public static final int N_PARAMS = 4;
+
+    private static final int P = N_PARAMS;
+
+    /**
+     * Normal matrix, row-major (only the lower triangle is read by the factorization)
+     */
+    private final double[] n = new double[P * P];
+
+    /**
+     * Right hand side {@code H' W y}
+     */
+    private final double[] b = new double[P];
+
+    /**
+     * Lower triangular Cholesky factor of {@code n}, row-major
+     */
+    private final double[] l = new double[P * P];
+
+    private final double[] work = new double[P];
+
+    private boolean factored = false;
+
+    /**
+     * Clears the accumulated observations
+     */
+    public void reset() {
+        for (int i = 0; i < P * P; i++) {
+            n[i] = 0.0;
+        }
+        for (int i = 0; i < P; i++) {
+            b[i] = 0.0;
+        }
+        factored = false;
+    }
+
+    /**
+     * Adds one observation row to the system
+     * @param h design matrix, row-major with {@link #N_PARAMS} columns
+     * @param row index of the row in {@code h}
+     * @param w weight of the observation
+     * @param y observed minus computed value
+     */
+    public void add(double[] h, int row, double w, double y) {
+        final int off = row * P;
+        for (int i = 0; i < P; i++) {
+            double whi = w * h[off + i];
+            for (int j = 0; j <= i; j++) {
+                n[i * P + j] += whi * h[off + j];
+            }
+            b[i] += whi * y;
+        }
+        factored = false;
+    }
+
+    /**
+     * Computes the Cholesky factor of the accumulated normal matrix
+     * @return false if the matrix is not positive definite (bad geometry)
+     */
+    public boolean factor() {
+        factored = factor(n, l);
+        return factored;
+    }
+
+    public boolean isFactored() {
+        return factored;
+    }
+
+    /**
+     * Solves {@code N x = H' W y} with the current factor
+     * @param x output, length {@link #N_PARAMS}
+     */
+    public void solve(double[] x) {
+        solve(l, b, x, work);
+    }
+
+    /**
+     * @return the lower triangular Cholesky factor (live array, do not modify)
+     */
+    public double[] getFactor() {
+        return l;
+    }
+
+    /**
+     * @return the right hand side {@code H' W y} (live array, do not modify)
+     */
+    public double[] getRhs() {
+        return b;
+    }
+
+    /**
+     * Computes {@code h' N^-1 h} for one design matrix row, using the factor
+     * @param h design matrix, row-major
+     * @param row index of the row
+     */
+    public double quadraticForm(double[] h, int row) {
+        return quadraticForm(l, h, row * P, work);
+    }
+
+    /**
+     * Cholesky factorization {@code n = L L'}
+     * @param n symmetric matrix, row-major, only the lower triangle is read
+     * @param l lower triangular factor, row-major; may be {@code n} itself
+     * @return false if the matrix is not positive definite
+     */
+    public static boolean factor(double[] n, double[] l) {
+        for (int i = 0; i < P; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = n[i * P + j];
+                for (int k = 0; k < j; k++) {
+                    sum -= l[i * P + k] * l[j * P + k];
+                }
+                if (i == j) {
+                    if (sum <= 0.0) {
+                        return false;
+                    }
+                    l[i * P + i] = Math.sqrt(sum);
+                } else {
+                    l[i * P + j] = sum / l[j * P + j];
+                }
+            }
+            for (int j = i + 1; j < P; j++) {
+                l[i * P + j] = 0.0;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Solves {@code L L' x = rhs}
+     */
+    public static void solve(double[] l, double[] rhs, double[] x, double[] work) {
+        // forward substitution L z = rhs
+        for (int i = 0; i < P; i++) {
+            double sum = rhs[i];
+            for (int k = 0; k < i; k++) {
+                sum -= l[i * P + k] * work[k];
+            }
+            work[i] = sum / l[i * P + i];
+        }
+        // back substitution L' x = z
+        for (int i = P - 1; i >= 0; i--) {
+            double sum = work[i];
+            for (int k = i + 1; k < P; k++) {
+                sum -= l[k * P + i] * x[k];
+            }
+            x[i] = sum / l[i * P + i];
+        }
+    }
+
+    /**
+     * @return {@code v' (L L')^-1 v} where {@code v = h[off .. off + p)}
+     */
+    public static double quadraticForm(double[] l, double[] h, int off, double[] work) {
+        double q = 0.0;
+        for (int i = 0; i < P; i++) {
+            double sum = h[off + i];
+            for (int k = 0; k < i; k++) {
+                sum -= l[i * P + k] * work[k];
+            }
+            work[i] = sum / l[i * P + i];
+            q += work[i] * work[i];
+        }
+        return q;
+    }
+
+    /**
+     * Rank-one downdate of a Cholesky factor in place: on return {@code L L'} equals the
+     * old {@code L L' - s^2 v v'}.
+     *
+     * @param l lower triangular factor, row-major, modified in place
+     * @param h array holding {@code v} starting at {@code off}
+     * @param off offset of {@code v} in {@code h}
+     * @param s scale of {@code v} (the square root of the observation weight)
+     * @param work scratch array of length {@link #N_PARAMS}
+     * @return false if the downdated matrix is no longer positive definite, in which case
+     * {@code l} is left in an undefined state
+     */
+    public static boolean downdate(double[] l, double[] h, int off, double s, double[] work) {
+        for (int i = 0; i < P; i++) {
+            work[i] = s * h[off + i];
+        }
+        for (int k = 0; k < P; k++) {
+            double lkk = l[k * P + k];
+            double r2 = lkk * lkk - work[k] * work[k];
+            if (r2 <= 0.0) {
+                return false;
+            }
+            double r = Math.sqrt(r2);
+            double c = r / lkk;
+            double sn = work[k] / lkk;
+            l[k * P + k] = r;
+            for (int i = k + 1; i < P; i++) {
+                l[i * P + k] = (l[i * P + k] - sn * work[i]) / c;
+                work[i] = c * work[i] - sn * l[i * P + k];
+            }
+        }
+        return true;
+    }
+}
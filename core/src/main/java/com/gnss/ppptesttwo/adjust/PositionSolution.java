@@ -0,0 +1,330 @@
+package com.gnss.ppptesttwo.adjust;
+
+import com.gnss.ppptesttwo.navifromftp.Coordinates;
+import com.gnss.ppptesttwo.navifromftp.Ecef;
+import com.gnss.ppptesttwo.navifromftp.Geodetic;
+
+import java.util.Arrays;
+
+/**
+ * Result of one epoch of {@link WeightedLeastSquares}: receiver position, clock bias,
+ * postfit residuals and the quality figures derived from the final geometry.
+ * <p>
+ * The covariance is {@code (H' W H)^-1}, taken from the Cholesky factor the solver already
+ * computed. The DOP family needs the unweighted {@code (H' H)^-1} instead, which is built
+ * from the stored design matrix. Both are computed once, on first access, so callers that
+ * only need the position pay nothing for them.
+ */
+public class PositionSolution {
+
+    private static final int P = NormalEquations.N_PARAMS;
+
+    private final double x;
+    private final double y;
+    private final double z;
+    private final double clockBias;
+    private final int numberOfSatellites;
+
+    private final double[] h;
+    private final double[] w;
+    private final double[] residuals;
+    private final double[] factor;
+
+    private double latitude = Double.NaN;
+    private double longitude;
+    private double height;
+
+    private double[] covariance;
+    private double[] dopMatrix;
+
+    /**
+     * @param x receiver X [m]
+     * @param y receiver Y [m]
+     * @param z receiver Z [m]
+     * @param clockBias receiver clock bias [m]
+     * @param n number of observations
+     * @param h design matrix at the solution, row-major, {@link NormalEquations#N_PARAMS} columns
+     * @param w final observation weights, zero for excluded observations
+     * @param prefit observed minus computed values at the solution position, without the clock
+     * @param factor Cholesky factor of {@code H' W H} for these weights
+     */
+    PositionSolution(double x, double y, double z, double clockBias, int n,
+                     double[] h, double[] w, double[] prefit, double[] factor) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.clockBias = clockBias;
+        this.numberOfSatellites = n;
+        this.h = new double[n * P];
+        System.arraycopy(h, 0, this.h, 0, n * P);
+        this.w = new double[n];
+        System.arraycopy(w, 0, this.w, 0, n);
+        this.residuals = new double[n];
+        for (int i = 0; i < n; i++) {
+            residuals[i] = prefit[i] - clockBias;
+        }
+        this.factor = new double[P * P];
+        System.arraycopy(factor, 0, this.factor, 0, P * P);
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    /**
+     * @return receiver clock bias [m]
+     */
+    public double getClockBias() {
+        return clockBias;
+    }
+
+    public Coordinates getPosition() {
+        return Coordinates.globalXYZInstance(x, y, z);
+    }
+
+    public int getNumberOfSatellites() {
+        return numberOfSatellites;
+    }
+
+    /**
+     * @return postfit residual of observation {@code i} [m]
+     */
+    public double getResidual(int i) {
+        return residuals[i];
+    }
+
+    /**
+     * @return weight of observation {@code i} in the final solution, 0 if it was excluded
+     */
+    public double getWeight(int i) {
+        return w[i];
+    }
+
+    /**
+     * @return number of observations with a non-zero weight
+     */
+    public int getUsedSatellites() {
+        int used = 0;
+        for (int i = 0; i < numberOfSatellites; i++) {
+            if (w[i] > 0.0) used++;
+        }
+        return used;
+    }
+
+    /**
+     * @return a posteriori variance of unit weight, NaN without redundancy
+     */
+    public double getVarianceFactor() {
+        int dof = getUsedSatellites() - P;
+        if (dof < 1) {
+            return Double.NaN;
+        }
+        double sse = 0.0;
+        for (int i = 0; i < numberOfSatellites; i++) {
+            sse += w[i] * residuals[i] * residuals[i];
+        }
+        return sse / dof;
+    }
+
+    /**
+     * @return a priori covariance of X, Y, Z and clock bias [m^2], 4x4 row-major
+     */
+    public double[] getCovariance() {
+        if (covariance == null) {
+            covariance = inverse(factor);
+        }
+        return covariance.clone();
+    }
+
+    /**
+     * @return covariance of the position in the local East, North, Up frame [m^2], 3x3 row-major
+     */
+    public double[] getEnuCovariance() {
+        if (covariance == null) {
+            covariance = inverse(factor);
+        }
+        return toEnu(covariance);
+    }
+
+    public double getGdop() {
+        double[] q = dop();
+        return Math.sqrt(q[0] + q[5] + q[10] + q[15]);
+    }
+
+    public double getPdop() {
+        double[] q = dop();
+        return Math.sqrt(q[0] + q[5] + q[10]);
+    }
+
+    public double getTdop() {
+        return Math.sqrt(dop()[15]);
+    }
+
+    public double getHdop() {
+        double[] enu = toEnu(dop());
+        return Math.sqrt(enu[0] + enu[4]);
+    }
+
+    /**
+     * Copies the unweighted normal matrix {@code H' H} of the used observations, from which
+     * the DOP family is derived, so that another thread can compute them later with
+     * {@link #hdop(double[], double, double, double[])}.
+     * @param out row-major, {@link NormalEquations#N_PARAMS} squared, lower triangle filled
+     */
+    public void getGeometryMatrix(double[] out) {
+        Arrays.fill(out, 0, P * P, 0.0);
+        for (int i = 0; i < numberOfSatellites; i++) {
+            if (w[i] > 0.0) {
+                for (int j = 0; j < P; j++) {
+                    for (int k = 0; k <= j; k++) {
+                        out[j * P + k] += h[i * P + j] * h[i * P + k];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * HDOP of a matrix of {@link #getGeometryMatrix}, without allocating: the sum of
+     * {@code v' (H' H)^-1 v} for the East and North unit vectors {@code v}
+     * @param geometry overwritten by its Cholesky factor
+     * @param latDeg geodetic latitude of the receiver [deg]
+     * @param lonDeg geodetic longitude of the receiver [deg]
+     * @param work scratch array of length 2 {@link NormalEquations#N_PARAMS}
+     * @return NaN if the geometry is singular
+     */
+    public static double hdop(double[] geometry, double latDeg, double lonDeg, double[] work) {
+        if (!NormalEquations.factor(geometry, geometry)) {
+            return Double.NaN;
+        }
+        double phi = Math.toRadians(latDeg);
+        double lam = Math.toRadians(lonDeg);
+        double sinPhi = Math.sin(phi), cosPhi = Math.cos(phi);
+        double sinLam = Math.sin(lam), cosLam = Math.cos(lam);
+        work[P] = -sinLam;
+        work[P + 1] = cosLam;
+        work[P + 2] = 0.0;
+        work[P + 3] = 0.0;
+        double east = NormalEquations.quadraticForm(geometry, work, P, work);
+        work[P] = -sinPhi * cosLam;
+        work[P + 1] = -sinPhi * sinLam;
+        work[P + 2] = cosPhi;
+        work[P + 3] = 0.0;
+        double north = NormalEquations.quadraticForm(geometry, work, P, work);
+        return Math.sqrt(east + north);
+    }
+
+    public double getVdop() {
+        return Math.sqrt(toEnu(dop())[8]);
+    }
+
+    public double getLatitude() {
+        computeGeodetic();
+        return latitude;
+    }
+
+    public double getLongitude() {
+        computeGeodetic();
+        return longitude;
+    }
+
+    public double getHeight() {
+        computeGeodetic();
+        return height;
+    }
+
+    /**
+     * Unweighted cofactor matrix {@code (H' H)^-1} of the used observations
+     */
+    private double[] dop() {
+        if (dopMatrix == null) {
+            NormalEquations normal = new NormalEquations();
+            for (int i = 0; i < numberOfSatellites; i++) {
+                if (w[i] > 0.0) {
+                    normal.add(h, i, 1.0, 0.0);
+                }
+            }
+            if (!normal.factor()) {
+                dopMatrix = new double[P * P];
+                Arrays.fill(dopMatrix, Double.NaN);
+            } else {
+                dopMatrix = inverse(normal.getFactor());
+            }
+        }
+        return dopMatrix;
+    }
+
+    /**
+     * Inverse of {@code L L'} column by column
+     */
+    private static double[] inverse(double[] l) {
+        double[] inv = new double[P * P];
+        double[] e = new double[P];
+        double[] col = new double[P];
+        double[] work = new double[P];
+        for (int j = 0; j < P; j++) {
+            for (int k = 0; k < P; k++) {
+                e[k] = k == j ? 1.0 : 0.0;
+            }
+            NormalEquations.solve(l, e, col, work);
+            for (int k = 0; k < P; k++) {
+                inv[k * P + j] = col[k];
+            }
+        }
+        return inv;
+    }
+
+    /**
+     * Rotates the position block of a 4x4 matrix into the local frame: {@code R Q R'}
+     */
+    private double[] toEnu(double[] q) {
+        computeGeodetic();
+        double phi = Math.toRadians(latitude);
+        double lam = Math.toRadians(longitude);
+        double sinPhi = Math.sin(phi), cosPhi = Math.cos(phi);
+        double sinLam = Math.sin(lam), cosLam = Math.cos(lam);
+        double[] r = {
+                -sinLam, cosLam, 0.0,
+                -sinPhi * cosLam, -sinPhi * sinLam, cosPhi,
+                cosPhi * cosLam, cosPhi * sinLam, sinPhi
+        };
+        double[] rq = new double[9];
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                double sum = 0.0;
+                for (int k = 0; k < 3; k++) {
+                    sum += r[i * 3 + k] * q[k * P + j];
+                }
+                rq[i * 3 + j] = sum;
+            }
+        }
+        double[] enu = new double[9];
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                double sum = 0.0;
+                for (int k = 0; k < 3; k++) {
+                    sum += rq[i * 3 + k] * r[j * 3 + k];
+                }
+                enu[i * 3 + j] = sum;
+            }
+        }
+        return enu;
+    }
+
+    private void computeGeodetic() {
+        if (Double.isNaN(latitude)) {
+            Geodetic geodetic = new Ecef(x, y, z).toGeodetic();
+            latitude = geodetic.getLatitude();
+            longitude = geodetic.getLongitude();
+            height = geodetic.getHeight();
+        }
+    }
+}
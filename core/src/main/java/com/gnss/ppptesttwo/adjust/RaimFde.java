@@ -0,0 +1,493 @@
+package com.gnss.ppptesttwo.adjust;
+
+/**
+ * Receiver Autonomous Integrity Monitoring with Fault Detection and Exclusion.
+ * <p>
+ * Works on the linearized system at the converged receiver position: detection is a
+ * chi-square test on the weighted sum of squared residuals, exclusion removes the
+ * satellite whose leave-one-out solution is the most consistent and repeats the test.
+ * Leave-one-out solutions are obtained by rank-one downdating the Cholesky factor of the
+ * normal matrix ({@link NormalEquations#downdate}), so checking all n subsets costs
+ * O(n p^2) instead of the O(n^2 p^2) of re-solving each subset from scratch.
+ * <p>
+ * Horizontal and vertical protection levels are computed with the slope method
+ * [Brown, "A baseline GPS RAIM scheme", 1992] for the final satellite set.
+ * <p>
+ * All workspaces are preallocated and grown on demand; the returned {@link Result} is
+ * owned by this object and overwritten by the next call.
+ */
+public class RaimFde {
+
+    public static final double DEFAULT_PROBABILITY_FALSE_ALARM = 1e-5;
+    public static final double DEFAULT_PROBABILITY_MISSED_DETECTION = 1e-3;
+    public static final int DEFAULT_MAX_EXCLUSIONS = 2;
+
+    /**
+     * Largest number of degrees of freedom for which the test threshold is tabulated
+     */
+    private static final int MAX_DOF = 128;
+
+    private static final int P = NormalEquations.N_PARAMS;
+
+    private final double[] thresholds = new double[MAX_DOF + 1];
+    private final double kMissedDetection;
+    private final int maxExclusions;
+
+    private final NormalEquations normal = new NormalEquations();
+    private final double[] l = new double[P * P];
+    private final double[] lCandidate = new double[P * P];
+    private final double[] b = new double[P];
+    private final double[] bCandidate = new double[P];
+    private final double[] x = new double[P];
+    private final double[] g = new double[P];
+    private final double[] work = new double[P];
+
+    private boolean[] active = new boolean[0];
+    private double[] residuals = new double[0];
+
+    /**
+     * Observations of the whole set factored in {@link #normal}, for {@link #leaveOneOut}
+     */
+    private double[] setH;
+    private double[] setW;
+    private double[] setY;
+    private boolean setFactored;
+
+    private final Result result = new Result();
+
+    public RaimFde() {
+        this(DEFAULT_PROBABILITY_FALSE_ALARM, DEFAULT_PROBABILITY_MISSED_DETECTION, DEFAULT_MAX_EXCLUSIONS);
+    }
+
+    /**
+     * @param pfa probability of false alarm of the detection test
+     * @param pmd probability of missed detection, used for the protection levels
+     * @param maxExclusions maximum number of satellites excluded per epoch
+     */
+    public RaimFde(double pfa, double pmd, int maxExclusions) {
+        this.kMissedDetection = normalQuantile(1.0 - pmd);
+        this.maxExclusions = maxExclusions;
+        for (int dof = 1; dof <= MAX_DOF; dof++) {
+            thresholds[dof] = chiSquareQuantile(dof, 1.0 - pfa);
+        }
+    }
+
+    /**
+     * Runs detection, exclusion and protection level computation for one epoch.
+     *
+     * @param n number of observations
+     * @param h design matrix, row-major, {@link NormalEquations#N_PARAMS} columns
+     * @param w observation weights (inverse variances)
+     * @param y observed minus computed pseudoranges at the linearization point
+     * @param latDeg geodetic latitude of the receiver [deg], for the local frame
+     * @param lonDeg geodetic longitude of the receiver [deg], for the local frame
+     * @return result of the check, valid until the next call
+     */
+    public Result process(int n, double[] h, double[] w, double[] y, double latDeg, double lonDeg) {
+        ensureCapacity(n);
+        result.clear(n);
+
+        for (int i = 0; i < n; i++) {
+            active[i] = true;
+        }
+        if (!factorSet(n, h, w, y)) {
+            return result;
+        }
+        System.arraycopy(normal.getFactor(), 0, l, 0, P * P);
+        System.arraycopy(normal.getRhs(), 0, b, 0, P);
+
+        int used = n;
+        while (true) {
+            NormalEquations.solve(l, b, x, work);
+            double sse = 0.0;
+            for (int i = 0; i < n; i++) {
+                if (!active[i]) continue;
+                double r = y[i];
+                for (int k = 0; k < P; k++) {
+                    r -= h[i * P + k] * x[k];
+                }
+                residuals[i] = r;
+                sse += w[i] * r * r;
+            }
+
+            int dof = used - P;
+            result.testStatistic = sse;
+            result.usedSatellites = used;
+            if (dof < 1) {
+                // no redundancy: integrity cannot be checked
+                break;
+            }
+            result.available = true;
+            result.threshold = threshold(dof);
+            if (sse <= result.threshold) {
+                result.consistent = true;
+                break;
+            }
+            result.faultDetected = true;
+            if (result.excludedCount >= maxExclusions || dof < 2) {
+                // exclusion would leave no redundancy to validate the remaining set
+                break;
+            }
+
+            // leave-one-out solutions by downdating the factor
+            int best = -1;
+            double bestSse = Double.MAX_VALUE;
+            for (int i = 0; i < n; i++) {
+                if (!active[i]) continue;
+                double p = w[i] * NormalEquations.quadraticForm(l, h, i * P, work);
+                if (p >= 1.0 - 1e-12) {
+                    // the satellite is essential for the geometry, cannot be removed
+                    continue;
+                }
+                double sseWithout = sse - w[i] * residuals[i] * residuals[i] / (1.0 - p);
+                if (sseWithout < bestSse) {
+                    bestSse = sseWithout;
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+
+            System.arraycopy(l, 0, lCandidate, 0, P * P);
+            if (!NormalEquations.downdate(lCandidate, h, best * P, Math.sqrt(w[best]), work)) {
+                break;
+            }
+            for (int k = 0; k < P; k++) {
+                bCandidate[k] = b[k] - w[best] * h[best * P + k] * y[best];
+            }
+
+            // accept the exclusion: the downdated system becomes the current one
+            System.arraycopy(lCandidate, 0, l, 0, P * P);
+            System.arraycopy(bCandidate, 0, b, 0, P);
+            active[best] = false;
+            used--;
+            result.excluded[result.excludedCount++] = best;
+        }
+
+        System.arraycopy(x, 0, result.solution, 0, P);
+        if (result.available) {
+            computeProtectionLevels(n, h, w, latDeg, lonDeg, used - P);
+        }
+        return result;
+    }
+
+    /**
+     * Factors the normal equations of the whole set for the following
+     * {@link #leaveOneOut} calls; {@link #process} does the same for its input. The arrays
+     * are referenced, not copied.
+     * @return false if the geometry is singular
+     */
+    public boolean factorSet(int n, double[] h, double[] w, double[] y) {
+        normal.reset();
+        for (int i = 0; i < n; i++) {
+            normal.add(h, i, w[i], y[i]);
+        }
+        setH = h;
+        setW = w;
+        setY = y;
+        setFactored = normal.factor();
+        return setFactored;
+    }
+
+    /**
+     * Leave-one-out solution of the set last given to {@link #factorSet} or
+     * {@link #process} for satellite {@code index}, without exclusion logic: one O(p^2)
+     * downdate of the cached factor. Used for solution separation checks and benchmarking.
+     * @return false if the set is not factored or the remaining geometry is singular
+     */
+    public boolean leaveOneOut(int index, double[] out) {
+        if (!setFactored) {
+            return false;
+        }
+        System.arraycopy(normal.getFactor(), 0, lCandidate, 0, P * P);
+        if (!NormalEquations.downdate(lCandidate, setH, index * P, Math.sqrt(setW[index]), work)) {
+            return false;
+        }
+        double[] rhs = normal.getRhs();
+        for (int k = 0; k < P; k++) {
+            bCandidate[k] = rhs[k] - setW[index] * setH[index * P + k] * setY[index];
+        }
+        NormalEquations.solve(lCandidate, bCandidate, out, work);
+        return true;
+    }
+
+    /**
+     * @return Cholesky factor of the normal matrix of the satellite set accepted by the last
+     * {@link #process} call, with its weights (live array, do not modify). Valid when the
+     * process found a factorable geometry.
+     */
+    public double[] getFactor() {
+        return l;
+    }
+
+    private void computeProtectionLevels(int n, double[] h, double[] w, double latDeg, double lonDeg, int dof) {
+        double phi = Math.toRadians(latDeg);
+        double lam = Math.toRadians(lonDeg);
+        double sinPhi = Math.sin(phi), cosPhi = Math.cos(phi);
+        double sinLam = Math.sin(lam), cosLam = Math.cos(lam);
+
+        double maxHSlope = 0.0;
+        double maxVSlope = 0.0;
+        for (int i = 0; i < n; i++) {
+            if (!active[i]) continue;
+            // g = N^-1 h_i, so that column i of N^-1 H' W is w_i g
+            for (int k = 0; k < P; k++) {
+                g[k] = h[i * P + k];
+            }
+            NormalEquations.solve(l, g, g, work);
+            double p = 0.0;
+            for (int k = 0; k < P; k++) {
+                p += h[i * P + k] * g[k];
+            }
+            p *= w[i];
+            if (p >= 1.0 - 1e-12) continue;
+
+            double e = -sinLam * g[0] + cosLam * g[1];
+            double nn = -sinPhi * cosLam * g[0] - sinPhi * sinLam * g[1] + cosPhi * g[2];
+            double u = cosPhi * cosLam * g[0] + cosPhi * sinLam * g[1] + sinPhi * g[2];
+
+            double norm = w[i] / Math.sqrt(w[i] * (1.0 - p));
+            double hSlope = Math.sqrt(e * e + nn * nn) * norm;
+            double vSlope = Math.abs(u) * norm;
+            if (hSlope > maxHSlope) maxHSlope = hSlope;
+            if (vSlope > maxVSlope) maxVSlope = vSlope;
+        }
+        // square root of the non-centrality giving the wanted missed detection probability
+        double pBias = Math.sqrt(threshold(dof)) + kMissedDetection;
+        result.hpl = maxHSlope * pBias;
+        result.vpl = maxVSlope * pBias;
+    }
+
+    /**
+     * @return chi-square detection threshold for the given degrees of freedom
+     */
+    public double threshold(int dof) {
+        return thresholds[Math.min(dof, MAX_DOF)];
+    }
+
+    private void ensureCapacity(int n) {
+        if (active.length < n) {
+            active = new boolean[n];
+            residuals = new double[n];
+            result.excluded = new int[n];
+        }
+    }
+
+    /**
+     * Quantile of the chi-square distribution, computed once per table entry: Wilson-Hilferty
+     * starting value refined by Newton iterations on the exact distribution function.
+     * @param dof degrees of freedom
+     * @param p wanted cumulative probability
+     */
+    static double chiSquareQuantile(int dof, double p) {
+        double a = 2.0 / (9.0 * dof);
+        double c = 1.0 - a + normalQuantile(p) * Math.sqrt(a);
+        double x = Math.max(dof * c * c * c, 1e-3);
+
+        double k = dof / 2.0;
+        double logNorm = k * Math.log(2.0) + logGamma(k);
+        for (int i = 0; i < 50; i++) {
+            // work on the upper tail to keep precision for small false alarm probabilities
+            double q = 1.0 - regularizedGammaP(k, x / 2.0);
+            double density = Math.exp((k - 1.0) * Math.log(x) - x / 2.0 - logNorm);
+            double step = (q - (1.0 - p)) / density;
+            double next = Math.max(x + step, x / 2.0);
+            if (Math.abs(next - x) < 1e-10 * x) {
+                return next;
+            }
+            x = next;
+        }
+        return x;
+    }
+
+    /**
+     * Regularized lower incomplete gamma function P(a, x) [Numerical Recipes 6.2]
+     */
+    private static double regularizedGammaP(double a, double x) {
+        if (x <= 0.0) {
+            return 0.0;
+        }
+        double gln = logGamma(a);
+        if (x < a + 1.0) {
+            double ap = a;
+            double sum = 1.0 / a;
+            double del = sum;
+            for (int n = 0; n < 500; n++) {
+                ap += 1.0;
+                del *= x / ap;
+                sum += del;
+                if (Math.abs(del) < Math.abs(sum) * 1e-15) break;
+            }
+            return sum * Math.exp(-x + a * Math.log(x) - gln);
+        }
+        // continued fraction for the upper tail
+        double b = x + 1.0 - a;
+        double c = 1.0 / 1e-300;
+        double d = 1.0 / b;
+        double h = d;
+        for (int i = 1; i < 500; i++) {
+            double an = -i * (i - a);
+            b += 2.0;
+            d = an * d + b;
+            if (Math.abs(d) < 1e-300) d = 1e-300;
+            c = b + an / c;
+            if (Math.abs(c) < 1e-300) c = 1e-300;
+            d = 1.0 / d;
+            double del = d * c;
+            h *= del;
+            if (Math.abs(del - 1.0) < 1e-15) break;
+        }
+        return 1.0 - Math.exp(-x + a * Math.log(x) - gln) * h;
+    }
+
+    /**
+     * Lanczos approximation of ln(Gamma(x)) for x > 0
+     */
+    private static double logGamma(double x) {
+        final double[] cof = {76.18009172947146, -86.50532032941677, 24.01409824083091,
+                -1.231739572450155, 0.1208650973866179e-2, -0.5395239384953e-5};
+        double y = x;
+        double tmp = x + 5.5;
+        tmp -= (x + 0.5) * Math.log(tmp);
+        double ser = 1.000000000190015;
+        for (double c : cof) {
+            ser += c / ++y;
+        }
+        return -tmp + Math.log(2.5066282746310005 * ser / x);
+    }
+
+    /**
+     * Inverse of the standard normal cumulative distribution (P. J. Acklam's rational
+     * approximation, relative error below 1.2e-9)
+     */
+    static double normalQuantile(double p) {
+        final double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+                1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+        final double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+                6.680131188771972e+01, -1.328068155288572e+01};
+        final double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+                -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+        final double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+                3.754408661907416e+00};
+        final double pLow = 0.02425;
+
+        if (p < pLow) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                    / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        } else if (p <= 1 - pLow) {
+            double q = p - 0.5;
+            double r = q * q;
+            return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+                    / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+        } else {
+            double q = Math.sqrt(-2 * Math.log(1 - p));
+            return -(((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                    / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+    }
+
+    /**
+     * Outcome of the integrity check of one epoch
+     */
+    public static class Result {
+
+        /**
+         * true if there was enough redundancy to run the test
+         */
+        private boolean available;
+
+        /**
+         * true if the final satellite set passed the test
+         */
+        private boolean consistent;
+
+        /**
+         * true if the full set failed the test
+         */
+        private boolean faultDetected;
+
+        private double testStatistic;
+        private double threshold;
+        private double hpl = Double.NaN;
+        private double vpl = Double.NaN;
+        private int usedSatellites;
+        private int[] excluded = new int[0];
+        private int excludedCount;
+
+        /**
+         * Correction to the linearization point (X, Y, Z, clock) of the final satellite set
+         */
+        private final double[] solution = new double[P];
+
+        void clear(int n) {
+            available = false;
+            consistent = false;
+            faultDetected = false;
+            testStatistic = 0.0;
+            threshold = 0.0;
+            hpl = Double.NaN;
+            vpl = Double.NaN;
+            usedSatellites = n;
+            excludedCount = 0;
+            for (int k = 0; k < P; k++) {
+                solution[k] = 0.0;
+            }
+        }
+
+        public boolean isAvailable() {
+            return available;
+        }
+
+        public boolean isConsistent() {
+            return consistent;
+        }
+
+        public boolean isFaultDetected() {
+            return faultDetected;
+        }
+
+        public double getTestStatistic() {
+            return testStatistic;
+        }
+
+        public double getThreshold() {
+            return threshold;
+        }
+
+        /**
+         * @return horizontal protection level [m], NaN if not available
+         */
+        public double getHpl() {
+            return hpl;
+        }
+
+        /**
+         * @return vertical protection level [m], NaN if not available
+         */
+        public double getVpl() {
+            return vpl;
+        }
+
+        public int getUsedSatellites() {
+            return usedSatellites;
+        }
+
+        public int getExcludedCount() {
+            return excludedCount;
+        }
+
+        /**
+         * @param i index in the list of excluded satellites
+         * @return index of the excluded observation in the input arrays
+         */
+        public int getExcluded(int i) {
+            return excluded[i];
+        }
+
+        public double[] getSolution() {
+            return solution;
+        }
+    }
+}
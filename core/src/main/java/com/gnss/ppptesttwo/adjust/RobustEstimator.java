@@ -0,0 +1,184 @@
+package com.gnss.ppptesttwo.adjust;
+
+/**
+ * Robust estimation of the linearized positioning problem by iteratively reweighted
+ * least squares (IRLS), to reduce the influence of multipath-affected pseudoranges.
+ * <p>
+ * Two weight functions are available, applied to the standardized residual
+ * {@code u = |r| sqrt(w)}:
+ * <ul>
+ * <li>Huber: factor 1 for {@code u <= k0}, {@code k0 / u} above</li>
+ * <li>IGG-III [Yang, 1994]: factor 1 for {@code u <= k0},
+ * {@code k0/u ((k1 - u) / (k1 - k0))^2} between {@code k0} and {@code k1}, 0 above</li>
+ * </ul>
+ * The normal equations are built once; when an observation weight changes only the
+ * difference is added back ({@code N += (w_new - w_old) h h'}), then the 4x4 system is
+ * refactored. Each iteration is therefore O(n p^2) and the number of iterations is
+ * capped, which bounds the per-epoch cost regardless of convergence.
+ */
+public class RobustEstimator {
+
+    public enum Mode {
+        NONE,
+        HUBER,
+        IGG3
+    }
+
+    public static final double DEFAULT_K0 = 1.5;
+    public static final double DEFAULT_K1 = 3.0;
+    public static final int DEFAULT_MAX_ITERATIONS = 5;
+
+    /**
+     * Iterations stop when no weight factor changes by more than this
+     */
+    private static final double WEIGHT_TOLERANCE = 1e-3;
+
+    /**
+     * Smallest weight factor kept in the system, so that the geometry never becomes singular
+     * because of a downweighted observation
+     */
+    private static final double MIN_FACTOR = 1e-4;
+
+    private static final int P = NormalEquations.N_PARAMS;
+
+    private final Mode mode;
+    private final double k0;
+    private final double k1;
+    private final int maxIterations;
+
+    private final NormalEquations normal = new NormalEquations();
+    private final double[] x = new double[P];
+
+    private double[] factors = new double[0];
+    private double[] weights = new double[0];
+
+    private int iterations;
+
+    public RobustEstimator(Mode mode) {
+        this(mode, DEFAULT_K0, DEFAULT_K1, DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * @param mode weight function
+     * @param k0 standardized residual below which observations keep their full weight
+     * @param k1 standardized residual above which IGG-III rejects the observation
+     * @param maxIterations upper bound of reweighting iterations per call
+     */
+    public RobustEstimator(Mode mode, double k0, double k1, int maxIterations) {
+        this.mode = mode;
+        this.k0 = k0;
+        this.k1 = k1;
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Solves the linearized system robustly.
+     *
+     * @param n number of observations
+     * @param h design matrix, row-major, {@link NormalEquations#N_PARAMS} columns
+     * @param w a priori observation weights (inverse variances), replaced on return by the
+     * robust weights actually used
+     * @param y observed minus computed values
+     * @param out solution, length {@link NormalEquations#N_PARAMS}
+     * @return false if the geometry is singular
+     */
+    public boolean solve(int n, double[] h, double[] w, double[] y, double[] out) {
+        ensureCapacity(n);
+        iterations = 0;
+
+        normal.reset();
+        for (int i = 0; i < n; i++) {
+            factors[i] = 1.0;
+            weights[i] = w[i];
+            normal.add(h, i, w[i], y[i]);
+        }
+        if (!normal.factor()) {
+            return false;
+        }
+        normal.solve(x);
+
+        while (mode != Mode.NONE && iterations < maxIterations) {
+            iterations++;
+            boolean changed = false;
+            for (int i = 0; i < n; i++) {
+                double r = y[i];
+                for (int k = 0; k < P; k++) {
+                    r -= h[i * P + k] * x[k];
+                }
+                double factor = factor(Math.abs(r) * Math.sqrt(w[i]));
+                if (Math.abs(factor - factors[i]) > WEIGHT_TOLERANCE) {
+                    double newWeight = w[i] * factor;
+                    normal.add(h, i, newWeight - weights[i], y[i]);
+                    factors[i] = factor;
+                    weights[i] = newWeight;
+                    changed = true;
+                }
+            }
+            if (!changed) {
+                break;
+            }
+            if (!normal.factor()) {
+                return false;
+            }
+            normal.solve(x);
+        }
+
+        System.arraycopy(x, 0, out, 0, P);
+        System.arraycopy(weights, 0, w, 0, n);
+        return true;
+    }
+
+    /**
+     * @return weight factor for a standardized residual
+     */
+    double factor(double u) {
+        if (u <= k0) {
+            return 1.0;
+        }
+        switch (mode) {
+            case HUBER:
+                return k0 / u;
+            case IGG3:
+                if (u >= k1) {
+                    return MIN_FACTOR;
+                }
+                double t = (k1 - u) / (k1 - k0);
+                return Math.max(k0 / u * t * t, MIN_FACTOR);
+            default:
+                return 1.0;
+        }
+    }
+
+    /**
+     * @return Cholesky factor of the normal matrix with the robust weights of the last
+     * successful call (live array, do not modify)
+     */
+    public double[] getFactor() {
+        return normal.getFactor();
+    }
+
+    /**
+     * @return weight factor applied to observation {@code i} in the last call
+     */
+    public double getWeightFactor(int i) {
+        return factors[i];
+    }
+
+    /**
+     * @return number of reweighting iterations performed in the last call
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    private void ensureCapacity(int n) {
+        if (factors.length < n) {
+            factors = new double[n];
+            weights = new double[n];
+        }
+    }
+}
@@ -0,0 +1,446 @@
+/*
+ * Copyright 2018 TFI Systems
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+
+ * http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS"
+ * BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions
+ * and limitations under the License.
+ */
+
+package com.gnss.ppptesttwo.adjust;
+
+import com.gnss.ppptesttwo.GnssLog;
+import com.gnss.ppptesttwo.constellations.GnssConstellation;
+import com.gnss.ppptesttwo.constellations.GpsConstellation;
+import com.gnss.ppptesttwo.constellations.SatelliteParameters;
+import com.gnss.ppptesttwo.corrections.TopocentricCoordinates;
+import com.gnss.ppptesttwo.navifromftp.Coordinates;
+import com.gnss.ppptesttwo.navifromftp.Ecef;
+import com.gnss.ppptesttwo.navifromftp.Geodetic;
+import com.gnss.ppptesttwo.navifromftp.ReceiverFrame;
+
+import org.ejml.data.SingularMatrixException;
+import org.ejml.simple.SimpleMatrix;
+
+/**
+ * Created by Mateusz Krainski on 17/02/2018.
+ * This class is for...
+ */
+
+public class WeightedLeastSquares  {
+
+    private final static String NAME = "Weighted Least Squares";
+
+    private final int NUMBER_OF_ITERATIONS = 10;
+    private final static String TAG="WLS";
+
+    private final static Coordinates ZERO_POSE = Coordinates.globalGeodInstance(51.000, 3.000, 0.000); // Right at the edge of the plot
+    private double clockBias; // =0.0;
+    //private final static Coordinates ZERO_POSE = Coordinates.globalGeodInstance(47.642795, 23.622892, 350.0);   // Romania
+
+    // Define the parameters for the elevation dependent weighting method [Jaume Subirana et al. GNSS Data Processing: Fundamentals and Algorithms]
+    private double a = 0.13;
+    private double b = 0.53;
+    private double sigma2Meas = Math.pow(5,2);
+
+    /**
+     * Integrity monitoring applied to the converged solution
+     */
+    private final RaimFde raim = new RaimFde();
+    private boolean raimEnabled = true;
+    private RaimFde.Result raimResult;
+
+    /**
+     * Robust reweighting applied to the converged solution, disabled by default
+     */
+    private RobustEstimator robust = new RobustEstimator(RobustEstimator.Mode.NONE);
+    private final double[] robustSolution = new double[NormalEquations.N_PARAMS];
+
+    /**
+     * Direct solver used when no approximate position is known
+     */
+    private final BancroftSolver bancroft = new BancroftSolver();
+    private final double[] coldStartSolution = new double[NormalEquations.N_PARAMS];
+    private double[] coldStartSatPos = new double[0];
+    private double[] coldStartPr = new double[0];
+
+    /**
+     * Normal equations of the last iteration, their factor is reused for the solution covariance
+     */
+    private final NormalEquations normal = new NormalEquations();
+    private final double[] xHat = new double[NormalEquations.N_PARAMS];
+    private PositionSolution solution;
+
+    // Linearized system at the current estimate, shared by the iterations and the robust and RAIM stages, grown on demand
+    private double[] linH = new double[0];
+    private double[] linW = new double[0];
+    private double[] linY = new double[0];
+    private double[] prioriW = new double[0];
+
+
+    public Coordinates calculatePose(GnssConstellation gnssConstellation) {
+
+        final int CONSTELLATION_SIZE = gnssConstellation.getUsedConstellationSize();
+
+        // a failed epoch must not leave the fix of the previous one behind
+        solution = null;
+        raimResult = null;
+
+        if (gnssConstellation.getRxPos() == null) {
+            // No prior: start the iterations from the algebraic solution instead of a far-away guess
+            Coordinates initialPose = coldStart(gnssConstellation);
+            gnssConstellation.setRxPos(initialPose != null ? initialPose : ZERO_POSE);
+        }
+
+        // Initialize matrices for data storage
+
+        SimpleMatrix rxPosSimpleVector =new SimpleMatrix(4, 1);
+        rxPosSimpleVector.set(0, gnssConstellation.getRxPos().getX());
+        rxPosSimpleVector.set(1, gnssConstellation.getRxPos().getY());
+        rxPosSimpleVector.set(2, gnssConstellation.getRxPos().getZ());
+        rxPosSimpleVector.set(3, 0);
+
+
+        SimpleMatrix satPosMat = new SimpleMatrix(CONSTELLATION_SIZE, 3);
+        SimpleMatrix tropoCorr = new SimpleMatrix(CONSTELLATION_SIZE, 1);
+        SimpleMatrix svClkBias = new SimpleMatrix(CONSTELLATION_SIZE, 1);
+        SimpleMatrix ionoCorr = new SimpleMatrix(CONSTELLATION_SIZE, 1);
+        SimpleMatrix shapiroCorr = new SimpleMatrix(CONSTELLATION_SIZE, 1);
+        SimpleMatrix sigma2 = new SimpleMatrix(CONSTELLATION_SIZE, 1);
+        SimpleMatrix prVect = new SimpleMatrix(CONSTELLATION_SIZE, 1);
+
+        double elevation, measVar,  measVarC1;
+        int CN0;
+
+        TopocentricCoordinates topo = new TopocentricCoordinates();
+        // Local frame of the approximate position, shared by all the satellites
+        ReceiverFrame origin = new ReceiverFrame(rxPosSimpleVector.get(0), rxPosSimpleVector.get(1), rxPosSimpleVector.get(2));
+
+        ///////////////////////////// SV coordinates/velocities + PR corrections computation ////////////////////////////////////////////////////
+
+        try {
+
+            for (int ii = 0; ii < CONSTELLATION_SIZE; ii++) {
+
+                // Set the measurements into a vector
+                prVect.set(ii, gnssConstellation.getSatellite(ii).getPseudorange());
+
+                // Compute the satellite coordinates
+                svClkBias.set(ii, gnssConstellation.getSatellite(ii).getClockBias());
+
+                ///////////////////////////// PR corrections computations ////////////////////////////////////////////////////
+
+
+                // Assign the computed SV coordinates into a matrix
+                satPosMat.set(ii, 0, gnssConstellation.getSatellite(ii).getSatellitePosition().getX());
+                satPosMat.set(ii, 1, gnssConstellation.getSatellite(ii).getSatellitePosition().getY());
+                satPosMat.set(ii, 2, gnssConstellation.getSatellite(ii).getSatellitePosition().getZ());
+
+
+                // Compute the elevation and azimuth angles for each satellite
+                topo.computeTopocentric(origin, satPosMat.get(ii, 0), satPosMat.get(ii, 1), satPosMat.get(ii, 2));
+                elevation = topo.getElevation() * (Math.PI / 180.0);
+
+                // Set the variance of the measurement for each satellite
+                measVar = sigma2Meas * Math.pow(a + b * Math.exp(-elevation/10.0),2);
+                sigma2.set(ii, measVar);
+
+                ///////////////////////////// Printing results  ////////////////////////////////////////////////////
+
+                // Print the computed satellite coordinates \ velocities
+                /*
+                System.out.println();
+                System.out.println();
+                System.out.println("The GPS ECEF coordinates of " + "SV" + constellation.getSatellite(ii).getSatId() + " are:");
+                System.out.printf("%.4f", satPosMat.get(ii, 0));
+                System.out.println();
+                System.out.printf("%.4f", satPosMat.get(ii, 1));
+                System.out.println();
+                System.out.printf("%.4f", satPosMat.get(ii, 2));
+                System.out.println();
+                System.out.printf("Tropo corr: %.4f", tropoCorr.get(ii));
+                System.out.println();
+                System.out.printf("Iono corr: %.4f", ionoCorr.get(ii));
+                System.out.println();
+                */
+                //System.out.printf("Shapiro corr: %.4f", shapiroCorr.get(ii));
+
+            }
+        }
+        catch(NullPointerException | IndexOutOfBoundsException e){
+            e.printStackTrace();
+
+            if(e.getClass() == IndexOutOfBoundsException.class){
+                GnssLog.e(TAG, "calculatePose: Satellites cleared before calculating result!");
+            }
+
+            gnssConstellation.setRxPos(ZERO_POSE); // Right at the edge of the plot
+            //rxPosSimpleVector = Constellation.getRxPosAsVector(gpsconstellation.getRxPos());
+            return Coordinates.globalXYZInstance(rxPosSimpleVector.get(0), rxPosSimpleVector.get(1), rxPosSimpleVector.get(2));
+        }
+
+		/*
+		 * [WEIGHTED LEAST SQUARES] Determination of the position + clock bias
+		 */
+
+        try{
+            // Start the estimation (10 loops)
+            for (int iter = 0; iter < NUMBER_OF_ITERATIONS; iter++){
+
+                // Observation matrix (H), weights and prefit vector (z) at the current estimate
+                linearize(gnssConstellation, satPosMat, svClkBias, prVect, sigma2, rxPosSimpleVector, CONSTELLATION_SIZE);
+
+                // Estimate the unknowns (dxHat)
+                normal.reset();
+                for (int k = 0; k < CONSTELLATION_SIZE; k++) {
+                    normal.add(linH, k, linW[k], linY[k]);
+                }
+                if (!normal.factor()) {
+                    throw new SingularMatrixException();
+                }
+                normal.solve(xHat);
+
+                // Update the receiver position
+                rxPosSimpleVector.set(0, rxPosSimpleVector.get(0)+ xHat[0]);
+                rxPosSimpleVector.set(1, rxPosSimpleVector.get(1)+ xHat[1]);
+                rxPosSimpleVector.set(2, rxPosSimpleVector.get(2)+ xHat[2]);
+                rxPosSimpleVector.set(3, xHat[3]);
+
+
+            }
+            //System.out.println("平差结果:"+rxPosSimpleVector.get(0)+"   "+rxPosSimpleVector.get(1)+"   "+rxPosSimpleVector.get(2));
+
+            // Linearized system at the converged position, for the residuals and the quality stages
+            linearize(gnssConstellation, satPosMat, svClkBias, prVect, sigma2, rxPosSimpleVector, CONSTELLATION_SIZE);
+            // the integrity check runs on the a priori weights, the robust stage replaces linW
+            System.arraycopy(linW, 0, prioriW, 0, CONSTELLATION_SIZE);
+            // factor matching the final weights and satellite set, reused for the covariance
+            double[] factor = normal.getFactor();
+            if (robust.getMode() != RobustEstimator.Mode.NONE && applyRobust(rxPosSimpleVector, CONSTELLATION_SIZE)) {
+                factor = robust.getFactor();
+            }
+            if (raimEnabled) {
+                applyRaim(gnssConstellation, rxPosSimpleVector, CONSTELLATION_SIZE);
+                if (raimResult.getExcludedCount() > 0 && raimResult.isConsistent()) {
+                    // the fault is removed: a priori weighted solution of the remaining set
+                    System.arraycopy(prioriW, 0, linW, 0, CONSTELLATION_SIZE);
+                    for (int i = 0; i < raimResult.getExcludedCount(); i++) {
+                        linW[raimResult.getExcluded(i)] = 0.0;
+                    }
+                    factor = raim.getFactor();
+                }
+            }
+            clockBias = rxPosSimpleVector.get(3);
+
+            solution = new PositionSolution(rxPosSimpleVector.get(0), rxPosSimpleVector.get(1), rxPosSimpleVector.get(2),
+                    clockBias, CONSTELLATION_SIZE, linH, linW, linY, factor);
+
+        } catch (SingularMatrixException | IndexOutOfBoundsException e) {
+            if(e.getClass() == IndexOutOfBoundsException.class){
+                GnssLog.e(TAG, "calculatePose: Satellites cleared before calculating result!");
+            } else if (e.getClass() == SingularMatrixException.class) {
+                GnssLog.e(TAG, "calculatePose: SingularMatrixException caught!");
+            }
+            gnssConstellation.setRxPos(ZERO_POSE); // Right at the edge of the plot
+            //rxPosSimpleVector = Constellation.getRxPosAsVector(gpsconstellation.getRxPos());
+            e.printStackTrace();
+        }
+        System.out.println();
+
+        // Print the estimated receiver position
+//        rxPosSimpleVector.print();
+
+        GnssLog.d(TAG, "calculatePose: rxPosSimpleVector (ECEF): " + rxPosSimpleVector.get(0) + ", " + rxPosSimpleVector.get(1) + ", " + rxPosSimpleVector.get(2) + ";");
+
+        Coordinates pose = Coordinates.globalXYZInstance(rxPosSimpleVector.get(0), rxPosSimpleVector.get(1), rxPosSimpleVector.get(2));
+        GnssLog.d(TAG, "calculatePose: pose (ECEF): " + pose.getX() + ", " + pose.getY() + ", " + pose.getZ() + ";");
+        GnssLog.d(TAG, "calculatePose: pose (lat-lon): " + pose.getGeodeticLatitude() + ", " + pose.getGeodeticLongitude() + ", " + pose.getGeodeticHeight() + ";");
+
+        return pose;
+    }
+
+
+
+
+
+    /**
+     * Computes a receiver position from the current epoch alone with {@link BancroftSolver},
+     * for the first fix when no approximate position is available. Tropospheric and
+     * ionospheric corrections are applied only if they were computed for the satellites.
+     * @return the position, or null if there are less than 4 satellites or the geometry is degenerate
+     */
+    public Coordinates coldStart(GnssConstellation gnssConstellation) {
+        final int n = gnssConstellation.getUsedConstellationSize();
+        if (n < NormalEquations.N_PARAMS) {
+            return null;
+        }
+        if (coldStartPr.length < n) {
+            coldStartSatPos = new double[n * 3];
+            coldStartPr = new double[n];
+        }
+        try {
+            for (int i = 0; i < n; i++) {
+                SatelliteParameters satellite = gnssConstellation.getSatellite(i);
+                coldStartSatPos[i * 3] = satellite.getSatellitePosition().getX();
+                coldStartSatPos[i * 3 + 1] = satellite.getSatellitePosition().getY();
+                coldStartSatPos[i * 3 + 2] = satellite.getSatellitePosition().getZ();
+                coldStartPr[i] = satellite.getPseudorange() - satellite.getAccumulatedCorrection() + satellite.getClockBias();
+            }
+        } catch (NullPointerException | IndexOutOfBoundsException e) {
+            GnssLog.e(TAG, "coldStart: Satellites cleared before calculating result!");
+            return null;
+        }
+        if (!bancroft.solve(n, coldStartSatPos, coldStartPr, coldStartSolution)) {
+            GnssLog.w(TAG, "coldStart: no algebraic solution for this epoch");
+            return null;
+        }
+        clockBias = coldStartSolution[3];
+        GnssLog.d(TAG, "coldStart: (ECEF): " + coldStartSolution[0] + ", " + coldStartSolution[1] + ", " + coldStartSolution[2] + ";");
+        return Coordinates.globalXYZInstance(coldStartSolution[0], coldStartSolution[1], coldStartSolution[2]);
+    }
+
+    /**
+     * Fills the linearized system (design matrix, weights, prefit residuals) at the
+     * converged position into the shared workspaces
+     */
+    private void linearize(GnssConstellation gnssConstellation, SimpleMatrix satPosMat, SimpleMatrix svClkBias,
+                           SimpleMatrix prVect, SimpleMatrix sigma2, SimpleMatrix rxPosSimpleVector, int n) {
+
+        if (linH.length < n * NormalEquations.N_PARAMS) {
+            linH = new double[n * NormalEquations.N_PARAMS];
+            linW = new double[n];
+            linY = new double[n];
+            prioriW = new double[n];
+        }
+
+        double x = rxPosSimpleVector.get(0);
+        double y = rxPosSimpleVector.get(1);
+        double z = rxPosSimpleVector.get(2);
+
+        for (int k = 0; k < n; k++) {
+            double dx = x - satPosMat.get(k, 0);
+            double dy = y - satPosMat.get(k, 1);
+            double dz = z - satPosMat.get(k, 2);
+            double dist = Math.sqrt(dx * dx + dy * dy + dz * dz);
+
+            linH[k * 4] = dx / dist;
+            linH[k * 4 + 1] = dy / dist;
+            linH[k * 4 + 2] = dz / dist;
+            linH[k * 4 + 3] = 1.0;
+            linW[k] = 1.0 / sigma2.get(k);
+            linY[k] = prVect.get(k)
+                    - (dist + gnssConstellation.getSatellite(k).getAccumulatedCorrection() - svClkBias.get(k));
+        }
+    }
+
+    /**
+     * Replaces the receiver state with the robust solution of the linearized system and
+     * leaves the robust weights in the workspace. The prefit residuals are moved to the new
+     * linearization point.
+     * @return false if the robust solution failed and the least squares one is kept
+     */
+    private boolean applyRobust(SimpleMatrix rxPosSimpleVector, int n) {
+        if (!robust.solve(n, linH, linW, linY, robustSolution)) {
+            GnssLog.w(TAG, "calculatePose: robust estimation failed, keeping the least squares solution");
+            return false;
+        }
+        moveLinearizationPoint(rxPosSimpleVector, robustSolution, n);
+        GnssLog.d(TAG, "calculatePose: robust iterations " + robust.getIterations());
+        return true;
+    }
+
+    /**
+     * Applies a correction of the linearized system to the receiver state and moves the
+     * prefit residuals to the new position. The clock is estimated in full at every
+     * linearization, so only the position terms move.
+     */
+    private void moveLinearizationPoint(SimpleMatrix rxPosSimpleVector, double[] dx, int n) {
+        for (int k = 0; k < n; k++) {
+            linY[k] -= linH[k * 4] * dx[0] + linH[k * 4 + 1] * dx[1] + linH[k * 4 + 2] * dx[2];
+        }
+        rxPosSimpleVector.set(0, rxPosSimpleVector.get(0) + dx[0]);
+        rxPosSimpleVector.set(1, rxPosSimpleVector.get(1) + dx[1]);
+        rxPosSimpleVector.set(2, rxPosSimpleVector.get(2) + dx[2]);
+        rxPosSimpleVector.set(3, dx[3]);
+    }
+
+    /**
+     * Runs fault detection and exclusion on the linearized system at the converged (or
+     * robust) position, with the a priori weights: the chi-square test assumes them, the
+     * robust weights would hide the fault it looks for. If satellites are excluded, the
+     * receiver state is replaced by the solution of the remaining consistent set.
+     */
+    private void applyRaim(GnssConstellation gnssConstellation, SimpleMatrix rxPosSimpleVector, int n) {
+
+        double x = rxPosSimpleVector.get(0);
+        double y = rxPosSimpleVector.get(1);
+        double z = rxPosSimpleVector.get(2);
+
+        Geodetic linearizationPoint = new Ecef(x, y, z).toGeodetic();
+        raimResult = raim.process(n, linH, prioriW, linY,
+                linearizationPoint.getLatitude(), linearizationPoint.getLongitude());
+
+        if (raimResult.getExcludedCount() > 0 && raimResult.isConsistent()) {
+            moveLinearizationPoint(rxPosSimpleVector, raimResult.getSolution(), n);
+            for (int i = 0; i < raimResult.getExcludedCount(); i++) {
+                GnssLog.w(TAG, "calculatePose: RAIM excluded " + gnssConstellation.getSatellite(raimResult.getExcluded(i)).getUniqueSatId());
+            }
+        } else if (raimResult.isFaultDetected() && !raimResult.isConsistent()) {
+            GnssLog.w(TAG, "calculatePose: RAIM fault detected, exclusion failed");
+        }
+        GnssLog.d(TAG, "calculatePose: RAIM HPL " + raimResult.getHpl() + " VPL " + raimResult.getVpl());
+    }
+
+    /**
+     * @return integrity check of the last solution, null if RAIM is disabled or the last
+     * call failed. Valid until the next call to {@link #calculatePose}.
+     */
+    public RaimFde.Result getRaimResult() {
+        return raimResult;
+    }
+
+    /**
+     * @return position, clock and quality of the last fix, null if the last call failed.
+     * DOP and covariance are computed on first access.
+     */
+    public PositionSolution getSolution() {
+        return solution;
+    }
+
+    public void setRaimEnabled(boolean raimEnabled) {
+        this.raimEnabled = raimEnabled;
+        if (!raimEnabled) {
+            raimResult = null;
+        }
+    }
+
+    /**
+     * Selects the robust weight function applied after the least squares iterations
+     */
+    public void setRobustMode(RobustEstimator.Mode mode) {
+        if (mode != robust.getMode()) {
+            robust = new RobustEstimator(mode);
+        }
+    }
+
+    public RobustEstimator.Mode getRobustMode() {
+        return robust.getMode();
+    }
+
+    public String getName() {
+        return NAME;
+    }
+
+
+    public double getClockBias() {
+        return clockBias;
+    }
+
+}
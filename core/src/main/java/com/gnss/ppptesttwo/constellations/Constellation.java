@@ -16,13 +16,10 @@
 
 package com.gnss.ppptesttwo.constellations;
 
-import android.location.GnssMeasurementsEvent;
-import android.location.Location;
-
-
-import com.gnss.ppptesttwo.Time;
+import com.gnss.ppptesttwo.GnssTime;
 import com.gnss.ppptesttwo.corrections.Correction;
 import com.gnss.ppptesttwo.navifromftp.Coordinates;
+import com.gnss.ppptesttwo.raw.RawEpoch;
 
 import org.ejml.simple.SimpleMatrix;
 
@@ -193,7 +190,7 @@ public abstract class Constellation {
      *
      * @return time of measurement
      */
-    public abstract Time getTime();
+    public abstract GnssTime getTime();
 
     /**
      *
@@ -206,5 +203,5 @@ public abstract class Constellation {
      * parameters.
      * @param event GNSS event
      */
-    public abstract void updateMeasurements(GnssMeasurementsEvent event);
+    public abstract void updateMeasurements(RawEpoch event);
 }
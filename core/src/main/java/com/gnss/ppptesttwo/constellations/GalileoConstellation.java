@@ -1,24 +1,22 @@
 package com.gnss.ppptesttwo.constellations;
 
-import android.location.GnssClock;
-import android.location.GnssMeasurement;
-import android.location.GnssMeasurementsEvent;
-import android.location.GnssStatus;
-import android.location.Location;
-import android.util.Log;
-
-
 import com.gnss.ppptesttwo.Constants;
-import com.gnss.ppptesttwo.Time;
+import com.gnss.ppptesttwo.GnssLog;
+import com.gnss.ppptesttwo.GnssTime;
 import com.gnss.ppptesttwo.corrections.Correction;
 import com.gnss.ppptesttwo.corrections.IonoCorrection;
 import com.gnss.ppptesttwo.corrections.ShapiroCorrection;
 import com.gnss.ppptesttwo.corrections.TopocentricCoordinates;
 import com.gnss.ppptesttwo.corrections.TropoCorrection;
 import com.gnss.ppptesttwo.navifromftp.Coordinates;
+import com.gnss.ppptesttwo.navifromftp.ReceiverFrame;
 import com.gnss.ppptesttwo.navifromftp.RinexNavigationGalileo;
 import com.gnss.ppptesttwo.navifromftp.RinexNavigationGps;
+import com.gnss.ppptesttwo.navifromftp.RinexNavigationParserGalileo;
 import com.gnss.ppptesttwo.navifromftp.SatellitePosition;
+import com.gnss.ppptesttwo.raw.RawClock;
+import com.gnss.ppptesttwo.raw.RawEpoch;
+import com.gnss.ppptesttwo.raw.RawMeasurement;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -31,7 +29,7 @@ public class GalileoConstellation extends Constellation{
     private final static char satType = 'E';
     protected static final String NAME = "Galileo E1";
     private static final String TAG = "GalileoE1Constellation";
-    private static int constellationId = GnssStatus.CONSTELLATION_GALILEO;
+    private static int constellationId = RawMeasurement.CONSTELLATION_GALILEO;
     private static final double E1a_FREQUENCY = 1.57542e9;
     private static final double FREQUENCY_MATCH_RANGE = 0.1e9;
     private static final double MASK_ELEVATION = 15; // degrees
@@ -59,7 +57,7 @@ public class GalileoConstellation extends Constellation{
     /**
      * Time of the measurement
      */
-    private Time timeRefMsec;
+    private GnssTime timeRefMsec;
 
     protected int visibleButNotUsed = 0;
 
@@ -113,7 +111,7 @@ public class GalileoConstellation extends Constellation{
     }
 
     @Override
-    public Time getTime() {
+    public GnssTime getTime() {
         synchronized (this) {
             return timeRefMsec;
         }
@@ -125,16 +123,15 @@ public class GalileoConstellation extends Constellation{
     }
 
     @Override
-    public void updateMeasurements(GnssMeasurementsEvent event) {
+    public void updateMeasurements(RawEpoch event) {
         synchronized (this) {
 
             visibleButNotUsed = 0;
             observedSatellites.clear();
             unusedSatellites.clear();
 
-            GnssClock gnssClock = event.getClock();
+            RawClock gnssClock = event.getClock();
             long TimeNanos = gnssClock.getTimeNanos();
-            timeRefMsec = new Time(System.currentTimeMillis());
             double BiasNanos = gnssClock.getBiasNanos();
             double galileoTime, pseudorangeTOW, pseudorangeE1_2nd, tTxGalileo;
 
@@ -144,8 +141,11 @@ public class GalileoConstellation extends Constellation{
                 fullBiasNanosInitialized = true;
             }
 
+            // Epoch of the measurements on the receiver clock, in GPS time
+            timeRefMsec = GnssTime.ofGpsNanos(TimeNanos - FullBiasNanos - Math.round(BiasNanos));
+
             // Start computing the pseudoranges using the raw data from the phone's GNSS receiver
-            for (GnssMeasurement measurement : event.getMeasurements()) {
+            for (RawMeasurement measurement : event.getMeasurements()) {
 
                 if (measurement.getConstellationType() != constellationId)
                     continue;
@@ -196,15 +196,12 @@ public class GalileoConstellation extends Constellation{
                 int measState = measurement.getState();
 
                 // Bitwise AND to identify the states
-                boolean towKnown = false;
-                if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.O) {
-                    towKnown = (measState & GnssMeasurement.STATE_TOW_KNOWN) != 0;
-                }
+                boolean towKnown = (measState & RawMeasurement.STATE_TOW_KNOWN) != 0;
 
-                boolean towDecoded = (measState & GnssMeasurement.STATE_TOW_DECODED) != 0;
+                boolean towDecoded = (measState & RawMeasurement.STATE_TOW_DECODED) != 0;
 
-                boolean codeLockE1BC = (measState & GnssMeasurement.STATE_GAL_E1BC_CODE_LOCK) != 0;
-                boolean codeLockE1C = (measState & GnssMeasurement.STATE_GAL_E1C_2ND_CODE_LOCK) != 0;
+                boolean codeLockE1BC = (measState & RawMeasurement.STATE_GAL_E1BC_CODE_LOCK) != 0;
+                boolean codeLockE1C = (measState & RawMeasurement.STATE_GAL_E1C_2ND_CODE_LOCK) != 0;
 
                 // Variables for debugging
                 double prTOW = pseudorangeTOW;
@@ -227,9 +224,11 @@ public class GalileoConstellation extends Constellation{
                     if (measurement.hasCarrierFrequencyHz())
                         satelliteParameters.setCarrierFrequency(measurement.getCarrierFrequencyHz());
 
+                    satelliteParameters.setCarrierObservables(measurement, E1a_FREQUENCY);
+
                     observedSatellites.add(satelliteParameters);
-                    Log.d(TAG, "updateConstellations(" + measurement.getSvid() + "): " + weekNumber + ", " + tRxGalileoTOW + ", " + pseudorangeTOW);
-                    Log.d(TAG, "updateConstellations: Passed with measurement state: " + measState);
+                    GnssLog.d(TAG, "updateConstellations(" + measurement.getSvid() + "): " + weekNumber + ", " + tRxGalileoTOW + ", " + pseudorangeTOW);
+                    GnssLog.d(TAG, "updateConstellations: Passed with measurement state: " + measState);
 
 
                 } else if (codeLockE1C) {
@@ -244,9 +243,10 @@ public class GalileoConstellation extends Constellation{
 
                     if (measurement.hasCarrierFrequencyHz())
                         satelliteParameters.setCarrierFrequency(measurement.getCarrierFrequencyHz());
+                    satelliteParameters.setCarrierObservables(measurement, E1a_FREQUENCY);
                     observedSatellites.add(satelliteParameters);
-                    Log.d(TAG, "updateConstellations(" + measurement.getSvid() + "): " + weekNumber + ", " + tRxGalileoTOW + ", " + pseudorangeE1_2nd);
-                    Log.d(TAG, "updateConstellations: Passed with measurement state: " + measState);
+                    GnssLog.d(TAG, "updateConstellations(" + measurement.getSvid() + "): " + weekNumber + ", " + tRxGalileoTOW + ", " + pseudorangeE1_2nd);
+                    GnssLog.d(TAG, "updateConstellations: Passed with measurement state: " + measState);
                 } else {
                     SatelliteParameters satelliteParameters = new SatelliteParameters(
                             measurement.getSvid(),
@@ -275,28 +275,35 @@ public class GalileoConstellation extends Constellation{
 
         synchronized (this) {
             System.out.println("此历元galileo卫星数：" + observedSatellites.size());
+            // Determine the current GPS week number
+            int galileoWeek =(int) weekNumber;
+
+            double galileoSow = (tRxGalileoTOW) * 1e-9;
+            GnssTime tGalileo = GnssTime.ofGpsWeek(galileoWeek, galileoSow);
+
+            // Convert the time of reception from GPS SoW to UNIX time (milliseconds)
+            long timeRx = tGalileo.getMillis();
+
+            //整个历元使用同一版本的导航电文，下载线程换上新文件也不影响本历元
+            RinexNavigationParserGalileo navigation = rinexNavGalileo.pin(timeRx);
 
 
             //接收机的位置，这里用接收机的位置主要是为了计算对流层延迟
-            rxPos = Coordinates.globalXYZInstance(position.getX(), position.getY(), position.getZ());
+            //没有近似位置时(冷启动)只计算卫星位置，不做高度角截止和误差改正
+            rxPos = position == null ? null : Coordinates.globalXYZInstance(position.getX(), position.getY(), position.getZ());
+            //接收机站心坐标系，每个历元只计算一次，所有卫星和改正共用
+            ReceiverFrame rxFrame = rxPos == null ? null : ReceiverFrame.of(rxPos);
 
             //System.out.println("接收机近似位置：" + position.getX() + "," + position.getY() + "," + position.getZ());
 
             for (SatelliteParameters observedSatellite : observedSatellites) {
                 // Computation of the GPS satellite coordinates in ECEF frame
 
-                // Determine the current GPS week number
-                int galileoWeek =(int) weekNumber;
-
-                double galileoSow = (tRxGalileoTOW) * 1e-9;
-                Time tGalileo = new Time(galileoWeek, galileoSow);
-
-                // Convert the time of reception from GPS SoW to UNIX time (milliseconds)
-                long timeRx = tGalileo.getMsec();
                 System.out.println("卫星"+observedSatellite.getUniqueSatId()+"   "+timeRx);
 
 
                 SatellitePosition rnp = rinexNavGalileo.getSatPositionAndVelocities(
+                        navigation,
                         timeRx,
                         observedSatellite.getPseudorange(),
                         observedSatellite.getSatId(),
@@ -312,9 +319,14 @@ public class GalileoConstellation extends Constellation{
 
                 observedSatellite.setSatellitePosition(rnp);
 
+                if (rxPos == null) {
+                    observedSatellite.setAccumulatedCorrection(0);
+                    continue;
+                }
+
                 observedSatellite.setRxTopo(
                         new TopocentricCoordinates(
-                                rxPos,
+                                rxFrame,
                                 observedSatellite.getSatellitePosition()));
 
                 //Add to the exclusion list the satellites that do not pass the masking criteria
@@ -326,10 +338,10 @@ public class GalileoConstellation extends Constellation{
                 for (Correction correction : corrections) {
 
                     correction.calculateCorrection(
-                            new Time(timeRx),
-                            rxPos,
+                            tGalileo,
+                            rxFrame,
                             observedSatellite.getSatellitePosition(),
-                            rinexNavGalileo);
+                            navigation);
 
                     accumulatedCorrection += correction.getCorrection();
 
@@ -0,0 +1,342 @@
+package com.gnss.ppptesttwo.constellations;
+
+import com.gnss.ppptesttwo.Constants;
+import com.gnss.ppptesttwo.GnssLog;
+import com.gnss.ppptesttwo.GnssTime;
+import com.gnss.ppptesttwo.corrections.Correction;
+import com.gnss.ppptesttwo.corrections.TopocentricCoordinates;
+import com.gnss.ppptesttwo.download.NavigationPrefetcher;
+import com.gnss.ppptesttwo.download.ProductTransport;
+import com.gnss.ppptesttwo.navifromftp.Coordinates;
+import com.gnss.ppptesttwo.navifromftp.RinexNavigationGalileo;
+import com.gnss.ppptesttwo.navifromftp.RinexNavigationGps;
+import com.gnss.ppptesttwo.navifromftp.SatellitePosition;
+import com.gnss.ppptesttwo.navifromftp.SuplNavigation;
+import com.gnss.ppptesttwo.precise.PreciseClocks;
+import com.gnss.ppptesttwo.precise.Sp3Interpolator;
+import com.gnss.ppptesttwo.precise.Sp3Orbits;
+import com.gnss.ppptesttwo.raw.RawEpoch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class GnssConstellation extends Constellation{
+
+
+    public final static String NASA_NAVIGATION_HOURLY = "ftp://cddis.gsfc.nasa.gov/pub/gps/data/hourly/${yyyy}/${ddd}/hour${ddd}0.${yy}n.Z";
+
+    public final static String NASA_NAVIGATION_HOURLY_Galileo = "ftp://cddis.gsfc.nasa.gov/pub/gps/data/hourly/${yyyy}/${ddd}/${hh4}/AMC400USA_R_${yyyy}${ddd}${hh4}00_01H_EN.rnx.gz";
+
+    public final static String BKG_GALILEO_RINEX = "ftp://igs.bkg.bund.de/EUREF/BRDC/${yyyy}/${ddd}/BRDC00WRD_R_${yyyy}${ddd}0000_01D_EN.rnx.gz";
+
+
+    public final static String NASA_NAVIGATION_HOURLY_Galileo_ABPO = "ftp://cddis.gsfc.nasa.gov/pub/gps/data/hourly/${yyyy}/${ddd}/${hh4}/ABPO00MDG_R_${yyyy}${ddd}${hh4}00_01H_EN.rnx.gz";
+
+
+    public final static String ESA_GALILEO_RINEX = "ftp://gssc.esa.int/gnss/data/daily/${yyyy}/${ddd}/ankr${ddd}0.${yy}l.Z";
+
+    /**
+     * Equivalent sources of the GPS and Galileo navigation messages, the preferred one first
+     */
+    public final static List<String> GPS_NAVIGATION_MIRRORS = Collections.unmodifiableList(Arrays.asList(
+            NASA_NAVIGATION_HOURLY, RinexNavigationGps.BKG_HOURLY_SUPER_SEVER,
+            RinexNavigationGps.IGN_NAVIGATION_HOURLY_ZIM2, RinexNavigationGps.GARNER_NAVIGATION_AUTO,
+            RinexNavigationGps.GARNER_NAVIGATION_AUTO_HTTP));
+    public final static List<String> GALILEO_NAVIGATION_MIRRORS = Collections.unmodifiableList(Arrays.asList(
+            NASA_NAVIGATION_HOURLY_Galileo, BKG_GALILEO_RINEX, ESA_GALILEO_RINEX));
+
+    private GpsConstellation gpsConstellation = new GpsConstellation();
+    private GalileoConstellation galileoConstellation = new GalileoConstellation();
+
+    private static final String NAME = "GNSS";
+
+    /**
+     * List holding observed satellites
+     */
+    protected List<SatelliteParameters> observedSatellites = new ArrayList<>();
+    private List<SatelliteParameters> unusedSatellites = new ArrayList<>();
+
+    private RinexNavigationGps rinexNavigationGps=new RinexNavigationGps();
+    private RinexNavigationGalileo rinexNavigationGalileo=new RinexNavigationGalileo();
+    private Sp3Interpolator preciseOrbits;
+    private PreciseClocks preciseClocks;
+    private boolean isgps;
+    private boolean isgalileo;
+    private boolean isglonass;
+    private boolean isbeidou;
+
+
+
+    public GnssConstellation(boolean isgps,boolean isgalileo,boolean isglonass,boolean isbeidou)
+    {
+        this.isgps=isgps;
+        this.isglonass=isglonass;
+        this.isbeidou=isbeidou;
+        this.isgalileo=isgalileo;
+    }
+    public void init()
+    {
+        if(isgps) {
+            try {
+                rinexNavigationGps.getFromFTP(NASA_NAVIGATION_HOURLY);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if(isgalileo) {
+            try {
+                rinexNavigationGalileo.getFromFTP(NASA_NAVIGATION_HOURLY_Galileo);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Fast start: installs the ephemerides of a SUPL server for the approximate position, so
+     * that satellites can be computed before the first navigation file is downloaded by
+     * {@link #init()} or {@link #startPrefetch}, which remain the fallback when SUPL fails.
+     * Blocks for the SUPL exchange.
+     *
+     * @return whether ephemerides were installed
+     */
+    public boolean assist(SuplNavigation supl, double latitude, double longitude) {
+        try {
+            supl.load(latitude, longitude, isgps ? rinexNavigationGps : null, isgalileo ? rinexNavigationGalileo : null);
+            return true;
+        } catch (IOException e) {
+            GnssLog.w(NAME, "SUPL assistance failed, waiting for the RINEX navigation files", e);
+            return false;
+        }
+    }
+
+    /**
+     * Background counterpart of {@link #init()}: keeps the navigation files of the enabled
+     * systems up to date, downloading each new hourly file while the previous one serves.
+     * CDDIS is asked first and the equivalent BKG, IGN, Garner and ESA files are raced
+     * against it when it is slow. The files go through the same parse pool as {@link #init()},
+     * so a slot both of them ask for is parsed and installed once.
+     *
+     * @param transport e.g. a {@link com.gnss.ppptesttwo.download.SchemeTransport} for the FTP and HTTP mirrors
+     *
+     * @param cacheDir folder of the downloaded files
+     * @return the running prefetcher, to be closed when positioning stops
+     */
+    public NavigationPrefetcher startPrefetch(ProductTransport transport, File cacheDir) {
+        NavigationPrefetcher prefetcher = new NavigationPrefetcher(transport, cacheDir);
+        if (isgps) {
+            prefetcher.add(GPS_NAVIGATION_MIRRORS, new NavigationPrefetcher.Installer() {
+                @Override
+                public void install(File file, long slot) throws IOException {
+                    rinexNavigationGps.loadFromFile(GPS_NAVIGATION_MIRRORS.get(0), slot, file);
+                }
+            });
+        }
+        if (isgalileo) {
+            prefetcher.add(GALILEO_NAVIGATION_MIRRORS, new NavigationPrefetcher.Installer() {
+                @Override
+                public void install(File file, long slot) throws IOException {
+                    rinexNavigationGalileo.loadFromFile(GALILEO_NAVIGATION_MIRRORS.get(0), slot, file);
+                }
+            });
+        }
+        return prefetcher;
+    }
+
+    /**
+     * Offline counterpart of {@link #init()}: loads the navigation files from disk.
+     *
+     * @param gpsNavigation     RINEX GPS navigation file, used when GPS is enabled
+     * @param galileoNavigation RINEX Galileo navigation file, used when Galileo is enabled
+     */
+    public void initFromFiles(File gpsNavigation, File galileoNavigation) throws IOException {
+        if (isgps && gpsNavigation != null) {
+            rinexNavigationGps.loadFromFile(gpsNavigation);
+        }
+        if (isgalileo && galileoNavigation != null) {
+            rinexNavigationGalileo.loadFromFile(galileoNavigation);
+        }
+    }
+
+    /**
+     * Uses an SP3 precise orbit product for the GPS satellites it covers, the broadcast
+     * ephemerides for the others. The product is read from {@code cache} when it was
+     * already loaded once.
+     *
+     * @param product SP3 file, plain, .Z or .gz
+     * @param cache   binary copy of the product, written at the first load
+     */
+    public void loadPreciseOrbits(File product, File cache) throws IOException {
+        Sp3Interpolator orbits = new Sp3Interpolator(Sp3Orbits.load(product, cache));
+        synchronized (this) {
+            orbits.setClocks(preciseClocks);
+            preciseOrbits = orbits;
+        }
+        gpsConstellation.setPreciseOrbits(orbits);
+    }
+
+    /**
+     * Uses a RINEX clock product for the satellite clocks it covers, with the precise orbits
+     * as well as with the broadcast ephemerides of GPS and Galileo. The product is read from
+     * {@code cache} when it was already loaded once.
+     *
+     * @param product RINEX clock file, plain, .Z or .gz
+     * @param cache   binary copy of the product, written at the first load
+     */
+    public void loadPreciseClocks(File product, File cache) throws IOException {
+        PreciseClocks clocks = PreciseClocks.load(product, cache);
+        synchronized (this) {
+            preciseClocks = clocks;
+            if (preciseOrbits != null) {
+                preciseOrbits.setClocks(clocks);
+            }
+        }
+        rinexNavigationGps.setSatelliteClocks(clocks);
+        rinexNavigationGalileo.setSatelliteClocks(clocks);
+    }
+
+    public void setIsgps(boolean isgps) {
+        this.isgps = isgps;
+    }
+
+    public void setIsgalileo(boolean isgalileo) {
+        this.isgalileo = isgalileo;
+    }
+
+    public void setIsbeidou(boolean isbeidou) {
+        this.isbeidou = isbeidou;
+    }
+
+    public void setIsglonass(boolean isglonass) {
+        this.isglonass = isglonass;
+    }
+
+
+    @Override
+    public Coordinates getRxPos() {
+        synchronized (this) {
+            return gpsConstellation.getRxPos();
+        }
+    }
+
+    @Override
+    public void setRxPos(Coordinates rxPos) {
+        synchronized (this) {
+             gpsConstellation.setRxPos(rxPos);
+            galileoConstellation.setRxPos(rxPos);
+        }
+    }
+
+    @Override
+    public SatelliteParameters getSatellite(int index) {
+        synchronized (this) {
+            return observedSatellites.get(index);
+        }
+    }
+
+    @Override
+    public List<SatelliteParameters> getSatellites() {
+        synchronized (this) {
+            return observedSatellites;
+        }
+    }
+
+    @Override
+    public List<SatelliteParameters> getUnusedSatellites() {
+        return unusedSatellites;
+    }
+
+    /**
+     * @return the satellites with a pseudorange in the last {@link #updateMeasurements},
+     * GPS then Galileo, before {@link #calculateSatPosition} applies the elevation mask
+     */
+    public List<SatelliteParameters> getMeasuredSatellites() {
+        synchronized (this) {
+            List<SatelliteParameters> measured = new ArrayList<>();
+            if (isgps) measured.addAll(gpsConstellation.getSatellites());
+            if (isgalileo) measured.addAll(galileoConstellation.getSatellites());
+            return measured;
+        }
+    }
+
+    @Override
+    public int getVisibleConstellationSize() {
+        synchronized (this) {
+            return observedSatellites.size()+unusedSatellites.size();
+        }
+    }
+
+    @Override
+    public int getUsedConstellationSize() {
+        synchronized (this) {
+            return observedSatellites.size();
+        }
+    }
+
+    @Override
+    public double getSatelliteSignalStrength(int index) {
+        synchronized (this) {
+            return observedSatellites.get(index).getSignalStrength();
+        }
+    }
+
+    @Override
+    public int getConstellationId() {
+        return 2;
+    }
+
+    @Override
+    public void addCorrections(ArrayList<Correction> corrections) {
+
+    }
+
+    @Override
+    public GnssTime getTime() {
+        synchronized (this) {
+            return gpsConstellation.getTime();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void updateMeasurements(RawEpoch event) {
+
+        if(isgps) gpsConstellation.updateMeasurements(event);
+        if(isgalileo) galileoConstellation.updateMeasurements(event);
+
+    }
+
+    public void calculateSatPosition( Coordinates position) {
+
+        // Make a list to hold the satellites that are to be excluded based on elevation/CN0 masking criteria
+        List<SatelliteParameters> excludedSatellites = new ArrayList<>();
+        synchronized (this) {
+            if(isgps ) gpsConstellation.calculateSatPosition(this.rinexNavigationGps, position);
+            if(isgalileo) galileoConstellation.calculateSatPosition(this.rinexNavigationGalileo, position);
+
+
+            observedSatellites.clear();
+            unusedSatellites.clear();
+
+            for (int i=0; i<gpsConstellation.getUsedConstellationSize(); i++){
+                observedSatellites.add(gpsConstellation.getSatellite(i));
+            }
+
+            for (int i=0; i<galileoConstellation.getUsedConstellationSize(); i++){
+                observedSatellites.add(galileoConstellation.getSatellite(i));
+            }
+
+            unusedSatellites.addAll(gpsConstellation.getUnusedSatellites());
+            unusedSatellites.addAll(galileoConstellation.getUnusedSatellites());
+
+        }
+    }
+}
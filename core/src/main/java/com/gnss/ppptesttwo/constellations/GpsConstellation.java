@@ -1,21 +1,23 @@
 package com.gnss.ppptesttwo.constellations;
 
-import android.location.GnssClock;
-import android.location.GnssMeasurement;
-import android.location.GnssMeasurementsEvent;
-import android.location.GnssStatus;
-import android.util.Log;
-
 import com.gnss.ppptesttwo.Constants;
-import com.gnss.ppptesttwo.Time;
+import com.gnss.ppptesttwo.GnssLog;
+import com.gnss.ppptesttwo.GnssTime;
 import com.gnss.ppptesttwo.corrections.Correction;
 import com.gnss.ppptesttwo.corrections.IonoCorrection;
 import com.gnss.ppptesttwo.corrections.ShapiroCorrection;
 import com.gnss.ppptesttwo.corrections.TopocentricCoordinates;
 import com.gnss.ppptesttwo.corrections.TropoCorrection;
 import com.gnss.ppptesttwo.navifromftp.Coordinates;
+import com.gnss.ppptesttwo.navifromftp.EphGps;
+import com.gnss.ppptesttwo.navifromftp.ReceiverFrame;
 import com.gnss.ppptesttwo.navifromftp.RinexNavigationGps;
+import com.gnss.ppptesttwo.navifromftp.RinexNavigationParserGps;
 import com.gnss.ppptesttwo.navifromftp.SatellitePosition;
+import com.gnss.ppptesttwo.precise.Sp3Interpolator;
+import com.gnss.ppptesttwo.raw.RawClock;
+import com.gnss.ppptesttwo.raw.RawEpoch;
+import com.gnss.ppptesttwo.raw.RawMeasurement;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -54,7 +56,7 @@ public class GpsConstellation extends Constellation{
         return tRxGPS;
     }
 
-    private static final int constellationId = GnssStatus.CONSTELLATION_GPS;
+    private static final int constellationId = RawMeasurement.CONSTELLATION_GPS;
     private static double MASK_ELEVATION = 20; // degrees
     private static double MASK_CN0 = 10; // dB-Hz
 
@@ -67,7 +69,7 @@ public class GpsConstellation extends Constellation{
     /**
      * Time of the measurement
      */
-    private Time timeRefMsec;
+    private GnssTime timeRefMsec;
 
     protected int visibleButNotUsed = 0;
 
@@ -77,6 +79,11 @@ public class GpsConstellation extends Constellation{
 
     private RinexNavigationGps rinexNavGps = null;
 
+    /**
+     * Precise orbits used instead of the broadcast ephemerides when they cover the satellite
+     */
+    private Sp3Interpolator preciseOrbits = null;
+
     /**
      * List holding observed satellites
      */
@@ -102,15 +109,14 @@ public class GpsConstellation extends Constellation{
     }
 
 
-    public void updateMeasurements(GnssMeasurementsEvent event) {
+    public void updateMeasurements(RawEpoch event) {
 
         synchronized (this) {
             visibleButNotUsed = 0;
             observedSatellites.clear();
             unusedSatellites.clear();
-            GnssClock gnssClock = event.getClock();
+            RawClock gnssClock = event.getClock();
             long TimeNanos = gnssClock.getTimeNanos();
-            timeRefMsec = new Time(System.currentTimeMillis());
             double BiasNanos = gnssClock.getBiasNanos();
             double gpsTime, pseudorange;
 
@@ -120,9 +126,12 @@ public class GpsConstellation extends Constellation{
                 fullBiasNanosInitialized = true;
             }
 
+            // Epoch of the measurements on the receiver clock, in GPS time
+            timeRefMsec = GnssTime.ofGpsNanos(TimeNanos - FullBiasNanos - Math.round(BiasNanos));
+
 
             // Start computing the pseudoranges using the raw data from the phone's GNSS receiver
-            for (GnssMeasurement measurement : event.getMeasurements()) {
+            for (RawMeasurement measurement : event.getMeasurements()) {
 
                 if (measurement.getConstellationType() != constellationId)
                     continue;
@@ -184,12 +193,9 @@ public class GpsConstellation extends Constellation{
                 int measState = measurement.getState();
 
                 // Bitwise AND to identify the states
-                boolean codeLock = (measState & GnssMeasurement.STATE_CODE_LOCK) != 0;
-                boolean towDecoded = (measState & GnssMeasurement.STATE_TOW_DECODED) != 0;
-                boolean towKnown = false;
-                if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.O) {
-                    towKnown = (measState & GnssMeasurement.STATE_TOW_KNOWN) != 0;
-                }
+                boolean codeLock = (measState & RawMeasurement.STATE_CODE_LOCK) != 0;
+                boolean towDecoded = (measState & RawMeasurement.STATE_TOW_DECODED) != 0;
+                boolean towKnown = (measState & RawMeasurement.STATE_TOW_KNOWN) != 0;
 //                boolean towUncertainty = measurement.getReceivedSvTimeUncertaintyNanos() <  MAXTOWUNCNS;
 
 
@@ -207,10 +213,12 @@ public class GpsConstellation extends Constellation{
                     if (measurement.hasCarrierFrequencyHz())
                         satelliteParameters.setCarrierFrequency(measurement.getCarrierFrequencyHz());
 
+                    satelliteParameters.setCarrierObservables(measurement, L1_FREQUENCY);
+
                     observedSatellites.add(satelliteParameters);
 
-                    Log.d(TAG, "updateConstellations(" + measurement.getSvid() + "): " + weekNumberNanos + ", " + tRxGPS + ", " + pseudorange);
-                    Log.d(TAG, "updateConstellations: Passed with measurement state: " + measState);
+                    GnssLog.d(TAG, "updateConstellations(" + measurement.getSvid() + "): " + weekNumberNanos + ", " + tRxGPS + ", " + pseudorange);
+                    GnssLog.d(TAG, "updateConstellations: Passed with measurement state: " + measState);
                 } else {
                     SatelliteParameters satelliteParameters = new SatelliteParameters(
                             measurement.getSvid(),
@@ -254,7 +262,7 @@ public class GpsConstellation extends Constellation{
     }
 
     @Override
-    public Time getTime() {
+    public GnssTime getTime() {
         return timeRefMsec;
     }
 
@@ -265,7 +273,7 @@ public class GpsConstellation extends Constellation{
 
     /**
      * @param rinexNavGps 获取的导航电文
-     * @param position    接收机的近似位置
+     * @param position    接收机的近似位置，为null时只计算卫星位置
      */
 
 
@@ -276,33 +284,56 @@ public class GpsConstellation extends Constellation{
 
         synchronized (this) {
             System.out.println("此历元卫星数：" + observedSatellites.size());
+            // Determine the current GPS week number
+            int gpsWeek = (int) (weekNumberNanos / Constants.NUMBER_NANO_SECONDS_PER_WEEK);
 
+            // Time of signal reception in GPS Seconds of the Week (SoW)
+            double gpsSow = (tRxGPS - weekNumberNanos) * 1e-9;
+            GnssTime tGPS = GnssTime.ofGpsWeek(gpsWeek, gpsSow);
 
-            //接收机的位置，这里用接收机的位置主要是为了计算对流层延迟
-            rxPos = Coordinates.globalXYZInstance(position.getX(), position.getY(), position.getZ());
+            // Convert the time of reception from GPS SoW to UNIX time (milliseconds)
+            long timeRx = tGPS.getMillis();
 
-            System.out.println("接收机近似位置：" + position.getX() + "," + position.getY() + "," + position.getZ());
+            //整个历元使用同一版本的导航电文，下载线程换上新文件也不影响本历元
+            RinexNavigationParserGps navigation = rinexNavGps.pin(timeRx);
 
-            for (SatelliteParameters observedSatellite : observedSatellites) {
-                // Computation of the GPS satellite coordinates in ECEF frame
 
-                // Determine the current GPS week number
-                int gpsWeek = (int) (weekNumberNanos / Constants.NUMBER_NANO_SECONDS_PER_WEEK);
+            //接收机的位置，这里用接收机的位置主要是为了计算对流层延迟
+            //没有近似位置时(冷启动)只计算卫星位置，不做高度角截止和误差改正
+            rxPos = position == null ? null : Coordinates.globalXYZInstance(position.getX(), position.getY(), position.getZ());
+            //接收机站心坐标系，每个历元只计算一次，所有卫星和改正共用
+            ReceiverFrame rxFrame = rxPos == null ? null : ReceiverFrame.of(rxPos);
 
-                // Time of signal reception in GPS Seconds of the Week (SoW)
-                double gpsSow = (tRxGPS - weekNumberNanos) * 1e-9;
-                Time tGPS = new Time(gpsWeek, gpsSow);
+            if (position != null) {
+                System.out.println("接收机近似位置：" + position.getX() + "," + position.getY() + "," + position.getZ());
+            }
 
-                // Convert the time of reception from GPS SoW to UNIX time (milliseconds)
-                long timeRx = tGPS.getMsec();
+            for (SatelliteParameters observedSatellite : observedSatellites) {
+                // Computation of the GPS satellite coordinates in ECEF frame
 
-                SatellitePosition rnp = rinexNavGps.getSatPositionAndVelocities(
-                        timeRx,
-                        observedSatellite.getPseudorange(),
-                        observedSatellite.getSatId(),
-                        satType,
-                        0.0
-                );
+                SatellitePosition rnp = null;
+                //有精密星历时优先使用，广播星历仍提供电离层参数和TGD
+                if (preciseOrbits != null && navigation != null) {
+                    EphGps eph = navigation.findEph(timeRx, observedSatellite.getSatId(), satType);
+                    rnp = preciseOrbits.getSatPositionAndVelocities(
+                            timeRx,
+                            observedSatellite.getPseudorange(),
+                            observedSatellite.getSatId(),
+                            satType,
+                            0.0,
+                            eph == null ? 0.0 : eph.getTgd()
+                    );
+                }
+                if (rnp == null) {
+                    rnp = rinexNavGps.getSatPositionAndVelocities(
+                            navigation,
+                            timeRx,
+                            observedSatellite.getPseudorange(),
+                            observedSatellite.getSatId(),
+                            satType,
+                            0.0
+                    );
+                }
 
                 if (rnp == null) {
                     excludedSatellites.add(observedSatellite);
@@ -312,9 +343,14 @@ public class GpsConstellation extends Constellation{
 
                 observedSatellite.setSatellitePosition(rnp);
 
+                if (rxPos == null) {
+                    observedSatellite.setAccumulatedCorrection(0);
+                    continue;
+                }
+
                 observedSatellite.setRxTopo(
                         new TopocentricCoordinates(
-                                rxPos,
+                                rxFrame,
                                 observedSatellite.getSatellitePosition()));
 
                 //Add to the exclusion list the satellites that do not pass the masking criteria
@@ -326,10 +362,10 @@ public class GpsConstellation extends Constellation{
                 for (Correction correction : corrections) {
 
                     correction.calculateCorrection(
-                            new Time(timeRx),
-                            rxPos,
+                            tGPS,
+                            rxFrame,
                             observedSatellite.getSatellitePosition(),
-                            rinexNavGps);
+                            navigation);
 
                     accumulatedCorrection += correction.getCorrection();
 
@@ -360,6 +396,17 @@ public class GpsConstellation extends Constellation{
     }
 
 
+    /**
+     * @param preciseOrbits SP3 orbits to compute the satellites with, falling back to the
+     *                      broadcast ephemerides outside of them; null for broadcast only
+     */
+    public void setPreciseOrbits(Sp3Interpolator preciseOrbits) {
+        synchronized (this) {
+            this.preciseOrbits = preciseOrbits;
+        }
+    }
+
+
     public void setRxPos(Coordinates rxPos) {
         synchronized (this) {
             this.rxPos = rxPos;
@@ -22,6 +22,7 @@ import com.gnss.ppptesttwo.constellations.Pseudorange;
 import com.gnss.ppptesttwo.corrections.TopocentricCoordinates;
 import com.gnss.ppptesttwo.navifromftp.Coordinates;
 import com.gnss.ppptesttwo.navifromftp.SatellitePosition;
+import com.gnss.ppptesttwo.raw.RawMeasurement;
 
 /**
  * Container class for storing satellite related parameters
@@ -239,4 +240,57 @@ public class SatelliteParameters {
     public void setCarrierFrequency(double carrierFrequency) {
         this.carrierFrequency = carrierFrequency;
     }
+
+    /**
+     * Carrier phase [cycles], NaN when the accumulated delta range is not valid
+     */
+    private double carrierPhase = Double.NaN;
+
+    /**
+     * Doppler shift [Hz], from the pseudorange rate
+     */
+    private double doppler = Double.NaN;
+
+    /**
+     * Phase tracking was reset or slipped since the previous epoch
+     */
+    private boolean lossOfLock;
+
+    public double getCarrierPhase() {
+        return carrierPhase;
+    }
+
+    public void setCarrierPhase(double carrierPhase) {
+        this.carrierPhase = carrierPhase;
+    }
+
+    public double getDoppler() {
+        return doppler;
+    }
+
+    public void setDoppler(double doppler) {
+        this.doppler = doppler;
+    }
+
+    public boolean isLossOfLock() {
+        return lossOfLock;
+    }
+
+    public void setLossOfLock(boolean lossOfLock) {
+        this.lossOfLock = lossOfLock;
+    }
+
+    /**
+     * Derives the carrier phase and the Doppler shift from the accumulated delta range and
+     * the pseudorange rate, on the reported carrier frequency or else the nominal one
+     */
+    public void setCarrierObservables(RawMeasurement measurement, double nominalFrequency) {
+        double frequency = measurement.hasCarrierFrequencyHz() ? measurement.getCarrierFrequencyHz() : nominalFrequency;
+        double wavelength = Constants.SPEED_OF_LIGHT / frequency;
+        doppler = -measurement.getPseudorangeRateMetersPerSecond() / wavelength;
+        int adrState = measurement.getAccumulatedDeltaRangeState();
+        carrierPhase = (adrState & RawMeasurement.ADR_STATE_VALID) != 0
+                ? measurement.getAccumulatedDeltaRangeMeters() / wavelength : Double.NaN;
+        lossOfLock = (adrState & (RawMeasurement.ADR_STATE_RESET | RawMeasurement.ADR_STATE_CYCLE_SLIP)) != 0;
+    }
 }
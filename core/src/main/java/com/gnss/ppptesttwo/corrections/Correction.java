@@ -16,12 +16,11 @@
 
 package com.gnss.ppptesttwo.corrections;
 
-import android.location.Location;
 
 
-import com.gnss.ppptesttwo.Time;
-import com.gnss.ppptesttwo.navifromftp.Coordinates;
+import com.gnss.ppptesttwo.GnssTime;
 import com.gnss.ppptesttwo.navifromftp.NavigationIono;
+import com.gnss.ppptesttwo.navifromftp.ReceiverFrame;
 import com.gnss.ppptesttwo.navifromftp.SatellitePosition;
 
 import java.util.HashMap;
@@ -36,15 +35,15 @@ public abstract class Correction {
     /**
      * Calculates current correction for given parameters
      * @param currentTime current timestamp
-     * @param approximatedPose approximate pose of the receiver
+     * @param receiver local frame at the approximate pose of the receiver
      * @param satelliteCoordinates satellite coordinates
      * @param navigationIono Klobuchar coefficients from the naivgation message (ephemeris)
      *             initialLocation            应该是计算对流层的时候需要卫星相对于接收机的方位角和天顶角
      * @return calculated correction to be applied to the pseudorange
      */
     public abstract void calculateCorrection(
-            Time currentTime,
-            Coordinates approximatedPose,
+            GnssTime currentTime,
+            ReceiverFrame receiver,
             SatellitePosition satelliteCoordinates,
             NavigationIono navigationIono
             );
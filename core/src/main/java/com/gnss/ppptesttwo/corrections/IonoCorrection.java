@@ -17,10 +17,10 @@
 package com.gnss.ppptesttwo.corrections;
 
 import com.gnss.ppptesttwo.Constants;
-import com.gnss.ppptesttwo.Time;
-import com.gnss.ppptesttwo.navifromftp.Coordinates;
+import com.gnss.ppptesttwo.GnssTime;
 import com.gnss.ppptesttwo.navifromftp.IonoGps;
 import com.gnss.ppptesttwo.navifromftp.NavigationIono;
+import com.gnss.ppptesttwo.navifromftp.ReceiverFrame;
 import com.gnss.ppptesttwo.navifromftp.SatellitePosition;
 
 import java.util.Date;
@@ -55,7 +55,7 @@ public  class IonoCorrection extends Correction {
     }
 
     @Override
-    public void calculateCorrection(Time currentTime, Coordinates approximatedPose, SatellitePosition satelliteCoordinates, NavigationIono navigationIono) {
+    public void calculateCorrection(GnssTime currentTime, ReceiverFrame receiver, SatellitePosition satelliteCoordinates, NavigationIono navigationIono) {
 
         IonoGps iono = navigationIono.getIonoGps();
 
@@ -68,7 +68,7 @@ public  class IonoCorrection extends Correction {
 
             // Compute the elevation and azimuth angles for each satellite
             TopocentricCoordinates topo = new TopocentricCoordinates();
-            topo.computeTopocentric(approximatedPose, satelliteCoordinates);
+            topo.computeTopocentric(receiver, satelliteCoordinates.getX(), satelliteCoordinates.getY(), satelliteCoordinates.getZ());
 
             // Assign the elevation and azimuth information to new variables
             double elevation = topo.getElevation();
@@ -90,8 +90,8 @@ public  class IonoCorrection extends Correction {
             elevation = Math.abs(elevation);
 
             // Parameter conversion to semicircles
-            double lon = approximatedPose.getGeodeticLongitude() / 180; // geod.get(0)
-            double lat = approximatedPose.getGeodeticLatitude() / 180; //geod.get(1)
+            double lon = receiver.getLongitude() / 180; // geod.get(0)
+            double lat = receiver.getLatitude() / 180; //geod.get(1)
             azimuth = azimuth / 180;
             elevation = elevation / 180;
 
@@ -122,7 +122,7 @@ public  class IonoCorrection extends Correction {
             double ro = phi + 0.064 * Math.cos((lambda - 1.617) * Math.PI);
 
             // Find the local time at the IPP
-            double t = lambda * 43200 + currentTime.getGpsTime();
+            double t = lambda * 43200 + currentTime.getGpsSecondsOfWeek();
 
             while (t >= 86400)
                 t = t - 86400;
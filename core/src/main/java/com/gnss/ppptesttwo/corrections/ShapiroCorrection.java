@@ -16,16 +16,15 @@
 
 package com.gnss.ppptesttwo.corrections;
 
-import android.location.Location;
 
 
 import com.gnss.ppptesttwo.Constants;
-import com.gnss.ppptesttwo.Time;
-import com.gnss.ppptesttwo.navifromftp.Coordinates;
+import com.gnss.ppptesttwo.GnssTime;
+import com.gnss.ppptesttwo.navifromftp.Ecef;
 import com.gnss.ppptesttwo.navifromftp.NavigationIono;
+import com.gnss.ppptesttwo.navifromftp.ReceiverFrame;
 import com.gnss.ppptesttwo.navifromftp.SatellitePosition;
 
-import org.ejml.simple.SimpleMatrix;
 
 /**
  * Created by Sebastian Ciuban on 10/02/2018.
@@ -45,19 +44,20 @@ public class ShapiroCorrection extends Correction {
     }
 
     @Override
-    public void calculateCorrection(Time currentTime, Coordinates approximatedPose, SatellitePosition satelliteCoordinates, NavigationIono navigationIono) {
-        // Compute the difference vector between the receiver and the satellite
-        SimpleMatrix diff = approximatedPose.minusXYZ(satelliteCoordinates);
+    public void calculateCorrection(GnssTime currentTime, ReceiverFrame receiver, SatellitePosition satelliteCoordinates, NavigationIono navigationIono) {
+        Ecef rx = receiver.getOrigin();
 
         // Compute the geometric distance between the receiver and the satellite
-
-        double geomDist = Math.sqrt(Math.pow(diff.get(0), 2) + Math.pow(diff.get(1), 2) + Math.pow(diff.get(2), 2));
+        double geomDist = rx.distanceTo(satelliteCoordinates.getX(), satelliteCoordinates.getY(), satelliteCoordinates.getZ());
 
         // Compute the geocentric distance of the receiver
-        double geoDistRx = Math.sqrt(Math.pow(approximatedPose.getX(), 2) + Math.pow(approximatedPose.getY(), 2) + Math.pow(approximatedPose.getZ(), 2));
+        double geoDistRx = rx.norm();
 
         // Compute the geocentric distance of the satellite
-        double geoDistSv = Math.sqrt(Math.pow(satelliteCoordinates.getX(), 2) + Math.pow(satelliteCoordinates.getY(), 2) + Math.pow(satelliteCoordinates.getZ(), 2));
+        double x = satelliteCoordinates.getX();
+        double y = satelliteCoordinates.getY();
+        double z = satelliteCoordinates.getZ();
+        double geoDistSv = Math.sqrt(x * x + y * y + z * z);
 
 
         // Compute the shapiro correction
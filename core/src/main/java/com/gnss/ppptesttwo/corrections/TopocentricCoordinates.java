@@ -21,8 +21,7 @@
 package com.gnss.ppptesttwo.corrections;
 
 import com.gnss.ppptesttwo.navifromftp.Coordinates;
-
-import org.ejml.simple.SimpleMatrix;
+import com.gnss.ppptesttwo.navifromftp.ReceiverFrame;
 
 /**
  * <p>
@@ -33,7 +32,13 @@ import org.ejml.simple.SimpleMatrix;
  */
 public class TopocentricCoordinates {
 
-	private SimpleMatrix topocentric = new SimpleMatrix(3, 1); /* Azimuth (az), elevation (el), distance (d) */
+	/* Azimuth (az), elevation (el) [deg], distance (d) [m] */
+	private double azimuth;
+	private double elevation;
+	private double distance;
+
+	/* scratch ENU vector, only touched by computeTopocentric */
+	private final double[] enu = new double[3];
 
     public TopocentricCoordinates(){
 
@@ -43,61 +48,71 @@ public class TopocentricCoordinates {
 	    computeTopocentric(origin, target);
     }
 
+	public TopocentricCoordinates(ReceiverFrame frame, Coordinates target){
+		computeTopocentric(frame, target.getX(), target.getY(), target.getZ());
+	}
+
 	/**
+	 * Builds a local frame at {@code origin}; the origin is not modified.
+	 * When many targets share the same origin, build one {@link ReceiverFrame} and use
+	 * {@link #computeTopocentric(ReceiverFrame, double, double, double)} instead.
 	 * @param origin
 	 */
 	public TopocentricCoordinates computeTopocentric(Coordinates origin, Coordinates target) {
+		return computeTopocentric(ReceiverFrame.of(origin), target.getX(), target.getY(), target.getZ());
+	}
 
-//		// Build rotation matrix from global to local reference systems
-//		SimpleMatrix R = globalToLocalMatrix(origin);
-//
-//		// Compute local vector from origin to this object coordinates
-//		//SimpleMatrix enu = R.mult(target.ecef.minus(origin.ecef));
-//		SimpleMatrix enu = R.mult(target.minusXYZ(origin));
+	/**
+	 * @param frame local frame of the receiver
+	 * @param x target X (ECEF)
+	 * @param y target Y (ECEF)
+	 * @param z target Z (ECEF)
+	 */
+	public TopocentricCoordinates computeTopocentric(ReceiverFrame frame, double x, double y, double z) {
 
-		origin.computeLocalV2(target);
+		frame.toEnu(x, y, z, enu);
 
-		double E = origin.getE();//enu.get(0);
-		double N = origin.getN();//enu.get(1);
-		double U = origin.getU();//enu.get(2);
+		double E = enu[0];
+		double N = enu[1];
+		double U = enu[2];
 
 		// Compute horizontal distance from origin to this object
-		double hDist = Math.sqrt(Math.pow(E, 2) + Math.pow(N, 2));
+		double hDist = Math.sqrt(E * E + N * N);
 
 		// If this object is at zenith ...
 		if (hDist < 1e-20) {
 			// ... set azimuth = 0 and elevation = 90, ...
-			topocentric.set(0, 0, 0);
-			topocentric.set(1, 0, 90);
+			azimuth = 0;
+			elevation = 90;
 
 		} else {
 
 			// ... otherwise compute azimuth ...
-			topocentric.set(0, 0, Math.toDegrees(Math.atan2(E, N)));
+			azimuth = Math.toDegrees(Math.atan2(E, N));
 
 			// ... and elevation
-			topocentric.set(1, 0, Math.toDegrees(Math.atan2(U, hDist)));
+			elevation = Math.toDegrees(Math.atan2(U, hDist));
 
-			if (topocentric.get(0) < 0)
-				topocentric.set(0, 0, topocentric.get(0) + 360);
+			if (azimuth < 0)
+				azimuth = azimuth + 360;
 		}
 
 		// Compute distance
-		topocentric.set( 2, 0, Math.sqrt(Math.pow(E, 2) + Math.pow(N, 2) + Math.pow(U, 2)));
-		
+		distance = Math.sqrt(E * E + N * N + U * U);
+
 		return this;
 	}
 
 	public double getAzimuth(){
-		return topocentric.get(0);
+		return azimuth;
 	}
-	
+
 	public double getElevation(){
-		return topocentric.get(1);
+		return elevation;
 	}
-	
+
 	public double getDistance(){
-		return topocentric.get(2);
+		return distance;
 	}
 
 //	/**
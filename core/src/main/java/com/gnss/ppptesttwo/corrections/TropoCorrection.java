@@ -17,9 +17,9 @@
 package com.gnss.ppptesttwo.corrections;
 
 import com.gnss.ppptesttwo.Constants;
-import com.gnss.ppptesttwo.Time;
-import com.gnss.ppptesttwo.navifromftp.Coordinates;
+import com.gnss.ppptesttwo.GnssTime;
 import com.gnss.ppptesttwo.navifromftp.NavigationIono;
+import com.gnss.ppptesttwo.navifromftp.ReceiverFrame;
 import com.gnss.ppptesttwo.navifromftp.SatellitePosition;
 
 
@@ -38,20 +38,13 @@ public class TropoCorrection extends Correction {
 
     private double correctionValue;
     @Override
-    public void calculateCorrection(Time currentTime, Coordinates approximatedPose, SatellitePosition satelliteCoordinates, NavigationIono  navigationIono) {
-
-        // Compute also the geodetic version of the user position (latitude, longitude, height)
-        approximatedPose.computeGeodetic();
+    public void calculateCorrection(GnssTime currentTime, ReceiverFrame receiver, SatellitePosition satelliteCoordinates, NavigationIono  navigationIono) {
 
         // Get the user's height
-        double height = approximatedPose.getGeodeticHeight();
-
-        // Compute the elevation and azimuth angles for each satellite
-        TopocentricCoordinates topo = new TopocentricCoordinates();
-        topo.computeTopocentric(approximatedPose, satelliteCoordinates);
+        double height = receiver.getHeight();
 
-        // Assign the elevation information to a new variable
-        double elevation = topo.getElevation();
+        // Compute the elevation angle of the satellite
+        double elevation = receiver.elevation(satelliteCoordinates);
 
         double tropoCorr = 0;
 
@@ -0,0 +1,72 @@
+package com.gnss.ppptesttwo.download;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stops downloads from another thread. A transport registers the sockets it blocks on, and
+ * {@link #cancel()} closes them, which makes the blocked download fail at once instead of
+ * at its timeout.
+ */
+public final class Cancellation {
+
+    private final List<Closeable> resources = new ArrayList<>();
+    private boolean cancelled;
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Closes the registered resources, and those registered later as soon as they are.
+     */
+    public void cancel() {
+        List<Closeable> toClose;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            toClose = new ArrayList<>(resources);
+            resources.clear();
+        }
+        for (Closeable resource : toClose) {
+            closeQuietly(resource);
+        }
+    }
+
+    /**
+     * @throws InterruptedIOException when already cancelled; {@code resource} is then closed
+     */
+    public void register(Closeable resource) throws InterruptedIOException {
+        synchronized (this) {
+            if (!cancelled) {
+                resources.add(resource);
+                return;
+            }
+        }
+        closeQuietly(resource);
+        throw new InterruptedIOException("Cancelled");
+    }
+
+    public synchronized void unregister(Closeable resource) {
+        resources.remove(resource);
+    }
+
+    public void throwIfCancelled() throws InterruptedIOException {
+        if (isCancelled()) {
+            throw new InterruptedIOException("Cancelled");
+        }
+    }
+
+    private static void closeQuietly(Closeable resource) {
+        try {
+            resource.close();
+        } catch (IOException | RuntimeException e) {
+            // the download reports the failure
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.gnss.ppptesttwo.download;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Helpers shared by the transports.
+ */
+final class Downloads {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private Downloads() {
+    }
+
+    /**
+     * Copies {@code in} to {@code destination}, after its current content when
+     * {@code append}, counting the bytes in {@code received} as they arrive so that an
+     * interrupted transfer is accounted for.
+     */
+    static void copy(InputStream in, File destination, boolean append, AtomicLong received) throws IOException {
+        OutputStream out = new FileOutputStream(destination, append);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+                received.addAndGet(n);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @throws IOException when the size of the file is known and {@code destination} is shorter or longer
+     */
+    static void checkComplete(String url, File destination, long size) throws IOException {
+        if (size >= 0 && destination.length() != size) {
+            throw new IOException("Incomplete download of " + url + ": " + destination.length() + " of " + size + " bytes");
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.gnss.ppptesttwo.download;
+
+import org.apache.commons.net.ftp.FTP;
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPReply;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Anonymous, passive mode FTP downloads of {@code ftp://host[:port]/path} URLs, one
+ * connection per file.
+ * <p>
+ * Downloads resume: when the destination already holds the start of the file, only the
+ * rest is requested with REST. The partial file carries the MDTM time of the server file
+ * as its modification time, so that the start of an older version of a file republished
+ * every hour is never completed with the end of the new one. A download is complete when
+ * the file has the length given by SIZE.
+ */
+public class FtpTransport implements ProductTransport {
+
+    public static final int DEFAULT_TIMEOUT_MILLIS = 30 * 1000;
+
+    private final int timeoutMillis;
+    private final AtomicLong received = new AtomicLong();
+
+    public FtpTransport() {
+        this(DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param timeoutMillis connect and read timeout; a stalled server fails the download after it
+     */
+    public FtpTransport(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void download(String url, File destination, Cancellation cancellation) throws IOException {
+        if (!url.startsWith("ftp://")) {
+            throw new IOException("Not an FTP URL: " + url);
+        }
+        String location = url.substring("ftp://".length());
+        int slash = location.indexOf('/');
+        if (slash < 0) {
+            throw new IOException("No path in " + url);
+        }
+        String server = location.substring(0, slash);
+        String path = location.substring(slash);
+        int port = FTP.DEFAULT_PORT;
+        int colon = server.indexOf(':');
+        if (colon >= 0) {
+            port = Integer.parseInt(server.substring(colon + 1));
+            server = server.substring(0, colon);
+        }
+        String remotePath = path.substring(0, path.lastIndexOf('/') + 1);
+        String remoteFile = path.substring(path.lastIndexOf('/') + 1);
+
+        final FTPClient ftp = new FTPClient();
+        ftp.setConnectTimeout(timeoutMillis);
+        ftp.setDefaultTimeout(timeoutMillis);
+        ftp.setDataTimeout(timeoutMillis);
+        Closeable disconnect = new Closeable() {
+            @Override
+            public void close() throws IOException {
+                ftp.disconnect();
+            }
+        };
+        cancellation.register(disconnect);
+        try {
+            ftp.connect(server, port);
+            ftp.setSoTimeout(timeoutMillis);
+            if (!FTPReply.isPositiveCompletion(ftp.getReplyCode())) {
+                throw new IOException("FTP server " + server + " refused connection: " + ftp.getReplyString().trim());
+            }
+            if (!ftp.login("anonymous", "")) {
+                throw new IOException("FTP login to " + server + " failed: " + ftp.getReplyString().trim());
+            }
+            ftp.enterLocalPassiveMode();
+            ftp.setRemoteVerificationEnabled(false);
+            ftp.setFileType(FTP.BINARY_FILE_TYPE);
+            if (!ftp.changeWorkingDirectory(remotePath)) {
+                throw new FileNotFoundException(url + ": " + ftp.getReplyString().trim());
+            }
+            long size = remoteSize(ftp, remoteFile);
+            long modified = remoteModificationTime(ftp, remoteFile);
+            long offset = destination.length();
+            if (offset > 0 && (modified < 0 || destination.lastModified() != modified || size >= 0 && offset > size)) {
+                // the partial file belongs to another version of the file
+                offset = 0;
+            }
+            if (size >= 0 && offset == size) {
+                ftp.logout();
+                return;
+            }
+            ftp.setRestartOffset(offset);
+            InputStream in = ftp.retrieveFileStream(remoteFile);
+            if (in == null && offset > 0 && ftp.getReplyCode() != FTPReply.FILE_UNAVAILABLE) {
+                // REST refused: download the whole file
+                offset = 0;
+                ftp.setRestartOffset(0);
+                in = ftp.retrieveFileStream(remoteFile);
+            }
+            if (in == null) {
+                if (ftp.getReplyCode() == FTPReply.FILE_UNAVAILABLE) {
+                    throw new FileNotFoundException(url + ": " + ftp.getReplyString().trim());
+                }
+                throw new IOException("FTP download of " + url + " failed: " + ftp.getReplyString().trim());
+            }
+            // closing the data stream is what unblocks a stalled transfer
+            cancellation.register(in);
+            try {
+                Downloads.copy(in, destination, offset > 0, received);
+            } finally {
+                cancellation.unregister(in);
+                in.close();
+                // marks the partial file with the version it holds the start of
+                if (modified >= 0) {
+                    destination.setLastModified(modified);
+                }
+            }
+            if (!ftp.completePendingCommand()) {
+                throw new IOException("FTP download of " + url + " failed: " + ftp.getReplyString().trim());
+            }
+            Downloads.checkComplete(url, destination, size);
+            ftp.logout();
+        } catch (IOException | RuntimeException e) {
+            // a cancelled client fails with whatever its closed sockets throw
+            if (cancellation.isCancelled()) {
+                InterruptedIOException cancelled = new InterruptedIOException("Download of " + url + " cancelled");
+                cancelled.initCause(e);
+                throw cancelled;
+            }
+            throw e;
+        } finally {
+            cancellation.unregister(disconnect);
+            if (ftp.isConnected()) {
+                try {
+                    ftp.disconnect();
+                } catch (IOException ioe) {
+                    // do nothing
+                }
+            }
+        }
+    }
+
+    /**
+     * @return bytes received since the transport was created, interrupted transfers included
+     */
+    public long getBytesReceived() {
+        return received.get();
+    }
+
+    /**
+     * @return size from the SIZE command, -1 when the server does not tell
+     * @throws FileNotFoundException when the server says the file does not exist
+     */
+    private static long remoteSize(FTPClient ftp, String remoteFile) throws IOException {
+        int reply = ftp.sendCommand("SIZE", remoteFile);
+        if (reply == FTPReply.FILE_STATUS) {
+            try {
+                return Long.parseLong(ftp.getReplyString().substring(4).trim());
+            } catch (RuntimeException e) {
+                return -1;
+            }
+        }
+        if (reply == FTPReply.FILE_UNAVAILABLE) {
+            throw new FileNotFoundException(remoteFile + ": " + ftp.getReplyString().trim());
+        }
+        return -1;
+    }
+
+    /**
+     * @return UTC milliseconds from the MDTM command, whole seconds, -1 when the server does not tell
+     */
+    private static long remoteModificationTime(FTPClient ftp, String remoteFile) throws IOException {
+        if (ftp.sendCommand("MDTM", remoteFile) != FTPReply.FILE_STATUS) {
+            return -1;
+        }
+        String time = ftp.getReplyString().substring(4).trim();
+        if (time.length() < 14) {
+            return -1;
+        }
+        try {
+            SimpleDateFormat format = new SimpleDateFormat("yyyyMMddHHmmss", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            return format.parse(time.substring(0, 14)).getTime();
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.gnss.ppptesttwo.download;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * HTTP(S) downloads of product files.
+ * <p>
+ * Downloads resume: when the destination already holds the start of the file, the rest is
+ * requested with {@code Range}, guarded by {@code If-Range} with the {@code Last-Modified}
+ * time the partial file carries, so that a file changed on the server is sent again in
+ * full. A download is complete when the file has the length announced by the server.
+ * <p>
+ * A destination holding the whole version downloaded last is refreshed: the request is
+ * conditional on its {@code ETag} and {@code Last-Modified}, so an unchanged file costs a
+ * 304 answer, and asks only for the bytes after the last {@link #OVERLAP_BYTES} of the old
+ * version. A file that grew, as the hourly updated navigation files do, then arrives as its
+ * new end, appended once the overlap matches the old one; any other change is downloaded
+ * again in full. Whole-file transfers of files that are not already compressed are asked
+ * for with gzip content encoding, and connections are left open for the next request to
+ * the same server.
+ */
+public class HttpTransport implements ProductTransport {
+
+    public static final int DEFAULT_TIMEOUT_MILLIS = 30 * 1000;
+
+    /**
+     * End of the old version sent again by a refresh, compared to tell a grown file from a
+     * rewritten one
+     */
+    public static final int OVERLAP_BYTES = 4096;
+
+    private final int timeoutMillis;
+    private final AtomicLong received = new AtomicLong();
+
+    /**
+     * Version of each URL last downloaded in full
+     */
+    private final ConcurrentHashMap<String, Version> versions = new ConcurrentHashMap<>();
+
+    public HttpTransport() {
+        this(DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param timeoutMillis connect and read timeout; a stalled server fails the download after it
+     */
+    public HttpTransport(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public void download(String url, File destination, Cancellation cancellation) throws IOException {
+        Version held = versions.remove(url);
+        if (held != null && !held.isHeldBy(destination)) {
+            held = null;
+        }
+        Version version = transfer(url, destination, held, cancellation);
+        if (version == null) {
+            // the server file was rewritten rather than extended
+            destination.delete();
+            version = transfer(url, destination, null, cancellation);
+        }
+        versions.put(url, version);
+    }
+
+    /**
+     * @param version what {@code destination} holds in full, null when it may be partial
+     * @return what {@code destination} holds in full after the transfer, null when the refresh
+     * of {@code version} found that the file did not just grow
+     */
+    private Version transfer(String url, File destination, Version version, Cancellation cancellation) throws IOException {
+        long offset = destination.length();
+        long start = version == null ? offset : Math.max(0, offset - OVERLAP_BYTES);
+        final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        // byte ranges refer to the file as stored, not to a compressed transfer of it
+        boolean compressible = start == 0 && !url.endsWith(".Z") && !url.endsWith(".gz");
+        connection.setRequestProperty("Accept-Encoding", compressible ? "gzip" : "identity");
+        if (start > 0) {
+            connection.setRequestProperty("Range", "bytes=" + start + "-");
+        }
+        if (version != null) {
+            if (version.etag != null) {
+                connection.setRequestProperty("If-None-Match", version.etag);
+            }
+            connection.setRequestProperty("If-Modified-Since", httpDate(version.modified));
+        } else if (offset > 0) {
+            connection.setRequestProperty("If-Range", httpDate(destination.lastModified()));
+        }
+        Closeable disconnect = new Closeable() {
+            @Override
+            public void close() {
+                connection.disconnect();
+            }
+        };
+        cancellation.register(disconnect);
+        boolean completed = false;
+        try {
+            int code = connection.getResponseCode();
+            String etag = connection.getHeaderField("ETag");
+            if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE) {
+                throw new FileNotFoundException(url + ": HTTP " + code);
+            }
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && version != null) {
+                drain(connection.getInputStream());
+                completed = true;
+                return etag == null ? version : new Version(offset, version.modified, etag);
+            }
+            long size;
+            if (code == HttpURLConnection.HTTP_PARTIAL) {
+                long[] range = contentRange(connection.getHeaderField("Content-Range"));
+                if (range == null || range[0] != start) {
+                    throw new IOException("Unexpected range from " + url + ": " + connection.getHeaderField("Content-Range"));
+                }
+                size = range[1];
+            } else if (code == HttpURLConnection.HTTP_OK) {
+                offset = start = 0;
+                size = connection.getContentLength() < 0 ? -1 : connection.getContentLength();
+            } else if (code == 416) {
+                // Range Not Satisfiable: the partial file is already complete, or longer than the file
+                long[] range = contentRange(connection.getHeaderField("Content-Range"));
+                drain(connection.getErrorStream());
+                completed = true;
+                if (range != null && range[1] == offset) {
+                    return new Version(offset, destination.lastModified(), etag);
+                }
+                if (version != null) {
+                    return null;
+                }
+                destination.delete();
+                throw new IOException("Partial download of " + url + " is longer than the file, discarded");
+            } else {
+                throw new IOException("HTTP " + code + " " + connection.getResponseMessage() + " for " + url);
+            }
+            long modified = connection.getLastModified();
+            InputStream in = connection.getInputStream();
+            try {
+                if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                    in = new GZIPInputStream(in);
+                    // the gzip trailer checks the length and the CRC of what was sent
+                    size = -1;
+                }
+                if (start < offset && !overlapMatches(in, destination, start)) {
+                    return null;
+                }
+                Downloads.copy(in, destination, offset > 0, received);
+            } finally {
+                in.close();
+                // marks the partial file with the version it holds the start of
+                if (modified > 0) {
+                    destination.setLastModified(modified);
+                }
+            }
+            Downloads.checkComplete(url, destination, size);
+            completed = true;
+            return new Version(destination.length(), destination.lastModified(), etag);
+        } catch (IOException | RuntimeException e) {
+            if (cancellation.isCancelled()) {
+                InterruptedIOException cancelled = new InterruptedIOException("Download of " + url + " cancelled");
+                cancelled.initCause(e);
+                throw cancelled;
+            }
+            throw e;
+        } finally {
+            cancellation.unregister(disconnect);
+            if (!completed) {
+                // a connection in an unknown state is not kept alive for reuse
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * @return bytes received since the transport was created, interrupted transfers included
+     */
+    public long getBytesReceived() {
+        return received.get();
+    }
+
+    /**
+     * @param header {@code bytes first-last/size} or {@code bytes *}{@code /size}
+     * @return first byte and size of the file (-1 when unknown), null when malformed
+     */
+    static long[] contentRange(String header) {
+        if (header == null || !header.startsWith("bytes ")) {
+            return null;
+        }
+        int slash = header.indexOf('/');
+        if (slash < 0) {
+            return null;
+        }
+        try {
+            String range = header.substring("bytes ".length(), slash).trim();
+            String size = header.substring(slash + 1).trim();
+            long first = range.equals("*") ? -1 : Long.parseLong(range.substring(0, range.indexOf('-')));
+            return new long[]{first, size.equals("*") ? -1 : Long.parseLong(size)};
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the {@code offset - start} bytes of the response that overlap the end of
+     * {@code destination}, counting them as received
+     *
+     * @return whether they are the bytes {@code destination} holds
+     */
+    private boolean overlapMatches(InputStream in, File destination, long start) throws IOException {
+        byte[] sent = new byte[(int) (destination.length() - start)];
+        new DataInputStream(in).readFully(sent);
+        received.addAndGet(sent.length);
+        byte[] held = new byte[sent.length];
+        RandomAccessFile file = new RandomAccessFile(destination, "r");
+        try {
+            file.seek(start);
+            file.readFully(held);
+        } finally {
+            file.close();
+        }
+        return Arrays.equals(sent, held);
+    }
+
+    /**
+     * Reads a response body to its end, so that the connection can serve the next request
+     */
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        try {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) >= 0) {
+                // discarded
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    static String httpDate(long millis) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(millis));
+    }
+
+    /**
+     * A complete version of a file: its length, {@code Last-Modified} time and {@code ETag}
+     */
+    private static final class Version {
+        final long length;
+        final long modified;
+        final String etag;
+
+        Version(long length, long modified, String etag) {
+            this.length = length;
+            this.modified = modified;
+            this.etag = etag;
+        }
+
+        /**
+         * @return whether {@code file} still holds this version, as left by the download
+         */
+        boolean isHeldBy(File file) {
+            return length > 0 && file.length() == length && file.lastModified() == modified;
+        }
+    }
+}
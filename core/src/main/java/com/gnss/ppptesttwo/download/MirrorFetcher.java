@@ -0,0 +1,389 @@
+package com.gnss.ppptesttwo.download;
+
+import com.gnss.ppptesttwo.GnssLog;
+import com.gnss.ppptesttwo.navifromftp.UncompressInputStream;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Downloads one product from the first of several equivalent mirrors that delivers it.
+ * <p>
+ * The mirrors are tried in the order of their {@link MirrorStats}: recent failures and slow
+ * answers move a mirror back. The best one is asked first; if it has not delivered after
+ * the 90th percentile of its recent download times, the next one is started as a hedge,
+ * and a failure starts the next one at once. The first download that passes the
+ * {@link Validator} wins and the other one is cancelled, which closes its connections.
+ * <p>
+ * Each mirror downloads into its own partial file of the directory, kept when a transfer
+ * fails or is cancelled so that the next fetch of the file resumes where it stopped. A new
+ * partial file starts as a copy of the version of the file already in the directory, which
+ * the transport then only has to bring up to date.
+ */
+public class MirrorFetcher implements Closeable {
+
+    /**
+     * Checks a downloaded file before it is accepted
+     */
+    public interface Validator {
+        /**
+         * @param url  where the file comes from; its name tells the compression
+         * @throws IOException when the file is not usable
+         */
+        void validate(String url, File file) throws IOException;
+    }
+
+    /**
+     * Accepts RINEX files, plain, .Z or .gz, whose first line is the version header
+     */
+    public static final Validator RINEX_HEADER = new Validator() {
+        @Override
+        public void validate(String url, File file) throws IOException {
+            InputStream is = new FileInputStream(file);
+            try {
+                if (url.endsWith(".Z")) {
+                    is = new UncompressInputStream(is);
+                } else if (url.endsWith(".gz")) {
+                    is = new GZIPInputStream(is);
+                }
+                String line = new BufferedReader(new InputStreamReader(is, StandardCharsets.US_ASCII)).readLine();
+                if (line == null || !line.contains("RINEX VERSION / TYPE")) {
+                    throw new IOException("No RINEX header in " + url);
+                }
+            } finally {
+                is.close();
+            }
+        }
+    };
+
+    /**
+     * Moves the winning download to its place
+     */
+    public interface Installer {
+        /**
+         * @param url     where the download comes from
+         * @param partial the validated download
+         * @param file    its name in the directory
+         * @throws IOException when it cannot be installed; the next mirror is tried
+         */
+        void install(String url, File partial, File file) throws IOException;
+    }
+
+    /**
+     * Renames the download over the file
+     */
+    public static final Installer RENAME = new Installer() {
+        @Override
+        public void install(String url, File partial, File file) throws IOException {
+            if (!partial.renameTo(file)) {
+                throw new IOException("Cannot rename " + partial + " to " + file);
+            }
+        }
+    };
+
+    public static final long DEFAULT_HEDGE_DELAY_MILLIS = 5000;
+    public static final long MIN_HEDGE_DELAY_MILLIS = 200;
+    public static final double HEDGE_PERCENTILE = 0.9;
+
+    private static final String TAG = "MirrorFetcher";
+
+    private final ProductTransport transport;
+    private final Validator validator;
+    private final long defaultHedgeDelayMillis;
+    private final int maxParallel;
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<String, MirrorStats> stats = new ConcurrentHashMap<>();
+
+    public MirrorFetcher(ProductTransport transport) {
+        this(transport, RINEX_HEADER, DEFAULT_HEDGE_DELAY_MILLIS, 2);
+    }
+
+    /**
+     * @param defaultHedgeDelayMillis hedge delay of a mirror without download history
+     * @param maxParallel             downloads of the same product running at once, 1 disables hedging
+     */
+    public MirrorFetcher(ProductTransport transport, Validator validator, long defaultHedgeDelayMillis, int maxParallel) {
+        if (defaultHedgeDelayMillis <= 0 || maxParallel < 1) {
+            throw new IllegalArgumentException("Invalid hedging: " + defaultHedgeDelayMillis + " ms, " + maxParallel + " parallel");
+        }
+        this.transport = transport;
+        this.validator = validator;
+        this.defaultHedgeDelayMillis = defaultHedgeDelayMillis;
+        this.maxParallel = maxParallel;
+        this.executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Downloads the first valid copy of the product.
+     *
+     * @param urls         the same product on every mirror, in the preferred order
+     * @param directory    folder of the result, also holding the partial downloads
+     * @param cancellation cancels every attempt
+     * @return the file, in {@code directory} under the name of the winning URL
+     * @throws FileNotFoundException when no mirror has the file
+     * @throws IOException           the last failure when every mirror failed
+     */
+    public File fetch(List<String> urls, File directory, Cancellation cancellation) throws IOException {
+        return fetch(urls, directory, cancellation, RENAME);
+    }
+
+    /**
+     * Downloads the first valid copy of the product and installs it with {@code installer},
+     * e.g. to rename it and index it at once.
+     *
+     * @see #fetch(List, File, Cancellation)
+     */
+    public File fetch(List<String> urls, File directory, Cancellation cancellation, Installer installer)
+            throws IOException {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("No mirror");
+        }
+        List<String> ordered = order(urls);
+        BlockingQueue<Attempt> done = new LinkedBlockingQueue<>();
+        List<Attempt> running = new ArrayList<>();
+        IOException failure = null;
+        boolean notFound = true;
+        int next = 0;
+        try {
+            while (true) {
+                if (running.isEmpty() && next == ordered.size()) {
+                    if (notFound) {
+                        FileNotFoundException e = new FileNotFoundException("No mirror has " + ordered.get(0));
+                        e.initCause(failure);
+                        throw e;
+                    }
+                    throw failure;
+                }
+                if (running.isEmpty() || running.size() < maxParallel && next < ordered.size()
+                        && running.get(running.size() - 1).hedgeAt <= System.nanoTime()) {
+                    running.add(start(ordered.get(next++), directory, cancellation, done));
+                    continue;
+                }
+                Attempt attempt;
+                if (running.size() < maxParallel && next < ordered.size()) {
+                    long wait = running.get(running.size() - 1).hedgeAt - System.nanoTime();
+                    attempt = done.poll(Math.max(0, wait), TimeUnit.NANOSECONDS);
+                    if (attempt == null) {
+                        continue;
+                    }
+                } else {
+                    attempt = done.take();
+                }
+                running.remove(attempt);
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - attempt.started);
+                IOException error = attempt.failure;
+                if (error == null) {
+                    try {
+                        validator.validate(attempt.url, attempt.partial);
+                    } catch (IOException e) {
+                        error = e;
+                        // complete but unusable: nothing to resume
+                        attempt.partial.delete();
+                    }
+                }
+                if (error == null) {
+                    File file = new File(directory, fileName(attempt.url));
+                    try {
+                        installer.install(attempt.url, attempt.partial, file);
+                    } catch (IOException e) {
+                        error = e;
+                    }
+                    if (error == null) {
+                        statsOf(attempt.url).recordSuccess(millis);
+                        if (!running.isEmpty()) {
+                            GnssLog.i(TAG, attempt.url + " won after " + millis + " ms");
+                        }
+                        return file;
+                    }
+                }
+                if (cancellation.isCancelled()) {
+                    throw new InterruptedIOException("Download of " + attempt.url + " cancelled");
+                }
+                statsOf(attempt.url).recordFailure();
+                if (!(error instanceof FileNotFoundException)) {
+                    notFound = false;
+                    GnssLog.w(TAG, "Download of " + attempt.url + " failed: " + error);
+                }
+                failure = error;
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted");
+        } finally {
+            // losers and abandoned attempts
+            for (Attempt attempt : running) {
+                statsOf(attempt.url).recordCancelled(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - attempt.started));
+                attempt.cancellation.cancel();
+            }
+        }
+    }
+
+    /**
+     * @return statistics of every mirror used so far
+     */
+    public List<MirrorStats> getStats() {
+        return new ArrayList<>(stats.values());
+    }
+
+    /**
+     * @return the URLs, best mirror first; mirrors of equal score keep their order
+     */
+    List<String> order(List<String> urls) {
+        List<String> ordered = new ArrayList<>(urls);
+        Collections.sort(ordered, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return Double.compare(statsOf(a).score(defaultHedgeDelayMillis), statsOf(b).score(defaultHedgeDelayMillis));
+            }
+        });
+        return ordered;
+    }
+
+    /**
+     * @return time to wait for the mirror of {@code url} before hedging [ms]
+     */
+    long hedgeDelay(String url) {
+        long percentile = statsOf(url).latencyPercentile(HEDGE_PERCENTILE);
+        return percentile < 0 ? defaultHedgeDelayMillis : Math.max(MIN_HEDGE_DELAY_MILLIS, percentile);
+    }
+
+    /**
+     * Stops the download threads; downloads in progress end with their cancellation.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private Attempt start(String url, File directory, final Cancellation parent,
+                          final BlockingQueue<Attempt> done) throws InterruptedIOException {
+        final Attempt attempt = new Attempt(url, partialFile(directory, url));
+        attempt.hedgeAt = attempt.started + TimeUnit.MILLISECONDS.toNanos(hedgeDelay(url));
+        // the attempt is cancelled with the whole fetch
+        final Closeable link = new Closeable() {
+            @Override
+            public void close() {
+                attempt.cancellation.cancel();
+            }
+        };
+        parent.register(link);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    File previous = new File(attempt.partial.getParentFile(), fileName(attempt.url));
+                    if (!attempt.partial.exists() && previous.isFile()) {
+                        seed(previous, attempt.partial);
+                    }
+                    transport.download(attempt.url, attempt.partial, attempt.cancellation);
+                } catch (IOException e) {
+                    attempt.failure = e;
+                } catch (RuntimeException e) {
+                    attempt.failure = new IOException("Download of " + attempt.url + " failed", e);
+                } finally {
+                    parent.unregister(link);
+                    // other failures keep what was received, the next fetch resumes from it
+                    if (attempt.failure instanceof FileNotFoundException) {
+                        attempt.partial.delete();
+                    }
+                    done.add(attempt);
+                }
+            }
+        });
+        return attempt;
+    }
+
+    /**
+     * Copies {@code previous} to {@code partial} with its modification time, which tells the
+     * transport which server version it is
+     */
+    private static void seed(File previous, File partial) throws IOException {
+        InputStream in = new FileInputStream(previous);
+        try {
+            Downloads.copy(in, partial, false, new AtomicLong());
+        } catch (IOException e) {
+            partial.delete();
+            throw e;
+        } finally {
+            in.close();
+        }
+        partial.setLastModified(previous.lastModified());
+    }
+
+    private MirrorStats statsOf(String url) {
+        String mirror = mirrorOf(url);
+        MirrorStats mirrorStats = stats.get(mirror);
+        if (mirrorStats == null) {
+            MirrorStats created = new MirrorStats(mirror);
+            mirrorStats = stats.putIfAbsent(mirror, created);
+            if (mirrorStats == null) {
+                mirrorStats = created;
+            }
+        }
+        return mirrorStats;
+    }
+
+    /**
+     * @return host and port of {@code scheme://host[:port]/path}
+     */
+    static String mirrorOf(String url) {
+        int start = url.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = url.indexOf('/', start);
+        return end < 0 ? url.substring(start) : url.substring(start, end);
+    }
+
+    /**
+     * @return where the download of {@code url} accumulates, one file per mirror
+     */
+    static File partialFile(File directory, String url) {
+        return new File(directory, fileName(url) + "@" + mirrorOf(url).replace(':', '_') + ".part");
+    }
+
+    static String fileName(String url) {
+        return url.substring(url.lastIndexOf('/') + 1);
+    }
+
+    private static final class Attempt {
+        final String url;
+        final File partial;
+        final long started = System.nanoTime();
+        final Cancellation cancellation = new Cancellation();
+        long hedgeAt;
+        volatile IOException failure;
+
+        Attempt(String url, File partial) {
+            this.url = url;
+            this.partial = partial;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.gnss.ppptesttwo.download;
+
+import java.util.Arrays;
+
+/**
+ * Download history of one mirror (a server), used by {@link MirrorFetcher} to order the
+ * mirrors and to choose when to hedge.
+ */
+public final class MirrorStats {
+
+    private static final int SAMPLES = 16;
+    private static final double FAILURE_WEIGHT = 0.3;
+
+    private final String mirror;
+    private final long[] latencies = new long[SAMPLES];
+    private int samples;
+    private int next;
+    private int successes;
+    private int failures;
+    private int cancellations;
+    private double failureRate;
+
+    MirrorStats(String mirror) {
+        this.mirror = mirror;
+    }
+
+    /**
+     * @return host (and port) of the mirror
+     */
+    public String getMirror() {
+        return mirror;
+    }
+
+    public synchronized int getSuccesses() {
+        return successes;
+    }
+
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return downloads abandoned because another mirror answered first
+     */
+    public synchronized int getCancellations() {
+        return cancellations;
+    }
+
+    /**
+     * @return exponentially weighted share of recent attempts that failed, 0 to 1
+     */
+    public synchronized double getFailureRate() {
+        return failureRate;
+    }
+
+    /**
+     * @param p quantile, 0 to 1
+     * @return quantile of the recent download times [ms], -1 without any
+     */
+    public synchronized long latencyPercentile(double p) {
+        if (samples == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(samples - 1, Math.floor(p * samples))];
+    }
+
+    synchronized void recordSuccess(long millis) {
+        addLatency(millis);
+        successes++;
+        failureRate *= 1 - FAILURE_WEIGHT;
+    }
+
+    synchronized void recordFailure() {
+        failures++;
+        failureRate = failureRate * (1 - FAILURE_WEIGHT) + FAILURE_WEIGHT;
+    }
+
+    /**
+     * A cancelled download took at least {@code millis}
+     */
+    synchronized void recordCancelled(long millis) {
+        addLatency(millis);
+        cancellations++;
+    }
+
+    /**
+     * @return expected cost of trying the mirror first, lower is better
+     */
+    synchronized double score(long unknownLatencyMillis) {
+        long median = samples == 0 ? unknownLatencyMillis : latencyPercentile(0.5);
+        return median / Math.max(0.05, 1 - failureRate);
+    }
+
+    private void addLatency(long millis) {
+        latencies[next] = millis;
+        next = (next + 1) % SAMPLES;
+        samples = Math.min(samples + 1, SAMPLES);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return mirror + ": " + successes + " ok, " + failures + " failed, " + cancellations
+                + " cancelled, p50 " + latencyPercentile(0.5) + " ms, p90 " + latencyPercentile(0.9) + " ms";
+    }
+}
@@ -0,0 +1,258 @@
+package com.gnss.ppptesttwo.download;
+
+import com.gnss.ppptesttwo.GnssLog;
+import com.gnss.ppptesttwo.UrlTemplate;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps navigation products up to date from a background thread.
+ * <p>
+ * Every product added with {@link #add} is downloaded at once, then again each time its
+ * {@link ProductSchedule} publishes a new file: the download of the next slot starts as
+ * soon as the file is expected on the server, while the ephemerides already installed keep
+ * serving the positioning, so a rollover never leaves the solver without data. A failed
+ * download, including a file not published yet, is retried with a jittered exponential
+ * backoff until the file of the following slot is due.
+ * <p>
+ * A product may list several mirrors, raced by a {@link MirrorFetcher}. Files are downloaded
+ * into a {@link ProductCache}, so that a restart installs the files already downloaded, and
+ * handed to the product's {@link Installer} on the prefetch thread. A file that no mirror
+ * has is recorded in the cache for the shortest backoff, which spaces the first requests
+ * after a restart as well.
+ */
+public class NavigationPrefetcher implements Closeable {
+
+    /**
+     * Loads a downloaded file, e.g. {@code RinexNavigationGps.loadFromFile}
+     */
+    public interface Installer {
+        /**
+         * @param slot start of the refresh slot the file was published for
+         */
+        void install(File file, long slot) throws IOException;
+    }
+
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 30 * 1000L;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 10 * 60 * 1000L;
+
+    private static final String TAG = "NavigationPrefetcher";
+
+    private final MirrorFetcher fetcher;
+    private final ProductCache cache;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final ScheduledThreadPoolExecutor executor;
+    private final Random random = new Random();
+    private final Cancellation cancellation = new Cancellation();
+
+    private final AtomicLong installs = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private volatile boolean closed;
+
+    /**
+     * @param cacheDir folder of a {@link ProductCache} of {@link ProductCache#DEFAULT_MAX_BYTES}
+     */
+    public NavigationPrefetcher(ProductTransport transport, File cacheDir) {
+        this(new MirrorFetcher(transport), new ProductCache(cacheDir, ProductCache.DEFAULT_MAX_BYTES),
+                DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+    }
+
+    /**
+     * @param initialBackoffMillis delay before the first retry, doubled at each failure
+     * @param maxBackoffMillis     longest delay between two attempts
+     */
+    public NavigationPrefetcher(MirrorFetcher fetcher, ProductCache cache, long initialBackoffMillis,
+                                long maxBackoffMillis) {
+        if (initialBackoffMillis <= 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("Invalid backoff: " + initialBackoffMillis + " to " + maxBackoffMillis + " ms");
+        }
+        this.fetcher = fetcher;
+        this.cache = cache;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    /**
+     * Starts keeping the product of {@code template} up to date, on the schedule derived
+     * from the template.
+     */
+    public void add(String template, Installer installer) {
+        add(Collections.singletonList(template), installer);
+    }
+
+    public void add(String template, ProductSchedule schedule, Installer installer) {
+        add(Collections.singletonList(template), schedule, installer);
+    }
+
+    /**
+     * @param templates the same product on several mirrors, the preferred one first; the
+     *                  schedule is derived from it
+     */
+    public void add(List<String> templates, Installer installer) {
+        add(templates, ProductSchedule.fromTemplate(templates.get(0)), installer);
+    }
+
+    public void add(List<String> templates, ProductSchedule schedule, Installer installer) {
+        if (closed) {
+            throw new IllegalStateException("Prefetcher is closed");
+        }
+        Product product = new Product(new ArrayList<>(templates), schedule, installer);
+        long now = currentTimeMillis();
+        product.target = latestPublished(schedule, now);
+        executor.execute(product);
+    }
+
+    /**
+     * @return number of files installed, downloaded or from the cache
+     */
+    public long getInstalls() {
+        return installs.get();
+    }
+
+    /**
+     * @return number of failed attempts, files not yet published included
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return download statistics of the mirrors
+     */
+    public List<MirrorStats> getMirrorStats() {
+        return fetcher.getStats();
+    }
+
+    /**
+     * Stops the schedule, cancels the download in progress and saves the cache index.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        cancellation.cancel();
+        executor.shutdownNow();
+        fetcher.close();
+        cache.flush();
+    }
+
+    /**
+     * Source of the current time, UTC milliseconds
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * @return start of the newest slot whose file should be on the server at {@code now}
+     */
+    private static long latestPublished(ProductSchedule schedule, long now) {
+        long slot = schedule.slotStart(now);
+        return now < schedule.publicationTime(slot) ? slot - schedule.getRefreshMillis() : slot;
+    }
+
+    private class Product implements Runnable {
+
+        private final List<String> templates;
+        private final ProductSchedule schedule;
+        private final Installer installer;
+
+        /**
+         * Start of the slot being downloaded; only touched by the prefetch thread
+         */
+        long target;
+        private int attempts;
+
+        Product(List<String> templates, ProductSchedule schedule, Installer installer) {
+            this.templates = templates;
+            this.schedule = schedule;
+            this.installer = installer;
+        }
+
+        @Override
+        public void run() {
+            if (closed) {
+                return;
+            }
+            String url = UrlTemplate.of(templates.get(0)).format(target);
+            try {
+                install();
+                installs.incrementAndGet();
+                GnssLog.i(TAG, "Installed " + url);
+                scheduleNextSlot();
+            } catch (IOException e) {
+                failures.incrementAndGet();
+                attempts++;
+                if (e instanceof FileNotFoundException) {
+                    GnssLog.i(TAG, url + " not published yet");
+                } else {
+                    GnssLog.w(TAG, "Download of " + url + " failed", e);
+                }
+                long now = currentTimeMillis();
+                long backoff = initialBackoffMillis << Math.min(attempts - 1, 20);
+                backoff = Math.min(backoff, maxBackoffMillis);
+                backoff = backoff / 2 + (long) (random.nextDouble() * (backoff / 2));
+                if (now + backoff >= schedule.publicationTime(target + schedule.getRefreshMillis())) {
+                    scheduleNextSlot();
+                } else {
+                    schedule(backoff);
+                }
+            } catch (RuntimeException e) {
+                // a broken file must not stop the schedule
+                failures.incrementAndGet();
+                GnssLog.e(TAG, "Cannot install " + url, e);
+                scheduleNextSlot();
+            }
+        }
+
+        private void install() throws IOException {
+            File file = cache.fetch(fetcher, templates, schedule, target, initialBackoffMillis / 2, cancellation);
+            boolean installed = false;
+            try {
+                installer.install(file, target);
+                installed = true;
+            } finally {
+                if (!installed) {
+                    cache.remove(templates.get(0), schedule, target);
+                }
+            }
+        }
+
+        private void scheduleNextSlot() {
+            long now = currentTimeMillis();
+            // after a long sleep, skip the slots that are already superseded
+            target = Math.max(target + schedule.getRefreshMillis(), latestPublished(schedule, now));
+            attempts = 0;
+            schedule(Math.max(0, schedule.publicationTime(target) - now));
+        }
+
+        private void schedule(long delayMillis) {
+            try {
+                executor.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // closed
+            }
+        }
+    }
+}
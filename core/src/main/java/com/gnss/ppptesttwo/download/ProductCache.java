@@ -0,0 +1,477 @@
+package com.gnss.ppptesttwo.download;
+
+import com.gnss.ppptesttwo.GnssLog;
+import com.gnss.ppptesttwo.UrlTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Downloaded products kept on disk across restarts, within a size budget.
+ * <p>
+ * A product is named by its preferred URL template and its files are looked up by the
+ * refresh slot of its {@link ProductSchedule} holding a time. The index file of the
+ * directory records, for every file, the product, the slot and the period it covers, the
+ * URL it came from, its size, CRC-32 and last access, and the products that no mirror had,
+ * until that answer expires. The index is read when the cache is opened, so a lookup is a
+ * hash lookup, not a probe of the file system. The size of a file is checked whenever it
+ * is returned, its checksum when it is added, on its first hit after a restart and when
+ * its modification time changed. Hits only update the last access in memory: the index is written when
+ * files are added or deleted, at most every {@link #INDEX_SAVE_INTERVAL_MILLIS} otherwise,
+ * and on {@link #flush}.
+ * <p>
+ * When the files exceed the budget, the least recently used ones are deleted. The directory
+ * belongs to the cache: files it does not know are deleted when it is opened, except the
+ * partial downloads of a {@link MirrorFetcher} less than {@link #PARTIAL_MAX_AGE_MILLIS}
+ * old, which are deleted when their file is added. Use one instance per directory.
+ */
+public class ProductCache {
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Age, by server modification time, after which a partial download is not resumed
+     */
+    public static final long PARTIAL_MAX_AGE_MILLIS = ProductSchedule.WEEK_MILLIS;
+
+    /**
+     * Longest time a change of the last accesses or expired negative answers stays unsaved
+     */
+    public static final long INDEX_SAVE_INTERVAL_MILLIS = 60 * 1000L;
+
+    static final String INDEX = "products.idx";
+
+    private static final int MAGIC = 0x50434931;
+    private static final String TAG = "ProductCache";
+
+    private final File directory;
+    private final long maxBytes;
+    /**
+     * Access ordered: the first entry is the least recently used
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Long> missingUntil = new HashMap<>();
+    private long totalBytes;
+    /**
+     * Whether the index file is behind the state in memory
+     */
+    private boolean dirty;
+    private long lastSave;
+
+    /**
+     * Opens the cache of {@code directory}, created when needed. An unreadable index is
+     * logged and the cache starts empty.
+     *
+     * @param maxBytes size budget of the product files
+     */
+    public ProductCache(File directory, long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Invalid budget: " + maxBytes + " bytes");
+        }
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            GnssLog.w(TAG, "Cannot create " + directory);
+        }
+        try {
+            load();
+        } catch (IOException e) {
+            GnssLog.w(TAG, "Cannot read the index of " + directory + ", starting empty", e);
+            entries.clear();
+            missingUntil.clear();
+            totalBytes = 0;
+        }
+        removeUnknownFiles();
+        lastSave = System.currentTimeMillis();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return total size of the cached files [bytes]
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return the file of {@code product} for the refresh slot holding {@code time}, null
+     * when not cached or changed on disk
+     */
+    public synchronized File get(String product, ProductSchedule schedule, long time) {
+        String key = key(product, schedule.slotStart(time));
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        File file = new File(directory, entry.file);
+        try {
+            if (file.length() != entry.size) {
+                throw new IOException("size changed");
+            }
+            long modified = file.lastModified();
+            if (!entry.verified || modified != entry.modified) {
+                if (crc32(file) != entry.crc) {
+                    throw new IOException("checksum changed");
+                }
+                entry.verified = true;
+                entry.modified = modified;
+            }
+        } catch (IOException e) {
+            GnssLog.w(TAG, "Dropping " + file + ": " + e.getMessage());
+            remove(key);
+            save();
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        entry.lastAccess = now;
+        dirty = true;
+        saveIfDue(now);
+        return file;
+    }
+
+    /**
+     * Adds a downloaded file of the directory as the file of {@code product} for the refresh
+     * slot holding {@code time}. It replaces the entry of any earlier slot with the same file
+     * name, whose content it overwrote, and the partial downloads of that name.
+     *
+     * @param source the URL the file was downloaded from
+     */
+    public synchronized void put(String product, ProductSchedule schedule, long time, String source, File file)
+            throws IOException {
+        if (!directory.equals(file.getParentFile())) {
+            throw new IllegalArgumentException(file + " is not in " + directory);
+        }
+        long start = schedule.periodStart(time);
+        Entry entry = new Entry(product, schedule.slotStart(time), start, start + schedule.getPeriodMillis(),
+                source, file.getName(), file.length(), crc32(file), System.currentTimeMillis());
+        entry.verified = true;
+        entry.modified = file.lastModified();
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry other = it.next();
+            if (other.file.equals(entry.file)) {
+                it.remove();
+                totalBytes -= other.size;
+            }
+        }
+        String key = key(product, entry.slot);
+        remove(key);
+        entries.put(key, entry);
+        totalBytes += entry.size;
+        missingUntil.remove(key);
+        deletePartials(entry.file);
+        evict(entry);
+        save();
+    }
+
+    /**
+     * Deletes the file of {@code product} for the slot holding {@code time}, e.g. when it
+     * cannot be parsed.
+     */
+    public synchronized void remove(String product, ProductSchedule schedule, long time) {
+        if (remove(key(product, schedule.slotStart(time)))) {
+            save();
+        }
+    }
+
+    /**
+     * Records that no mirror has the file of {@code product} for the slot holding
+     * {@code time}, for {@code ttlMillis}.
+     */
+    public synchronized void putMissing(String product, ProductSchedule schedule, long time, long ttlMillis) {
+        missingUntil.put(key(product, schedule.slotStart(time)), System.currentTimeMillis() + ttlMillis);
+        save();
+    }
+
+    /**
+     * @return whether the file was missing on every mirror less than its TTL ago
+     */
+    public synchronized boolean isMissing(String product, ProductSchedule schedule, long time) {
+        String key = key(product, schedule.slotStart(time));
+        Long until = missingUntil.get(key);
+        if (until == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now < until) {
+            return true;
+        }
+        missingUntil.remove(key);
+        dirty = true;
+        saveIfDue(now);
+        return false;
+    }
+
+    /**
+     * Writes the last accesses and expired negative answers not saved yet, e.g. when the
+     * app stops
+     */
+    public synchronized void flush() {
+        if (dirty) {
+            save();
+        }
+    }
+
+    /**
+     * Returns the cached file of the slot holding {@code time}, else downloads it with
+     * {@code fetcher} from the templates rendered at the start of the slot and adds it.
+     *
+     * @param templates        the product on every mirror, the preferred one naming the product
+     * @param missingTtlMillis how long a file that no mirror has is not asked for again
+     * @throws FileNotFoundException when no mirror has the file, now or less than the TTL ago
+     */
+    public File fetch(MirrorFetcher fetcher, List<String> templates, final ProductSchedule schedule, final long time,
+                      long missingTtlMillis, Cancellation cancellation) throws IOException {
+        final String product = templates.get(0);
+        File file = get(product, schedule, time);
+        if (file != null) {
+            return file;
+        }
+        long slot = schedule.slotStart(time);
+        if (isMissing(product, schedule, time)) {
+            throw new FileNotFoundException("No mirror had " + UrlTemplate.of(product).format(slot) + " recently");
+        }
+        List<String> urls = new ArrayList<>(templates.size());
+        for (String template : templates) {
+            urls.add(UrlTemplate.of(template).format(slot));
+        }
+        try {
+            file = fetcher.fetch(urls, directory, cancellation, new MirrorFetcher.Installer() {
+                @Override
+                public void install(String url, File partial, File file) throws IOException {
+                    // under the lock of get(): an entry of an earlier slot with the same file
+                    // name would see the new content as a changed file and delete it
+                    synchronized (ProductCache.this) {
+                        MirrorFetcher.RENAME.install(url, partial, file);
+                        put(product, schedule, time, url, file);
+                    }
+                }
+            });
+        } catch (FileNotFoundException e) {
+            putMissing(product, schedule, time, missingTtlMillis);
+            throw e;
+        }
+        return file;
+    }
+
+    private boolean remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            return false;
+        }
+        totalBytes -= entry.size;
+        File file = new File(directory, entry.file);
+        if (file.exists() && !file.delete()) {
+            GnssLog.w(TAG, "Cannot delete " + file);
+        }
+        return true;
+    }
+
+    /**
+     * Deletes the least recently used files until the budget is met, never {@code keep}.
+     */
+    private void evict(Entry keep) {
+        for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+             totalBytes > maxBytes && it.hasNext(); ) {
+            Entry eldest = it.next().getValue();
+            if (eldest == keep) {
+                continue;
+            }
+            it.remove();
+            totalBytes -= eldest.size;
+            GnssLog.i(TAG, "Evicting " + eldest.file + " of " + eldest.source);
+            if (!new File(directory, eldest.file).delete()) {
+                GnssLog.w(TAG, "Cannot delete " + eldest.file);
+            }
+        }
+    }
+
+    private void deletePartials(String fileName) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(fileName + "@") && name.endsWith(".part")) {
+                file.delete();
+            }
+        }
+    }
+
+    private void removeUnknownFiles() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Set<String> known = new HashSet<>();
+        known.add(INDEX);
+        known.add(INDEX + ".tmp");
+        for (Entry entry : entries.values()) {
+            known.add(entry.file);
+        }
+        long oldestPartial = System.currentTimeMillis() - PARTIAL_MAX_AGE_MILLIS;
+        for (File file : files) {
+            String name = file.getName();
+            if (known.contains(name) || file.isDirectory()
+                    || name.endsWith(".part") && file.lastModified() >= oldestPartial) {
+                continue;
+            }
+            if (!file.delete()) {
+                GnssLog.w(TAG, "Cannot delete " + file);
+            }
+        }
+    }
+
+    private void load() throws IOException {
+        File index = new File(directory, INDEX);
+        if (!index.exists()) {
+            return;
+        }
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a product index");
+            }
+            // least recently used first, as written
+            for (int i = in.readInt(); i > 0; i--) {
+                Entry entry = new Entry(in.readUTF(), in.readLong(), in.readLong(), in.readLong(), in.readUTF(),
+                        in.readUTF(), in.readLong(), in.readLong(), in.readLong());
+                if (new File(directory, entry.file).length() == entry.size) {
+                    entries.put(key(entry.product, entry.slot), entry);
+                    totalBytes += entry.size;
+                }
+            }
+            long now = System.currentTimeMillis();
+            for (int i = in.readInt(); i > 0; i--) {
+                String key = in.readUTF();
+                long until = in.readLong();
+                if (until > now) {
+                    missingUntil.put(key, until);
+                }
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void saveIfDue(long now) {
+        if (dirty && now - lastSave >= INDEX_SAVE_INTERVAL_MILLIS) {
+            save();
+        }
+    }
+
+    /**
+     * Writes the index next to the current one and renames it over, so that a crash leaves
+     * either index whole.
+     */
+    private void save() {
+        lastSave = System.currentTimeMillis();
+        dirty = false;
+        File tmp = new File(directory, INDEX + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(entries.size());
+                for (Entry entry : entries.values()) {
+                    out.writeUTF(entry.product);
+                    out.writeLong(entry.slot);
+                    out.writeLong(entry.start);
+                    out.writeLong(entry.end);
+                    out.writeUTF(entry.source);
+                    out.writeUTF(entry.file);
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.crc);
+                    out.writeLong(entry.lastAccess);
+                }
+                out.writeInt(missingUntil.size());
+                for (Map.Entry<String, Long> missing : missingUntil.entrySet()) {
+                    out.writeUTF(missing.getKey());
+                    out.writeLong(missing.getValue());
+                }
+            } finally {
+                out.close();
+            }
+            if (!tmp.renameTo(new File(directory, INDEX))) {
+                throw new IOException("Cannot rename " + tmp);
+            }
+        } catch (IOException e) {
+            GnssLog.w(TAG, "Cannot write the index of " + directory, e);
+        }
+    }
+
+    private static String key(String product, long slot) {
+        return slot + " " + product;
+    }
+
+    private static long crc32(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                crc.update(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return crc.getValue();
+    }
+
+    private static final class Entry {
+        final String product;
+        /**
+         * Start of the refresh slot the file was downloaded for
+         */
+        final long slot;
+        /**
+         * Time covered by the file name
+         */
+        final long start;
+        final long end;
+        final String source;
+        final String file;
+        final long size;
+        final long crc;
+        long lastAccess;
+        /**
+         * Whether the checksum was checked in this process, and the modification time then
+         */
+        boolean verified;
+        long modified;
+
+        Entry(String product, long slot, long start, long end, String source, String file, long size, long crc,
+              long lastAccess) {
+            this.product = product;
+            this.slot = slot;
+            this.start = start;
+            this.end = end;
+            this.source = source;
+            this.file = file;
+            this.size = size;
+            this.crc = crc;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
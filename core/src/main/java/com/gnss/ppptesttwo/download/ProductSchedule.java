@@ -0,0 +1,97 @@
+package com.gnss.ppptesttwo.download;
+
+import com.gnss.ppptesttwo.Constants;
+import com.gnss.ppptesttwo.UrlTemplate;
+
+/**
+ * When the files of a navigation product appear on the server, derived from the fields of
+ * its URL template (see {@link UrlTemplate}).
+ * <p>
+ * The <em>period</em> is the time covered by one file name: an hour for {@code ${hh}} or
+ * {@code ${h}}, two hours for {@code ${hh4}}, a day for {@code ${ddd}} or {@code ${d}}, a
+ * week for {@code ${wwww}} alone. The <em>refresh</em> is how often the content changes:
+ * the files of an {@code /hourly/} directory with a daily name, like the CDDIS
+ * {@code hour${ddd}0.${yy}n.Z}, are republished every hour with the new ephemerides,
+ * other files once per period. The <em>latency</em> is the delay between the start of a
+ * refresh slot and the publication of its file.
+ */
+public final class ProductSchedule {
+
+    public static final long HOUR_MILLIS = 3600 * 1000L;
+    public static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+    public static final long WEEK_MILLIS = 7 * DAY_MILLIS;
+
+    /**
+     * Publication latency of hourly slots, observed at CDDIS and BKG
+     */
+    public static final long HOURLY_LATENCY_MILLIS = 10 * 60 * 1000L;
+    public static final long DAILY_LATENCY_MILLIS = HOUR_MILLIS;
+
+    /**
+     * Slots are aligned on the GPS epoch, which starts a week
+     */
+    private static final long ORIGIN_MILLIS = Constants.UNIX_GPS_DAYS_DIFF * DAY_MILLIS;
+
+    private final long periodMillis;
+    private final long refreshMillis;
+    private final long latencyMillis;
+
+    /**
+     * @param refreshMillis must divide {@code periodMillis}
+     */
+    public ProductSchedule(long periodMillis, long refreshMillis, long latencyMillis) {
+        if (periodMillis <= 0 || refreshMillis <= 0 || periodMillis % refreshMillis != 0 || latencyMillis < 0) {
+            throw new IllegalArgumentException("Invalid schedule: period " + periodMillis
+                    + " ms, refresh " + refreshMillis + " ms, latency " + latencyMillis + " ms");
+        }
+        this.periodMillis = periodMillis;
+        this.refreshMillis = refreshMillis;
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the template has no hour, day or week field
+     */
+    public static ProductSchedule fromTemplate(String template) {
+        long period = UrlTemplate.of(template).getPeriodMillis();
+        if (period < 0) {
+            throw new IllegalArgumentException("No hour, day or week field in " + template);
+        }
+        long refresh = template.contains("/hourly/") ? HOUR_MILLIS : period;
+        return new ProductSchedule(period, refresh,
+                refresh < DAY_MILLIS ? HOURLY_LATENCY_MILLIS : DAILY_LATENCY_MILLIS);
+    }
+
+    public long getPeriodMillis() {
+        return periodMillis;
+    }
+
+    public long getRefreshMillis() {
+        return refreshMillis;
+    }
+
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * @return start of the refresh slot holding {@code unixMillis}
+     */
+    public long slotStart(long unixMillis) {
+        return Math.floorDiv(unixMillis - ORIGIN_MILLIS, refreshMillis) * refreshMillis + ORIGIN_MILLIS;
+    }
+
+    /**
+     * @return start of the period covered by the file name holding {@code unixMillis}
+     */
+    public long periodStart(long unixMillis) {
+        return Math.floorDiv(unixMillis - ORIGIN_MILLIS, periodMillis) * periodMillis + ORIGIN_MILLIS;
+    }
+
+    /**
+     * @return time at which the file of the slot starting at {@code slotStart} is published
+     */
+    public long publicationTime(long slotStart) {
+        return slotStart + latencyMillis;
+    }
+}
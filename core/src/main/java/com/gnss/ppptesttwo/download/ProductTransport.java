@@ -0,0 +1,24 @@
+package com.gnss.ppptesttwo.download;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Downloads a product file, e.g. over FTP with {@link FtpTransport}.
+ */
+public interface ProductTransport {
+
+    /**
+     * Copies the file at {@code url} to {@code destination}, as stored on the server
+     * (compressed files are not expanded). When {@code destination} already holds the start
+     * of the same version of the file, from an interrupted download, only the rest is
+     * transferred; a complete download is verified against the size given by the server.
+     *
+     * @param cancellation closes the connections of the download when cancelled, the
+     *                     download then throws {@link java.io.InterruptedIOException}
+     * @throws java.io.FileNotFoundException when the server has no such file, e.g. not published yet
+     * @throws IOException                   on any other failure; {@code destination} then holds what was
+     *                                       received, for the next attempt to resume from
+     */
+    void download(String url, File destination, Cancellation cancellation) throws IOException;
+}
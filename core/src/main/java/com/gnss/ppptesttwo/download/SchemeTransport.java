@@ -0,0 +1,37 @@
+package com.gnss.ppptesttwo.download;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Sends each URL to the transport of its scheme, so that FTP and HTTP mirrors can serve
+ * the same product.
+ */
+public class SchemeTransport implements ProductTransport {
+
+    private final ProductTransport ftp;
+    private final ProductTransport http;
+
+    public SchemeTransport() {
+        this(new FtpTransport(), new HttpTransport());
+    }
+
+    /**
+     * @param http used for both {@code http://} and {@code https://}
+     */
+    public SchemeTransport(ProductTransport ftp, ProductTransport http) {
+        this.ftp = ftp;
+        this.http = http;
+    }
+
+    @Override
+    public void download(String url, File destination, Cancellation cancellation) throws IOException {
+        if (url.startsWith("ftp://")) {
+            ftp.download(url, destination, cancellation);
+        } else if (url.startsWith("http://") || url.startsWith("https://")) {
+            http.download(url, destination, cancellation);
+        } else {
+            throw new IOException("Unsupported scheme: " + url);
+        }
+    }
+}
@@ -48,6 +48,10 @@ public class Coordinates {
 
 	private Time refTime = null;
 
+	// ECEF position the geod matrix was computed from
+	private boolean geodComputed = false;
+	private double geodX, geodY, geodZ;
+
 	protected Coordinates(){
 		ecef = new SimpleMatrix(3, 1);
 		geod = new SimpleMatrix(3, 1);
@@ -134,32 +138,20 @@ public class Coordinates {
 		double Y = this.ecef.get(1);
 		double Z = this.ecef.get(2);
 
-		//this.geod = new SimpleMatrix(3, 1);
-
-		double a = Constants.WGS84_SEMI_MAJOR_AXIS;
-		double e = Constants.WGS84_ECCENTRICITY;
-
-		// Radius computation
-		double r = Math.sqrt(Math.pow(X, 2) + Math.pow(Y, 2) + Math.pow(Z, 2));
-
-		// Geocentric longitude
-		double lamGeoc = Math.atan2(Y, X);
+		// Memoized per position: the ECEF matrix can be changed in place, so compare the inputs
+		if (geodComputed && X == geodX && Y == geodY && Z == geodZ) return;
 
-		// Geocentric latitude
-		double phiGeoc = Math.atan(Z / Math.sqrt(Math.pow(X, 2) + Math.pow(Y, 2)));
+		// Closed form conversion (Heikkinen), see Ecef#toGeodetic for the error bound
+		Geodetic g = Ecef.closedFormGeodetic(X, Y, Z);
 
-		// Computation of geodetic coordinates
-		double psi = Math.atan(Math.tan(phiGeoc) / Math.sqrt(1 - Math.pow(e, 2)));
-		double phiGeod = Math.atan((r * Math.sin(phiGeoc) + Math.pow(e, 2) * a
-				/ Math.sqrt(1 - Math.pow(e, 2)) * Math.pow(Math.sin(psi), 3))
-				/ (r * Math.cos(phiGeoc) - Math.pow(e, 2) * a * Math.pow(Math.cos(psi), 3)));
-		double lamGeod = lamGeoc;
-		double N = a / Math.sqrt(1 - Math.pow(e, 2) * Math.pow(Math.sin(phiGeod), 2));
-		double h = r * Math.cos(phiGeoc) / Math.cos(phiGeod) - N;
+		this.geod.set(0, 0, g.getLongitude());
+		this.geod.set(1, 0, g.getLatitude());
+		this.geod.set(2, 0, g.getHeight());
 
-		this.geod.set(0, 0, Math.toDegrees(lamGeod));
-		this.geod.set(1, 0, Math.toDegrees(phiGeod));
-		this.geod.set(2, 0, h);
+		geodX = X;
+		geodY = Y;
+		geodZ = Z;
+		geodComputed = true;
 	}
 
 	/*
@@ -279,6 +271,7 @@ public class Coordinates {
 		this.geod.set(1, 0, lat);
 		this.geod.set(0, 0, lon);
 		this.geod.set(2, 0, alt);
+		this.geodComputed = false;
 	}
 	public void setPlusXYZ(SimpleMatrix sm){
 		this.ecef.set(ecef.plus(sm));
@@ -0,0 +1,177 @@
+package com.gnss.ppptesttwo.navifromftp;
+
+import com.gnss.ppptesttwo.Constants;
+
+/**
+ * Immutable Earth-Centered, Earth-Fixed position [m], held in three primitive fields.
+ * Lightweight replacement of the {@code ecef} matrix of {@link Coordinates}.
+ */
+public final class Ecef {
+
+    private final double x;
+    private final double y;
+    private final double z;
+
+    // Reference ellipsoid, the same as Coordinates
+    static final double A = Constants.WGS84_SEMI_MAJOR_AXIS;
+    static final double E2 = Constants.WGS84_ECCENTRICITY * Constants.WGS84_ECCENTRICITY;
+    private static final double A2 = A * A;
+    private static final double B2 = A2 * (1.0 - E2);
+    private static final double E4 = E2 * E2;
+    private static final double EP2 = (A2 - B2) / B2;
+
+    /* memoized geodetic conversion, racy but idempotent */
+    private Geodetic geodetic;
+
+    public Ecef(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    public static Ecef of(Coordinates coordinates) {
+        return new Ecef(coordinates.getX(), coordinates.getY(), coordinates.getZ());
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    /**
+     * @return distance from the Earth center [m]
+     */
+    public double norm() {
+        return Math.sqrt(x * x + y * y + z * z);
+    }
+
+    public double distanceTo(double tx, double ty, double tz) {
+        double dx = tx - x;
+        double dy = ty - y;
+        double dz = tz - z;
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    public double distanceTo(Ecef other) {
+        return distanceTo(other.x, other.y, other.z);
+    }
+
+    /**
+     * Geodetic coordinates on the reference ellipsoid, computed with the closed-form method
+     * of Heikkinen [Heikkinen, "Geschlossene Formeln zur Berechnung raeumlicher geodaetischer
+     * Koordinaten aus rechtwinkligen Koordinaten", ZfV 107, 1982; see also Zhu, IEEE TAES 30(3), 1994].
+     * <p>
+     * The method is exact up to floating point rounding: against a forward conversion, the
+     * error stays below 1e-7 m in height and 1e-15 rad in latitude from 100 km below the
+     * surface up to 40000 km, which covers the receiver and the GNSS orbits (the required
+     * bound is 0.1 mm; the previous one-step formula reaches 0.3 m at GNSS altitudes).
+     * It is only undefined at the Earth center.
+     * <p>
+     * The result is memoized: an {@code Ecef} is immutable, so it is converted at most once.
+     */
+    public Geodetic toGeodetic() {
+        Geodetic g = geodetic;
+        if (g == null) {
+            g = closedFormGeodetic(x, y, z);
+            geodetic = g;
+        }
+        return g;
+    }
+
+    /**
+     * Same non-iterative algorithm as {@link Coordinates#computeGeodetic()} (geocentric latitude
+     * corrected once through the parametric latitude). Kept as the reference of the accuracy
+     * test and the benchmark; its error grows with height.
+     */
+    public Geodetic toGeodeticLegacy() {
+        double a = Constants.WGS84_SEMI_MAJOR_AXIS;
+        double e2 = Constants.WGS84_ECCENTRICITY * Constants.WGS84_ECCENTRICITY;
+
+        double p = Math.sqrt(x * x + y * y);
+        double r = Math.sqrt(p * p + z * z);
+
+        double lamGeod = Math.atan2(y, x);
+        double phiGeoc = Math.atan(z / p);
+
+        double psi = Math.atan(Math.tan(phiGeoc) / Math.sqrt(1 - e2));
+        double sinPsi = Math.sin(psi);
+        double cosPsi = Math.cos(psi);
+        double phiGeod = Math.atan((r * Math.sin(phiGeoc) + e2 * a / Math.sqrt(1 - e2) * sinPsi * sinPsi * sinPsi)
+                / (r * Math.cos(phiGeoc) - e2 * a * cosPsi * cosPsi * cosPsi));
+        double sinPhi = Math.sin(phiGeod);
+        double n = a / Math.sqrt(1 - e2 * sinPhi * sinPhi);
+        double h = r * Math.cos(phiGeoc) / Math.cos(phiGeod) - n;
+
+        return new Geodetic(Math.toDegrees(phiGeod), Math.toDegrees(lamGeod), h);
+    }
+
+    static Geodetic closedFormGeodetic(double x, double y, double z) {
+        double[] latLonHeight = new double[3];
+        toGeodetic(x, y, z, latLonHeight);
+        return new Geodetic(latLonHeight[0], latLonHeight[1], latLonHeight[2]);
+    }
+
+    /**
+     * The conversion of {@link #toGeodetic()} into a caller's array, for loops that must
+     * not allocate
+     * @param latLonHeight latitude [deg], longitude [deg] and ellipsoidal height [m]
+     */
+    public static void toGeodetic(double x, double y, double z, double[] latLonHeight) {
+        double p2 = x * x + y * y;
+        double p = Math.sqrt(p2);
+        double z2 = z * z;
+
+        double f = 54.0 * B2 * z2;
+        double g = p2 + (1.0 - E2) * z2 - E2 * (A2 - B2);
+        double c = E4 * f * p2 / (g * g * g);
+        double s = Math.cbrt(1.0 + c + Math.sqrt(c * c + 2.0 * c));
+        double k = s + 1.0 / s + 1.0;
+        double pp = f / (3.0 * k * k * g * g);
+        double q = Math.sqrt(1.0 + 2.0 * E4 * pp);
+        double r0 = -(pp * E2 * p) / (1.0 + q)
+                + Math.sqrt(Math.max(0.0, 0.5 * A2 * (1.0 + 1.0 / q) - pp * (1.0 - E2) * z2 / (q * (1.0 + q)) - 0.5 * pp * p2));
+        double t = p - E2 * r0;
+        double u = Math.sqrt(t * t + z2);
+        double v = Math.sqrt(t * t + (1.0 - E2) * z2);
+        double z0 = B2 * z / (A * v);
+
+        double h = u * (1.0 - B2 / (A * v));
+        double lat = Math.atan2(z + EP2 * z0, p);
+        double lon = Math.atan2(y, x);
+        latLonHeight[0] = Math.toDegrees(lat);
+        latLonHeight[1] = Math.toDegrees(lon);
+        latLonHeight[2] = h;
+    }
+
+    public Coordinates toCoordinates() {
+        return Coordinates.globalXYZInstance(x, y, z);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Ecef)) return false;
+        Ecef other = (Ecef) o;
+        return Double.compare(x, other.x) == 0 && Double.compare(y, other.y) == 0
+                && Double.compare(z, other.z) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        long h = Double.doubleToLongBits(x);
+        h = 31 * h + Double.doubleToLongBits(y);
+        h = 31 * h + Double.doubleToLongBits(z);
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "X:" + x + " Y:" + y + " Z:" + z;
+    }
+}
@@ -19,11 +19,11 @@
  */
 package com.gnss.ppptesttwo.navifromftp;
 
-import android.nfc.Tag;
-import android.util.Log;
-
 import com.gnss.ppptesttwo.Constants;
+import com.gnss.ppptesttwo.GnssLog;
+import com.gnss.ppptesttwo.GnssTime;
 import com.gnss.ppptesttwo.Time;
+import com.gnss.ppptesttwo.precise.SatelliteClocks;
 
 import org.ejml.simple.SimpleMatrix;
 
@@ -52,6 +52,13 @@ public abstract class EphemerisSystem {
      */
 
     public SatellitePosition computeSatPositionAndVelocities(long unixTime, double obsPseudorange,int satID, char satType, EphGps eph, double receiverClockError) {
+        return computeSatPositionAndVelocities(unixTime, obsPseudorange, satID, satType, eph, receiverClockError, null);
+    }
+
+    /**
+     * @param clocks 精密钟差，为null或不含该卫星时使用广播星历的钟差
+     */
+    public SatellitePosition computeSatPositionAndVelocities(long unixTime, double obsPseudorange,int satID, char satType, EphGps eph, double receiverClockError, SatelliteClocks clocks) {
 
 
 
@@ -60,7 +67,7 @@ public abstract class EphemerisSystem {
 //					System.out.println("### other than GLONASS data");
 
             // Compute satellite clock error
-            double satelliteClockError = computeSatelliteClockError(unixTime, eph,obsPseudorange);
+            double satelliteClockError = computeSatelliteClockError(unixTime, eph,obsPseudorange, clocks);
 
             // Compute clock corrected transmission time
             double tGPS = computeClockCorrectedTransmissionTime(unixTime, satelliteClockError,obsPseudorange);
@@ -106,7 +113,7 @@ public abstract class EphemerisSystem {
                     y1 * Math.sin(ik));
             sp.setSatelliteClockError(satelliteClockError);
 
-            Log.d(Tag, "时间戳："+unixTime+"gpstime:"+(new Time(unixTime).getGpsTime())+"卫星："+sp.getSatType()+sp.getSatID()+"坐标："+sp.getX()+"   "+sp.getY()+"   "+sp.getZ());
+            GnssLog.d(Tag, "时间戳："+unixTime+"gpstime:"+GnssTime.ofMillis(unixTime).getGpsSecondsOfWeek()+"卫星："+sp.getSatType()+sp.getSatID()+"坐标："+sp.getX()+"   "+sp.getY()+"   "+sp.getZ());
 
             // Apply the correction due to the Earth rotation during signal travel time
             SimpleMatrix R = computeEarthRotationCorrection(unixTime, receiverClockError, tGPS);
@@ -258,7 +265,7 @@ public abstract class EphemerisSystem {
 //				    System.out.println("tGPS: " + tGPS);
 
             /* Time from the ephemerides reference epoch */
-            Time reftime = new Time(eph.getWeek(), tGPS);
+            GnssTime reftime = GnssTime.ofGpsWeek(eph.getWeek(), tGPS);
             double tk2 = checkGpsTime(tGPS - toe - reftime.getLeapSeconds());
 //					System.out.println("tk2: " + tk2);
 
@@ -435,6 +442,13 @@ public abstract class EphemerisSystem {
 
 
     public SatellitePosition computeSatPositionAndVelocitiesGalileo(long unixTime, double obsPseudorange,int satID, char satType, EphGalileo eph, double receiverClockError) {
+        return computeSatPositionAndVelocitiesGalileo(unixTime, obsPseudorange, satID, satType, eph, receiverClockError, null);
+    }
+
+    /**
+     * @param clocks 精密钟差，为null或不含该卫星时使用广播星历的钟差
+     */
+    public SatellitePosition computeSatPositionAndVelocitiesGalileo(long unixTime, double obsPseudorange,int satID, char satType, EphGalileo eph, double receiverClockError, SatelliteClocks clocks) {
 
 
 
@@ -443,7 +457,7 @@ public abstract class EphemerisSystem {
 //					System.out.println("### other than GLONASS data");
 
             // Compute satellite clock error
-            double satelliteClockError = computeSatelliteClockErrorGalielo(unixTime, eph,obsPseudorange);
+            double satelliteClockError = computeSatelliteClockErrorGalielo(unixTime, eph,obsPseudorange, clocks);
 
             // Compute clock corrected transmission time
             double tGPS = computeClockCorrectedTransmissionTime(unixTime, satelliteClockError,obsPseudorange);
@@ -489,7 +503,7 @@ public abstract class EphemerisSystem {
                     y1 * Math.sin(ik));
             sp.setSatelliteClockError(satelliteClockError);
 
-            Log.d(Tag, "时间戳："+unixTime+"gpstime:"+(new Time(unixTime).getGpsTime())+"卫星：E"+sp.getSatType()+sp.getSatID()+"坐标："+sp.getX()+"   "+sp.getY()+"   "+sp.getZ());
+            GnssLog.d(Tag, "时间戳："+unixTime+"gpstime:"+GnssTime.ofMillis(unixTime).getGpsSecondsOfWeek()+"卫星：E"+sp.getSatType()+sp.getSatID()+"坐标："+sp.getX()+"   "+sp.getY()+"   "+sp.getZ());
 
             // Apply the correction due to the Earth rotation during signal travel time
             SimpleMatrix R = computeEarthRotationCorrection(unixTime, receiverClockError, tGPS);
@@ -650,7 +664,7 @@ public abstract class EphemerisSystem {
         // double rho2 = Math.pow(diff.get(0), 2) + Math.pow(diff.get(1), 2)
         // 		+ Math.pow(diff.get(2), 2);
         // double traveltime = Math.sqrt(rho2) / Constants.SPEED_OF_LIGHT;
-        double receptionTime = (new Time(unixTime)).getGpsTime();
+        double receptionTime = GnssTime.ofMillis(unixTime).getGpsSecondsOfWeek();
         double traveltime = receptionTime + receiverClockError - transmissionTime;
 
         // Compute rotation angle
@@ -683,7 +697,7 @@ public abstract class EphemerisSystem {
      */
     protected double computeClockCorrectedTransmissionTime(long unixTime, double satelliteClockError,double obsPseudorange) {
 
-        double gpsTime = (new Time(unixTime)).getGpsTime();
+        double gpsTime = GnssTime.ofMillis(unixTime).getGpsSecondsOfWeek();
 
         // Remove signal travel time from observation time
         double tRaw = (gpsTime - obsPseudorange /*this.range*/ / Constants.SPEED_OF_LIGHT);
@@ -698,11 +712,19 @@ public abstract class EphemerisSystem {
      * @return Satellite clock error
      */
     protected double computeSatelliteClockError(long unixTime, EphGps eph,double obsPseudorange) {
+        return computeSatelliteClockError(unixTime, eph, obsPseudorange, null);
+    }
+
+    /**
+     * @param clocks source of the clock bias replacing the broadcast polynomial, null for none
+     * @return Satellite clock error
+     */
+    protected double computeSatelliteClockError(long unixTime, EphGps eph,double obsPseudorange, SatelliteClocks clocks) {
 
         if (eph.getSatType() == 'R') {   // In case of GLONASS
 
             //直接将导航电文中的时间定位观测瞬间的时间。
-            double gpsTime = (new Time(unixTime)).getGpsTime();
+            double gpsTime = GnssTime.ofMillis(unixTime).getGpsSecondsOfWeek();
 //				System.out.println("gpsTime: " + gpsTime);
 //				System.out.println("obsPseudorange: " + obsPseudorange);
 
@@ -723,7 +745,7 @@ public abstract class EphemerisSystem {
 
         }
         else {        // other than GLONASS
-            double gpsTime = (new Time(unixTime)).getGpsTime();
+            double gpsTime = GnssTime.ofMillis(unixTime).getGpsSecondsOfWeek();
             // Remove signal travel time from observation time
             double tRaw = (gpsTime - obsPseudorange /*this.range*/ / Constants.SPEED_OF_LIGHT);
 
@@ -739,6 +761,12 @@ public abstract class EphemerisSystem {
             // Added by Sebastian (20.01.2018)
             double dtr = -2.0 * ((Math.sqrt(Constants.EARTH_GRAVITATIONAL_CONSTANT) * eph.getRootA()) / (Constants.SPEED_OF_LIGHT * Constants.SPEED_OF_LIGHT)) * eph.getE() * Math.sin(Ek);
 
+            //精密钟差为无电离层组合的钟差，单频时同样减去TGD
+            double bias = preciseClockBias(clocks, unixTime, eph.getSatType(), eph.getSatID(), obsPseudorange);
+            if (!Double.isNaN(bias)) {
+                return bias + dtr - eph.getTgd();
+            }
+
 
             // Clock error computation
             double dt = checkGpsTime(tRaw - eph.getToc());
@@ -753,6 +781,14 @@ public abstract class EphemerisSystem {
 
 
     protected double computeSatelliteClockErrorGalielo(long unixTime, EphGalileo eph,double obsPseudorange) {
+        return computeSatelliteClockErrorGalielo(unixTime, eph, obsPseudorange, null);
+    }
+
+    /**
+     * @param clocks source of the clock bias replacing the broadcast polynomial, null for none
+     * @return Satellite clock error
+     */
+    protected double computeSatelliteClockErrorGalielo(long unixTime, EphGalileo eph,double obsPseudorange, SatelliteClocks clocks) {
 
         if (eph.getSatType() == 'R') {   // In case of GLONASS
 
@@ -760,7 +796,7 @@ public abstract class EphemerisSystem {
 
         }
         else {        // other than GLONASS
-            double gpsTime = (new Time(unixTime)).getGpsTime();
+            double gpsTime = GnssTime.ofMillis(unixTime).getGpsSecondsOfWeek();
             // Remove signal travel time from observation time
             double tRaw = (gpsTime - obsPseudorange /*this.range*/ / Constants.SPEED_OF_LIGHT);
 
@@ -776,6 +812,12 @@ public abstract class EphemerisSystem {
             // Added by Sebastian (20.01.2018)
             double dtr = -2.0 * ((Math.sqrt(Constants.EARTH_GRAVITATIONAL_CONSTANT) * eph.getRootA()) / (Constants.SPEED_OF_LIGHT * Constants.SPEED_OF_LIGHT)) * eph.getE() * Math.sin(Ek);
 
+            //精密钟差为无电离层组合的钟差，单频时同样减去TGD
+            double bias = preciseClockBias(clocks, unixTime, eph.getSatType(), eph.getSatID(), obsPseudorange);
+            if (!Double.isNaN(bias)) {
+                return bias + dtr - eph.getTgd();
+            }
+
 
             // Clock error computation
             double dt = checkGpsTime(tRaw - eph.getToc());
@@ -787,6 +829,16 @@ public abstract class EphemerisSystem {
             return timeCorrection;
         }
     }
+    /**
+     * @return the bias of {@code clocks} at the transmission time, NaN without it
+     */
+    private static double preciseClockBias(SatelliteClocks clocks, long unixTime, char satType, int satID, double obsPseudorange) {
+        if (clocks == null) {
+            return Double.NaN;
+        }
+        return clocks.getClockBias(satType, satID, unixTime / 1000.0 - obsPseudorange / Constants.SPEED_OF_LIGHT);
+    }
+
     /**
      * @param time (GPS time in seconds)
      * @param eph
@@ -0,0 +1,50 @@
+package com.gnss.ppptesttwo.navifromftp;
+
+/**
+ * Immutable geodetic coordinates on the WGS84 ellipsoid: latitude and longitude [deg],
+ * ellipsoidal height [m].
+ */
+public final class Geodetic {
+
+    private static final double A = Ecef.A;
+    private static final double E2 = Ecef.E2;
+
+    private final double latitude;
+    private final double longitude;
+    private final double height;
+
+    public Geodetic(double latitude, double longitude, double height) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.height = height;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    /**
+     * Forward conversion on the same ellipsoid as {@link Ecef#toGeodetic()}
+     */
+    public Ecef toEcef() {
+        double phi = Math.toRadians(latitude);
+        double lam = Math.toRadians(longitude);
+        double sinPhi = Math.sin(phi);
+        double n = A / Math.sqrt(1 - E2 * sinPhi * sinPhi);
+        double p = (n + height) * Math.cos(phi);
+        return new Ecef(p * Math.cos(lam), p * Math.sin(lam), (n * (1 - E2) + height) * sinPhi);
+    }
+
+    @Override
+    public String toString() {
+        return "Lat:" + latitude + " Lon:" + longitude + " H:" + height;
+    }
+}
@@ -0,0 +1,134 @@
+package com.gnss.ppptesttwo.navifromftp;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Parsed navigation data shared between threads, one value per product and time window.
+ * <p>
+ * The first request of a window loads it on the requesting thread; concurrent requests of
+ * the same window wait for that load instead of parsing the file again, and later ones get
+ * the parsed value at once. The value is handed over through a {@link FutureTask}, so its
+ * fields are visible to every reader once it is returned. A failed load is not kept: the
+ * next request loads again.
+ * <p>
+ * Windows ending before the processing time set with {@link #setProcessingTime} are
+ * evicted at the next request, which bounds the pool to the windows still in use.
+ */
+public class NavigationPool<T> {
+
+    /**
+     * Parses the data of a window, e.g. from a file of the product cache
+     */
+    public interface Loader<T> {
+        T load() throws IOException;
+    }
+
+    private final ConcurrentHashMap<Window, FutureTask<T>> windows = new ConcurrentHashMap<>();
+    private volatile long processingTime = Long.MIN_VALUE;
+
+    /**
+     * @param start first time covered by the window, UTC milliseconds
+     * @param end   end of the window, excluded
+     * @return the value of the window, loaded by {@code loader} unless it is already loaded
+     * or being loaded
+     * @throws IOException the failure of the load, also thrown to the requests that waited for it
+     */
+    public T get(String product, long start, long end, final Loader<T> loader) throws IOException {
+        evictExpired();
+        Window window = new Window(product, start, end);
+        FutureTask<T> load = new FutureTask<>(new Callable<T>() {
+            @Override
+            public T call() throws IOException {
+                return loader.load();
+            }
+        });
+        FutureTask<T> existing = windows.putIfAbsent(window, load);
+        if (existing == null) {
+            load.run();
+            existing = load;
+        }
+        try {
+            return existing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading " + window);
+        } catch (ExecutionException e) {
+            windows.remove(window, existing);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Cannot load " + window, cause);
+        }
+    }
+
+    /**
+     * @param unixMillis time of the measurements being processed; the windows ending
+     *                   before it are no longer needed
+     */
+    public void setProcessingTime(long unixMillis) {
+        processingTime = unixMillis;
+    }
+
+    /**
+     * @return number of windows loaded or being loaded
+     */
+    public int size() {
+        return windows.size();
+    }
+
+    private void evictExpired() {
+        long time = processingTime;
+        if (time == Long.MIN_VALUE) {
+            return;
+        }
+        for (Iterator<Window> it = windows.keySet().iterator(); it.hasNext(); ) {
+            if (it.next().end <= time) {
+                it.remove();
+            }
+        }
+    }
+
+    private static final class Window {
+        final String product;
+        final long start;
+        final long end;
+
+        Window(String product, long start, long end) {
+            this.product = product;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Window)) {
+                return false;
+            }
+            Window other = (Window) o;
+            return start == other.start && end == other.end && product.equals(other.product);
+        }
+
+        @Override
+        public int hashCode() {
+            return (product.hashCode() * 31 + (int) (start ^ start >>> 32)) * 31 + (int) (end ^ end >>> 32);
+        }
+
+        @Override
+        public String toString() {
+            return product + " [" + start + ", " + end + ")";
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.gnss.ppptesttwo.navifromftp;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The navigation data in use, replaced as a whole when a file is installed.
+ * <p>
+ * Each installed file is merged with the current data into a new, complete view, which is
+ * then published with a single reference swap: readers never see a half-merged view, never
+ * wait for a merge, and keep the ephemerides of the previous file across a rollover. A
+ * reader pins the current {@link Version} once per epoch and computes every satellite of
+ * the epoch from it.
+ */
+public class NavigationStore<P> {
+
+    /**
+     * Builds the view of two sets of navigation data
+     */
+    public interface Merger<P> {
+        /**
+         * @return a new view with the data of both, {@code newer} replacing the same
+         * ephemerides of {@code current}; neither argument is modified
+         */
+        P merge(P current, P newer);
+    }
+
+    /**
+     * One published view, never modified
+     */
+    public static final class Version<P> {
+        private final long number;
+        private final P navigation;
+
+        Version(long number, P navigation) {
+            this.number = number;
+            this.navigation = navigation;
+        }
+
+        /**
+         * @return 1 for the first installed file, incremented at each install
+         */
+        public long getNumber() {
+            return number;
+        }
+
+        public P getNavigation() {
+            return navigation;
+        }
+    }
+
+    private final Merger<P> merger;
+    private final AtomicReference<Version<P>> current = new AtomicReference<>();
+
+    public NavigationStore(Merger<P> merger) {
+        this.merger = merger;
+    }
+
+    /**
+     * @return the current version, null before the first install
+     */
+    public Version<P> pin() {
+        return current.get();
+    }
+
+    /**
+     * Merges {@code navigation} into the current data and publishes the result. Installs are
+     * serialized; readers are not blocked.
+     *
+     * @param navigation parsed data, not modified afterwards
+     * @return the published version
+     */
+    public synchronized Version<P> install(P navigation) {
+        Version<P> previous = current.get();
+        Version<P> next = previous == null
+                ? new Version<>(1, navigation)
+                : new Version<>(previous.number + 1, merger.merge(previous.navigation, navigation));
+        current.set(next);
+        return next;
+    }
+}
@@ -0,0 +1,93 @@
+package com.gnss.ppptesttwo.navifromftp;
+
+/**
+ * Local East, North, Up frame at a receiver position.
+ * <p>
+ * The geodetic coordinates of the origin and the sine and cosine of its latitude and
+ * longitude are computed once, when the frame is built; converting a satellite position
+ * afterwards is a 3x3 product with no allocation. The frame is immutable and can be
+ * shared by all the satellites and corrections of an epoch, across threads.
+ */
+public final class ReceiverFrame {
+
+    private final Ecef origin;
+    private final Geodetic geodetic;
+
+    private final double sinLat;
+    private final double cosLat;
+    private final double sinLon;
+    private final double cosLon;
+
+    public ReceiverFrame(Ecef origin) {
+        this.origin = origin;
+        this.geodetic = origin.toGeodetic();
+        double phi = Math.toRadians(geodetic.getLatitude());
+        double lam = Math.toRadians(geodetic.getLongitude());
+        this.sinLat = Math.sin(phi);
+        this.cosLat = Math.cos(phi);
+        this.sinLon = Math.sin(lam);
+        this.cosLon = Math.cos(lam);
+    }
+
+    public ReceiverFrame(double x, double y, double z) {
+        this(new Ecef(x, y, z));
+    }
+
+    public static ReceiverFrame of(Coordinates coordinates) {
+        return new ReceiverFrame(Ecef.of(coordinates));
+    }
+
+    public Ecef getOrigin() {
+        return origin;
+    }
+
+    public Geodetic getGeodetic() {
+        return geodetic;
+    }
+
+    public double getLatitude() {
+        return geodetic.getLatitude();
+    }
+
+    public double getLongitude() {
+        return geodetic.getLongitude();
+    }
+
+    public double getHeight() {
+        return geodetic.getHeight();
+    }
+
+    /**
+     * Rotates an ECEF vector into the local frame
+     * @param out East, North, Up components
+     */
+    public void rotate(double dx, double dy, double dz, double[] out) {
+        out[0] = -sinLon * dx + cosLon * dy;
+        out[1] = -sinLat * cosLon * dx - sinLat * sinLon * dy + cosLat * dz;
+        out[2] = cosLat * cosLon * dx + cosLat * sinLon * dy + sinLat * dz;
+    }
+
+    /**
+     * @param out East, North, Up components of the vector from the origin to the target [m]
+     */
+    public void toEnu(double tx, double ty, double tz, double[] out) {
+        rotate(tx - origin.getX(), ty - origin.getY(), tz - origin.getZ(), out);
+    }
+
+    /**
+     * @return elevation of the target above the local horizon [deg]
+     */
+    public double elevation(double tx, double ty, double tz) {
+        double dx = tx - origin.getX();
+        double dy = ty - origin.getY();
+        double dz = tz - origin.getZ();
+        double e = -sinLon * dx + cosLon * dy;
+        double n = -sinLat * cosLon * dx - sinLat * sinLon * dy + cosLat * dz;
+        double u = cosLat * cosLon * dx + cosLat * sinLon * dy + sinLat * dz;
+        return Math.toDegrees(Math.atan2(u, Math.sqrt(e * e + n * n)));
+    }
+
+    public double elevation(Coordinates target) {
+        return elevation(target.getX(), target.getY(), target.getZ());
+    }
+}
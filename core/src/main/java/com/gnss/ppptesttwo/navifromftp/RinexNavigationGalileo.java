@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2011 Eugenio Realini, Mirko Reguzzoni, Cryms sagl - Switzerland. All Rights Reserved.
+ *
+ * This file is part of goGPS Project (goGPS).
+ *
+ * goGPS is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation, either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * goGPS is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with goGPS.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package com.gnss.ppptesttwo.navifromftp;
+
+import com.gnss.ppptesttwo.GnssLog;
+import com.gnss.ppptesttwo.download.Cancellation;
+import com.gnss.ppptesttwo.download.MirrorFetcher;
+import com.gnss.ppptesttwo.download.ProductCache;
+import com.gnss.ppptesttwo.download.ProductSchedule;
+import com.gnss.ppptesttwo.download.SchemeTransport;
+import com.gnss.ppptesttwo.precise.SatelliteClocks;
+import com.google.location.suplclient.ephemeris.EphemerisResponse;
+import com.google.location.suplclient.supl.SuplConnectionRequest;
+import com.google.location.suplclient.supl.SuplController;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.TimeZone;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * @author Lorenzo Patocchi, cryms.com
+ *
+ * This class retrieve RINEX file on-demand from known server structures
+ *
+ */
+public class RinexNavigationGalileo implements NavigationIono {
+
+    public final static String GARNER_NAVIGATION_AUTO = "ftp://garner.ucsd.edu/pub/nav/${yyyy}/${ddd}/auto${ddd}0.${yy}n.Z";
+    public final static String IGN_MULTI_NAVIGATION_DAILY = "ftp://igs.ign.fr/pub/igs/data/campaign/mgex/daily/rinex3/${yyyy}/${ddd}/brdm${ddd}0.${yy}p.Z";
+    public final static String GARNER_NAVIGATION_ZIM2 = "ftp://garner.ucsd.edu/pub/nav/${yyyy}/${ddd}/zim2${ddd}0.${yy}n.Z";
+    public final static String IGN_NAVIGATION_HOURLY_ZIM2 = "ftp://igs.ensg.ign.fr/pub/igs/data/hourly/${yyyy}/${ddd}/zim2${ddd}${h}.${yy}n.Z";
+    public final static String NASA_NAVIGATION_DAILY = "ftp://cddis.gsfc.nasa.gov/pub/gps/data/daily/${yyyy}/${ddd}/${yy}n/brdc${ddd}0.${yy}n.Z";
+    public final static String NASA_NAVIGATION_HOURLY = "ftp://cddis.gsfc.nasa.gov/pub/gps/data/hourly/${yyyy}/${ddd}/hour${ddd}0.${yy}n.Z";
+    public final static String GARNER_NAVIGATION_AUTO_HTTP = "http://garner.ucsd.edu/pub/rinex/${yyyy}/${ddd}/auto${ddd}0.${yy}n.Z"; // ex http://garner.ucsd.edu/pub/rinex/2016/034/auto0340.16n.Z
+    public final static String BKG_GALILEO_RINEX = "ftp://igs.bkg.bund.de/EUREF/BRDC/${yyyy}/${ddd}/BRDC00WRD_R_${yyyy}${ddd}0000_01D_EN.rnx.gz";
+    public final static String ESA_GALILEO_RINEX = "ftp://gssc.esa.int/gnss/data/daily/${yyyy}/${ddd}/ankr${ddd}0.${yy}l.Z";
+
+
+
+    private final static String TAG = "RinexNavigationGalileo";
+
+
+    /**
+     * How long a file that the server does not have is not asked for again
+     */
+    private static final long MISSING_TTL_MILLIS = 60 * 60 * 1000L;
+
+	/** Folder containing downloaded files, unless {@link #setCache} is called first */
+	private static final String RNP_CACHE = "./rnp-cache";
+
+    private ProductCache cache;
+    private final MirrorFetcher fetcher = new MirrorFetcher(new SchemeTransport());
+
+    private boolean waitForData = true;
+
+    /**
+     * @param args
+     */
+
+    /**
+     * Template string where to retrieve files on the net
+     */
+    private String urltemplate;
+    /**
+     * Parsed files by product and refresh slot
+     */
+    private final NavigationPool<RinexNavigationParserGalileo> pool = new NavigationPool<>();
+
+    /**
+     * Precise clocks replacing the broadcast ones, set from another thread
+     */
+    private volatile SatelliteClocks satelliteClocks;
+
+
+
+	
+	/** Merged ephemerides of the loaded files, replaced from the download thread while the measurement thread reads them */
+	private final NavigationStore<RinexNavigationParserGalileo> store = new NavigationStore<>(
+			new NavigationStore.Merger<RinexNavigationParserGalileo>() {
+				@Override
+				public RinexNavigationParserGalileo merge(RinexNavigationParserGalileo current, RinexNavigationParserGalileo newer) {
+					return RinexNavigationParserGalileo.merge(current, newer);
+				}
+			});
+	
+	public BroadcastGGTO getRnpGgto(){
+		return pin().ggto;
+	}
+
+	
+
+
+    /**
+     * Loads the current file of {@code urltemplate} from the cache, downloading it first
+     * when it is not there.
+     *
+     * @throws FileNotFoundException when the server does not have the file, now or less
+     *                               than an hour ago
+     */
+    public  RinexNavigationParserGalileo getFromFTP(String urltemplate) throws IOException {
+
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+
+        final long now = System.currentTimeMillis();
+        this.urltemplate = urltemplate;
+
+        final String template = urltemplate;
+        final ProductSchedule schedule = ProductSchedule.fromTemplate(urltemplate);
+        long slot = schedule.slotStart(now);
+        // concurrent requests of the slot share one download and parse
+        pool.get(urltemplate, slot, slot + schedule.getRefreshMillis(), installing(new NavigationPool.Loader<RinexNavigationParserGalileo>() {
+            @Override
+            public RinexNavigationParserGalileo load() throws IOException {
+                ProductCache cache = cache();
+                File rnf = cache.fetch(fetcher, Collections.singletonList(template), schedule, now,
+                        MISSING_TTL_MILLIS, new Cancellation());
+                boolean loaded = false;
+                try {
+                    RinexNavigationParserGalileo parsed = parse(rnf);
+                    loaded = true;
+                    GnssLog.i(TAG, "getFromFTP: loaded Galileo data from " + rnf);
+                    return parsed;
+                } finally {
+                    // an unreadable file is downloaded again next time
+                    if (!loaded) {
+                        cache.remove(template, schedule, now);
+                    }
+                }
+            }
+        }));
+        return pin();
+    }
+
+    /**
+     * @param cache where {@link #getFromFTP} keeps the downloaded files
+     */
+    public synchronized void setCache(ProductCache cache) {
+        this.cache = cache;
+    }
+
+    private synchronized ProductCache cache() {
+        if (cache == null) {
+            cache = new ProductCache(new File(RNP_CACHE), ProductCache.DEFAULT_MAX_BYTES);
+        }
+        return cache;
+    }
+
+
+
+    @Override
+    public IonoGps getIonoGps() {
+        return null;
+    }
+
+    @Override
+    public IonoGalileo getIonoGalileo() {
+        RinexNavigationParserGalileo rnp = pin();
+        return rnp == null ? null : rnp.getIonoGalileo();
+    }
+
+    /**
+     * Loads a navigation file already on disk (plain, .Z or .gz) without any network access,
+     * e.g. a file of the cache when replaying recorded measurements.
+     */
+    public void loadFromFile(File file) throws IOException {
+        store.install(parse(file));
+    }
+
+    /**
+     * Loads the file of the {@code slot} of {@code product} already downloaded, e.g. by a
+     * {@link com.gnss.ppptesttwo.download.NavigationPrefetcher}. The file shares the pool
+     * window of {@link #getFromFTP}: a slot is parsed and installed once, whichever asks first.
+     *
+     * @param product template the file was downloaded from, as given to {@link #getFromFTP}
+     * @param slot    start of the refresh slot of the file
+     */
+    public void loadFromFile(String product, long slot, final File file) throws IOException {
+        ProductSchedule schedule = ProductSchedule.fromTemplate(product);
+        pool.get(product, slot, slot + schedule.getRefreshMillis(), installing(new NavigationPool.Loader<RinexNavigationParserGalileo>() {
+            @Override
+            public RinexNavigationParserGalileo load() throws IOException {
+                return parse(file);
+            }
+        }));
+    }
+
+    /**
+     * Installs what {@code loader} parses: only the request that loads a pool window
+     * installs it, the requests served by the pool find it installed already
+     */
+    private NavigationPool.Loader<RinexNavigationParserGalileo> installing(final NavigationPool.Loader<RinexNavigationParserGalileo> loader) {
+        return new NavigationPool.Loader<RinexNavigationParserGalileo>() {
+            @Override
+            public RinexNavigationParserGalileo load() throws IOException {
+                RinexNavigationParserGalileo rnp = loader.load();
+                store.install(rnp);
+                return rnp;
+            }
+        };
+    }
+
+    /**
+     * Installs the ephemerides of a SUPL assistance response, merged with the loaded files
+     * like any other navigation data; the RINEX files loaded later replace and extend them.
+     *
+     * @return the number of ephemerides installed
+     */
+    public int loadFromSupl(EphemerisResponse response) {
+        RinexNavigationParserGalileo rnp = new RinexNavigationParserGalileo(response);
+        if (rnp.getEphSize() > 0) {
+            store.install(rnp);
+        }
+        return rnp.getEphSize();
+    }
+
+    private static RinexNavigationParserGalileo parse(File file) throws IOException {
+        InputStream is = new FileInputStream(file);
+        try {
+            if (file.getName().endsWith(".Z")) {
+                is = new UncompressInputStream(is);
+            } else if (file.getName().endsWith(".gz")) {
+                is = new GZIPInputStream(is);
+            }
+            RinexNavigationParserGalileo rnp = new RinexNavigationParserGalileo(is, null);
+            rnp.init();
+            return rnp;
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * @return the navigation data to compute every satellite of an epoch from, whatever is
+     * loaded meanwhile; null before the first file is loaded
+     */
+    public RinexNavigationParserGalileo pin() {
+        NavigationStore.Version<RinexNavigationParserGalileo> version = store.pin();
+        return version == null ? null : version.getNavigation();
+    }
+
+    /**
+     * {@link #pin()} for the epoch of {@code unixTime}: the pool windows ending before it
+     * are released at the next load
+     */
+    public RinexNavigationParserGalileo pin(long unixTime) {
+        pool.setProcessingTime(unixTime);
+        return pin();
+    }
+
+    public SatellitePosition getSatPositionAndVelocities(long unixTime, double range, int satID, char satType, double receiverClockError) {
+        return getSatPositionAndVelocities(pin(), unixTime, range, satID, satType, receiverClockError);
+    }
+
+    /**
+     * @param satelliteClocks precise clocks used instead of the broadcast clock polynomials
+     *                        for the satellites and times they cover, null for broadcast only
+     */
+    public void setSatelliteClocks(SatelliteClocks satelliteClocks) {
+        this.satelliteClocks = satelliteClocks;
+    }
+
+    /**
+     * @param rnp the data pinned for the epoch, see {@link #pin(long)}
+     */
+    public SatellitePosition getSatPositionAndVelocities(RinexNavigationParserGalileo rnp, long unixTime, double range, int satID, char satType, double receiverClockError) {
+
+        //long unixTime = obs.getRefTime().getMsec();
+        //double range = obs.getSatByIDType(satID, satType).getPseudorange(0);
+
+        if (rnp != null) {
+            if (rnp.isTimestampInEpocsRange(unixTime, satID, satType)) {
+                return rnp.getSatPositionAndVelocities(unixTime,range , satID, satType, receiverClockError, satelliteClocks);
+            } else {
+                return null;
+            }
+        }
+
+        return null;
+    }
+
+}
@@ -1,9 +1,8 @@
 package com.gnss.ppptesttwo.navifromftp;
 
-import android.location.Location;
-import android.util.Log;
-
+import com.gnss.ppptesttwo.GnssLog;
 import com.gnss.ppptesttwo.Time;
+import com.gnss.ppptesttwo.precise.SatelliteClocks;
 import com.google.location.suplclient.ephemeris.EphemerisResponse;
 import com.google.location.suplclient.ephemeris.GalEphemeris;
 import com.google.location.suplclient.ephemeris.GnssEphemeris;
@@ -19,6 +18,11 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 
 
 /**
@@ -47,7 +51,16 @@ public class RinexNavigationParserGalileo extends EphemerisSystem implements Nav
 
     public BroadcastGGTO ggto;
 
+    /**
+     * Ephemerides kept from the older file when merging, before the newest reference time
+     */
+    public static final long MERGE_RETENTION_MILLIS = 24 * 3600 * 1000L;
+
     private ArrayList<EphGalileo> eph = new ArrayList<EphGalileo>(); /* GPS broadcast ephemerides */
+    /**
+     * Built on first use; the ephemerides are not modified once the parser is shared
+     */
+    private volatile Index index;
     //private double[] iono = new double[8]; /* Ionosphere model parameters */
     private IonoGalileo iono = null; /* Ionosphere model parameters */
     //	private double A0; /* Delta-UTC parameters: A0 */
@@ -68,7 +81,7 @@ public class RinexNavigationParserGalileo extends EphemerisSystem implements Nav
         if (cache != null) {
             File path = cache.getParentFile();
             if (!path.exists()) {
-                Log.i("RinexNavigationParserGps", "RinexNavigationParserGps: " + path.mkdirs());
+                GnssLog.i("RinexNavigationParserGps", "RinexNavigationParserGps: " + path.mkdirs());
                 path.mkdirs();
             }
             ;
@@ -885,37 +898,11 @@ public class RinexNavigationParserGalileo extends EphemerisSystem implements Nav
      */
     public EphGalileo findEph(long unixTime, int satID, char satType) {
 
-        long dt = 0;
-        long dtMin = 0;
-        long dtMax = 0;
-        long delta = 0;
-        EphGalileo refEph = null;
-
-        //long gpsTime = (new Time(unixTime)).getGpsTime();
-
-        for (int i = 0; i < eph.size(); i++) {
-            // Find ephemeris sets for given satellite
-            if (eph.get(i).getSatID() == satID && eph.get(i).getSatType() == satType) {
-                // Consider BeiDou time (BDT) for BeiDou satellites (14 sec difference wrt GPS time)
-                if (satType == 'C') {
-                    delta = 14000;
-                    unixTime = unixTime - delta;
-                }
-                // Compare current time and ephemeris reference time
-                dt = Math.abs(eph.get(i).getRefTime().getMsec() - unixTime /*getGpsTime() - gpsTime*/) / 1000;
-
-
-                System.out.println("E"+eph.get(i).getSatID()+"   "+eph.get(i).getRefTime().getMsec()+"   "+unixTime);
-                // If it's the first round, set the minimum time difference and
-                // select the first ephemeris set candidate; if the current ephemeris set
-                // is closer in time than the previous candidate, select new candidate
-                if (refEph == null || dt < dtMin) {
-                    dtMin = dt;
-                    refEph = eph.get(i);
-                }
-            }
+        // Consider BeiDou time (BDT) for BeiDou satellites (14 sec difference wrt GPS time)
+        if (satType == 'C') {
+            unixTime = unixTime - 14000;
         }
-
+        EphGalileo refEph = closest(unixTime, satID, satType);
         if (refEph == null)
             return null;
 
@@ -923,40 +910,79 @@ public class RinexNavigationParserGalileo extends EphemerisSystem implements Nav
             return EphGalileo.UnhealthyEph;
         }
 
-        //maximum allowed interval from ephemeris reference time
-        long fitInterval = refEph.getFitInt();
+        if (!isValid(refEph, unixTime)) {
+            refEph = null;
+        }
 
-        if (fitInterval != 0) {
-            dtMax = fitInterval * 3600 / 2;
-        } else {
-            switch (refEph.getSatType()) {
-                case 'R':
-                    dtMax = 950;
-                case 'J':
-                    dtMax = 3600;
-                default:
-                    dtMax = 7200;
+        return refEph;
+    }
+
+    /**
+     * @return the ephemeris set of the satellite with the reference time closest to
+     * {@code unixTime}, valid or not; null when the satellite has none
+     */
+    private EphGalileo closest(long unixTime, int satID, char satType) {
+        EphGalileo[] sets = index().satellites.get(satelliteKey(satType, satID));
+        if (sets == null)
+            return null;
+
+        // the closest reference time is on either side of the insertion point
+        int low = 0;
+        int high = sets.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sets[mid].getRefTime().getMsec() < unixTime) {
+                low = mid + 1;
+            } else {
+                high = mid;
             }
         }
-        if (dtMin > dtMax) {
-            refEph = null;
+        EphGalileo refEph = null;
+        long dtMin = 0;
+        for (int i = Math.max(0, low - 1); i <= Math.min(sets.length - 1, low); i++) {
+            long dt = Math.abs(sets[i].getRefTime().getMsec() - unixTime) / 1000;
+            if (refEph == null || dt < dtMin) {
+                dtMin = dt;
+                refEph = sets[i];
+            }
         }
-
         return refEph;
     }
 
+    private static boolean isValid(EphGalileo eph, long unixTime) {
+        return Math.abs(eph.getRefTime().getMsec() - unixTime) / 1000 <= maxAgeSeconds(eph);
+    }
+
+    /**
+     * @return maximum allowed interval from the ephemeris reference time [s]
+     */
+    private static long maxAgeSeconds(EphGalileo eph) {
+        long fitInterval = eph.getFitInt();
+        if (fitInterval != 0) {
+            return fitInterval * 3600 / 2;
+        }
+        switch (eph.getSatType()) {
+            case 'R':
+                return 950;
+            case 'J':
+                return 3600;
+            default:
+                return 7200;
+        }
+    }
     public int getEphSize() {
         return eph.size();
     }
 
     public void addEph(EphGalileo eph) {
         this.eph.add(eph);
+        index = null;
     }
 
     //	public void setIono(int i, double val){
     //		this.iono[i] = val;
     //	}
-    public IonoGps getIono(long unixTime, Location initialLocation) {
+    public IonoGps getIono(long unixTime, Coordinates initialLocation) {
         return null;
     }
 
@@ -1021,14 +1047,113 @@ public class RinexNavigationParserGalileo extends EphemerisSystem implements Nav
     //		this.leaps = leaps;
     //	}
 
-    public boolean isTimestampInEpocsRange(long unixTime) {
-        return eph.size() > 0/* &&
-				eph.get(0).getRefTime().getMsec() <= unixTime /*&&
-		unixTime <= eph.get(eph.size()-1).getRefTime().getMsec() missing interval +epochInterval*/;
+    /**
+     * @return whether an ephemeris set of the satellite is valid at {@code unixTime},
+     * healthy or not
+     */
+    public boolean isTimestampInEpocsRange(long unixTime, int satID, char satType) {
+        // Consider BeiDou time (BDT) for BeiDou satellites (14 sec difference wrt GPS time)
+        if (satType == 'C') {
+            unixTime = unixTime - 14000;
+        }
+        EphGalileo refEph = closest(unixTime, satID, satType);
+        return refEph != null && isValid(refEph, unixTime);
+    }
+
+    /**
+     * Navigation data of two files, e.g. across an hourly rollover.
+     *
+     * @return a new parser with the ephemerides of both, those of {@code newer} replacing the
+     * sets of {@code older} with the same satellite and reference time; the sets of
+     * {@code older} more than {@link #MERGE_RETENTION_MILLIS} before the newest one are
+     * dropped. The ionosphere parameters are those of {@code newer} when it has some.
+     */
+    public static RinexNavigationParserGalileo merge(RinexNavigationParserGalileo older, RinexNavigationParserGalileo newer) {
+        RinexNavigationParserGalileo merged = new RinexNavigationParserGalileo((File) null);
+        long newest = Long.MIN_VALUE;
+        for (EphGalileo set : newer.eph) {
+            if (set.getRefTime() != null) {
+                newest = Math.max(newest, set.getRefTime().getMsec());
+            }
+        }
+        for (EphGalileo set : older.eph) {
+            if (set.getRefTime() != null) {
+                newest = Math.max(newest, set.getRefTime().getMsec());
+            }
+        }
+        HashSet<String> replaced = new HashSet<>();
+        for (EphGalileo set : newer.eph) {
+            if (set.getRefTime() != null) {
+                merged.eph.add(set);
+                replaced.add(satelliteKey(set.getSatType(), set.getSatID()) + "@" + set.getRefTime().getMsec());
+            }
+        }
+        for (EphGalileo set : older.eph) {
+            if (set.getRefTime() != null && set.getRefTime().getMsec() >= newest - MERGE_RETENTION_MILLIS
+                    && !replaced.contains(satelliteKey(set.getSatType(), set.getSatID()) + "@" + set.getRefTime().getMsec())) {
+                merged.eph.add(set);
+            }
+        }
+        merged.iono = newer.iono != null ? newer.iono : older.iono;
+        merged.ggto = newer.ggto != null ? newer.ggto : older.ggto;
+        // built before the merged data is published
+        merged.index();
+        return merged;
+    }
+
+    private static int satelliteKey(char satType, int satID) {
+        return satType << 16 | satID;
+    }
+
+    private Index index() {
+        Index index = this.index;
+        if (index == null) {
+            index = new Index();
+            HashMap<Integer, ArrayList<EphGalileo>> bySatellite = new HashMap<>();
+            for (EphGalileo set : eph) {
+                // a record cut short has no reference time
+                if (set.getRefTime() == null) {
+                    continue;
+                }
+                int key = satelliteKey(set.getSatType(), set.getSatID());
+                ArrayList<EphGalileo> sets = bySatellite.get(key);
+                if (sets == null) {
+                    sets = new ArrayList<>();
+                    bySatellite.put(key, sets);
+                }
+                sets.add(set);
+            }
+            for (Map.Entry<Integer, ArrayList<EphGalileo>> entry : bySatellite.entrySet()) {
+                ArrayList<EphGalileo> sets = entry.getValue();
+                Collections.sort(sets, new Comparator<EphGalileo>() {
+                    @Override
+                    public int compare(EphGalileo a, EphGalileo b) {
+                        return Long.compare(a.getRefTime().getMsec(), b.getRefTime().getMsec());
+                    }
+                });
+                index.satellites.put(entry.getKey(), sets.toArray(new EphGalileo[sets.size()]));
+            }
+            this.index = index;
+        }
+        return index;
+    }
+
+    /**
+     * Ephemeris sets of each satellite sorted by reference time
+     */
+    private static final class Index {
+        final HashMap<Integer, EphGalileo[]> satellites = new HashMap<>();
     }
 
 
     public SatellitePosition getSatPositionAndVelocities(long unixTime, double range, int satID, char satType, double receiverClockError) {
+        return getSatPositionAndVelocities(unixTime, range, satID, satType, receiverClockError, null);
+    }
+
+    /**
+     * @param clocks 精密钟差，为null时使用广播星历的钟差
+     */
+    public SatellitePosition getSatPositionAndVelocities(long unixTime, double range, int satID, char satType, double receiverClockError, SatelliteClocks clocks) {
         //long unixTime = obs.getRefTime().getMsec();
         //double range = obs.getSatByIDType(satID, satType).getPseudorange(0);
 
@@ -1040,13 +1165,13 @@ public class RinexNavigationParserGalileo extends EphemerisSystem implements Nav
         //return SatellitePosition.UnhealthySat;
 
         if (eph == null) {
-            Log.e(TAG, "getGalileoSatPosition: Ephemeris failed to load...");
+            GnssLog.e(TAG, "getGalileoSatPosition: Ephemeris failed to load...");
             return null;
         }
 
         //			char satType = eph.getSatType();
 
-        SatellitePosition sp = computeSatPositionAndVelocitiesGalileo(unixTime, range, satID, satType, eph, receiverClockError);
+        SatellitePosition sp = computeSatPositionAndVelocitiesGalileo(unixTime, range, satID, satType, eph, receiverClockError, clocks);
         //			SatellitePosition sp = computePositionGps(unixTime, satType, satID, eph, range, receiverClockError);
         //if(receiverPosition!=null) earthRotationCorrection(receiverPosition, sp);
 
@@ -1,9 +1,12 @@
 package com.gnss.ppptesttwo.navifromftp;
 
-import android.location.Location;
-import android.util.Log;
-
+import com.gnss.ppptesttwo.GnssLog;
 import com.gnss.ppptesttwo.Time;
+import com.gnss.ppptesttwo.precise.SatelliteClocks;
+import com.google.location.suplclient.ephemeris.EphemerisResponse;
+import com.google.location.suplclient.ephemeris.GnssEphemeris;
+import com.google.location.suplclient.ephemeris.GpsEphemeris;
+import com.google.location.suplclient.ephemeris.IonosphericModel;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -16,6 +19,11 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 
 /**
  * <p>
@@ -38,7 +46,16 @@ public class RinexNavigationParserGps extends EphemerisSystem implements Navigat
 
     private final String TAG = this.getClass().getSimpleName();
 
+    /**
+     * Ephemerides kept from the older file when merging, before the newest reference time
+     */
+    public static final long MERGE_RETENTION_MILLIS = 24 * 3600 * 1000L;
+
     private ArrayList<EphGps> eph = new ArrayList<EphGps>(); /* GPS broadcast ephemerides */
+    /**
+     * Built on first use; the ephemerides are not modified once the parser is shared
+     */
+    private volatile Index index;
     //private double[] iono = new double[8]; /* Ionosphere model parameters */
     private IonoGps iono = null; /* Ionosphere model parameters */
     //	private double A0; /* Delta-UTC parameters: A0 */
@@ -54,6 +71,29 @@ public class RinexNavigationParserGps extends EphemerisSystem implements Navigat
     }
 
 
+    /**
+     * GPS ephemerides and Klobuchar parameters of a SUPL assistance response
+     */
+    public RinexNavigationParserGps(EphemerisResponse ephResponse) {
+        for (GnssEphemeris eph : ephResponse.ephList) {
+            if (eph instanceof GpsEphemeris) {
+                this.eph.add(new EphGps((GpsEphemeris) eph));
+            }
+        }
+        IonosphericModel model = ephResponse.ionoProto;
+        if (model != null && model.alpha != null && model.beta != null) {
+            float a[] = new float[4];
+            float b[] = new float[4];
+            for (int i = 0; i < 4; i++) {
+                a[i] = (float) model.alpha[i];
+                b[i] = (float) model.beta[i];
+            }
+            iono = new IonoGps();
+            iono.setAlpha(a);
+            iono.setBeta(b);
+        }
+    }
+
     // RINEX Read constructors
     public RinexNavigationParserGps(InputStream is, File cache) {
 
@@ -61,7 +101,7 @@ public class RinexNavigationParserGps extends EphemerisSystem implements Navigat
         if (cache != null) {
             File path = cache.getParentFile();
             if (!path.exists()) {
-                Log.i("RinexNavigationParserGps", "RinexNavigationParserGps: " + path.mkdirs());
+                GnssLog.i("RinexNavigationParserGps", "RinexNavigationParserGps: " + path.mkdirs());
 
             }
             try {
@@ -1095,36 +1135,11 @@ public class RinexNavigationParserGps extends EphemerisSystem implements Navigat
      */
     public EphGps findEph(long unixTime, int satID, char satType) {
 
-        long dt = 0;
-        long dtMin = 0;
-        long dtMax = 0;
-        long delta = 0;
-        EphGps refEph = null;
-
-        //long gpsTime = (new Time(unixTime)).getGpsTime();
-
-        for (int i = 0; i < eph.size(); i++) {
-            // Find ephemeris sets for given satellite
-            if (eph.get(i).getSatID() == satID && eph.get(i).getSatType() == satType) {
-                // Consider BeiDou time (BDT) for BeiDou satellites (14 sec difference wrt GPS time)
-                if (satType == 'C') {
-                    delta = 14000;
-                    unixTime = unixTime - delta;
-                }
-                // Compare current time and ephemeris reference time
-                dt = Math.abs(eph.get(i).getRefTime().getMsec() - unixTime /*getGpsTime() - gpsTime*/) / 1000;
-
-                System.out.println("G"+eph.get(i).getSatID()+"   "+eph.get(i).getRefTime().getMsec()+"   "+unixTime);
-                // If it's the first round, set the minimum time difference and
-                // select the first ephemeris set candidate; if the current ephemeris set
-                // is closer in time than the previous candidate, select new candidate
-                if (refEph == null || dt < dtMin) {
-                    dtMin = dt;
-                    refEph = eph.get(i);
-                }
-            }
+        // Consider BeiDou time (BDT) for BeiDou satellites (14 sec difference wrt GPS time)
+        if (satType == 'C') {
+            unixTime = unixTime - 14000;
         }
-
+        EphGps refEph = closest(unixTime, satID, satType);
         if (refEph == null)
             return null;
 
@@ -1132,42 +1147,172 @@ public class RinexNavigationParserGps extends EphemerisSystem implements Navigat
             return EphGps.UnhealthyEph;
         }
 
-        //maximum allowed interval from ephemeris reference time
-        long fitInterval = refEph.getFitInt();
+        if (!isValid(refEph, unixTime)) {
+            refEph = null;
+        }
 
-        if (fitInterval != 0) {
-            dtMax = fitInterval * 3600 / 2;
-        } else {
-            switch (refEph.getSatType()) {
-                case 'R':
-                    dtMax = 950;
-                case 'J':
-                    dtMax = 3600;
-                default:
-                    dtMax = 7200;
+        return refEph;
+    }
+
+    /**
+     * @return the ephemeris set of the satellite with the reference time closest to
+     * {@code unixTime}, valid or not; null when the satellite has none
+     */
+    private EphGps closest(long unixTime, int satID, char satType) {
+        EphGps[] sets = index().satellites.get(satelliteKey(satType, satID));
+        if (sets == null)
+            return null;
+
+        // the closest reference time is on either side of the insertion point
+        int low = 0;
+        int high = sets.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sets[mid].getRefTime().getMsec() < unixTime) {
+                low = mid + 1;
+            } else {
+                high = mid;
             }
         }
-        if (dtMin > dtMax) {
-            refEph = null;
+        EphGps refEph = null;
+        long dtMin = 0;
+        for (int i = Math.max(0, low - 1); i <= Math.min(sets.length - 1, low); i++) {
+            long dt = Math.abs(sets[i].getRefTime().getMsec() - unixTime) / 1000;
+            if (refEph == null || dt < dtMin) {
+                dtMin = dt;
+                refEph = sets[i];
+            }
         }
-
         return refEph;
     }
 
+    private static boolean isValid(EphGps eph, long unixTime) {
+        return Math.abs(eph.getRefTime().getMsec() - unixTime) / 1000 <= maxAgeSeconds(eph);
+    }
+
+    /**
+     * @return maximum allowed interval from the ephemeris reference time [s]
+     */
+    private static long maxAgeSeconds(EphGps eph) {
+        long fitInterval = eph.getFitInt();
+        if (fitInterval != 0) {
+            return fitInterval * 3600 / 2;
+        }
+        switch (eph.getSatType()) {
+            case 'R':
+                return 950;
+            case 'J':
+                return 3600;
+            default:
+                return 7200;
+        }
+    }
     public int getEphSize() {
         return eph.size();
     }
 
     public void addEph(EphGps eph) {
         this.eph.add(eph);
+        index = null;
+    }
+
+
+
+    /**
+     * @return whether an ephemeris set of the satellite is valid at {@code unixTime},
+     * healthy or not
+     */
+    public boolean isTimestampInEpocsRange(long unixTime, int satID, char satType) {
+        // Consider BeiDou time (BDT) for BeiDou satellites (14 sec difference wrt GPS time)
+        if (satType == 'C') {
+            unixTime = unixTime - 14000;
+        }
+        EphGps refEph = closest(unixTime, satID, satType);
+        return refEph != null && isValid(refEph, unixTime);
+    }
+
+    /**
+     * Navigation data of two files, e.g. across an hourly rollover.
+     *
+     * @return a new parser with the ephemerides of both, those of {@code newer} replacing the
+     * sets of {@code older} with the same satellite and reference time; the sets of
+     * {@code older} more than {@link #MERGE_RETENTION_MILLIS} before the newest one are
+     * dropped. The ionosphere parameters are those of {@code newer} when it has some.
+     */
+    public static RinexNavigationParserGps merge(RinexNavigationParserGps older, RinexNavigationParserGps newer) {
+        RinexNavigationParserGps merged = new RinexNavigationParserGps((File) null);
+        long newest = Long.MIN_VALUE;
+        for (EphGps set : newer.eph) {
+            if (set.getRefTime() != null) {
+                newest = Math.max(newest, set.getRefTime().getMsec());
+            }
+        }
+        for (EphGps set : older.eph) {
+            if (set.getRefTime() != null) {
+                newest = Math.max(newest, set.getRefTime().getMsec());
+            }
+        }
+        HashSet<String> replaced = new HashSet<>();
+        for (EphGps set : newer.eph) {
+            if (set.getRefTime() != null) {
+                merged.eph.add(set);
+                replaced.add(satelliteKey(set.getSatType(), set.getSatID()) + "@" + set.getRefTime().getMsec());
+            }
+        }
+        for (EphGps set : older.eph) {
+            if (set.getRefTime() != null && set.getRefTime().getMsec() >= newest - MERGE_RETENTION_MILLIS
+                    && !replaced.contains(satelliteKey(set.getSatType(), set.getSatID()) + "@" + set.getRefTime().getMsec())) {
+                merged.eph.add(set);
+            }
+        }
+        merged.iono = newer.iono != null ? newer.iono : older.iono;
+        // built before the merged data is published
+        merged.index();
+        return merged;
     }
 
+    private static int satelliteKey(char satType, int satID) {
+        return satType << 16 | satID;
+    }
 
+    private Index index() {
+        Index index = this.index;
+        if (index == null) {
+            index = new Index();
+            HashMap<Integer, ArrayList<EphGps>> bySatellite = new HashMap<>();
+            for (EphGps set : eph) {
+                // a record cut short has no reference time
+                if (set.getRefTime() == null) {
+                    continue;
+                }
+                int key = satelliteKey(set.getSatType(), set.getSatID());
+                ArrayList<EphGps> sets = bySatellite.get(key);
+                if (sets == null) {
+                    sets = new ArrayList<>();
+                    bySatellite.put(key, sets);
+                }
+                sets.add(set);
+            }
+            for (Map.Entry<Integer, ArrayList<EphGps>> entry : bySatellite.entrySet()) {
+                ArrayList<EphGps> sets = entry.getValue();
+                Collections.sort(sets, new Comparator<EphGps>() {
+                    @Override
+                    public int compare(EphGps a, EphGps b) {
+                        return Long.compare(a.getRefTime().getMsec(), b.getRefTime().getMsec());
+                    }
+                });
+                index.satellites.put(entry.getKey(), sets.toArray(new EphGps[sets.size()]));
+            }
+            this.index = index;
+        }
+        return index;
+    }
 
-    public boolean isTimestampInEpocsRange(long unixTime) {
-        return eph.size() > 0 /*&&
-                eph.get(0).getRefTime().getMsec() <= unixTime *//*&&
-		unixTime <= eph.get(eph.size()-1).getRefTime().getMsec() missing interval +epochInterval*/;
+    /**
+     * Ephemeris sets of each satellite sorted by reference time
+     */
+    private static final class Index {
+        final HashMap<Integer, EphGps[]> satellites = new HashMap<>();
     }
 
 
@@ -1200,11 +1345,18 @@ public class RinexNavigationParserGps extends EphemerisSystem implements Navigat
      * @return
      */
     public SatellitePosition getSatPositionAndVelocities(long unixTime,double range, int satID, char satType, double receiverClockError) {
+        return getSatPositionAndVelocities(unixTime, range, satID, satType, receiverClockError, null);
+    }
+
+    /**
+     * @param clocks 精密钟差，为null时使用广播星历的钟差
+     */
+    public SatellitePosition getSatPositionAndVelocities(long unixTime, double range, int satID, char satType, double receiverClockError, SatelliteClocks clocks) {
 
         EphGps eph = findEph(unixTime, satID, satType);
 
         if (eph == null) {
-            Log.e(TAG, "getSatPositionAndVelocities: Ephemeris failed to load..." );
+            GnssLog.e(TAG, "getSatPositionAndVelocities: Ephemeris failed to load..." );
             return null;
         }
 
@@ -1213,7 +1365,7 @@ public class RinexNavigationParserGps extends EphemerisSystem implements Navigat
 
         //			char satType = eph.getSatType();
 
-        SatellitePosition sp = computeSatPositionAndVelocities(unixTime, range,satID, satType, eph, receiverClockError);
+        SatellitePosition sp = computeSatPositionAndVelocities(unixTime, range,satID, satType, eph, receiverClockError, clocks);
         //			SatellitePosition sp = computePositionGps(unixTime, satType, satID, eph, range, receiverClockError);
         //if(receiverPosition!=null) earthRotationCorrection(receiverPosition, sp);
         return sp;// new SatellitePosition(eph, unixTime, satID, range);
@@ -0,0 +1,112 @@
+package com.gnss.ppptesttwo.navifromftp;
+
+import com.gnss.ppptesttwo.GnssLog;
+import com.google.location.suplclient.ephemeris.EphemerisResponse;
+import com.google.location.suplclient.supl.SuplConnectionRequest;
+import com.google.location.suplclient.supl.SuplController;
+
+import java.io.IOException;
+
+/**
+ * Assisted GNSS: the broadcast ephemerides and Klobuchar parameters of every visible
+ * satellite from a SUPL server, a few kilobytes answered within a second or two, so that
+ * positions can be computed before the first RINEX navigation file is downloaded.
+ * <p>
+ * The ephemerides are installed into {@link RinexNavigationGps} and
+ * {@link RinexNavigationGalileo}, whose lookups serve them like those of a RINEX file. The
+ * RINEX downloads stay the source of the following hours and the fallback when the SUPL
+ * server cannot be reached.
+ */
+public class SuplNavigation {
+
+    /**
+     * One SUPL exchange
+     */
+    public interface Client {
+        /**
+         * @param latE7 approximate latitude [1e-7 degrees]
+         * @param lngE7 approximate longitude [1e-7 degrees]
+         * @return the assistance data for that position
+         * @throws IOException when the server cannot be reached or sends nothing
+         */
+        EphemerisResponse request(long latE7, long lngE7) throws IOException;
+    }
+
+    public static final String GOOGLE_SUPL_HOST = "supl.google.com";
+    public static final int GOOGLE_SUPL_PORT = 7275;
+
+    private static final String TAG = "SuplNavigation";
+
+    private final Client client;
+
+    /**
+     * Uses the Google SUPL server
+     */
+    public SuplNavigation() {
+        this(controller(GOOGLE_SUPL_HOST, GOOGLE_SUPL_PORT, true));
+    }
+
+    public SuplNavigation(Client client) {
+        this.client = client;
+    }
+
+    /**
+     * @return a client running the SUPL exchange of the bundled SUPL library with
+     * {@code host:port}
+     */
+    public static Client controller(final String host, final int port, final boolean ssl) {
+        return new Client() {
+            @Override
+            public EphemerisResponse request(long latE7, long lngE7) throws IOException {
+                SuplConnectionRequest request = SuplConnectionRequest.builder()
+                        .setServerHost(host)
+                        .setServerPort(port)
+                        .setSslEnabled(ssl)
+                        .setMessageLoggingEnabled(false)
+                        .setLoggingEnabled(false)
+                        .build();
+                SuplController controller = new SuplController(request);
+                EphemerisResponse response;
+                try {
+                    controller.sendSuplRequest(latE7, lngE7);
+                    response = controller.generateEphResponse(latE7, lngE7);
+                } catch (RuntimeException e) {
+                    throw new IOException("SUPL request to " + host + ":" + port + " failed", e);
+                }
+                if (response == null) {
+                    throw new IOException("No SUPL answer from " + host + ":" + port);
+                }
+                return response;
+            }
+        };
+    }
+
+    /**
+     * Requests the assistance data for the approximate position and installs it.
+     *
+     * @param gps     receives the GPS ephemerides and iono parameters, null when GPS is not used
+     * @param galileo receives the Galileo ephemerides, null when Galileo is not used
+     * @return the number of ephemerides installed
+     * @throws IOException when the server failed or sent no ephemeris of the systems asked for
+     */
+    public int load(double latitude, double longitude, RinexNavigationGps gps, RinexNavigationGalileo galileo) throws IOException {
+        long latE7 = Math.round(latitude * 1e7);
+        long lngE7 = Math.round(longitude * 1e7);
+        EphemerisResponse response = client.request(latE7, lngE7);
+        if (response.ephList == null) {
+            throw new IOException("SUPL answer without ephemerides");
+        }
+        int installed = 0;
+        if (gps != null) {
+            installed += gps.loadFromSupl(response);
+        }
+        if (galileo != null) {
+            installed += galileo.loadFromSupl(response);
+        }
+        if (installed == 0) {
+            throw new IOException("SUPL answer without ephemerides of the systems in use");
+        }
+        GnssLog.i(TAG, "Installed " + installed + " SUPL ephemerides");
+        return installed;
+    }
+}
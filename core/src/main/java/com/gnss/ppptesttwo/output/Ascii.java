@@ -0,0 +1,114 @@
+package com.gnss.ppptesttwo.output;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Number formatting into a {@link ByteBuffer} without intermediate strings
+ */
+final class Ascii {
+
+    private static final long[] POW10 = {1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L,
+            100000000L, 1000000000L};
+
+    private Ascii() {
+    }
+
+    static void putString(ByteBuffer out, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            out.put((byte) s.charAt(i));
+        }
+    }
+
+    static void putLong(ByteBuffer out, long value) {
+        if (value < 0) {
+            out.put((byte) '-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value / 10; v != 0; v /= 10) {
+            digits++;
+        }
+        putPadded(out, value, digits);
+    }
+
+    /**
+     * Writes the {@code width} lowest decimal digits of a non-negative value, zero padded
+     */
+    static void putPadded(ByteBuffer out, long value, int width) {
+        int position = out.position();
+        for (int i = width - 1; i >= 0; i--) {
+            out.put(position + i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        out.position(position + width);
+    }
+
+    /**
+     * Writes {@code value} with {@code decimals} digits after the point (at most 9), nothing when NaN
+     */
+    static void putFixed(ByteBuffer out, double value, int decimals) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        long scale = POW10[decimals];
+        long scaled = Math.round(Math.abs(value) * scale);
+        if (value < 0 && scaled != 0) {
+            out.put((byte) '-');
+        }
+        putLong(out, scaled / scale);
+        if (decimals > 0) {
+            out.put((byte) '.');
+            putPadded(out, scaled % scale, decimals);
+        }
+    }
+
+    static void putSpaces(ByteBuffer out, int count) {
+        for (int i = 0; i < count; i++) {
+            out.put((byte) ' ');
+        }
+    }
+
+    /**
+     * Writes {@code value} right aligned in a field of {@code width} characters, as the
+     * Fortran {@code Fw.d} descriptor; blanks when NaN or too wide
+     */
+    static void putFixedField(ByteBuffer out, double value, int width, int decimals) {
+        if (Double.isNaN(value)) {
+            putSpaces(out, width);
+            return;
+        }
+        long scale = POW10[decimals];
+        long scaled = Math.round(Math.abs(value) * scale);
+        boolean negative = value < 0 && scaled != 0;
+        int digits = 1;
+        for (long v = scaled / scale / 10; v != 0; v /= 10) {
+            digits++;
+        }
+        int length = (negative ? 1 : 0) + digits + (decimals > 0 ? decimals + 1 : 0);
+        if (length > width) {
+            putSpaces(out, width);
+            return;
+        }
+        putSpaces(out, width - length);
+        if (negative) {
+            out.put((byte) '-');
+        }
+        putPadded(out, scaled / scale, digits);
+        if (decimals > 0) {
+            out.put((byte) '.');
+            putPadded(out, scaled % scale, decimals);
+        }
+    }
+
+    /**
+     * Writes a non-negative integer right aligned in a field of {@code width} characters
+     */
+    static void putIntField(ByteBuffer out, long value, int width) {
+        int digits = 1;
+        for (long v = value / 10; v != 0; v /= 10) {
+            digits++;
+        }
+        putSpaces(out, width - digits);
+        putPadded(out, value, digits);
+    }
+}
@@ -0,0 +1,264 @@
+package com.gnss.ppptesttwo.output;
+
+import com.gnss.ppptesttwo.GnssLog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background writer of {@link AsyncSolutionWriter} and {@link RinexObservationWriter}: a
+ * preallocated ring of records filled by a single producer thread, and a writer thread
+ * that encodes them into one reused buffer and writes it in a single call (group commit)
+ * once it holds {@code flushBytes} or {@code flushIntervalMillis} has passed since its
+ * first byte. With nothing buffered the writer thread parks until a record is published
+ * or the writer is closed.
+ * <p>
+ * The producer {@link #claim}s a slot, fills it and {@link #publish}es it; a full ring, a
+ * closed or failed writer drops the record instead of blocking. Subclasses only encode:
+ * they call {@link #start} at the end of their constructor, once their own fields are set.
+ *
+ * @param <T> slot type, overwritten in place
+ */
+abstract class AsyncRingWriter<T> implements Closeable {
+
+    private final String tag;
+    private final WritableByteChannel channel;
+    private final Object[] slots;
+    private final ByteBuffer buffer;
+    private final int flushBytes;
+    private final long flushIntervalNanos;
+    private Thread thread;
+
+    /**
+     * Number of records published by the producer and consumed by the writer thread
+     */
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long flushes;
+    private volatile long wakeups;
+
+    /**
+     * Set by the writer thread while it parks without a deadline
+     */
+    private volatile boolean idle;
+    /**
+     * When the first byte now in the buffer was encoded, {@link System#nanoTime}
+     */
+    private long firstBuffered;
+
+    private volatile boolean closing;
+    private volatile IOException failure;
+
+    /**
+     * @param tag                 name of the writer thread and log tag
+     * @param capacity            number of records that can wait for the writer thread
+     * @param flushBytes          buffered bytes that trigger a write
+     * @param maxRecordSize       largest encoding of one record, headers included
+     * @param flushIntervalMillis longest time an encoded record waits before it is written
+     */
+    AsyncRingWriter(String tag, WritableByteChannel channel, int capacity, int flushBytes, int maxRecordSize,
+                    long flushIntervalMillis) {
+        if (capacity <= 0 || flushBytes <= 0 || flushIntervalMillis <= 0) {
+            throw new IllegalArgumentException("capacity, flushBytes and flushIntervalMillis must be positive");
+        }
+        this.tag = tag;
+        this.channel = channel;
+        this.slots = new Object[capacity];
+        this.flushBytes = flushBytes;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.buffer = ByteBuffer.allocate(flushBytes + maxRecordSize);
+    }
+
+    /**
+     * Allocates the slots and starts the writer thread
+     */
+    final void start() {
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = newSlot();
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, tag);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    abstract T newSlot();
+
+    /**
+     * Encodes what precedes the first record, called once by the writer thread
+     */
+    void begin(ByteBuffer buffer) {
+    }
+
+    /**
+     * @return largest number of bytes {@link #write} may put for the record
+     */
+    abstract int maxSize(T record);
+
+    abstract void write(T record, ByteBuffer buffer);
+
+    /**
+     * @return the slot to fill, null when the record is dropped: ring full, writer closed
+     * or failed
+     */
+    final T claim() {
+        if (closing || failure != null) {
+            dropped.incrementAndGet();
+            return null;
+        }
+        long p = published.get();
+        if (p - consumed.get() >= slots.length) {
+            dropped.incrementAndGet();
+            return null;
+        }
+        return slot(p);
+    }
+
+    /**
+     * Hands the slot returned by the last {@link #claim} to the writer thread
+     */
+    final void publish() {
+        long p = published.get();
+        long pending = p - consumed.get();
+        // a full fence: the writer sets idle before it checks published for the last time
+        published.set(p + 1);
+        // with buffered bytes the writer thread wakes up on its own at the flush deadline;
+        // wake it earlier only when it has nothing to time or the ring fills up
+        if (idle || pending + 1 >= slots.length / 2) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * @return records encoded by the writer thread
+     */
+    public long getWritten() {
+        return consumed.get();
+    }
+
+    /**
+     * @return records rejected by the producer calls
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return write calls made to the channel
+     */
+    public long getFlushes() {
+        return flushes;
+    }
+
+    /**
+     * @return times the writer thread was woken up
+     */
+    long getWakeups() {
+        return wakeups;
+    }
+
+    /**
+     * Writes the queued records, stops the writer thread and closes the channel
+     *
+     * @throws IOException the first write error of the writer thread, if any
+     */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        channel.close();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T slot(long index) {
+        return (T) slots[(int) (index % slots.length)];
+    }
+
+    private void writeLoop() {
+        try {
+            firstBuffered = System.nanoTime();
+            begin(buffer);
+            while (true) {
+                boolean last = closing;
+                drain();
+                long now = System.nanoTime();
+                if (last || buffer.position() >= flushBytes
+                        || (buffer.position() > 0 && now - firstBuffered >= flushIntervalNanos)) {
+                    flush();
+                }
+                if (last) {
+                    return;
+                }
+                if (buffer.position() == 0) {
+                    // nothing to time: wait for publish() or close()
+                    idle = true;
+                    if (published.get() == consumed.get() && !closing) {
+                        LockSupport.park(this);
+                    }
+                    idle = false;
+                } else {
+                    LockSupport.parkNanos(this, flushIntervalNanos - (now - firstBuffered));
+                }
+                wakeups++;
+            }
+        } catch (IOException e) {
+            GnssLog.e(tag, "writeLoop: write failed, further records are dropped", e);
+            failure = e;
+        }
+    }
+
+    /**
+     * Encodes every published record, writing the buffer out whenever it fills up
+     */
+    private void drain() throws IOException {
+        long c = consumed.get();
+        long p = published.get();
+        while (c < p) {
+            T record = slot(c);
+            if (buffer.remaining() < maxSize(record)) {
+                flush();
+            }
+            if (buffer.position() == 0) {
+                firstBuffered = System.nanoTime();
+            }
+            write(record, buffer);
+            consumed.lazySet(++c);
+        }
+    }
+
+    private void flush() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        flushes++;
+    }
+}
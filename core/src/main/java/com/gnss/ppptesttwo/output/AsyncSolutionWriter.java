@@ -0,0 +1,116 @@
+package com.gnss.ppptesttwo.output;
+
+import com.gnss.ppptesttwo.GnssTime;
+import com.gnss.ppptesttwo.adjust.NormalEquations;
+import com.gnss.ppptesttwo.adjust.PositionSolution;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes position solutions from a background thread, so that the measurement callback
+ * never waits for the file system.
+ * <p>
+ * {@link #offer} copies the solution into a preallocated ring of {@link SolutionRecord}s
+ * and returns; it never blocks and drops the solution when the ring is full. The writer
+ * thread formats the queued records into one reused buffer and writes it in a single call
+ * (group commit) once it holds {@code flushBytes} or {@code flushIntervalMillis} has
+ * passed since its first byte, which keeps the number of writes to the flash storage low
+ * during long sessions (see {@link AsyncRingWriter}). There must be a single producer thread.
+ */
+public class AsyncSolutionWriter extends AsyncRingWriter<SolutionRecord> {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_FLUSH_BYTES = 64 * 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 5000;
+
+    private static final String TAG = "AsyncSolutionWriter";
+
+    private final SolutionFormat format;
+    /**
+     * Scratch of {@link SolutionRecord#resolve}, used by the writer thread only
+     */
+    private final double[] latLonHeight = new double[3];
+    private final double[] work = new double[2 * NormalEquations.N_PARAMS];
+
+    public AsyncSolutionWriter(WritableByteChannel channel, SolutionFormat format) {
+        this(channel, format, DEFAULT_CAPACITY, DEFAULT_FLUSH_BYTES, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param capacity            number of solutions that can wait for the writer thread
+     * @param flushBytes          buffered bytes that trigger a write
+     * @param flushIntervalMillis longest time a formatted solution waits before it is written
+     */
+    public AsyncSolutionWriter(WritableByteChannel channel, SolutionFormat format, int capacity,
+                               int flushBytes, long flushIntervalMillis) {
+        super(TAG, channel, capacity, flushBytes, format.maxRecordSize(), flushIntervalMillis);
+        this.format = format;
+        start();
+    }
+
+    /**
+     * Writes to {@code file}, replacing its content
+     */
+    public static AsyncSolutionWriter open(File file, SolutionFormat format) throws IOException {
+        return new AsyncSolutionWriter(new FileOutputStream(file).getChannel(), format);
+    }
+
+    /**
+     * Queues a solution of the weighted least squares. Only its geometry is copied, the
+     * HDOP is computed by the writer thread.
+     *
+     * @return false when the solution was dropped: queue full, writer closed or failed
+     */
+    public boolean offer(GnssTime time, PositionSolution solution) {
+        SolutionRecord record = claim();
+        if (record == null) {
+            return false;
+        }
+        record.set(time.getGpsNanos(), solution.getX(), solution.getY(), solution.getZ(),
+                solution.getClockBias(), solution.getUsedSatellites(), Double.NaN);
+        record.setGeometry(solution);
+        publish();
+        return true;
+    }
+
+    /**
+     * @param gpsNanos  epoch of the solution, nanoseconds since the GPS epoch
+     * @param clockBias receiver clock bias [m]
+     * @param hdop      NaN when unknown
+     * @return false when the solution was dropped: queue full, writer closed or failed
+     */
+    public boolean offer(long gpsNanos, double x, double y, double z, double clockBias, int satellites, double hdop) {
+        SolutionRecord record = claim();
+        if (record == null) {
+            return false;
+        }
+        record.set(gpsNanos, x, y, z, clockBias, satellites, hdop);
+        publish();
+        return true;
+    }
+
+    @Override
+    SolutionRecord newSlot() {
+        return new SolutionRecord();
+    }
+
+    @Override
+    void begin(ByteBuffer buffer) {
+        format.writeHeader(buffer);
+    }
+
+    @Override
+    int maxSize(SolutionRecord record) {
+        return format.maxRecordSize();
+    }
+
+    @Override
+    void write(SolutionRecord record, ByteBuffer buffer) {
+        record.resolve(latLonHeight, work);
+        format.write(record, buffer);
+    }
+}
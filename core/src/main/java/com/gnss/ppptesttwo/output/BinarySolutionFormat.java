@@ -0,0 +1,64 @@
+package com.gnss.ppptesttwo.output;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fixed size little-endian records, for all-day logging where text is too large.
+ * <p>
+ * The file starts with the magic {@code GSOL} and an int version, then each record holds:
+ * GPS time [ns] (long), X, Y, Z [m] (doubles), clock bias [m] and HDOP (floats), number of
+ * satellites and a reserved field (shorts).
+ */
+public class BinarySolutionFormat implements SolutionFormat {
+
+    public static final int MAGIC = 0x4C4F5347; // "GSOL" in little-endian order
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 8;
+    public static final int RECORD_SIZE = 44;
+
+    @Override
+    public int maxRecordSize() {
+        return RECORD_SIZE;
+    }
+
+    @Override
+    public void writeHeader(ByteBuffer out) {
+        ByteOrder order = out.order();
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION);
+        out.order(order);
+    }
+
+    @Override
+    public void write(SolutionRecord record, ByteBuffer out) {
+        ByteOrder order = out.order();
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        out.putLong(record.getGpsNanos());
+        out.putDouble(record.getX());
+        out.putDouble(record.getY());
+        out.putDouble(record.getZ());
+        out.putFloat((float) record.getClockBias());
+        out.putFloat((float) record.getHdop());
+        out.putShort((short) record.getSatellites());
+        out.putShort((short) 0);
+        out.order(order);
+    }
+
+    /**
+     * Reads the record at the current position of {@code in}, which must be little-endian
+     */
+    public static SolutionRecord read(ByteBuffer in) {
+        SolutionRecord record = new SolutionRecord();
+        long gpsNanos = in.getLong();
+        double x = in.getDouble();
+        double y = in.getDouble();
+        double z = in.getDouble();
+        double clockBias = in.getFloat();
+        double hdop = in.getFloat();
+        int satellites = in.getShort();
+        in.getShort();
+        record.set(gpsNanos, x, y, z, clockBias, satellites, hdop);
+        return record;
+    }
+}
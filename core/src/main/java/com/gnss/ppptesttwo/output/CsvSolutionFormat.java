@@ -0,0 +1,52 @@
+package com.gnss.ppptesttwo.output;
+
+import com.gnss.ppptesttwo.GnssTime;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One line per solution: GPS week, seconds of week, ECEF position [m], latitude and
+ * longitude [deg], ellipsoidal height [m], clock bias [m], satellites and HDOP.
+ */
+public class CsvSolutionFormat implements SolutionFormat {
+
+    private static final String HEADER = "# week,seconds_of_week,x,y,z,latitude,longitude,height,clock_bias,satellites,hdop\n";
+
+    @Override
+    public int maxRecordSize() {
+        return 256;
+    }
+
+    @Override
+    public void writeHeader(ByteBuffer out) {
+        Ascii.putString(out, HEADER);
+    }
+
+    @Override
+    public void write(SolutionRecord record, ByteBuffer out) {
+        long gpsNanos = record.getGpsNanos();
+        long week = gpsNanos / GnssTime.NANOS_PER_WEEK;
+        Ascii.putLong(out, week);
+        out.put((byte) ',');
+        Ascii.putFixed(out, (gpsNanos - week * GnssTime.NANOS_PER_WEEK) * 1e-9, 3);
+        out.put((byte) ',');
+        Ascii.putFixed(out, record.getX(), 4);
+        out.put((byte) ',');
+        Ascii.putFixed(out, record.getY(), 4);
+        out.put((byte) ',');
+        Ascii.putFixed(out, record.getZ(), 4);
+        out.put((byte) ',');
+        Ascii.putFixed(out, record.getLatitude(), 9);
+        out.put((byte) ',');
+        Ascii.putFixed(out, record.getLongitude(), 9);
+        out.put((byte) ',');
+        Ascii.putFixed(out, record.getHeight(), 4);
+        out.put((byte) ',');
+        Ascii.putFixed(out, record.getClockBias(), 3);
+        out.put((byte) ',');
+        Ascii.putLong(out, record.getSatellites());
+        out.put((byte) ',');
+        Ascii.putFixed(out, record.getHdop(), 2);
+        out.put((byte) '\n');
+    }
+}
@@ -0,0 +1,111 @@
+package com.gnss.ppptesttwo.output;
+
+import com.gnss.ppptesttwo.GnssTime;
+
+import java.nio.ByteBuffer;
+
+/**
+ * NMEA 0183 GGA and RMC sentences ({@code GN} talker, multi-constellation) for every
+ * solution, as read by mapping and survey tools.
+ * <p>
+ * The GGA altitude is the ellipsoidal height and the geoid separation is left empty,
+ * there is no geoid model here. Speed and course of RMC are empty too: the solver does
+ * not estimate a velocity.
+ */
+public class NmeaSolutionFormat implements SolutionFormat {
+
+    private static final long MILLIS_PER_DAY = 86400000L;
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+    @Override
+    public int maxRecordSize() {
+        return 256;
+    }
+
+    @Override
+    public void writeHeader(ByteBuffer out) {
+    }
+
+    @Override
+    public void write(SolutionRecord record, ByteBuffer out) {
+        long utcMillis = GnssTime.ofGpsNanos(record.getGpsNanos()).toUtcMillis();
+        long days = Math.floorDiv(utcMillis, MILLIS_PER_DAY);
+        long millisOfDay = utcMillis - days * MILLIS_PER_DAY;
+
+        int start = out.position();
+        Ascii.putString(out, "$GNGGA,");
+        putTime(out, millisOfDay);
+        out.put((byte) ',');
+        putCoordinates(out, record.getLatitude(), record.getLongitude());
+        Ascii.putString(out, ",1,");
+        Ascii.putPadded(out, Math.min(record.getSatellites(), 99), 2);
+        out.put((byte) ',');
+        Ascii.putFixed(out, record.getHdop(), 1);
+        out.put((byte) ',');
+        Ascii.putFixed(out, record.getHeight(), 3);
+        Ascii.putString(out, ",M,,M,,");
+        putChecksum(out, start);
+
+        start = out.position();
+        Ascii.putString(out, "$GNRMC,");
+        putTime(out, millisOfDay);
+        Ascii.putString(out, ",A,");
+        putCoordinates(out, record.getLatitude(), record.getLongitude());
+        Ascii.putString(out, ",,,");
+        int[] date = GnssTime.civilFromDays(days);
+        Ascii.putPadded(out, date[2], 2);
+        Ascii.putPadded(out, date[1], 2);
+        Ascii.putPadded(out, date[0] % 100, 2);
+        Ascii.putString(out, ",,,A");
+        putChecksum(out, start);
+    }
+
+    /**
+     * hhmmss.ss
+     */
+    private static void putTime(ByteBuffer out, long millisOfDay) {
+        long hundredths = (millisOfDay + 5) / 10;
+        Ascii.putPadded(out, hundredths / 360000, 2);
+        Ascii.putPadded(out, hundredths / 6000 % 60, 2);
+        Ascii.putPadded(out, hundredths / 100 % 60, 2);
+        out.put((byte) '.');
+        Ascii.putPadded(out, hundredths % 100, 2);
+    }
+
+    /**
+     * ddmm.mmmmmm,N,dddmm.mmmmmm,E
+     */
+    private static void putCoordinates(ByteBuffer out, double latitude, double longitude) {
+        putAngle(out, latitude, 2);
+        out.put((byte) (latitude < 0 ? 'S' : 'N'));
+        out.put((byte) ',');
+        putAngle(out, longitude, 3);
+        out.put((byte) (longitude < 0 ? 'W' : 'E'));
+    }
+
+    private static void putAngle(ByteBuffer out, double degrees, int degreeDigits) {
+        // millionths of arc minute, rounded once so that 59.9999999' carries into the degrees
+        long micro = Math.round(Math.abs(degrees) * 60e6);
+        Ascii.putPadded(out, micro / 60000000L, degreeDigits);
+        long minutes = micro % 60000000L;
+        Ascii.putPadded(out, minutes / 1000000L, 2);
+        out.put((byte) '.');
+        Ascii.putPadded(out, minutes % 1000000L, 6);
+        out.put((byte) ',');
+    }
+
+    /**
+     * Closes the sentence started at {@code start}: XOR of the characters between '$' and '*'
+     */
+    private static void putChecksum(ByteBuffer out, int start) {
+        int checksum = 0;
+        for (int i = start + 1; i < out.position(); i++) {
+            checksum ^= out.get(i);
+        }
+        out.put((byte) '*');
+        out.put(HEX[(checksum >> 4) & 0xF]);
+        out.put(HEX[checksum & 0xF]);
+        out.put((byte) '\r');
+        out.put((byte) '\n');
+    }
+}
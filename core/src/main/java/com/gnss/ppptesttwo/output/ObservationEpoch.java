@@ -0,0 +1,37 @@
+package com.gnss.ppptesttwo.output;
+
+import java.util.Arrays;
+
+/**
+ * Preallocated slot of {@link RinexObservationWriter}: the observations of one epoch, in
+ * primitive arrays that grow with the number of satellites and are then reused
+ */
+final class ObservationEpoch {
+
+    long gpsNanos;
+    int count;
+    char[] systems = new char[0];
+    int[] prns = new int[0];
+    double[] pseudoranges = new double[0];
+    double[] phases = new double[0];
+    double[] dopplers = new double[0];
+    double[] snrs = new double[0];
+    boolean[] lossOfLock = new boolean[0];
+
+    ObservationEpoch(int satellites) {
+        ensureCapacity(satellites);
+    }
+
+    void ensureCapacity(int satellites) {
+        if (prns.length >= satellites) {
+            return;
+        }
+        systems = Arrays.copyOf(systems, satellites);
+        prns = Arrays.copyOf(prns, satellites);
+        pseudoranges = Arrays.copyOf(pseudoranges, satellites);
+        phases = Arrays.copyOf(phases, satellites);
+        dopplers = Arrays.copyOf(dopplers, satellites);
+        snrs = Arrays.copyOf(snrs, satellites);
+        lossOfLock = Arrays.copyOf(lossOfLock, satellites);
+    }
+}
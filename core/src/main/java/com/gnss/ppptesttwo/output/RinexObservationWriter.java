@@ -0,0 +1,273 @@
+package com.gnss.ppptesttwo.output;
+
+import com.gnss.ppptesttwo.Constants;
+import com.gnss.ppptesttwo.GnssTime;
+import com.gnss.ppptesttwo.constellations.SatelliteParameters;
+import com.gnss.ppptesttwo.navifromftp.Coordinates;
+import com.gnss.ppptesttwo.raw.RawMeasurement;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes RINEX 3.04 observation files of the live measurements, for post-processing with
+ * the usual PPP tools. GPS L1 C/A and Galileo E1 are recorded as C1C, L1C, D1C and S1C.
+ * <p>
+ * Works as {@link AsyncSolutionWriter}, on the same {@link AsyncRingWriter}:
+ * {@link #offer} copies the pseudoranges, carrier phases, Doppler shifts and C/N0 of an
+ * epoch into a preallocated ring of {@link ObservationEpoch}s and returns without
+ * blocking, dropping the epoch when the ring is full. The writer thread formats the records straight into one reused buffer,
+ * without intermediate strings, and writes it in large blocks. The header is written with
+ * the first epoch, which gives TIME OF FIRST OBS. There must be a single producer thread.
+ */
+public class RinexObservationWriter extends AsyncRingWriter<ObservationEpoch> {
+
+    public static final int DEFAULT_CAPACITY = 256;
+    public static final int DEFAULT_FLUSH_BYTES = 256 * 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 5000;
+
+    /**
+     * Most satellites of an epoch record (I3); the rest of a larger epoch is dropped
+     */
+    static final int MAX_SATELLITES = 999;
+
+    private static final String TAG = "RinexObservationWriter";
+    /**
+     * Resolution of the epochs, 0.1 us
+     */
+    private static final long NANOS_PER_TICK = 100;
+    private static final long TICKS_PER_SECOND = GnssTime.NANOS_PER_SECOND / NANOS_PER_TICK;
+    private static final long TICKS_PER_DAY = Constants.SEC_IN_DAY * TICKS_PER_SECOND;
+    private static final int EPOCH_LINE_SIZE = 36;
+    private static final int SATELLITE_LINE_SIZE = 3 + 4 * 16 + 1;
+    /**
+     * Bound of the header: fewer than 24 lines of 80 characters
+     */
+    private static final int HEADER_SIZE = 24 * 81;
+
+    private final String markerName;
+    private final Coordinates approximatePosition;
+    /**
+     * Written by the writer thread only
+     */
+    private boolean headerWritten;
+
+    public RinexObservationWriter(WritableByteChannel channel, String markerName, Coordinates approximatePosition) {
+        this(channel, markerName, approximatePosition, DEFAULT_CAPACITY, DEFAULT_FLUSH_BYTES, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param markerName          MARKER NAME of the header
+     * @param approximatePosition APPROX POSITION XYZ of the header, null when unknown
+     * @param capacity            number of epochs that can wait for the writer thread
+     * @param flushBytes          buffered bytes that trigger a write
+     * @param flushIntervalMillis longest time a formatted epoch waits before it is written
+     */
+    public RinexObservationWriter(WritableByteChannel channel, String markerName, Coordinates approximatePosition,
+                                  int capacity, int flushBytes, long flushIntervalMillis) {
+        super(TAG, channel, capacity, flushBytes, HEADER_SIZE + maxEpochSize(MAX_SATELLITES), flushIntervalMillis);
+        this.markerName = markerName;
+        this.approximatePosition = approximatePosition;
+        start();
+    }
+
+    /**
+     * Writes to {@code file}, replacing its content
+     */
+    public static RinexObservationWriter open(File file, String markerName, Coordinates approximatePosition)
+            throws IOException {
+        return new RinexObservationWriter(new FileOutputStream(file).getChannel(), markerName, approximatePosition);
+    }
+
+    /**
+     * Queues the observations of one epoch. Satellites of other systems than GPS and
+     * Galileo are skipped.
+     *
+     * @param time       receiver time of the measurements
+     * @param satellites satellites with a pseudorange, as left by the constellations'
+     *                   {@code updateMeasurements}
+     * @return false when the epoch was dropped: queue full, writer closed or failed
+     */
+    public boolean offer(GnssTime time, List<SatelliteParameters> satellites) {
+        ObservationEpoch epoch = claim();
+        if (epoch == null) {
+            return false;
+        }
+        int size = Math.min(satellites.size(), MAX_SATELLITES);
+        epoch.ensureCapacity(size);
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            SatelliteParameters satellite = satellites.get(i);
+            char system = system(satellite.getConstellationType());
+            if (system == 0 || satellite.getPseudorangeObject() == null) {
+                continue;
+            }
+            epoch.systems[count] = system;
+            epoch.prns[count] = satellite.getSatId();
+            epoch.pseudoranges[count] = satellite.getPseudorange();
+            epoch.phases[count] = satellite.getCarrierPhase();
+            epoch.dopplers[count] = satellite.getDoppler();
+            epoch.snrs[count] = satellite.getSignalStrength();
+            epoch.lossOfLock[count] = satellite.isLossOfLock();
+            count++;
+        }
+        epoch.count = count;
+        epoch.gpsNanos = time.getGpsNanos();
+        publish();
+        return true;
+    }
+
+    @Override
+    ObservationEpoch newSlot() {
+        return new ObservationEpoch(64);
+    }
+
+    @Override
+    int maxSize(ObservationEpoch epoch) {
+        return (headerWritten ? 0 : HEADER_SIZE) + maxEpochSize(epoch.count);
+    }
+
+    @Override
+    void write(ObservationEpoch epoch, ByteBuffer buffer) {
+        if (!headerWritten) {
+            writeHeader(epoch.gpsNanos, buffer);
+            headerWritten = true;
+        }
+        writeEpoch(epoch, buffer);
+    }
+
+    /**
+     * {@code > yyyy mm dd hh mm ss.sssssss  0 nn}, then per satellite the system and PRN
+     * followed by four F14.3 values with their loss of lock and signal strength digits
+     */
+    private static void writeEpoch(ObservationEpoch epoch, ByteBuffer buffer) {
+        // rounded before the split, so that 23:59:59.99999997 is the next day
+        long ticks = toTicks(epoch.gpsNanos);
+        long days = Math.floorDiv(ticks, TICKS_PER_DAY);
+        long ticksOfDay = ticks - days * TICKS_PER_DAY;
+        int[] date = GnssTime.civilFromDays(days + Constants.UNIX_GPS_DAYS_DIFF);
+        long secondsOfDay = ticksOfDay / TICKS_PER_SECOND;
+
+        buffer.put((byte) '>');
+        buffer.put((byte) ' ');
+        Ascii.putPadded(buffer, date[0], 4);
+        putTwoDigits(buffer, date[1]);
+        putTwoDigits(buffer, date[2]);
+        putTwoDigits(buffer, secondsOfDay / 3600);
+        putTwoDigits(buffer, secondsOfDay / 60 % 60);
+        buffer.put((byte) ' ');
+        Ascii.putPadded(buffer, secondsOfDay % 60, 2);
+        buffer.put((byte) '.');
+        Ascii.putPadded(buffer, ticksOfDay % TICKS_PER_SECOND, 7);
+        Ascii.putString(buffer, "  0");
+        Ascii.putIntField(buffer, epoch.count, 3);
+        buffer.put((byte) '\n');
+
+        for (int i = 0; i < epoch.count; i++) {
+            byte strength = signalStrength(epoch.snrs[i]);
+            buffer.put((byte) epoch.systems[i]);
+            Ascii.putPadded(buffer, epoch.prns[i], 2);
+            putObservation(buffer, epoch.pseudoranges[i], (byte) ' ', strength);
+            putObservation(buffer, epoch.phases[i], epoch.lossOfLock[i] ? (byte) '1' : (byte) ' ', strength);
+            putObservation(buffer, epoch.dopplers[i], (byte) ' ', strength);
+            putObservation(buffer, epoch.snrs[i], (byte) ' ', (byte) ' ');
+            buffer.put((byte) '\n');
+        }
+    }
+
+    private static long toTicks(long gpsNanos) {
+        return Math.floorDiv(gpsNanos + NANOS_PER_TICK / 2, NANOS_PER_TICK);
+    }
+
+    private static void putTwoDigits(ByteBuffer buffer, long value) {
+        buffer.put((byte) ' ');
+        Ascii.putPadded(buffer, value, 2);
+    }
+
+    private static void putObservation(ByteBuffer buffer, double value, byte lossOfLock, byte strength) {
+        int start = buffer.position();
+        Ascii.putFixedField(buffer, value, 14, 3);
+        boolean blank = buffer.get(start + 13) == ' ';
+        buffer.put(blank ? (byte) ' ' : lossOfLock);
+        buffer.put(blank ? (byte) ' ' : strength);
+    }
+
+    private void writeHeader(long firstGpsNanos, ByteBuffer buffer) {
+        long now = System.currentTimeMillis();
+        int[] today = GnssTime.civilFromDays(Math.floorDiv(now, Constants.SEC_IN_DAY * 1000L));
+        long secondsOfDay = Math.floorMod(now / 1000, Constants.SEC_IN_DAY);
+        GnssTime first = GnssTime.ofGpsNanos(firstGpsNanos);
+        long ticks = toTicks(firstGpsNanos);
+        long days = Math.floorDiv(ticks, TICKS_PER_DAY);
+        long ticksOfDay = ticks - days * TICKS_PER_DAY;
+        int[] date = GnssTime.civilFromDays(days + Constants.UNIX_GPS_DAYS_DIFF);
+        long secondsOfFirstDay = ticksOfDay / TICKS_PER_SECOND;
+        Coordinates position = approximatePosition;
+
+        headerLine(buffer, String.format(Locale.US, "%9s%11s%-20s%-20s", "3.04", "", "OBSERVATION DATA", "M"),
+                "RINEX VERSION / TYPE");
+        headerLine(buffer, String.format(Locale.US, "%-20s%-20s%04d%02d%02d %02d%02d%02d UTC ", "ppptesttwo", "",
+                today[0], today[1], today[2], secondsOfDay / 3600, secondsOfDay / 60 % 60, secondsOfDay % 60),
+                "PGM / RUN BY / DATE");
+        headerLine(buffer, markerName, "MARKER NAME");
+        headerLine(buffer, "NON_GEODETIC", "MARKER TYPE");
+        headerLine(buffer, "", "OBSERVER / AGENCY");
+        headerLine(buffer, String.format(Locale.US, "%-20s%-20s%-20s", "", "ANDROID", ""), "REC # / TYPE / VERS");
+        headerLine(buffer, String.format(Locale.US, "%-20s%-20s", "", "ANDROID"), "ANT # / TYPE");
+        headerLine(buffer, String.format(Locale.US, "%14.4f%14.4f%14.4f",
+                position != null ? position.getX() : 0.0,
+                position != null ? position.getY() : 0.0,
+                position != null ? position.getZ() : 0.0), "APPROX POSITION XYZ");
+        headerLine(buffer, String.format(Locale.US, "%14.4f%14.4f%14.4f", 0.0, 0.0, 0.0), "ANTENNA: DELTA H/E/N");
+        headerLine(buffer, "G    4 C1C L1C D1C S1C", "SYS / # / OBS TYPES");
+        headerLine(buffer, "E    4 C1C L1C D1C S1C", "SYS / # / OBS TYPES");
+        headerLine(buffer, "DBHZ", "SIGNAL STRENGTH UNIT");
+        headerLine(buffer, String.format(Locale.US, "%6d%6d%6d%6d%6d%13.7f     GPS", date[0], date[1], date[2],
+                secondsOfFirstDay / 3600, secondsOfFirstDay / 60 % 60,
+                (double) (ticksOfDay % (60 * TICKS_PER_SECOND)) / TICKS_PER_SECOND),
+                "TIME OF FIRST OBS");
+        headerLine(buffer, "G L1C", "SYS / PHASE SHIFT");
+        headerLine(buffer, "E L1C", "SYS / PHASE SHIFT");
+        headerLine(buffer, "  0", "GLONASS SLOT / FRQ #");
+        headerLine(buffer, "", "GLONASS COD/PHS/BIS");
+        if (first.getLeapSeconds() > 0) {
+            headerLine(buffer, String.format(Locale.US, "%6d", first.getLeapSeconds()), "LEAP SECONDS");
+        }
+        headerLine(buffer, "", "END OF HEADER");
+    }
+
+    private static void headerLine(ByteBuffer buffer, String content, String label) {
+        String line = String.format(Locale.US, "%-60.60s%-20s\n", content, label);
+        Ascii.putString(buffer, line);
+    }
+
+    private static int maxEpochSize(int satellites) {
+        return EPOCH_LINE_SIZE + satellites * SATELLITE_LINE_SIZE;
+    }
+
+    /**
+     * @return RINEX signal strength indicator 1-9 of a C/N0, blank when unknown
+     */
+    private static byte signalStrength(double snr) {
+        if (!(snr > 0)) {
+            return ' ';
+        }
+        return (byte) ('0' + Math.max(1, Math.min(9, (int) (snr / 6))));
+    }
+
+    private static char system(int constellationType) {
+        switch (constellationType) {
+            case RawMeasurement.CONSTELLATION_GPS:
+                return 'G';
+            case RawMeasurement.CONSTELLATION_GALILEO:
+                return 'E';
+            default:
+                return 0;
+        }
+    }
+}
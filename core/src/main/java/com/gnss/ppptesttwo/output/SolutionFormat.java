@@ -0,0 +1,22 @@
+package com.gnss.ppptesttwo.output;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encoding of the solutions written by an {@link AsyncSolutionWriter}. Implementations
+ * write straight into the writer's buffer and should not allocate per record.
+ */
+public interface SolutionFormat {
+
+    /**
+     * @return upper bound of the bytes written by {@link #write} for one record
+     */
+    int maxRecordSize();
+
+    /**
+     * Writes the start of the file, if the format has one
+     */
+    void writeHeader(ByteBuffer out);
+
+    void write(SolutionRecord record, ByteBuffer out);
+}
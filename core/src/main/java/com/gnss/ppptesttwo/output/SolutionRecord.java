@@ -0,0 +1,137 @@
+package com.gnss.ppptesttwo.output;
+
+import com.gnss.ppptesttwo.GnssTime;
+import com.gnss.ppptesttwo.adjust.NormalEquations;
+import com.gnss.ppptesttwo.adjust.PositionSolution;
+import com.gnss.ppptesttwo.navifromftp.Ecef;
+
+/**
+ * One solution queued in an {@link AsyncSolutionWriter}. The slots are allocated once and
+ * overwritten, a record is only valid while a {@link SolutionFormat} formats it.
+ * <p>
+ * The producer only copies raw values; the geodetic coordinates, and the HDOP when the
+ * producer left the geometry instead, are computed by the writer thread in
+ * {@link #resolve} before the record is formatted.
+ */
+public final class SolutionRecord {
+
+    private static final int P = NormalEquations.N_PARAMS;
+
+    private long gpsNanos;
+    private double x;
+    private double y;
+    private double z;
+    private double clockBias;
+    private int satellites;
+    private double hdop;
+    private double latitude = Double.NaN;
+    private double longitude = Double.NaN;
+    private double height = Double.NaN;
+
+    /**
+     * Unweighted normal matrix of the solution, see {@link PositionSolution#getGeometryMatrix}
+     */
+    private final double[] geometry = new double[P * P];
+    private boolean hasGeometry;
+
+    void set(long gpsNanos, double x, double y, double z, double clockBias, int satellites, double hdop) {
+        this.gpsNanos = gpsNanos;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.clockBias = clockBias;
+        this.satellites = satellites;
+        this.hdop = hdop;
+        this.latitude = Double.NaN;
+        this.longitude = Double.NaN;
+        this.height = Double.NaN;
+        this.hasGeometry = false;
+    }
+
+    /**
+     * Leaves the geometry of the solution for the HDOP, which {@link #resolve} computes
+     */
+    void setGeometry(PositionSolution solution) {
+        solution.getGeometryMatrix(geometry);
+        hasGeometry = true;
+    }
+
+    /**
+     * Computes the derived values on the writer thread, without allocating
+     *
+     * @param latLonHeight scratch array of length 3
+     * @param work         scratch array of length 2 {@link NormalEquations#N_PARAMS}
+     */
+    void resolve(double[] latLonHeight, double[] work) {
+        Ecef.toGeodetic(x, y, z, latLonHeight);
+        latitude = latLonHeight[0];
+        longitude = latLonHeight[1];
+        height = latLonHeight[2];
+        if (hasGeometry) {
+            hdop = PositionSolution.hdop(geometry, latitude, longitude, work);
+            hasGeometry = false;
+        }
+    }
+
+    /**
+     * @return epoch of the solution, nanoseconds since the GPS epoch
+     */
+    public long getGpsNanos() {
+        return gpsNanos;
+    }
+
+    public GnssTime getTime() {
+        return GnssTime.ofGpsNanos(gpsNanos);
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getZ() {
+        return z;
+    }
+
+    /**
+     * @return geodetic latitude [deg], NaN until the record is resolved
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * @return geodetic longitude [deg], NaN until the record is resolved
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * @return ellipsoidal height [m], NaN until the record is resolved
+     */
+    public double getHeight() {
+        return height;
+    }
+
+    /**
+     * @return receiver clock bias [m]
+     */
+    public double getClockBias() {
+        return clockBias;
+    }
+
+    public int getSatellites() {
+        return satellites;
+    }
+
+    /**
+     * @return horizontal dilution of precision, NaN when unknown
+     */
+    public double getHdop() {
+        return hdop;
+    }
+}
@@ -0,0 +1,198 @@
+package com.gnss.ppptesttwo.precise;
+
+import com.gnss.ppptesttwo.GnssLog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * The satellite clocks of a RINEX clock product: the bias of every satellite at equally
+ * spaced epochs, in one flat array indexed by {@code slot * epochs + epoch} like
+ * {@link Sp3Orbits}. Missing values are NaN. An epoch is found by one division and the
+ * bias interpolated linearly between its two neighbours.
+ * <p>
+ * The table is written to a binary cache file as the raw arrays, which are read back with
+ * one bulk copy from a memory mapping instead of parsing the text again.
+ */
+public final class PreciseClocks implements SatelliteClocks {
+
+    private static final int MAGIC = 0x434C4B42;
+    private static final int HEADER_BYTES = 4 + 8 + 8 + 4 + 4;
+
+    private static final String TAG = "PreciseClocks";
+
+    private final long startMillis;
+    private final long intervalMillis;
+    private final double intervalSeconds;
+    private final int epochs;
+    private final int[] satellites;
+    private final int[] slots = new int[Sp3Orbits.SYSTEMS.length() * Sp3Orbits.MAX_PRN];
+    final double[] bias;
+
+    /**
+     * @param satellites satellite numbers (see {@link Sp3Orbits#number}) of the slots
+     */
+    PreciseClocks(long startMillis, long intervalMillis, int epochs, int[] satellites, double[] bias) {
+        if (intervalMillis <= 0 || epochs < 1) {
+            throw new IllegalArgumentException("Invalid epochs: " + epochs + " every " + intervalMillis + " ms");
+        }
+        this.startMillis = startMillis;
+        this.intervalMillis = intervalMillis;
+        this.intervalSeconds = intervalMillis / 1000.0;
+        this.epochs = epochs;
+        this.satellites = satellites;
+        this.bias = bias;
+        Arrays.fill(slots, -1);
+        for (int slot = 0; slot < satellites.length; slot++) {
+            slots[satellites[slot]] = slot;
+        }
+    }
+
+    /**
+     * @return the slot of the satellite in the array, -1 when the product does not have it
+     */
+    public int slot(char system, int prn) {
+        int number = Sp3Orbits.number(system, prn);
+        return number < 0 ? -1 : slots[number];
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * @return time of the last epoch
+     */
+    public long getEndMillis() {
+        return startMillis + (epochs - 1) * intervalMillis;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public int getEpochs() {
+        return epochs;
+    }
+
+    public int getSatelliteCount() {
+        return satellites.length;
+    }
+
+    /**
+     * @param seconds time since the first epoch [s]
+     * @return clock bias [s], NaN outside the product or next to a missing value
+     */
+    public double bias(int slot, double seconds) {
+        if (slot < 0) {
+            return Double.NaN;
+        }
+        double tau = seconds / intervalSeconds;
+        if (!(tau >= 0) || tau > epochs - 1) {
+            return Double.NaN;
+        }
+        int epoch = (int) tau;
+        double fraction = tau - epoch;
+        int index = slot * epochs + epoch;
+        if (fraction == 0) {
+            return bias[index];
+        }
+        return bias[index] + (bias[index + 1] - bias[index]) * fraction;
+    }
+
+    @Override
+    public double getClockBias(char satType, int satID, double unixSeconds) {
+        return bias(slot(satType, satID), unixSeconds - startMillis / 1000.0);
+    }
+
+    /**
+     * @return the product: from the binary cache when it is newer than {@code product}, else
+     * parsed from {@code product} (plain, .Z or .gz) and written to the cache
+     */
+    public static PreciseClocks load(File product, File cache) throws IOException {
+        if (cache.isFile() && cache.lastModified() >= product.lastModified()) {
+            try {
+                return read(cache);
+            } catch (IOException e) {
+                GnssLog.w(TAG, "Unreadable cache " + cache + ", parsing " + product, e);
+            }
+        }
+        InputStream is = Sp3Orbits.open(product);
+        PreciseClocks clocks;
+        try {
+            clocks = RinexClockParser.parse(is);
+        } finally {
+            is.close();
+        }
+        clocks.write(cache);
+        return clocks;
+    }
+
+    /**
+     * Writes the binary cache, replacing {@code file} at once
+     */
+    public void write(File file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 4 * satellites.length + 8 * bias.length);
+        buffer.putInt(MAGIC).putLong(startMillis).putLong(intervalMillis).putInt(epochs).putInt(satellites.length);
+        buffer.asIntBuffer().put(satellites);
+        buffer.position(buffer.position() + 4 * satellites.length);
+        buffer.asDoubleBuffer().put(bias);
+        buffer.position(buffer.position() + 8 * bias.length);
+        buffer.flip();
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            FileChannel channel = out.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Cannot rename " + tmp + " to " + file);
+        }
+    }
+
+    /**
+     * Reads a binary cache written by {@link #write}
+     */
+    public static PreciseClocks read(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            MappedByteBuffer buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException("Not a clock cache: " + file);
+            }
+            long start = buffer.getLong();
+            long interval = buffer.getLong();
+            int epochs = buffer.getInt();
+            int count = buffer.getInt();
+            long values = (long) count * epochs;
+            if (count < 0 || epochs < 1 || interval <= 0 || buffer.remaining() != 4L * count + 8 * values) {
+                throw new IOException("Truncated clock cache: " + file);
+            }
+            int[] satellites = new int[count];
+            buffer.asIntBuffer().get(satellites);
+            buffer.position(buffer.position() + 4 * count);
+            double[] bias = new double[(int) values];
+            buffer.asDoubleBuffer().get(bias);
+            for (int satellite : satellites) {
+                if (satellite < 0 || satellite >= Sp3Orbits.SYSTEMS.length() * Sp3Orbits.MAX_PRN) {
+                    throw new IOException("Corrupt clock cache: " + file);
+                }
+            }
+            return new PreciseClocks(start, interval, epochs, satellites, bias);
+        } finally {
+            in.close();
+        }
+    }
+}
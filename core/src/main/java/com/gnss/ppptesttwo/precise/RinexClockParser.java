@@ -0,0 +1,204 @@
+package com.gnss.ppptesttwo.precise;
+
+import com.gnss.ppptesttwo.GnssTime;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the satellite clocks of RINEX clock files (2.00 to 3.04) into {@link PreciseClocks}.
+ * <p>
+ * The file is streamed: only the {@code AS} records are decoded, the receiver and station
+ * records which make most of a 30 s or 5 s file are skipped on their first two characters.
+ * Consecutive records of one epoch share their date, which is decoded once. The interval is
+ * the step between the first two epochs, and every record must be on that grid.
+ */
+public final class RinexClockParser {
+
+    private static final String END_OF_HEADER = "END OF HEADER";
+    private static final String TIME_SYSTEM = "TIME SYSTEM ID";
+
+    private RinexClockParser() {
+    }
+
+    public static PreciseClocks parse(InputStream is) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.US_ASCII), 256 * 1024);
+        String line = reader.readLine();
+        if (line == null || line.length() < 21 || line.charAt(20) != 'C') {
+            throw new IOException("Not a RINEX clock file: " + line);
+        }
+        while (!label(line).startsWith(END_OF_HEADER)) {
+            if (label(line).startsWith(TIME_SYSTEM)) {
+                String timeSystem = line.substring(0, Math.min(60, line.length())).trim();
+                if (!timeSystem.isEmpty() && !timeSystem.equals("GPS") && !timeSystem.equals("GAL")) {
+                    throw new IOException("Unsupported clock time system " + timeSystem);
+                }
+            }
+            line = reader.readLine();
+            if (line == null) {
+                throw new IOException("RINEX clock header without " + END_OF_HEADER);
+            }
+        }
+
+        // per satellite number, grown as the epochs come
+        double[][] series = new double[Sp3Orbits.SYSTEMS.length() * Sp3Orbits.MAX_PRN][];
+        int count = 0;
+        long start = 0;
+        long interval = 0;
+        int epochs = 0;
+        String previous = null;
+        int dateFrom = 0;
+        int dateTo = 0;
+        long time = 0;
+        while ((line = reader.readLine()) != null) {
+            if (line.length() < 3 || line.charAt(0) != 'A' || line.charAt(1) != 'S' || line.charAt(2) != ' ') {
+                continue;
+            }
+            int nameFrom = skip(line, 2);
+            int nameTo = token(line, nameFrom);
+            int from = skip(line, nameTo);
+            int to = from;
+            for (int field = 0; field < 6; field++) {
+                to = token(line, skip(line, to));
+            }
+            if (previous == null || to - from != dateTo - dateFrom
+                    || !line.regionMatches(from, previous, dateFrom, to - from)) {
+                time = epochMillis(line, from, to);
+                previous = line;
+                dateFrom = from;
+                dateTo = to;
+            }
+            if (epochs == 0) {
+                start = time;
+                epochs = 1;
+            } else if (interval == 0 && time != start) {
+                interval = time - start;
+            }
+            int epoch = 0;
+            if (time != start) {
+                if (time < start || (time - start) % interval != 0) {
+                    throw new IOException("Clock record off the " + interval + " ms grid: " + line);
+                }
+                epoch = (int) ((time - start) / interval);
+            }
+
+            int valuesFrom = skip(line, token(line, skip(line, to)));
+            int valuesTo = token(line, valuesFrom);
+            int number = number(line, nameFrom, nameTo);
+            if (number < 0 || valuesFrom == valuesTo) {
+                continue;
+            }
+            double[] values = series[number];
+            if (values == null) {
+                values = nan(Math.max(64, epoch + 1));
+                series[number] = values;
+                count++;
+            } else if (epoch >= values.length) {
+                int length = values.length;
+                values = Arrays.copyOf(values, Math.max(2 * length, epoch + 1));
+                Arrays.fill(values, length, values.length, Double.NaN);
+                series[number] = values;
+            }
+            values[epoch] = parseDouble(line, valuesFrom, valuesTo);
+            epochs = Math.max(epochs, epoch + 1);
+        }
+        if (count == 0) {
+            throw new IOException("RINEX clock file without satellite clocks");
+        }
+
+        int[] satellites = new int[count];
+        double[] bias = nan(count * epochs);
+        int slot = 0;
+        for (int number = 0; number < series.length; number++) {
+            if (series[number] != null) {
+                satellites[slot] = number;
+                System.arraycopy(series[number], 0, bias, slot * epochs, Math.min(epochs, series[number].length));
+                slot++;
+            }
+        }
+        // a single epoch has no step: any positive interval
+        return new PreciseClocks(start, interval == 0 ? 1 : interval, epochs, satellites, bias);
+    }
+
+    private static String label(String line) {
+        return line.length() > 60 ? line.substring(60) : "";
+    }
+
+    /**
+     * @return index of the first non-blank character from {@code i}
+     */
+    private static int skip(String line, int i) {
+        while (i < line.length() && line.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return index after the token starting at {@code i}
+     */
+    private static int token(String line, int i) {
+        while (i < line.length() && line.charAt(i) != ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * @return the satellite number of a name like {@code G01}, or {@code 01} in GPS-only
+     * files; -1 for a system or PRN without a slot
+     */
+    private static int number(String line, int from, int to) throws IOException {
+        if (from == to) {
+            return -1;
+        }
+        char system = line.charAt(from);
+        if (system >= '0' && system <= '9') {
+            return Sp3Orbits.number('G', parseInt(line, from, to));
+        }
+        return Sp3Orbits.number(system, parseInt(line, from + 1, to));
+    }
+
+    /**
+     * @param from start of {@code yyyy mm dd hh mm ss.ssssss}
+     * @param to   end of the seconds
+     */
+    private static long epochMillis(String line, int from, int to) throws IOException {
+        int[] fields = new int[5];
+        int i = from;
+        for (int field = 0; field < 5; field++) {
+            int end = token(line, i);
+            fields[field] = parseInt(line, i, end);
+            i = skip(line, end);
+        }
+        double second = parseDouble(line, i, to);
+        return GnssTime.daysFromCivil(fields[0], fields[1], fields[2]) * 86400000L
+                + (fields[3] * 3600L + fields[4] * 60L) * 1000L + Math.round(second * 1000);
+    }
+
+    private static int parseInt(String line, int from, int to) throws IOException {
+        try {
+            return Integer.parseInt(line.substring(from, to));
+        } catch (RuntimeException e) {
+            throw new IOException("Bad clock field at " + from + "-" + to + ": " + line, e);
+        }
+    }
+
+    private static double parseDouble(String line, int from, int to) throws IOException {
+        try {
+            return Double.parseDouble(line.substring(from, to));
+        } catch (RuntimeException e) {
+            throw new IOException("Bad clock field at " + from + "-" + to + ": " + line, e);
+        }
+    }
+
+    private static double[] nan(int length) {
+        double[] values = new double[length];
+        Arrays.fill(values, Double.NaN);
+        return values;
+    }
+}
@@ -0,0 +1,14 @@
+package com.gnss.ppptesttwo.precise;
+
+/**
+ * A source of satellite clock biases replacing the broadcast clock polynomials.
+ */
+public interface SatelliteClocks {
+
+    /**
+     * @param unixSeconds GPS seconds since 1970, as {@link com.gnss.ppptesttwo.Time#getMsec()} / 1000
+     * @return clock bias of the satellite [s], without the relativistic term and the group
+     * delay; NaN when the source does not cover the satellite at that time
+     */
+    double getClockBias(char satType, int satID, double unixSeconds);
+}
@@ -0,0 +1,246 @@
+package com.gnss.ppptesttwo.precise;
+
+import com.gnss.ppptesttwo.Constants;
+import com.gnss.ppptesttwo.navifromftp.SatellitePosition;
+
+import java.util.Arrays;
+
+/**
+ * Satellite positions and velocities from an {@link Sp3Orbits} table by Lagrange
+ * interpolation, in barycentric form over equally spaced nodes, and clocks by linear
+ * interpolation between epochs.
+ * <p>
+ * Each satellite keeps its active window: the node values around the requested time,
+ * copied once into contiguous arrays and used until the time moves to the next epoch
+ * interval. An evaluation is then one pass over the window for the position and its
+ * derivative. Not thread safe: one interpolator per measurement thread.
+ */
+public class Sp3Interpolator {
+
+    /**
+     * 10 points, a polynomial of order 9: millimetres with 15 minute orbits
+     */
+    public static final int DEFAULT_POINTS = 10;
+
+    private final Sp3Orbits orbits;
+    private final int points;
+    private final double intervalSeconds;
+    private final double[] weights;
+
+    /**
+     * First epoch of the window of each slot, -1 before the first use
+     */
+    private final int[] windowStart;
+    /**
+     * Whether every node of the window has a position
+     */
+    private final boolean[] windowComplete;
+    private final double[] wx;
+    private final double[] wy;
+    private final double[] wz;
+    private final double[] result = new double[6];
+
+    /**
+     * Clocks used instead of those of the SP3 product, null for none
+     */
+    private SatelliteClocks clocks;
+
+    public Sp3Interpolator(Sp3Orbits orbits) {
+        this(orbits, DEFAULT_POINTS);
+    }
+
+    /**
+     * @param points nodes of the interpolation, 2 to the number of epochs
+     */
+    public Sp3Interpolator(Sp3Orbits orbits, int points) {
+        if (points < 2 || points > orbits.getEpochs()) {
+            throw new IllegalArgumentException(points + " points for " + orbits.getEpochs() + " epochs");
+        }
+        this.orbits = orbits;
+        this.points = points;
+        this.intervalSeconds = orbits.getIntervalMillis() / 1000.0;
+        // barycentric weights of equally spaced nodes: (-1)^j C(n-1, j)
+        weights = new double[points];
+        double binomial = 1;
+        for (int j = 0; j < points; j++) {
+            weights[j] = (j % 2 == 0 ? 1 : -1) * binomial;
+            binomial = binomial * (points - 1 - j) / (j + 1);
+        }
+        int slots = orbits.getSatelliteCount();
+        windowStart = new int[slots];
+        Arrays.fill(windowStart, -1);
+        windowComplete = new boolean[slots];
+        wx = new double[slots * points];
+        wy = new double[slots * points];
+        wz = new double[slots * points];
+    }
+
+    public Sp3Orbits getOrbits() {
+        return orbits;
+    }
+
+    /**
+     * @param clocks e.g. a {@link PreciseClocks} product denser than the SP3 clocks, used
+     *               where it covers the satellite; null for the SP3 clocks only
+     */
+    public void setClocks(SatelliteClocks clocks) {
+        this.clocks = clocks;
+    }
+
+    /**
+     * Position and velocity of a satellite at a time of the product.
+     *
+     * @param seconds time since the first epoch [s]
+     * @param out     x, y, z [m] and their rates [m/s]
+     * @return false when the satellite, a node of its window or the time is not in the product
+     */
+    public boolean interpolate(int slot, double seconds, double[] out) {
+        if (slot < 0) {
+            return false;
+        }
+        int epochs = orbits.getEpochs();
+        double tau = seconds / intervalSeconds;
+        // no extrapolation beyond half an interval
+        if (tau < -0.5 || tau > epochs - 0.5) {
+            return false;
+        }
+        int first = Math.min(Math.max((int) Math.floor(tau) - (points / 2 - 1), 0), epochs - points);
+        if (windowStart[slot] != first) {
+            loadWindow(slot, first);
+        }
+        if (!windowComplete[slot]) {
+            return false;
+        }
+        int base = slot * points;
+        double s = tau - first;
+        int node = (int) Math.round(s);
+        if (node >= 0 && node < points && s == node) {
+            // on a node the barycentric form is 0/0: value and differentiation matrix row
+            out[0] = wx[base + node];
+            out[1] = wy[base + node];
+            out[2] = wz[base + node];
+            double dx = 0;
+            double dy = 0;
+            double dz = 0;
+            for (int k = 0; k < points; k++) {
+                if (k != node) {
+                    double f = weights[k] / weights[node] / (node - k);
+                    dx += f * (wx[base + k] - out[0]);
+                    dy += f * (wy[base + k] - out[1]);
+                    dz += f * (wz[base + k] - out[2]);
+                }
+            }
+            out[3] = dx / intervalSeconds;
+            out[4] = dy / intervalSeconds;
+            out[5] = dz / intervalSeconds;
+            return true;
+        }
+        double d = 0;
+        double dd = 0;
+        double nx = 0;
+        double ny = 0;
+        double nz = 0;
+        double ndx = 0;
+        double ndy = 0;
+        double ndz = 0;
+        for (int j = 0; j < points; j++) {
+            double inverse = 1 / (s - j);
+            double c = weights[j] * inverse;
+            double cd = c * inverse;
+            d += c;
+            dd += cd;
+            nx += c * wx[base + j];
+            ny += c * wy[base + j];
+            nz += c * wz[base + j];
+            ndx += cd * wx[base + j];
+            ndy += cd * wy[base + j];
+            ndz += cd * wz[base + j];
+        }
+        // p = N / D, p' = (N' - p D') / D with N' = -ndx, D' = -dd
+        out[0] = nx / d;
+        out[1] = ny / d;
+        out[2] = nz / d;
+        out[3] = (out[0] * dd - ndx) / d / intervalSeconds;
+        out[4] = (out[1] * dd - ndy) / d / intervalSeconds;
+        out[5] = (out[2] * dd - ndz) / d / intervalSeconds;
+        return true;
+    }
+
+    /**
+     * @param seconds time since the first epoch [s]
+     * @return clock bias of the satellite [s], NaN when not in the product
+     */
+    public double clock(int slot, double seconds) {
+        if (slot < 0) {
+            return Double.NaN;
+        }
+        int epochs = orbits.getEpochs();
+        double tau = seconds / intervalSeconds;
+        if (tau < -0.5 || tau > epochs - 0.5 || epochs < 2) {
+            return Double.NaN;
+        }
+        int i = Math.min(Math.max((int) Math.floor(tau), 0), epochs - 2);
+        double fraction = tau - i;
+        int index = slot * epochs + i;
+        return orbits.clock[index] + (orbits.clock[index + 1] - orbits.clock[index]) * fraction;
+    }
+
+    /**
+     * Precise counterpart of the broadcast
+     * {@link com.gnss.ppptesttwo.navifromftp.RinexNavigationParserGps#getSatPositionAndVelocities}:
+     * the position at the transmission time, rotated for the Earth rotation during the travel
+     * time, and the clock error with its relativistic term.
+     *
+     * @param unixTime           reception time, GPS milliseconds since 1970
+     * @param range              pseudorange [m]
+     * @param receiverClockError [s]
+     * @param groupDelay         broadcast TGD subtracted from the ionosphere-free product clock
+     *                           for single frequency measurements [s], 0 when unknown
+     * @return null when the product does not cover the satellite at that time
+     */
+    public SatellitePosition getSatPositionAndVelocities(long unixTime, double range, int satID, char satType,
+                                                         double receiverClockError, double groupDelay) {
+        int slot = orbits.slot(satType, satID);
+        double reception = (unixTime - orbits.getStartMillis()) / 1000.0;
+        double clock = clocks == null ? Double.NaN
+                : clocks.getClockBias(satType, satID, unixTime / 1000.0 - range / Constants.SPEED_OF_LIGHT);
+        if (Double.isNaN(clock)) {
+            clock = clock(slot, reception - range / Constants.SPEED_OF_LIGHT);
+        }
+        if (Double.isNaN(clock)) {
+            return null;
+        }
+        double transmission = reception - range / Constants.SPEED_OF_LIGHT - clock;
+        if (!interpolate(slot, transmission, result)) {
+            return null;
+        }
+        double relativity = -2 * (result[0] * result[3] + result[1] * result[4] + result[2] * result[5])
+                / (Constants.SPEED_OF_LIGHT * Constants.SPEED_OF_LIGHT);
+
+        double omegatau = Constants.EARTH_ANGULAR_VELOCITY * (reception + receiverClockError - transmission);
+        double cos = Math.cos(omegatau);
+        double sin = Math.sin(omegatau);
+        SatellitePosition sp = new SatellitePosition(unixTime, satID, satType,
+                cos * result[0] + sin * result[1],
+                -sin * result[0] + cos * result[1],
+                result[2]);
+        sp.setSatelliteClockError(clock + relativity - groupDelay);
+        sp.setSpeed(result[3], result[4], result[5]);
+        return sp;
+    }
+
+    private void loadWindow(int slot, int first) {
+        int epochs = orbits.getEpochs();
+        int from = slot * epochs + first;
+        int base = slot * points;
+        boolean complete = true;
+        for (int j = 0; j < points; j++) {
+            wx[base + j] = orbits.x[from + j];
+            wy[base + j] = orbits.y[from + j];
+            wz[base + j] = orbits.z[from + j];
+            complete &= !Double.isNaN(wx[base + j]);
+        }
+        windowStart[slot] = first;
+        windowComplete[slot] = complete;
+    }
+}
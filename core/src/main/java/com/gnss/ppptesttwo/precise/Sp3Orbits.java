@@ -0,0 +1,218 @@
+package com.gnss.ppptesttwo.precise;
+
+import com.gnss.ppptesttwo.GnssLog;
+import com.gnss.ppptesttwo.navifromftp.UncompressInputStream;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The orbit table of an SP3 precise orbit product: position and clock of every satellite at
+ * equally spaced epochs, in flat primitive arrays indexed by {@code slot * epochs + epoch}.
+ * Missing values are NaN. Positions are ECEF metres of the satellite centre of mass, clocks
+ * seconds, times GPS milliseconds since 1970 as {@link com.gnss.ppptesttwo.Time#getMsec()}.
+ * <p>
+ * The table is written to a binary cache file as the raw arrays, which are read back with
+ * one bulk copy from a memory mapping instead of parsing the text again.
+ */
+public final class Sp3Orbits {
+
+    /**
+     * Systems of the SP3 satellite identifiers, in the order of the satellite numbers
+     */
+    static final String SYSTEMS = "GRECJIS";
+    static final int MAX_PRN = 100;
+
+    private static final int MAGIC = 0x53503342;
+    private static final int HEADER_BYTES = 4 + 8 + 8 + 4 + 4;
+
+    private static final String TAG = "Sp3Orbits";
+
+    private final long startMillis;
+    private final long intervalMillis;
+    private final int epochs;
+    private final int[] satellites;
+    private final int[] slots = new int[SYSTEMS.length() * MAX_PRN];
+    final double[] x;
+    final double[] y;
+    final double[] z;
+    final double[] clock;
+
+    /**
+     * @param satellites satellite numbers (see {@link #number}) of the slots
+     */
+    Sp3Orbits(long startMillis, long intervalMillis, int epochs, int[] satellites,
+              double[] x, double[] y, double[] z, double[] clock) {
+        if (intervalMillis <= 0 || epochs < 1) {
+            throw new IllegalArgumentException("Invalid epochs: " + epochs + " every " + intervalMillis + " ms");
+        }
+        this.startMillis = startMillis;
+        this.intervalMillis = intervalMillis;
+        this.epochs = epochs;
+        this.satellites = satellites;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.clock = clock;
+        Arrays.fill(slots, -1);
+        for (int slot = 0; slot < satellites.length; slot++) {
+            slots[satellites[slot]] = slot;
+        }
+    }
+
+    /**
+     * @return index of the satellite in {@link #slots}, -1 for an unknown system or PRN
+     */
+    static int number(char system, int prn) {
+        int index = SYSTEMS.indexOf(system);
+        return index < 0 || prn < 1 || prn >= MAX_PRN ? -1 : index * MAX_PRN + prn;
+    }
+
+    /**
+     * @return the slot of the satellite in the arrays, -1 when the product does not have it
+     */
+    public int slot(char system, int prn) {
+        int number = number(system, prn);
+        return number < 0 ? -1 : slots[number];
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * @return time of the last epoch
+     */
+    public long getEndMillis() {
+        return startMillis + (epochs - 1) * intervalMillis;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public int getEpochs() {
+        return epochs;
+    }
+
+    public int getSatelliteCount() {
+        return satellites.length;
+    }
+
+    /**
+     * @return the product: from the binary cache when it is newer than {@code product}, else
+     * parsed from {@code product} (plain, .Z or .gz) and written to the cache
+     */
+    public static Sp3Orbits load(File product, File cache) throws IOException {
+        if (cache.isFile() && cache.lastModified() >= product.lastModified()) {
+            try {
+                return read(cache);
+            } catch (IOException e) {
+                GnssLog.w(TAG, "Unreadable cache " + cache + ", parsing " + product, e);
+            }
+        }
+        InputStream is = open(product);
+        Sp3Orbits orbits;
+        try {
+            orbits = Sp3Parser.parse(is);
+        } finally {
+            is.close();
+        }
+        orbits.write(cache);
+        return orbits;
+    }
+
+    /**
+     * @return the content of a product file, decompressed when named .Z or .gz
+     */
+    static InputStream open(File product) throws IOException {
+        InputStream is = new FileInputStream(product);
+        try {
+            if (product.getName().endsWith(".Z")) {
+                return new UncompressInputStream(is);
+            } else if (product.getName().endsWith(".gz")) {
+                return new GZIPInputStream(is, 64 * 1024);
+            }
+            return is;
+        } catch (IOException e) {
+            is.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the binary cache, replacing {@code file} at once
+     */
+    public void write(File file) throws IOException {
+        int values = satellites.length * epochs;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 4 * satellites.length + 4 * 8 * values);
+        buffer.putInt(MAGIC).putLong(startMillis).putLong(intervalMillis).putInt(epochs).putInt(satellites.length);
+        buffer.asIntBuffer().put(satellites);
+        buffer.position(buffer.position() + 4 * satellites.length);
+        for (double[] array : new double[][]{x, y, z, clock}) {
+            buffer.asDoubleBuffer().put(array);
+            buffer.position(buffer.position() + 8 * values);
+        }
+        buffer.flip();
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            FileChannel channel = out.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("Cannot rename " + tmp + " to " + file);
+        }
+    }
+
+    /**
+     * Reads a binary cache written by {@link #write}
+     */
+    public static Sp3Orbits read(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            MappedByteBuffer buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                throw new IOException("Not an orbit cache: " + file);
+            }
+            long start = buffer.getLong();
+            long interval = buffer.getLong();
+            int epochs = buffer.getInt();
+            int count = buffer.getInt();
+            long values = (long) count * epochs;
+            if (count < 0 || epochs < 1 || interval <= 0 || buffer.remaining() != 4L * count + 4 * 8 * values) {
+                throw new IOException("Truncated orbit cache: " + file);
+            }
+            int[] satellites = new int[count];
+            buffer.asIntBuffer().get(satellites);
+            buffer.position(buffer.position() + 4 * count);
+            double[][] arrays = new double[4][(int) values];
+            for (double[] array : arrays) {
+                buffer.asDoubleBuffer().get(array);
+                buffer.position(buffer.position() + 8 * array.length);
+            }
+            for (int satellite : satellites) {
+                if (satellite < 0 || satellite >= SYSTEMS.length() * MAX_PRN) {
+                    throw new IOException("Corrupt orbit cache: " + file);
+                }
+            }
+            return new Sp3Orbits(start, interval, epochs, satellites, arrays[0], arrays[1], arrays[2], arrays[3]);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.gnss.ppptesttwo.precise;
+
+import com.gnss.ppptesttwo.GnssTime;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads SP3-c and SP3-d orbit products into {@link Sp3Orbits}.
+ * <p>
+ * The file is read line by line straight into the arrays sized from the header: epoch
+ * ({@code *}) and position ({@code P}) records are used, velocity and correlation records
+ * skipped. Positions of 0 and clocks of 999999.999999 are missing values. Only the GPS and
+ * Galileo time systems, which differ by a constant offset within a few nanoseconds, are
+ * accepted.
+ */
+public final class Sp3Parser {
+
+    private static final double BAD_CLOCK = 999999.0;
+
+    private Sp3Parser() {
+    }
+
+    public static Sp3Orbits parse(InputStream is) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.US_ASCII), 64 * 1024);
+        String line = reader.readLine();
+        if (line == null || line.length() < 39 || line.charAt(0) != '#' || (line.charAt(1) != 'c' && line.charAt(1) != 'd')) {
+            throw new IOException("Not an SP3-c/d file: " + line);
+        }
+        long start = epochMillis(line, 3);
+        int epochs = parseInt(line, 32, 39);
+        line = reader.readLine();
+        if (line == null || !line.startsWith("##") || line.length() < 38) {
+            throw new IOException("Missing SP3 line 2: " + line);
+        }
+        long interval = Math.round(parseDouble(line, 24, 38) * 1000);
+
+        int[] satellites = null;
+        int count = 0;
+        int listed = 0;
+        double[] x = null;
+        double[] y = null;
+        double[] z = null;
+        double[] clock = null;
+        Sp3Orbits orbits = null;
+        int epoch = -1;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            char type = line.charAt(0);
+            if (type == 'P' && epoch >= 0) {
+                int slot = orbits.slot(system(line.charAt(1)), parseInt(line, 2, 4));
+                if (slot < 0) {
+                    continue;
+                }
+                int i = slot * epochs + epoch;
+                double px = parseDouble(line, 4, 18);
+                double py = parseDouble(line, 18, 32);
+                double pz = parseDouble(line, 32, 46);
+                if (px != 0 || py != 0 || pz != 0) {
+                    x[i] = px * 1000;
+                    y[i] = py * 1000;
+                    z[i] = pz * 1000;
+                }
+                if (line.length() > 46) {
+                    double c = parseDouble(line, 46, Math.min(60, line.length()));
+                    if (c < BAD_CLOCK) {
+                        clock[i] = c * 1e-6;
+                    }
+                }
+            } else if (type == '*') {
+                if (orbits == null) {
+                    if (satellites == null || listed < count) {
+                        throw new IOException("SP3 epoch before the satellite list");
+                    }
+                    int values = count * epochs;
+                    x = nan(values);
+                    y = nan(values);
+                    z = nan(values);
+                    clock = nan(values);
+                    orbits = new Sp3Orbits(start, interval, epochs, satellites, x, y, z, clock);
+                }
+                long time = epochMillis(line, 3);
+                if ((time - start) % interval != 0) {
+                    throw new IOException("SP3 epoch off the " + interval + " ms grid: " + line);
+                }
+                epoch = (int) ((time - start) / interval);
+                if (epoch < 0 || epoch >= epochs) {
+                    throw new IOException("SP3 epoch outside the " + epochs + " epochs of the header: " + line);
+                }
+            } else if (type == '+' && line.length() > 1 && line.charAt(1) != '+') {
+                if (satellites == null) {
+                    count = parseInt(line, 1, 6);
+                    satellites = new int[count];
+                }
+                for (int column = 9; column + 3 <= line.length() && listed < count; column += 3) {
+                    int number = Sp3Orbits.number(system(line.charAt(column)), parseInt(line, column + 1, column + 3));
+                    if (number < 0) {
+                        throw new IOException("Unknown SP3 satellite " + line.substring(column, column + 3));
+                    }
+                    satellites[listed++] = number;
+                }
+            } else if (type == '%' && line.startsWith("%c") && orbits == null) {
+                String timeSystem = line.length() < 12 ? "" : line.substring(9, 12).trim();
+                if (!timeSystem.isEmpty() && !timeSystem.equals("GPS") && !timeSystem.equals("GAL") && !timeSystem.equals("ccc")) {
+                    throw new IOException("Unsupported SP3 time system " + timeSystem);
+                }
+            } else if (line.startsWith("EOF")) {
+                break;
+            }
+        }
+        if (orbits == null) {
+            throw new IOException("SP3 file without satellites");
+        }
+        return orbits;
+    }
+
+    /**
+     * @return 'G' for the blank system of SP3-a/c GPS-only files
+     */
+    private static char system(char c) {
+        return c == ' ' ? 'G' : c;
+    }
+
+    /**
+     * @param from column of the year in {@code yyyy mm dd hh mm ss.ssssssss}
+     */
+    private static long epochMillis(String line, int from) throws IOException {
+        int year = parseInt(line, from, from + 4);
+        int month = parseInt(line, from + 5, from + 7);
+        int day = parseInt(line, from + 8, from + 10);
+        int hour = parseInt(line, from + 11, from + 13);
+        int minute = parseInt(line, from + 14, from + 16);
+        double second = parseDouble(line, from + 17, Math.min(from + 28, line.length()));
+        return GnssTime.daysFromCivil(year, month, day) * 86400000L
+                + (hour * 3600L + minute * 60L) * 1000L + Math.round(second * 1000);
+    }
+
+    private static int parseInt(String line, int from, int to) throws IOException {
+        try {
+            return Integer.parseInt(line.substring(from, to).trim());
+        } catch (RuntimeException e) {
+            throw new IOException("Bad SP3 field at " + from + "-" + to + ": " + line, e);
+        }
+    }
+
+    private static double parseDouble(String line, int from, int to) throws IOException {
+        try {
+            return Double.parseDouble(line.substring(from, to).trim());
+        } catch (RuntimeException e) {
+            throw new IOException("Bad SP3 field at " + from + "-" + to + ": " + line, e);
+        }
+    }
+
+    private static double[] nan(int length) {
+        double[] values = new double[length];
+        Arrays.fill(values, Double.NaN);
+        return values;
+    }
+}
@@ -0,0 +1,110 @@
+package com.gnss.ppptesttwo.raw;
+
+/**
+ * Receiver clock of one epoch of raw measurements, with the fields and units of
+ * {@code android.location.GnssClock}. Optional fields are NaN (or 0 for the integer
+ * fields) when the receiver does not report them.
+ */
+public class RawClock {
+
+    private long timeNanos;
+    private long fullBiasNanos;
+    private double biasNanos;
+    private double biasUncertaintyNanos = Double.NaN;
+    private double driftNanosPerSecond = Double.NaN;
+    private double driftUncertaintyNanosPerSecond = Double.NaN;
+    private int hardwareClockDiscontinuityCount;
+    private int leapSecond;
+    private boolean hasLeapSecond;
+
+    public RawClock() {
+    }
+
+    public RawClock(long timeNanos, long fullBiasNanos, double biasNanos) {
+        this.timeNanos = timeNanos;
+        this.fullBiasNanos = fullBiasNanos;
+        this.biasNanos = biasNanos;
+    }
+
+    /**
+     * @return the receiver's hardware clock, in nanoseconds
+     */
+    public long getTimeNanos() {
+        return timeNanos;
+    }
+
+    public void setTimeNanos(long timeNanos) {
+        this.timeNanos = timeNanos;
+    }
+
+    /**
+     * @return difference between the hardware clock and GPS time since 1980-01-06, in
+     * nanoseconds (negative, as reported by Android)
+     */
+    public long getFullBiasNanos() {
+        return fullBiasNanos;
+    }
+
+    public void setFullBiasNanos(long fullBiasNanos) {
+        this.fullBiasNanos = fullBiasNanos;
+    }
+
+    /**
+     * @return sub-nanosecond part of the clock bias
+     */
+    public double getBiasNanos() {
+        return biasNanos;
+    }
+
+    public void setBiasNanos(double biasNanos) {
+        this.biasNanos = biasNanos;
+    }
+
+    public double getBiasUncertaintyNanos() {
+        return biasUncertaintyNanos;
+    }
+
+    public void setBiasUncertaintyNanos(double biasUncertaintyNanos) {
+        this.biasUncertaintyNanos = biasUncertaintyNanos;
+    }
+
+    public double getDriftNanosPerSecond() {
+        return driftNanosPerSecond;
+    }
+
+    public void setDriftNanosPerSecond(double driftNanosPerSecond) {
+        this.driftNanosPerSecond = driftNanosPerSecond;
+    }
+
+    public double getDriftUncertaintyNanosPerSecond() {
+        return driftUncertaintyNanosPerSecond;
+    }
+
+    public void setDriftUncertaintyNanosPerSecond(double driftUncertaintyNanosPerSecond) {
+        this.driftUncertaintyNanosPerSecond = driftUncertaintyNanosPerSecond;
+    }
+
+    /**
+     * @return counter incremented at every discontinuity of the hardware clock
+     */
+    public int getHardwareClockDiscontinuityCount() {
+        return hardwareClockDiscontinuityCount;
+    }
+
+    public void setHardwareClockDiscontinuityCount(int hardwareClockDiscontinuityCount) {
+        this.hardwareClockDiscontinuityCount = hardwareClockDiscontinuityCount;
+    }
+
+    public boolean hasLeapSecond() {
+        return hasLeapSecond;
+    }
+
+    public int getLeapSecond() {
+        return leapSecond;
+    }
+
+    public void setLeapSecond(int leapSecond) {
+        this.leapSecond = leapSecond;
+        this.hasLeapSecond = true;
+    }
+}
@@ -0,0 +1,29 @@
+package com.gnss.ppptesttwo.raw;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One epoch of raw measurements: the receiver clock and the measurements sharing its time
+ * tag, the platform neutral counterpart of {@code android.location.GnssMeasurementsEvent}.
+ */
+public class RawEpoch {
+
+    private final RawClock clock;
+    private final List<RawMeasurement> measurements;
+
+    public RawEpoch(RawClock clock, Collection<RawMeasurement> measurements) {
+        this.clock = clock;
+        this.measurements = Collections.unmodifiableList(new ArrayList<>(measurements));
+    }
+
+    public RawClock getClock() {
+        return clock;
+    }
+
+    public List<RawMeasurement> getMeasurements() {
+        return measurements;
+    }
+}
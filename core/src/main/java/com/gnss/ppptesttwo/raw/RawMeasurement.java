@@ -0,0 +1,203 @@
+package com.gnss.ppptesttwo.raw;
+
+/**
+ * Raw measurement of one signal, with the fields, units and constants of
+ * {@code android.location.GnssMeasurement}, so that the positioning code does not depend
+ * on the Android framework. Optional values are NaN when they are not reported.
+ */
+public class RawMeasurement {
+
+    // Constellation types, as in android.location.GnssStatus
+    public static final int CONSTELLATION_UNKNOWN = 0;
+    public static final int CONSTELLATION_GPS = 1;
+    public static final int CONSTELLATION_SBAS = 2;
+    public static final int CONSTELLATION_GLONASS = 3;
+    public static final int CONSTELLATION_QZSS = 4;
+    public static final int CONSTELLATION_BEIDOU = 5;
+    public static final int CONSTELLATION_GALILEO = 6;
+    public static final int CONSTELLATION_IRNSS = 7;
+
+    // Tracking state bits
+    public static final int STATE_UNKNOWN = 0;
+    public static final int STATE_CODE_LOCK = 1;
+    public static final int STATE_BIT_SYNC = 1 << 1;
+    public static final int STATE_SUBFRAME_SYNC = 1 << 2;
+    public static final int STATE_TOW_DECODED = 1 << 3;
+    public static final int STATE_MSEC_AMBIGUOUS = 1 << 4;
+    public static final int STATE_SYMBOL_SYNC = 1 << 5;
+    public static final int STATE_GLO_STRING_SYNC = 1 << 6;
+    public static final int STATE_GLO_TOD_DECODED = 1 << 7;
+    public static final int STATE_BDS_D2_BIT_SYNC = 1 << 8;
+    public static final int STATE_BDS_D2_SUBFRAME_SYNC = 1 << 9;
+    public static final int STATE_GAL_E1BC_CODE_LOCK = 1 << 10;
+    public static final int STATE_GAL_E1C_2ND_CODE_LOCK = 1 << 11;
+    public static final int STATE_GAL_E1B_PAGE_SYNC = 1 << 12;
+    public static final int STATE_SBAS_SYNC = 1 << 13;
+    public static final int STATE_TOW_KNOWN = 1 << 14;
+    public static final int STATE_GLO_TOD_KNOWN = 1 << 15;
+
+    // Accumulated delta range state bits
+    public static final int ADR_STATE_UNKNOWN = 0;
+    public static final int ADR_STATE_VALID = 1;
+    public static final int ADR_STATE_RESET = 1 << 1;
+    public static final int ADR_STATE_CYCLE_SLIP = 1 << 2;
+    public static final int ADR_STATE_HALF_CYCLE_RESOLVED = 1 << 3;
+
+    private int svid;
+    private int constellationType;
+    private double timeOffsetNanos;
+    private int state;
+    private long receivedSvTimeNanos;
+    private long receivedSvTimeUncertaintyNanos;
+    private double cn0DbHz;
+    private double pseudorangeRateMetersPerSecond;
+    private double pseudorangeRateUncertaintyMetersPerSecond;
+    private int accumulatedDeltaRangeState;
+    private double accumulatedDeltaRangeMeters;
+    private double accumulatedDeltaRangeUncertaintyMeters;
+    private double carrierFrequencyHz = Double.NaN;
+    private int multipathIndicator;
+    private String codeType;
+
+    public int getSvid() {
+        return svid;
+    }
+
+    public void setSvid(int svid) {
+        this.svid = svid;
+    }
+
+    /**
+     * @return one of the {@code CONSTELLATION_*} constants
+     */
+    public int getConstellationType() {
+        return constellationType;
+    }
+
+    public void setConstellationType(int constellationType) {
+        this.constellationType = constellationType;
+    }
+
+    /**
+     * @return offset of the measurement from the clock's time tag, in nanoseconds
+     */
+    public double getTimeOffsetNanos() {
+        return timeOffsetNanos;
+    }
+
+    public void setTimeOffsetNanos(double timeOffsetNanos) {
+        this.timeOffsetNanos = timeOffsetNanos;
+    }
+
+    /**
+     * @return combination of the {@code STATE_*} bits
+     */
+    public int getState() {
+        return state;
+    }
+
+    public void setState(int state) {
+        this.state = state;
+    }
+
+    public long getReceivedSvTimeNanos() {
+        return receivedSvTimeNanos;
+    }
+
+    public void setReceivedSvTimeNanos(long receivedSvTimeNanos) {
+        this.receivedSvTimeNanos = receivedSvTimeNanos;
+    }
+
+    public long getReceivedSvTimeUncertaintyNanos() {
+        return receivedSvTimeUncertaintyNanos;
+    }
+
+    public void setReceivedSvTimeUncertaintyNanos(long receivedSvTimeUncertaintyNanos) {
+        this.receivedSvTimeUncertaintyNanos = receivedSvTimeUncertaintyNanos;
+    }
+
+    public double getCn0DbHz() {
+        return cn0DbHz;
+    }
+
+    public void setCn0DbHz(double cn0DbHz) {
+        this.cn0DbHz = cn0DbHz;
+    }
+
+    public double getPseudorangeRateMetersPerSecond() {
+        return pseudorangeRateMetersPerSecond;
+    }
+
+    public void setPseudorangeRateMetersPerSecond(double pseudorangeRateMetersPerSecond) {
+        this.pseudorangeRateMetersPerSecond = pseudorangeRateMetersPerSecond;
+    }
+
+    public double getPseudorangeRateUncertaintyMetersPerSecond() {
+        return pseudorangeRateUncertaintyMetersPerSecond;
+    }
+
+    public void setPseudorangeRateUncertaintyMetersPerSecond(double pseudorangeRateUncertaintyMetersPerSecond) {
+        this.pseudorangeRateUncertaintyMetersPerSecond = pseudorangeRateUncertaintyMetersPerSecond;
+    }
+
+    /**
+     * @return combination of the {@code ADR_STATE_*} bits
+     */
+    public int getAccumulatedDeltaRangeState() {
+        return accumulatedDeltaRangeState;
+    }
+
+    public void setAccumulatedDeltaRangeState(int accumulatedDeltaRangeState) {
+        this.accumulatedDeltaRangeState = accumulatedDeltaRangeState;
+    }
+
+    public double getAccumulatedDeltaRangeMeters() {
+        return accumulatedDeltaRangeMeters;
+    }
+
+    public void setAccumulatedDeltaRangeMeters(double accumulatedDeltaRangeMeters) {
+        this.accumulatedDeltaRangeMeters = accumulatedDeltaRangeMeters;
+    }
+
+    public double getAccumulatedDeltaRangeUncertaintyMeters() {
+        return accumulatedDeltaRangeUncertaintyMeters;
+    }
+
+    public void setAccumulatedDeltaRangeUncertaintyMeters(double accumulatedDeltaRangeUncertaintyMeters) {
+        this.accumulatedDeltaRangeUncertaintyMeters = accumulatedDeltaRangeUncertaintyMeters;
+    }
+
+    public boolean hasCarrierFrequencyHz() {
+        return !Double.isNaN(carrierFrequencyHz);
+    }
+
+    /**
+     * @return carrier frequency of the tracked signal, NaN when not reported
+     */
+    public double getCarrierFrequencyHz() {
+        return carrierFrequencyHz;
+    }
+
+    public void setCarrierFrequencyHz(double carrierFrequencyHz) {
+        this.carrierFrequencyHz = carrierFrequencyHz;
+    }
+
+    public int getMultipathIndicator() {
+        return multipathIndicator;
+    }
+
+    public void setMultipathIndicator(int multipathIndicator) {
+        this.multipathIndicator = multipathIndicator;
+    }
+
+    /**
+     * @return RINEX tracking code letter (e.g. "C"), null when not reported
+     */
+    public String getCodeType() {
+        return codeType;
+    }
+
+    public void setCodeType(String codeType) {
+        this.codeType = codeType;
+    }
+}
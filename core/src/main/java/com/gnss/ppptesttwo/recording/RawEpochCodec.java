@@ -0,0 +1,529 @@
+package com.gnss.ppptesttwo.recording;
+
+import com.gnss.ppptesttwo.raw.RawClock;
+import com.gnss.ppptesttwo.raw.RawEpoch;
+import com.gnss.ppptesttwo.raw.RawMeasurement;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar epoch encoding shared by {@link RawRecorder} and {@link RawRecordingReader}.
+ * <p>
+ * Every epoch is the clock followed by one column per measurement field. Values are
+ * delta-encoded against the previous epoch of the same signal (constellation, svid and
+ * band) and written as varints; the state words are XORed with their previous value.
+ * The receive time and the accumulated delta range are predicted from the pseudorange
+ * rate, so at 1 Hz only the clock drift and the carrier noise are left in the residual.
+ * The state is reset at every segment so that segments decode independently.
+ * <p>
+ * Doubles are stored in fixed point, well below the measurement noise: 1e-6 ns for the
+ * clock and time offsets, 1e-6 m and m/s for the ranges and rates, 1e-3 dB-Hz for C/N0
+ * and 1e-3 Hz for the carrier frequency. NaN in a mandatory double field reads back as 0.
+ */
+final class RawEpochCodec {
+
+    private static final double NANOS_SCALE = 1e6;
+    private static final double METERS_SCALE = 1e6;
+    private static final double CN0_SCALE = 1e3;
+    private static final double HZ_SCALE = 1e3;
+    private static final double SPEED_OF_LIGHT = 299792458.0;
+
+    // clock flags
+    private static final int HAS_BIAS_UNCERTAINTY = 1;
+    private static final int HAS_DRIFT = 1 << 1;
+    private static final int HAS_DRIFT_UNCERTAINTY = 1 << 2;
+    private static final int HAS_LEAP_SECOND = 1 << 3;
+
+    // measurement flags
+    private static final int HAS_CARRIER_FREQUENCY = 1;
+    private static final int HAS_CODE_TYPE = 1 << 1;
+    private static final int HAS_MULTIPATH = 1 << 2;
+    private static final int HAS_TIME_OFFSET = 1 << 3;
+
+    /** Upper bound of the encoded clock and of one measurement without its code type */
+    private static final int MAX_CLOCK_SIZE = 10 * 10;
+    private static final int MAX_MEASUREMENT_SIZE = 18 * 10;
+
+    private long timeNanos;
+    private long fullBiasNanos;
+    private long bias;
+    private long biasUncertainty;
+    private long drift;
+    private long driftUncertainty;
+    private long discontinuityCount;
+
+    private final SignalTable signals = new SignalTable();
+    private int[] slots = new int[64];
+    private int[] flags = new int[64];
+
+    void reset() {
+        timeNanos = 0;
+        fullBiasNanos = 0;
+        bias = 0;
+        biasUncertainty = 0;
+        drift = 0;
+        driftUncertainty = 0;
+        discontinuityCount = 0;
+        signals.clear();
+    }
+
+    /**
+     * @return an upper bound of the encoded size of the epoch
+     */
+    static int maxEncodedSize(RawEpoch epoch) {
+        List<RawMeasurement> measurements = epoch.getMeasurements();
+        int size = MAX_CLOCK_SIZE;
+        for (int i = 0; i < measurements.size(); i++) {
+            String codeType = measurements.get(i).getCodeType();
+            size += MAX_MEASUREMENT_SIZE + (codeType != null ? codeType.length() : 0);
+        }
+        return size;
+    }
+
+    /**
+     * @return GPS time of the epoch in nanoseconds, as used by the segment index
+     */
+    static long gpsNanos(RawClock clock) {
+        return clock.getTimeNanos() - clock.getFullBiasNanos() - Math.round(clock.getBiasNanos());
+    }
+
+    void encode(RawEpoch epoch, ByteBuffer out) {
+        RawClock clock = epoch.getClock();
+        List<RawMeasurement> measurements = epoch.getMeasurements();
+        int n = measurements.size();
+
+        int clockFlags = 0;
+        if (!Double.isNaN(clock.getBiasUncertaintyNanos())) clockFlags |= HAS_BIAS_UNCERTAINTY;
+        if (!Double.isNaN(clock.getDriftNanosPerSecond())) clockFlags |= HAS_DRIFT;
+        if (!Double.isNaN(clock.getDriftUncertaintyNanosPerSecond())) clockFlags |= HAS_DRIFT_UNCERTAINTY;
+        if (clock.hasLeapSecond()) clockFlags |= HAS_LEAP_SECOND;
+        VarInts.putUnsigned(out, clockFlags);
+
+        long epochTime = clock.getTimeNanos();
+        VarInts.putSigned(out, epochTime - timeNanos);
+        timeNanos = epochTime;
+        VarInts.putSigned(out, clock.getFullBiasNanos() - fullBiasNanos);
+        fullBiasNanos = clock.getFullBiasNanos();
+        bias = putDelta(out, quantize(clock.getBiasNanos(), NANOS_SCALE), bias);
+        if ((clockFlags & HAS_BIAS_UNCERTAINTY) != 0) {
+            biasUncertainty = putDelta(out, quantize(clock.getBiasUncertaintyNanos(), NANOS_SCALE), biasUncertainty);
+        }
+        if ((clockFlags & HAS_DRIFT) != 0) {
+            drift = putDelta(out, quantize(clock.getDriftNanosPerSecond(), NANOS_SCALE), drift);
+        }
+        if ((clockFlags & HAS_DRIFT_UNCERTAINTY) != 0) {
+            driftUncertainty = putDelta(out, quantize(clock.getDriftUncertaintyNanosPerSecond(), NANOS_SCALE), driftUncertainty);
+        }
+        discontinuityCount = putDelta(out, clock.getHardwareClockDiscontinuityCount(), discontinuityCount);
+        if ((clockFlags & HAS_LEAP_SECOND) != 0) {
+            VarInts.putSigned(out, clock.getLeapSecond());
+        }
+
+        VarInts.putUnsigned(out, n);
+        ensureScratch(n);
+        SignalTable s = signals;
+        s.reserve(n);
+
+        // signal identity, resolves the slot holding the previous values
+        for (int i = 0; i < n; i++) {
+            RawMeasurement m = measurements.get(i);
+            int band = m.hasCarrierFrequencyHz() ? band(m.getCarrierFrequencyHz()) : 0;
+            int f = 0;
+            if (m.hasCarrierFrequencyHz()) f |= HAS_CARRIER_FREQUENCY;
+            if (m.getCodeType() != null) f |= HAS_CODE_TYPE;
+            if (m.getMultipathIndicator() != 0) f |= HAS_MULTIPATH;
+            if (m.getTimeOffsetNanos() != 0) f |= HAS_TIME_OFFSET;
+            VarInts.putUnsigned(out, m.getConstellationType());
+            VarInts.putUnsigned(out, m.getSvid());
+            VarInts.putUnsigned(out, band);
+            VarInts.putUnsigned(out, f);
+            slots[i] = s.slot(SignalTable.key(m.getConstellationType(), m.getSvid(), band));
+            flags[i] = f;
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            int state = measurements.get(i).getState();
+            VarInts.putUnsigned(out, (state ^ s.state[slot]) & 0xFFFFFFFFL);
+            s.state[slot] = state;
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            s.pseudorangeRate[slot] = putDelta(out,
+                    quantize(measurements.get(i).getPseudorangeRateMetersPerSecond(), METERS_SCALE), s.pseudorangeRate[slot]);
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            long value = measurements.get(i).getReceivedSvTimeNanos();
+            VarInts.putSigned(out, value - predictReceivedSvTime(slot));
+            s.receivedSvTime[slot] = value;
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            s.receivedSvTimeUncertainty[slot] = putDelta(out,
+                    measurements.get(i).getReceivedSvTimeUncertaintyNanos(), s.receivedSvTimeUncertainty[slot]);
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            s.cn0[slot] = putDelta(out, quantize(measurements.get(i).getCn0DbHz(), CN0_SCALE), s.cn0[slot]);
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            s.pseudorangeRateUncertainty[slot] = putDelta(out,
+                    quantize(measurements.get(i).getPseudorangeRateUncertaintyMetersPerSecond(), METERS_SCALE),
+                    s.pseudorangeRateUncertainty[slot]);
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            int state = measurements.get(i).getAccumulatedDeltaRangeState();
+            VarInts.putUnsigned(out, (state ^ s.adrState[slot]) & 0xFFFFFFFFL);
+            s.adrState[slot] = state;
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            long value = quantize(measurements.get(i).getAccumulatedDeltaRangeMeters(), METERS_SCALE);
+            VarInts.putSigned(out, value - predictAdr(slot));
+            s.adr[slot] = value;
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            s.adrUncertainty[slot] = putDelta(out,
+                    quantize(measurements.get(i).getAccumulatedDeltaRangeUncertaintyMeters(), METERS_SCALE),
+                    s.adrUncertainty[slot]);
+        }
+        for (int i = 0; i < n; i++) {
+            if ((flags[i] & HAS_CARRIER_FREQUENCY) != 0) {
+                int slot = slots[i];
+                s.carrierFrequency[slot] = putDelta(out,
+                        quantize(measurements.get(i).getCarrierFrequencyHz(), HZ_SCALE), s.carrierFrequency[slot]);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if ((flags[i] & HAS_TIME_OFFSET) != 0) {
+                VarInts.putSigned(out, quantize(measurements.get(i).getTimeOffsetNanos(), NANOS_SCALE));
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if ((flags[i] & HAS_MULTIPATH) != 0) {
+                VarInts.putSigned(out, measurements.get(i).getMultipathIndicator());
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if ((flags[i] & HAS_CODE_TYPE) != 0) {
+                String codeType = measurements.get(i).getCodeType();
+                VarInts.putUnsigned(out, codeType.length());
+                for (int c = 0; c < codeType.length(); c++) {
+                    out.put((byte) codeType.charAt(c));
+                }
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            s.seen(slots[i], epochTime);
+        }
+    }
+
+    RawEpoch decode(ByteBuffer in) {
+        int clockFlags = (int) VarInts.getUnsigned(in);
+        RawClock clock = new RawClock();
+        timeNanos += VarInts.getSigned(in);
+        clock.setTimeNanos(timeNanos);
+        fullBiasNanos += VarInts.getSigned(in);
+        clock.setFullBiasNanos(fullBiasNanos);
+        bias += VarInts.getSigned(in);
+        clock.setBiasNanos(bias / NANOS_SCALE);
+        if ((clockFlags & HAS_BIAS_UNCERTAINTY) != 0) {
+            biasUncertainty += VarInts.getSigned(in);
+            clock.setBiasUncertaintyNanos(biasUncertainty / NANOS_SCALE);
+        }
+        if ((clockFlags & HAS_DRIFT) != 0) {
+            drift += VarInts.getSigned(in);
+            clock.setDriftNanosPerSecond(drift / NANOS_SCALE);
+        }
+        if ((clockFlags & HAS_DRIFT_UNCERTAINTY) != 0) {
+            driftUncertainty += VarInts.getSigned(in);
+            clock.setDriftUncertaintyNanosPerSecond(driftUncertainty / NANOS_SCALE);
+        }
+        discontinuityCount += VarInts.getSigned(in);
+        clock.setHardwareClockDiscontinuityCount((int) discontinuityCount);
+        if ((clockFlags & HAS_LEAP_SECOND) != 0) {
+            clock.setLeapSecond((int) VarInts.getSigned(in));
+        }
+
+        int n = (int) VarInts.getUnsigned(in);
+        ensureScratch(n);
+        SignalTable s = signals;
+        s.reserve(n);
+        RawMeasurement[] measurements = new RawMeasurement[n];
+
+        for (int i = 0; i < n; i++) {
+            RawMeasurement m = new RawMeasurement();
+            m.setConstellationType((int) VarInts.getUnsigned(in));
+            m.setSvid((int) VarInts.getUnsigned(in));
+            int band = (int) VarInts.getUnsigned(in);
+            flags[i] = (int) VarInts.getUnsigned(in);
+            slots[i] = s.slot(SignalTable.key(m.getConstellationType(), m.getSvid(), band));
+            measurements[i] = m;
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            s.state[slot] ^= (int) VarInts.getUnsigned(in);
+            measurements[i].setState(s.state[slot]);
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            s.pseudorangeRate[slot] += VarInts.getSigned(in);
+            measurements[i].setPseudorangeRateMetersPerSecond(s.pseudorangeRate[slot] / METERS_SCALE);
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            s.receivedSvTime[slot] = predictReceivedSvTime(slot) + VarInts.getSigned(in);
+            measurements[i].setReceivedSvTimeNanos(s.receivedSvTime[slot]);
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            s.receivedSvTimeUncertainty[slot] += VarInts.getSigned(in);
+            measurements[i].setReceivedSvTimeUncertaintyNanos(s.receivedSvTimeUncertainty[slot]);
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            s.cn0[slot] += VarInts.getSigned(in);
+            measurements[i].setCn0DbHz(s.cn0[slot] / CN0_SCALE);
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            s.pseudorangeRateUncertainty[slot] += VarInts.getSigned(in);
+            measurements[i].setPseudorangeRateUncertaintyMetersPerSecond(s.pseudorangeRateUncertainty[slot] / METERS_SCALE);
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            s.adrState[slot] ^= (int) VarInts.getUnsigned(in);
+            measurements[i].setAccumulatedDeltaRangeState(s.adrState[slot]);
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            s.adr[slot] = predictAdr(slot) + VarInts.getSigned(in);
+            measurements[i].setAccumulatedDeltaRangeMeters(s.adr[slot] / METERS_SCALE);
+        }
+        for (int i = 0; i < n; i++) {
+            int slot = slots[i];
+            s.adrUncertainty[slot] += VarInts.getSigned(in);
+            measurements[i].setAccumulatedDeltaRangeUncertaintyMeters(s.adrUncertainty[slot] / METERS_SCALE);
+        }
+        for (int i = 0; i < n; i++) {
+            if ((flags[i] & HAS_CARRIER_FREQUENCY) != 0) {
+                int slot = slots[i];
+                s.carrierFrequency[slot] += VarInts.getSigned(in);
+                measurements[i].setCarrierFrequencyHz(s.carrierFrequency[slot] / HZ_SCALE);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if ((flags[i] & HAS_TIME_OFFSET) != 0) {
+                measurements[i].setTimeOffsetNanos(VarInts.getSigned(in) / NANOS_SCALE);
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if ((flags[i] & HAS_MULTIPATH) != 0) {
+                measurements[i].setMultipathIndicator((int) VarInts.getSigned(in));
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if ((flags[i] & HAS_CODE_TYPE) != 0) {
+                byte[] chars = new byte[(int) VarInts.getUnsigned(in)];
+                in.get(chars);
+                measurements[i].setCodeType(new String(chars, StandardCharsets.US_ASCII));
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            s.seen(slots[i], timeNanos);
+        }
+        return new RawEpoch(clock, Arrays.asList(measurements));
+    }
+
+    /**
+     * The satellite time advances with the receiver clock, less the range change.
+     */
+    private long predictReceivedSvTime(int slot) {
+        SignalTable s = signals;
+        if (!s.tracked[slot]) {
+            return 0;
+        }
+        long elapsed = timeNanos - s.lastTimeNanos[slot];
+        double rangeRate = s.pseudorangeRate[slot] / METERS_SCALE;
+        return s.receivedSvTime[slot] + elapsed - Math.round(elapsed * rangeRate / SPEED_OF_LIGHT);
+    }
+
+    /**
+     * The accumulated delta range follows the pseudorange rate; the rate of the current
+     * epoch is already decoded when this is called.
+     */
+    private long predictAdr(int slot) {
+        SignalTable s = signals;
+        if (!s.tracked[slot]) {
+            return 0;
+        }
+        long elapsed = timeNanos - s.lastTimeNanos[slot];
+        return s.adr[slot] + Math.round(s.pseudorangeRate[slot] * (elapsed * 1e-9));
+    }
+
+    private void ensureScratch(int n) {
+        if (slots.length < n) {
+            slots = new int[Math.max(n, slots.length * 2)];
+            flags = new int[slots.length];
+        }
+    }
+
+    private static long putDelta(ByteBuffer out, long value, long previous) {
+        VarInts.putSigned(out, value - previous);
+        return value;
+    }
+
+    private static long quantize(double value, double scale) {
+        return Math.round(value * scale);
+    }
+
+    /**
+     * @return carrier frequency in units of 1.023 MHz, tells apart the signals of one satellite
+     */
+    private static int band(double carrierFrequencyHz) {
+        return (int) Math.round(carrierFrequencyHz / 1.023e6) & 0xFFF;
+    }
+
+    /**
+     * Previous values of every signal seen in the current segment, in an open addressing
+     * table so that recording does not allocate per measurement.
+     */
+    private static final class SignalTable {
+
+        int[] keys;
+        boolean[] used;
+        boolean[] tracked;
+        long[] lastTimeNanos;
+        int[] state;
+        int[] adrState;
+        long[] receivedSvTime;
+        long[] receivedSvTimeUncertainty;
+        long[] cn0;
+        long[] pseudorangeRate;
+        long[] pseudorangeRateUncertainty;
+        long[] adr;
+        long[] adrUncertainty;
+        long[] carrierFrequency;
+        private int size;
+
+        SignalTable() {
+            allocate(128);
+        }
+
+        static int key(int constellation, int svid, int band) {
+            return (constellation & 0xFF) << 24 | (svid & 0xFFF) << 12 | band;
+        }
+
+        /**
+         * @return slot of the signal, a cleared one when it was not seen in this segment
+         */
+        int slot(int key) {
+            int mask = keys.length - 1;
+            int i = (key * 0x9E3779B9) >>> 7 & mask;
+            while (used[i]) {
+                if (keys[i] == key) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            used[i] = true;
+            keys[i] = key;
+            size++;
+            return i;
+        }
+
+        /**
+         * Makes room for {@code count} new signals, so that the slots resolved for one
+         * epoch stay valid while it is coded.
+         */
+        void reserve(int count) {
+            while ((size + count) * 2 > keys.length) {
+                grow();
+            }
+        }
+
+        void seen(int slot, long timeNanos) {
+            tracked[slot] = true;
+            lastTimeNanos[slot] = timeNanos;
+        }
+
+        void clear() {
+            if (size == 0) {
+                return;
+            }
+            Arrays.fill(used, false);
+            Arrays.fill(tracked, false);
+            Arrays.fill(state, 0);
+            Arrays.fill(adrState, 0);
+            Arrays.fill(receivedSvTime, 0);
+            Arrays.fill(receivedSvTimeUncertainty, 0);
+            Arrays.fill(cn0, 0);
+            Arrays.fill(pseudorangeRate, 0);
+            Arrays.fill(pseudorangeRateUncertainty, 0);
+            Arrays.fill(adr, 0);
+            Arrays.fill(adrUncertainty, 0);
+            Arrays.fill(carrierFrequency, 0);
+            size = 0;
+        }
+
+        private void allocate(int capacity) {
+            keys = new int[capacity];
+            used = new boolean[capacity];
+            tracked = new boolean[capacity];
+            lastTimeNanos = new long[capacity];
+            state = new int[capacity];
+            adrState = new int[capacity];
+            receivedSvTime = new long[capacity];
+            receivedSvTimeUncertainty = new long[capacity];
+            cn0 = new long[capacity];
+            pseudorangeRate = new long[capacity];
+            pseudorangeRateUncertainty = new long[capacity];
+            adr = new long[capacity];
+            adrUncertainty = new long[capacity];
+            carrierFrequency = new long[capacity];
+            size = 0;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            boolean[] oldUsed = used;
+            boolean[] oldTracked = tracked;
+            long[] oldLast = lastTimeNanos;
+            int[] oldState = state;
+            int[] oldAdrState = adrState;
+            long[] oldReceived = receivedSvTime;
+            long[] oldReceivedUncertainty = receivedSvTimeUncertainty;
+            long[] oldCn0 = cn0;
+            long[] oldRate = pseudorangeRate;
+            long[] oldRateUncertainty = pseudorangeRateUncertainty;
+            long[] oldAdr = adr;
+            long[] oldAdrUncertainty = adrUncertainty;
+            long[] oldFrequency = carrierFrequency;
+            allocate(oldKeys.length * 2);
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (!oldUsed[j]) {
+                    continue;
+                }
+                int i = slot(oldKeys[j]);
+                tracked[i] = oldTracked[j];
+                lastTimeNanos[i] = oldLast[j];
+                state[i] = oldState[j];
+                adrState[i] = oldAdrState[j];
+                receivedSvTime[i] = oldReceived[j];
+                receivedSvTimeUncertainty[i] = oldReceivedUncertainty[j];
+                cn0[i] = oldCn0[j];
+                pseudorangeRate[i] = oldRate[j];
+                pseudorangeRateUncertainty[i] = oldRateUncertainty[j];
+                adr[i] = oldAdr[j];
+                adrUncertainty[i] = oldAdrUncertainty[j];
+                carrierFrequency[i] = oldFrequency[j];
+            }
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package com.gnss.ppptesttwo.recording;
+
+import com.gnss.ppptesttwo.GnssLog;
+import com.gnss.ppptesttwo.raw.RawEpoch;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Archives raw measurement epochs in a compact binary file, read back by
+ * {@link RawRecordingReader}.
+ * <p>
+ * The file is a sequence of segments of at most {@code segmentEpochs} epochs, each one
+ * encoded by {@link RawEpochCodec} from a clean state so that it decodes on its own.
+ * Epochs are encoded into a direct buffer on the measurement thread; a full segment is
+ * handed to a writer thread that writes it in a single gathering call, so recording costs a
+ * few hundred nanoseconds per measurement and the measurement thread never waits for the
+ * disk. While all {@link #SEGMENT_BUFFERS} buffers wait for the disk, epochs are dropped
+ * and counted, unless the recorder is blocking, for recordings made faster than real time. {@link #close()} appends the segment index (time range and offset
+ * of every segment); a file cut short by a crash lacks it and the reader rebuilds it by
+ * walking the segment headers.
+ * <p>
+ * Layout, little-endian: {@code "GRAW" version} header; per segment {@code "GSEG"
+ * payloadLength epochs firstGpsNanos lastGpsNanos payload}; then the index entries
+ * {@code firstGpsNanos lastGpsNanos offset} and the trailer {@code indexOffset count "GIDX"}.
+ * <p>
+ * Epochs are recorded from one thread, the measurement callback; closing from another
+ * thread is safe.
+ */
+public class RawRecorder implements Closeable {
+
+    static final int MAGIC = 0x57415247;            // "GRAW"
+    static final int SEGMENT_MAGIC = 0x47455347;    // "GSEG"
+    static final int INDEX_MAGIC = 0x58444947;      // "GIDX"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int SEGMENT_HEADER_SIZE = 28;
+    static final int INDEX_ENTRY_SIZE = 24;
+    static final int TRAILER_SIZE = 16;
+
+    public static final int DEFAULT_SEGMENT_EPOCHS = 60;
+    public static final int DEFAULT_SEGMENT_BYTES = 256 * 1024;
+
+    /**
+     * Segments being filled or waiting for the writer thread
+     */
+    public static final int SEGMENT_BUFFERS = 4;
+
+    private static final String TAG = "RawRecorder";
+
+    /**
+     * Handed to the writer thread after the last segment
+     */
+    private static final Segment END = new Segment(0);
+
+    private final FileChannel channel;
+    private final int segmentEpochs;
+    private final int segmentBytes;
+    private final boolean blocking;
+    private final RawEpochCodec codec = new RawEpochCodec();
+    private final BlockingQueue<Segment> free = new ArrayBlockingQueue<>(SEGMENT_BUFFERS);
+    private final BlockingQueue<Segment> full = new ArrayBlockingQueue<>(SEGMENT_BUFFERS + 1);
+    private final Thread writer;
+
+    /**
+     * Segment being filled, null until the next epoch takes a free one
+     */
+    private Segment segment;
+    private int epochsInSegment;
+    private long segmentFirst;
+    private long segmentLast;
+
+    private long[] indexFirst = new long[64];
+    private long[] indexLast = new long[64];
+    private long[] indexOffset = new long[64];
+    private int segments;
+
+    /**
+     * End of the segments handed to the writer thread
+     */
+    private long position;
+    private volatile long bytesWritten;
+    private long epochs;
+    private long measurements;
+    private long dropped;
+    private boolean closed;
+
+    /**
+     * Segments written by the writer thread, guarded by {@code progress}
+     */
+    private final Object progress = new Object();
+    private long segmentsWritten;
+    private volatile IOException failure;
+
+    public RawRecorder(FileChannel channel) throws IOException {
+        this(channel, DEFAULT_SEGMENT_EPOCHS, DEFAULT_SEGMENT_BYTES, false);
+    }
+
+    /**
+     * @param channel       channel positioned at the start of an empty file, owned by the recorder
+     * @param segmentEpochs epochs per segment; the index gives random access at this granularity
+     * @param segmentBytes  encoded size after which a segment is closed early
+     * @param blocking      whether an epoch waits for a free buffer instead of being dropped
+     */
+    public RawRecorder(FileChannel channel, int segmentEpochs, int segmentBytes, boolean blocking)
+            throws IOException {
+        if (segmentEpochs < 1 || segmentBytes < 1) {
+            throw new IllegalArgumentException("segmentEpochs and segmentBytes must be positive");
+        }
+        this.channel = channel;
+        this.segmentEpochs = segmentEpochs;
+        this.segmentBytes = segmentBytes;
+        this.blocking = blocking;
+        for (int i = 0; i < SEGMENT_BUFFERS; i++) {
+            free.add(new Segment(segmentBytes + 64 * 1024));
+        }
+
+        ByteBuffer fileHeader = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        fileHeader.putInt(MAGIC).putInt(VERSION).flip();
+        writeFully(fileHeader);
+
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, TAG);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Opens a recorder of the live measurements, which drops epochs rather than wait for the disk
+     */
+    public static RawRecorder open(File file) throws IOException {
+        return open(file, false);
+    }
+
+    /**
+     * @param blocking whether an epoch waits for a free buffer instead of being dropped
+     */
+    public static RawRecorder open(File file, boolean blocking) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            return new RawRecorder(channel, DEFAULT_SEGMENT_EPOCHS, DEFAULT_SEGMENT_BYTES, blocking);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Appends an epoch. Empty epochs are kept, they carry the clock.
+     *
+     * @throws IOException when the recorder is closed or the writer thread failed
+     */
+    public synchronized void record(RawEpoch epoch) throws IOException {
+        if (closed) {
+            throw new IOException("Recorder is closed");
+        }
+        IOException failure = this.failure;
+        if (failure != null) {
+            throw new IOException("Recording stopped by a write error", failure);
+        }
+        int bound = RawEpochCodec.maxEncodedSize(epoch);
+        if (epochsInSegment > 0 && segment.payload.position() + bound > segment.payload.capacity()) {
+            handOver();
+        }
+        if (segment == null) {
+            segment = blocking ? takeFree() : free.poll();
+            if (segment == null) {
+                // every buffer waits for the disk: drop rather than block the measurements
+                dropped++;
+                return;
+            }
+        }
+        if (bound > segment.payload.capacity()) {
+            segment.payload = ByteBuffer.allocateDirect(bound);
+        }
+        long gpsNanos = RawEpochCodec.gpsNanos(epoch.getClock());
+        if (epochsInSegment == 0) {
+            codec.reset();
+            segmentFirst = gpsNanos;
+        }
+        codec.encode(epoch, segment.payload);
+        segmentLast = gpsNanos;
+        epochsInSegment++;
+        epochs++;
+        measurements += epoch.getMeasurements().size();
+        if (epochsInSegment >= segmentEpochs || segment.payload.position() >= segmentBytes) {
+            handOver();
+        }
+    }
+
+    /**
+     * Closes the current segment and waits until the writer thread has written it out;
+     * the next epoch starts a new segment.
+     */
+    public synchronized void flush() throws IOException {
+        if (epochsInSegment > 0) {
+            handOver();
+        }
+        synchronized (progress) {
+            while (segmentsWritten < segments && failure == null && writer.isAlive()) {
+                try {
+                    progress.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while flushing the recording");
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        channel.force(false);
+    }
+
+    /**
+     * @return epochs recorded, the dropped ones excluded
+     */
+    public long getEpochs() {
+        return epochs;
+    }
+
+    public long getMeasurements() {
+        return measurements;
+    }
+
+    /**
+     * @return epochs not recorded because every segment buffer was waiting for the disk
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    public int getSegments() {
+        return segments;
+    }
+
+    /**
+     * @return bytes written to the file so far, the segments not written yet excluded
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Writes the pending segments and the index, and closes the channel.
+     *
+     * @throws IOException the first write error of the writer thread, if any
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (epochsInSegment > 0) {
+                handOver();
+            }
+            full.add(END);
+            boolean interrupted = false;
+            while (writer.isAlive()) {
+                try {
+                    writer.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            long indexPosition = position;
+            ByteBuffer index = ByteBuffer.allocate(segments * INDEX_ENTRY_SIZE + TRAILER_SIZE)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < segments; i++) {
+                index.putLong(indexFirst[i]).putLong(indexLast[i]).putLong(indexOffset[i]);
+            }
+            index.putLong(indexPosition).putInt(segments).putInt(INDEX_MAGIC).flip();
+            writeFully(index);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Completes the current segment and queues it for the writer thread
+     */
+    private void handOver() {
+        if (segments == indexFirst.length) {
+            indexFirst = Arrays.copyOf(indexFirst, segments * 2);
+            indexLast = Arrays.copyOf(indexLast, segments * 2);
+            indexOffset = Arrays.copyOf(indexOffset, segments * 2);
+        }
+        indexFirst[segments] = segmentFirst;
+        indexLast[segments] = segmentLast;
+        indexOffset[segments] = position;
+        segments++;
+
+        segment.payload.flip();
+        segment.header.clear();
+        segment.header.putInt(SEGMENT_MAGIC).putInt(segment.payload.remaining()).putInt(epochsInSegment)
+                .putLong(segmentFirst).putLong(segmentLast).flip();
+        position += segment.header.remaining() + segment.payload.remaining();
+        // never full: there are no more segments than buffers
+        full.add(segment);
+        segment = null;
+        epochsInSegment = 0;
+    }
+
+    /**
+     * Writes the queued segments until {@link #END}, then returns the buffers to the producer
+     */
+    private void writeLoop() {
+        ByteBuffer[] gather = new ByteBuffer[2];
+        try {
+            Segment next;
+            while ((next = full.take()) != END) {
+                gather[0] = next.header;
+                gather[1] = next.payload;
+                long length = next.header.remaining() + next.payload.remaining();
+                long written = 0;
+                while (written < length) {
+                    written += channel.write(gather);
+                }
+                bytesWritten += length;
+                next.payload.clear();
+                free.add(next);
+                synchronized (progress) {
+                    segmentsWritten++;
+                    progress.notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            GnssLog.e(TAG, "writeLoop: write failed, the recording stops", e);
+            failure = e;
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("Recording interrupted");
+        } finally {
+            synchronized (progress) {
+                progress.notifyAll();
+            }
+        }
+    }
+
+    private Segment takeFree() throws IOException {
+        try {
+            Segment free;
+            while ((free = this.free.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                if (failure != null) {
+                    throw new IOException("Recording stopped by a write error", failure);
+                }
+            }
+            return free;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the writer thread");
+        }
+    }
+
+    /**
+     * Writes on the calling thread, only while the writer thread is not running
+     */
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            int written = channel.write(buffer);
+            position += written;
+            bytesWritten += written;
+        }
+    }
+
+    /**
+     * Header and payload buffers of one segment
+     */
+    private static final class Segment {
+        final ByteBuffer header = ByteBuffer.allocateDirect(SEGMENT_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer payload;
+
+        Segment(int capacity) {
+            payload = ByteBuffer.allocateDirect(capacity);
+        }
+    }
+}
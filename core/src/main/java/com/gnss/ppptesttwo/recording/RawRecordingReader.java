@@ -0,0 +1,223 @@
+package com.gnss.ppptesttwo.recording;
+
+import com.gnss.ppptesttwo.GnssTime;
+import com.gnss.ppptesttwo.raw.RawEpoch;
+import com.gnss.ppptesttwo.replay.EpochSource;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the files written by {@link RawRecorder}, in order or from any time through
+ * {@link #seek(GnssTime)}. The segment index comes from the trailer; when the file was
+ * not closed cleanly it is rebuilt from the segment headers and a truncated last segment
+ * is ignored.
+ */
+public class RawRecordingReader implements EpochSource {
+
+    private final FileChannel channel;
+    private final RawEpochCodec codec = new RawEpochCodec();
+
+    private long[] first;
+    private long[] last;
+    private long[] offset;
+    private int segments;
+
+    private ByteBuffer segment = ByteBuffer.allocate(0);
+    private int segmentIndex = -1;
+    private int epochsLeft;
+    private long skipBefore = Long.MIN_VALUE;
+
+    public RawRecordingReader(File file) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+    }
+
+    /**
+     * @param channel readable channel on a recording, owned by the reader
+     */
+    public RawRecordingReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        try {
+            ByteBuffer header = read(0, RawRecorder.HEADER_SIZE);
+            if (header.remaining() < RawRecorder.HEADER_SIZE || header.getInt() != RawRecorder.MAGIC) {
+                throw new IOException("Not a raw measurement recording");
+            }
+            int version = header.getInt();
+            if (version != RawRecorder.VERSION) {
+                throw new IOException("Unsupported recording version " + version);
+            }
+            if (!readIndex()) {
+                scanSegments();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int getSegmentCount() {
+        return segments;
+    }
+
+    /**
+     * @return time of the first epoch, null for an empty recording
+     */
+    public GnssTime getStartTime() {
+        return segments == 0 ? null : GnssTime.ofGpsNanos(first[0]);
+    }
+
+    /**
+     * @return time of the last epoch, null for an empty recording
+     */
+    public GnssTime getEndTime() {
+        return segments == 0 ? null : GnssTime.ofGpsNanos(last[segments - 1]);
+    }
+
+    /**
+     * Positions the reader so that {@link #next()} returns the first epoch at or after
+     * {@code time}. Only the segment holding it is decoded.
+     */
+    public void seek(GnssTime time) {
+        long target = time.getGpsNanos();
+        int low = 0;
+        int high = segments - 1;
+        int found = segments;
+        // first segment that ends at or after the target
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (last[mid] >= target) {
+                found = mid;
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        segmentIndex = found - 1;
+        epochsLeft = 0;
+        skipBefore = target;
+    }
+
+    @Override
+    public RawEpoch next() throws IOException {
+        while (true) {
+            if (epochsLeft == 0) {
+                if (segmentIndex + 1 >= segments) {
+                    return null;
+                }
+                loadSegment(++segmentIndex);
+            }
+            RawEpoch epoch = codec.decode(segment);
+            epochsLeft--;
+            if (skipBefore != Long.MIN_VALUE) {
+                if (RawEpochCodec.gpsNanos(epoch.getClock()) < skipBefore) {
+                    continue;
+                }
+                skipBefore = Long.MIN_VALUE;
+            }
+            return epoch;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void loadSegment(int index) throws IOException {
+        ByteBuffer header = read(offset[index], RawRecorder.SEGMENT_HEADER_SIZE);
+        if (header.remaining() < RawRecorder.SEGMENT_HEADER_SIZE || header.getInt() != RawRecorder.SEGMENT_MAGIC) {
+            throw new IOException("Corrupt segment at offset " + offset[index]);
+        }
+        int length = header.getInt();
+        epochsLeft = header.getInt();
+        if (segment.capacity() < length) {
+            segment = ByteBuffer.allocate(length);
+        }
+        segment.clear().limit(length);
+        readFully(segment, offset[index] + RawRecorder.SEGMENT_HEADER_SIZE);
+        segment.flip();
+        codec.reset();
+    }
+
+    private boolean readIndex() throws IOException {
+        long size = channel.size();
+        if (size < RawRecorder.HEADER_SIZE + RawRecorder.TRAILER_SIZE) {
+            return false;
+        }
+        ByteBuffer trailer = read(size - RawRecorder.TRAILER_SIZE, RawRecorder.TRAILER_SIZE);
+        long indexPosition = trailer.getLong();
+        int count = trailer.getInt();
+        if (trailer.getInt() != RawRecorder.INDEX_MAGIC || count < 0
+                || indexPosition + (long) count * RawRecorder.INDEX_ENTRY_SIZE + RawRecorder.TRAILER_SIZE != size) {
+            return false;
+        }
+        allocateIndex(count);
+        ByteBuffer entries = read(indexPosition, count * RawRecorder.INDEX_ENTRY_SIZE);
+        for (int i = 0; i < count; i++) {
+            first[i] = entries.getLong();
+            last[i] = entries.getLong();
+            offset[i] = entries.getLong();
+        }
+        segments = count;
+        return true;
+    }
+
+    private void scanSegments() throws IOException {
+        allocateIndex(64);
+        long size = channel.size();
+        long position = RawRecorder.HEADER_SIZE;
+        while (position + RawRecorder.SEGMENT_HEADER_SIZE <= size) {
+            ByteBuffer header = read(position, RawRecorder.SEGMENT_HEADER_SIZE);
+            if (header.getInt() != RawRecorder.SEGMENT_MAGIC) {
+                break;
+            }
+            int length = header.getInt();
+            header.getInt(); // epochs
+            long end = position + RawRecorder.SEGMENT_HEADER_SIZE + length;
+            if (length < 0 || end > size) {
+                break;
+            }
+            if (segments == first.length) {
+                first = Arrays.copyOf(first, segments * 2);
+                last = Arrays.copyOf(last, segments * 2);
+                offset = Arrays.copyOf(offset, segments * 2);
+            }
+            first[segments] = header.getLong();
+            last[segments] = header.getLong();
+            offset[segments] = position;
+            segments++;
+            position = end;
+        }
+    }
+
+    private void allocateIndex(int capacity) {
+        first = new long[capacity];
+        last = new long[capacity];
+        offset = new long[capacity];
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Recording ends inside a segment");
+            }
+        }
+    }
+}
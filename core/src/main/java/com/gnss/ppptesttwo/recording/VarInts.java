@@ -0,0 +1,41 @@
+package com.gnss.ppptesttwo.recording;
+
+import java.nio.ByteBuffer;
+
+/**
+ * LEB128 variable length integers, with zigzag mapping for signed values
+ */
+final class VarInts {
+
+    private VarInts() {
+    }
+
+    static void putUnsigned(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static void putSigned(ByteBuffer out, long value) {
+        putUnsigned(out, (value << 1) ^ (value >> 63));
+    }
+
+    static long getUnsigned(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    static long getSigned(ByteBuffer in) {
+        long value = getUnsigned(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,17 @@
+package com.gnss.ppptesttwo.replay;
+
+import com.gnss.ppptesttwo.raw.RawEpoch;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Sequence of recorded epochs of raw measurements, in time order.
+ */
+public interface EpochSource extends Closeable {
+
+    /**
+     * @return the next epoch, null at the end of the recording
+     */
+    RawEpoch next() throws IOException;
+}
@@ -0,0 +1,203 @@
+package com.gnss.ppptesttwo.replay;
+
+import com.gnss.ppptesttwo.raw.RawClock;
+import com.gnss.ppptesttwo.raw.RawEpoch;
+import com.gnss.ppptesttwo.raw.RawMeasurement;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the {@code Raw,} records of the CSV logs written by Google's GnssLogger app.
+ * <p>
+ * Columns are located through the {@code # Raw,...} header line, so logs of the different
+ * app versions are accepted; without a header the column order of GnssLogger 2.0 is
+ * assumed. Consecutive records sharing the same {@code TimeNanos} form one epoch, every
+ * other record type (Fix, Nav, Status, ...) is skipped. Empty fields are read as absent.
+ */
+public class GnssLoggerReader implements EpochSource {
+
+    private static final String RAW = "Raw";
+
+    private static final String[] DEFAULT_COLUMNS = {
+            "Raw", "ElapsedRealtimeMillis", "TimeNanos", "LeapSecond", "TimeUncertaintyNanos",
+            "FullBiasNanos", "BiasNanos", "BiasUncertaintyNanos", "DriftNanosPerSecond",
+            "DriftUncertaintyNanosPerSecond", "HardwareClockDiscontinuityCount", "Svid",
+            "TimeOffsetNanos", "State", "ReceivedSvTimeNanos", "ReceivedSvTimeUncertaintyNanos",
+            "Cn0DbHz", "PseudorangeRateMetersPerSecond", "PseudorangeRateUncertaintyMetersPerSecond",
+            "AccumulatedDeltaRangeState", "AccumulatedDeltaRangeMeters",
+            "AccumulatedDeltaRangeUncertaintyMeters", "CarrierFrequencyHz", "CarrierCycles",
+            "CarrierPhase", "CarrierPhaseUncertainty", "MultipathIndicator", "SnrInDb",
+            "ConstellationType", "AgcDb"};
+
+    private final BufferedReader reader;
+
+    private int timeNanos, leapSecond, fullBiasNanos, biasNanos, biasUncertaintyNanos,
+            driftNanosPerSecond, driftUncertaintyNanosPerSecond, hardwareClockDiscontinuityCount,
+            svid, timeOffsetNanos, state, receivedSvTimeNanos, receivedSvTimeUncertaintyNanos,
+            cn0DbHz, pseudorangeRate, pseudorangeRateUncertainty, adrState, adrMeters,
+            adrUncertainty, carrierFrequencyHz, multipathIndicator, constellationType, codeType;
+
+    /**
+     * First record of the next epoch, already read
+     */
+    private String[] pending;
+    private long lineNumber;
+
+    public GnssLoggerReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader, 1 << 16);
+        mapColumns(DEFAULT_COLUMNS);
+    }
+
+    @Override
+    public RawEpoch next() throws IOException {
+        String[] fields = pending != null ? pending : nextRecord();
+        pending = null;
+        if (fields == null) {
+            return null;
+        }
+
+        RawClock clock = parseClock(fields);
+        List<RawMeasurement> measurements = new ArrayList<>();
+        measurements.add(parseMeasurement(fields));
+        while ((fields = nextRecord()) != null) {
+            if (parseLong(fields, timeNanos, 0) != clock.getTimeNanos()) {
+                pending = fields;
+                break;
+            }
+            measurements.add(parseMeasurement(fields));
+        }
+        return new RawEpoch(clock, measurements);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * @return the fields of the next Raw record, null at the end of the file
+     */
+    private String[] nextRecord() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.startsWith("#")) {
+                String header = line.substring(1).trim();
+                if (header.startsWith(RAW + ",")) {
+                    mapColumns(header.split(","));
+                }
+                continue;
+            }
+            if (line.startsWith(RAW + ",")) {
+                return line.split(",", -1);
+            }
+        }
+        return null;
+    }
+
+    private void mapColumns(String[] names) {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = names.length - 1; i >= 0; i--) {
+            index.put(names[i].trim(), i);
+        }
+        timeNanos = column(index, "TimeNanos");
+        leapSecond = column(index, "LeapSecond");
+        fullBiasNanos = column(index, "FullBiasNanos");
+        biasNanos = column(index, "BiasNanos");
+        biasUncertaintyNanos = column(index, "BiasUncertaintyNanos");
+        driftNanosPerSecond = column(index, "DriftNanosPerSecond");
+        driftUncertaintyNanosPerSecond = column(index, "DriftUncertaintyNanosPerSecond");
+        hardwareClockDiscontinuityCount = column(index, "HardwareClockDiscontinuityCount");
+        svid = column(index, "Svid");
+        timeOffsetNanos = column(index, "TimeOffsetNanos");
+        state = column(index, "State");
+        receivedSvTimeNanos = column(index, "ReceivedSvTimeNanos");
+        receivedSvTimeUncertaintyNanos = column(index, "ReceivedSvTimeUncertaintyNanos");
+        cn0DbHz = column(index, "Cn0DbHz");
+        pseudorangeRate = column(index, "PseudorangeRateMetersPerSecond");
+        pseudorangeRateUncertainty = column(index, "PseudorangeRateUncertaintyMetersPerSecond");
+        adrState = column(index, "AccumulatedDeltaRangeState");
+        adrMeters = column(index, "AccumulatedDeltaRangeMeters");
+        adrUncertainty = column(index, "AccumulatedDeltaRangeUncertaintyMeters");
+        carrierFrequencyHz = column(index, "CarrierFrequencyHz");
+        multipathIndicator = column(index, "MultipathIndicator");
+        constellationType = column(index, "ConstellationType");
+        codeType = column(index, "CodeType");
+    }
+
+    private static int column(Map<String, Integer> index, String name) {
+        Integer i = index.get(name);
+        return i == null ? -1 : i;
+    }
+
+    private RawClock parseClock(String[] f) throws IOException {
+        if (isEmpty(f, timeNanos) || isEmpty(f, fullBiasNanos)) {
+            throw new IOException("Line " + lineNumber + ": Raw record without TimeNanos/FullBiasNanos");
+        }
+        RawClock clock = new RawClock(parseLong(f, timeNanos, 0), parseLong(f, fullBiasNanos, 0),
+                parseDouble(f, biasNanos, 0.0));
+        clock.setBiasUncertaintyNanos(parseDouble(f, biasUncertaintyNanos, Double.NaN));
+        clock.setDriftNanosPerSecond(parseDouble(f, driftNanosPerSecond, Double.NaN));
+        clock.setDriftUncertaintyNanosPerSecond(parseDouble(f, driftUncertaintyNanosPerSecond, Double.NaN));
+        clock.setHardwareClockDiscontinuityCount((int) parseLong(f, hardwareClockDiscontinuityCount, 0));
+        if (!isEmpty(f, leapSecond)) {
+            clock.setLeapSecond((int) parseLong(f, leapSecond, 0));
+        }
+        return clock;
+    }
+
+    private RawMeasurement parseMeasurement(String[] f) throws IOException {
+        RawMeasurement m = new RawMeasurement();
+        m.setSvid((int) parseLong(f, svid, 0));
+        m.setConstellationType((int) parseLong(f, constellationType, RawMeasurement.CONSTELLATION_UNKNOWN));
+        m.setTimeOffsetNanos(parseDouble(f, timeOffsetNanos, 0.0));
+        m.setState((int) parseLong(f, state, RawMeasurement.STATE_UNKNOWN));
+        m.setReceivedSvTimeNanos(parseLong(f, receivedSvTimeNanos, 0));
+        m.setReceivedSvTimeUncertaintyNanos(parseLong(f, receivedSvTimeUncertaintyNanos, 0));
+        m.setCn0DbHz(parseDouble(f, cn0DbHz, 0.0));
+        m.setPseudorangeRateMetersPerSecond(parseDouble(f, pseudorangeRate, 0.0));
+        m.setPseudorangeRateUncertaintyMetersPerSecond(parseDouble(f, pseudorangeRateUncertainty, 0.0));
+        m.setAccumulatedDeltaRangeState((int) parseLong(f, adrState, RawMeasurement.ADR_STATE_UNKNOWN));
+        m.setAccumulatedDeltaRangeMeters(parseDouble(f, adrMeters, 0.0));
+        m.setAccumulatedDeltaRangeUncertaintyMeters(parseDouble(f, adrUncertainty, 0.0));
+        m.setCarrierFrequencyHz(parseDouble(f, carrierFrequencyHz, Double.NaN));
+        m.setMultipathIndicator((int) parseLong(f, multipathIndicator, 0));
+        if (!isEmpty(f, codeType)) {
+            m.setCodeType(f[codeType].trim());
+        }
+        return m;
+    }
+
+    private static boolean isEmpty(String[] f, int column) {
+        return column < 0 || column >= f.length || f[column].isEmpty();
+    }
+
+    private long parseLong(String[] f, int column, long absent) throws IOException {
+        if (isEmpty(f, column)) {
+            return absent;
+        }
+        try {
+            return Long.parseLong(f[column].trim());
+        } catch (NumberFormatException e) {
+            // some versions print integral fields as decimals
+            return (long) parseDouble(f, column, absent);
+        }
+    }
+
+    private double parseDouble(String[] f, int column, double absent) throws IOException {
+        if (isEmpty(f, column)) {
+            return absent;
+        }
+        try {
+            return Double.parseDouble(f[column]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Line " + lineNumber + ": invalid number '" + f[column] + "'", e);
+        }
+    }
+}
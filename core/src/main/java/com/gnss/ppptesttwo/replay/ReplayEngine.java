@@ -0,0 +1,170 @@
+package com.gnss.ppptesttwo.replay;
+
+import com.gnss.ppptesttwo.adjust.WeightedLeastSquares;
+import com.gnss.ppptesttwo.constellations.GnssConstellation;
+import com.gnss.ppptesttwo.navifromftp.Coordinates;
+import com.gnss.ppptesttwo.navifromftp.Ecef;
+import com.gnss.ppptesttwo.raw.RawEpoch;
+import com.gnss.ppptesttwo.recording.RawRecorder;
+import com.gnss.ppptesttwo.recording.RawRecordingReader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Drives recorded epochs through the same constellation, correction and solver steps as
+ * the live measurement callback, as fast as the CPU allows.
+ * <p>
+ * Navigation data must already be loaded in the constellation, e.g. with
+ * {@link GnssConstellation#initFromFiles}; nothing is downloaded during a replay.
+ */
+public class ReplayEngine {
+
+    public enum Stage {
+        /**
+         * Reading and parsing of the recording
+         */
+        READ,
+        /**
+         * Pseudoranges from the raw measurements
+         */
+        MEASUREMENTS,
+        /**
+         * Satellite positions, elevation mask and corrections
+         */
+        SATELLITES,
+        /**
+         * Cold start and weighted least squares
+         */
+        SOLUTION
+    }
+
+    /**
+     * Notified of every solved epoch, e.g. to compare with a reference track
+     */
+    public interface Listener {
+        void onSolution(RawEpoch epoch, ReplayReport.TrackPoint point);
+    }
+
+    private static final int MIN_SATELLITES = 5;
+
+    private final GnssConstellation constellation;
+    private final WeightedLeastSquares solver;
+    private Listener listener;
+
+    public ReplayEngine(GnssConstellation constellation, WeightedLeastSquares solver) {
+        this.constellation = constellation;
+        this.solver = solver;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Replays every epoch of {@code source}, starting without a position
+     */
+    public ReplayReport run(EpochSource source) throws IOException {
+        ReplayReport report = new ReplayReport();
+        Coordinates pose = null;
+        long start = System.nanoTime();
+        long t0 = start;
+        RawEpoch epoch;
+        while ((epoch = source.next()) != null) {
+            long t1 = System.nanoTime();
+            report.addEpoch();
+            report.addSample(Stage.READ, t1 - t0);
+
+            constellation.updateMeasurements(epoch);
+            long t2 = System.nanoTime();
+            report.addSample(Stage.MEASUREMENTS, t2 - t1);
+
+            constellation.calculateSatPosition(pose);
+            long t3 = System.nanoTime();
+            report.addSample(Stage.SATELLITES, t3 - t2);
+
+            if (pose == null) {
+                pose = solver.coldStart(constellation);
+                if (pose != null) {
+                    constellation.calculateSatPosition(pose);
+                }
+            }
+            if (pose != null && constellation.getUsedConstellationSize() >= MIN_SATELLITES) {
+                pose = solver.calculatePose(constellation);
+                if (solver.getSolution() == null) {
+                    // not a fix but the last iterate: cold start again at the next epoch
+                    pose = null;
+                    report.addFailure();
+                } else {
+                    ReplayReport.TrackPoint point = new ReplayReport.TrackPoint(constellation.getTime(),
+                            Ecef.of(pose), constellation.getUsedConstellationSize());
+                    report.addSolution(point);
+                    if (listener != null) {
+                        listener.onSolution(epoch, point);
+                    }
+                }
+            }
+            t0 = System.nanoTime();
+            report.addSample(Stage.SOLUTION, t0 - t3);
+        }
+        report.setElapsedNanos(System.nanoTime() - start);
+        return report;
+    }
+
+    /**
+     * Opens a GnssLogger CSV log, a RINEX observation file (optionally gzip compressed) or
+     * a {@link RawRecorder} recording, recognized by its name
+     */
+    public static EpochSource open(File file) throws IOException {
+        String name = file.getName().toLowerCase(Locale.US);
+        if (name.endsWith("graw")) {
+            return new RawRecordingReader(file);
+        }
+        boolean log = name.endsWith(".txt") || name.endsWith(".csv")
+                || name.endsWith(".txt.gz") || name.endsWith(".csv.gz");
+        if (!name.endsWith(".gz")) {
+            return log ? new GnssLoggerReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.US_ASCII))
+                    : new RinexObservationReader(file);
+        }
+        InputStream is = new GZIPInputStream(new FileInputStream(file), 1 << 16);
+        return log ? new GnssLoggerReader(new InputStreamReader(is, StandardCharsets.US_ASCII))
+                : new RinexObservationReader(is);
+    }
+
+    /**
+     * {@code ReplayEngine <log|rinex-obs|recording> <gps-nav> [galileo-nav] [track.csv]}: replays a
+     * recording and prints the report, the track goes to the optional CSV file.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: ReplayEngine <gnsslogger.txt|obs.rnx|rec.graw> <gps-nav> [galileo-nav] [track.csv]");
+            System.exit(2);
+        }
+        File galileoNavigation = args.length > 2 && !args[2].isEmpty() ? new File(args[2]) : null;
+        GnssConstellation constellation = new GnssConstellation(true, galileoNavigation != null, false, false);
+        constellation.initFromFiles(new File(args[1]), galileoNavigation);
+
+        ReplayReport report;
+        try (EpochSource source = open(new File(args[0]))) {
+            report = new ReplayEngine(constellation, new WeightedLeastSquares()).run(source);
+        }
+        System.out.print(report);
+
+        if (args.length > 3) {
+            try (PrintStream out = new PrintStream(args[3], "US-ASCII")) {
+                for (ReplayReport.TrackPoint point : report.getTrack()) {
+                    out.printf(Locale.US, "%.3f,%.4f,%.4f,%.4f,%d%n", point.getTime().getGpsSecondsOfWeek(),
+                            point.getPosition().getX(), point.getPosition().getY(), point.getPosition().getZ(),
+                            point.getSatellites());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.gnss.ppptesttwo.replay;
+
+import com.gnss.ppptesttwo.GnssTime;
+import com.gnss.ppptesttwo.navifromftp.Ecef;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Outcome of a {@link ReplayEngine} run: throughput, latency of each pipeline stage and the
+ * position track.
+ */
+public class ReplayReport {
+
+    /**
+     * Latency samples of one pipeline stage, one per epoch that reached the stage
+     */
+    public static class StageStatistics {
+
+        private long[] samples = new long[1024];
+        private int count;
+        private long totalNanos;
+        private boolean sorted;
+
+        void add(long nanos) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = nanos;
+            totalNanos += nanos;
+            sorted = false;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public double getMeanNanos() {
+            return count == 0 ? 0.0 : (double) totalNanos / count;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return latency not exceeded by {@code percentile} percent of the samples
+         */
+        public long getPercentileNanos(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            if (!sorted) {
+                Arrays.sort(samples, 0, count);
+                sorted = true;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            return samples[Math.max(0, Math.min(count - 1, index))];
+        }
+
+        public long getMaxNanos() {
+            return getPercentileNanos(100.0);
+        }
+    }
+
+    /**
+     * One solved epoch
+     */
+    public static class TrackPoint {
+
+        private final GnssTime time;
+        private final Ecef position;
+        private final int satellites;
+
+        TrackPoint(GnssTime time, Ecef position, int satellites) {
+            this.time = time;
+            this.position = position;
+            this.satellites = satellites;
+        }
+
+        public GnssTime getTime() {
+            return time;
+        }
+
+        public Ecef getPosition() {
+            return position;
+        }
+
+        /**
+         * @return number of satellites used in the solution
+         */
+        public int getSatellites() {
+            return satellites;
+        }
+    }
+
+    private final Map<ReplayEngine.Stage, StageStatistics> stages = new EnumMap<>(ReplayEngine.Stage.class);
+    private final List<TrackPoint> track = new ArrayList<>();
+    private int epochs;
+    private int failures;
+    private long elapsedNanos;
+
+    ReplayReport() {
+        for (ReplayEngine.Stage stage : ReplayEngine.Stage.values()) {
+            stages.put(stage, new StageStatistics());
+        }
+    }
+
+    void addEpoch() {
+        epochs++;
+    }
+
+    void addSample(ReplayEngine.Stage stage, long nanos) {
+        stages.get(stage).add(nanos);
+    }
+
+    void addSolution(TrackPoint point) {
+        track.add(point);
+    }
+
+    void addFailure() {
+        failures++;
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public int getEpochs() {
+        return epochs;
+    }
+
+    public int getSolutions() {
+        return track.size();
+    }
+
+    /**
+     * @return epochs with enough satellites where the solver found no fix
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return wall-clock duration of the run, reading included
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getEpochsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : epochs * 1e9 / elapsedNanos;
+    }
+
+    public StageStatistics getStage(ReplayEngine.Stage stage) {
+        return stages.get(stage);
+    }
+
+    public List<TrackPoint> getTrack() {
+        return Collections.unmodifiableList(track);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%d epochs, %d solutions, %d failures in %.3f s: %.1f epochs/s%n",
+                epochs, track.size(), failures, elapsedNanos * 1e-9, getEpochsPerSecond()));
+        sb.append(String.format(Locale.US, "%-14s %10s %10s %10s %10s%n", "stage [us]", "mean", "p50", "p99", "max"));
+        for (ReplayEngine.Stage stage : ReplayEngine.Stage.values()) {
+            StageStatistics s = stages.get(stage);
+            sb.append(String.format(Locale.US, "%-14s %10.1f %10.1f %10.1f %10.1f%n", stage.name().toLowerCase(Locale.US),
+                    s.getMeanNanos() * 1e-3, s.getPercentileNanos(50) * 1e-3, s.getPercentileNanos(99) * 1e-3,
+                    s.getMaxNanos() * 1e-3));
+        }
+        return sb.toString();
+    }
+}
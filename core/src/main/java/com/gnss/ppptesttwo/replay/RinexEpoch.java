@@ -0,0 +1,125 @@
+package com.gnss.ppptesttwo.replay;
+
+import java.util.Arrays;
+
+/**
+ * One epoch of a RINEX observation file as filled by
+ * {@link RinexObservationReader#readEpoch(RinexEpoch)}: the L1/E1 code, phase, Doppler and
+ * C/N0 of every GPS and Galileo satellite, in primitive arrays that are reused from one
+ * epoch to the next. Absent observables are NaN.
+ */
+public class RinexEpoch {
+
+    private long gpsNanos;
+    private int size;
+    private char[] systems = new char[0];
+    private int[] prns = new int[0];
+    private double[] codes = new double[0];
+    private double[] phases = new double[0];
+    private double[] dopplers = new double[0];
+    private double[] cn0s = new double[0];
+    private int[] lossOfLock = new int[0];
+    private char[] codeTypes = new char[0];
+
+    public RinexEpoch() {
+        ensureCapacity(64);
+    }
+
+    /**
+     * @return epoch of the receiver clock, nanoseconds since the GPS epoch
+     */
+    public long getGpsNanos() {
+        return gpsNanos;
+    }
+
+    /**
+     * @return number of satellites in the epoch
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return RINEX system letter, 'G' or 'E'
+     */
+    public char getSystem(int i) {
+        return systems[i];
+    }
+
+    public int getPrn(int i) {
+        return prns[i];
+    }
+
+    /**
+     * @return pseudorange [m]
+     */
+    public double getCode(int i) {
+        return codes[i];
+    }
+
+    /**
+     * @return carrier phase [cycles]
+     */
+    public double getPhase(int i) {
+        return phases[i];
+    }
+
+    /**
+     * @return Doppler shift [Hz]
+     */
+    public double getDoppler(int i) {
+        return dopplers[i];
+    }
+
+    /**
+     * @return C/N0 [dB-Hz]
+     */
+    public double getCn0(int i) {
+        return cn0s[i];
+    }
+
+    /**
+     * @return loss of lock indicator of the phase, 0 when blank
+     */
+    public int getLossOfLock(int i) {
+        return lossOfLock[i];
+    }
+
+    /**
+     * @return tracking code letter of the pseudorange (the third character of e.g. C1C)
+     */
+    public char getCodeType(int i) {
+        return codeTypes[i];
+    }
+
+    void clear(long gpsNanos) {
+        this.gpsNanos = gpsNanos;
+        this.size = 0;
+    }
+
+    void add(char system, int prn, double code, double phase, double doppler, double cn0, int lli, char codeType) {
+        if (size == prns.length) {
+            ensureCapacity(size * 2);
+        }
+        systems[size] = system;
+        prns[size] = prn;
+        codes[size] = code;
+        phases[size] = phase;
+        dopplers[size] = doppler;
+        cn0s[size] = cn0;
+        lossOfLock[size] = lli;
+        codeTypes[size] = codeType;
+        size++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        systems = Arrays.copyOf(systems, capacity);
+        prns = Arrays.copyOf(prns, capacity);
+        codes = Arrays.copyOf(codes, capacity);
+        phases = Arrays.copyOf(phases, capacity);
+        dopplers = Arrays.copyOf(dopplers, capacity);
+        cn0s = Arrays.copyOf(cn0s, capacity);
+        lossOfLock = Arrays.copyOf(lossOfLock, capacity);
+        codeTypes = Arrays.copyOf(codeTypes, capacity);
+    }
+}
@@ -0,0 +1,629 @@
+package com.gnss.ppptesttwo.replay;
+
+import com.gnss.ppptesttwo.Constants;
+import com.gnss.ppptesttwo.GnssTime;
+import com.gnss.ppptesttwo.raw.RawClock;
+import com.gnss.ppptesttwo.raw.RawEpoch;
+import com.gnss.ppptesttwo.raw.RawMeasurement;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads RINEX 2.11 and 3.x observation files as epochs of raw measurements, so that they
+ * go through the same pipeline as the phone's measurements.
+ * <p>
+ * Only the GPS L1 and Galileo E1 observables are used. The file is parsed straight from a
+ * large byte buffer: fields are decoded in place, without a {@code String} per line or per
+ * observation, into a reusable {@link RinexEpoch} ({@link #readEpoch}); {@link #next()}
+ * turns that into a {@link RawEpoch} for the pipeline. The receiver clock is modelled with
+ * a constant full bias taken from the first epoch read, and each pseudorange is turned
+ * back into a received satellite time. That time has a resolution of 1 ns, the rebuilt
+ * pseudoranges are therefore within 0.15 m of the file's values.
+ * <p>
+ * The byte offset of every epoch passed is kept in an index, so that {@link #seek} on a
+ * file goes straight back to any epoch already seen; a seek further ahead skips the
+ * records line by line, without decoding them, and indexes the epochs on the way.
+ */
+public class RinexObservationReader implements EpochSource {
+
+    private static final String[] GPS_CODES = {"C1C", "C1", "C1X", "C1P", "C1W", "P1"};
+    private static final String[] GALILEO_CODES = {"C1C", "C1X", "C1B", "C1"};
+    private static final char[] SYSTEMS = {'G', 'E'};
+    private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15};
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final ReadableByteChannel channel;
+    private final SeekableByteChannel seekable;
+    private byte[] buf = new byte[BUFFER_SIZE];
+    private ByteBuffer window = ByteBuffer.wrap(buf);
+    private int pos;
+    private int limit;
+    private long bufferOffset;
+    private boolean eof;
+    private int lineStart;
+    private int lineEnd;
+
+    private double version;
+    private long dataStart;
+
+    /**
+     * Observation types by satellite system; RINEX 2 files have a single list, stored
+     * under every system
+     */
+    private final String[][] obsTypes = new String[128][];
+
+    /**
+     * Column of the code, phase, Doppler and C/N0 observables by satellite system, -1 when absent
+     */
+    private final int[][] columns = new int[128][];
+    private final char[] codeTypes = new char[128];
+
+    // current epoch record
+    private long epochNanos;
+    private int epochFlag;
+    private int epochSatellites;
+    private char[] satelliteSystems = new char[64];
+    private int[] satellitePrns = new int[64];
+
+    private long[] indexTimes = new long[1024];
+    private long[] indexOffsets = new long[1024];
+    private int indexed;
+    private long skipBefore = Long.MIN_VALUE;
+
+    private final RinexEpoch epoch = new RinexEpoch();
+    private long fullBiasNanos;
+    private boolean fullBiasInitialized;
+
+    /**
+     * Streams the file, {@link #seek} is not available
+     */
+    public RinexObservationReader(InputStream in) throws IOException {
+        this(Channels.newChannel(in));
+    }
+
+    public RinexObservationReader(File file) throws IOException {
+        this(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+    }
+
+    /**
+     * @param channel the file, seekable when it is a {@link SeekableByteChannel}; owned by the reader
+     */
+    public RinexObservationReader(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        this.seekable = channel instanceof SeekableByteChannel ? (SeekableByteChannel) channel : null;
+        try {
+            if (seekable != null) {
+                bufferOffset = seekable.position();
+            }
+            readHeader();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        for (char system : SYSTEMS) {
+            String[] types = obsTypes[system];
+            columns[system] = selectColumns(types, system == 'G' ? GPS_CODES : GALILEO_CODES);
+            int code = columns[system][0];
+            codeTypes[system] = code < 0 ? ' ' : types[code].length() == 3 ? types[code].charAt(2) : types[code].charAt(0);
+        }
+    }
+
+    public double getVersion() {
+        return version;
+    }
+
+    /**
+     * @return number of epochs whose offset is known to {@link #seek}
+     */
+    public int getIndexedEpochs() {
+        return indexed;
+    }
+
+    @Override
+    public RawEpoch next() throws IOException {
+        return readEpoch(epoch) ? toRawEpoch(epoch) : null;
+    }
+
+    /**
+     * Reads the next epoch into {@code out}, skipping event records
+     *
+     * @return false at the end of the file
+     */
+    public boolean readEpoch(RinexEpoch out) throws IOException {
+        while (nextLine()) {
+            if (isBlankLine()) {
+                continue;
+            }
+            long offset = bufferOffset + lineStart;
+            readEpochHeader();
+            if (epochFlag > 1) {
+                skipLines(epochSatellites);
+                continue;
+            }
+            addToIndex(offset);
+            if (epochNanos < skipBefore) {
+                skipRecords();
+                continue;
+            }
+            skipBefore = Long.MIN_VALUE;
+            readRecords(out);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Positions the reader so that the next epoch read is the first one at or after
+     * {@code time}, the end of the file when there is none
+     *
+     * @throws IOException also when the input is a stream
+     */
+    public void seek(GnssTime time) throws IOException {
+        if (seekable == null) {
+            throw new IOException("Seek needs a file, the observations are streamed");
+        }
+        long target = time.getGpsNanos();
+        if (indexed > 0 && indexTimes[indexed - 1] >= target) {
+            int low = 0;
+            int high = indexed - 1;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (indexTimes[mid] >= target) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            position(indexOffsets[low]);
+            skipBefore = Long.MIN_VALUE;
+        } else {
+            // continue from the last known epoch, indexing up to the target
+            position(indexed > 0 ? indexOffsets[indexed - 1] : dataStart);
+            skipBefore = target;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readHeader() throws IOException {
+        String[] pending = null;
+        int filled = 0;
+        while (nextLine()) {
+            String line = new String(buf, lineStart, lineEnd - lineStart, StandardCharsets.US_ASCII);
+            String label = line.length() > 60 ? line.substring(60).trim() : "";
+            if (label.equals("RINEX VERSION / TYPE")) {
+                version = Double.parseDouble(field(line, 0, 9));
+                if (line.length() <= 20 || line.charAt(20) != 'O') {
+                    throw new IOException("Not a RINEX observation file");
+                }
+            } else if (label.equals("SYS / # / OBS TYPES")) {
+                if (line.charAt(0) != ' ') {
+                    pending = new String[Integer.parseInt(field(line, 3, 6))];
+                    obsTypes[line.charAt(0) & 0x7F] = pending;
+                    filled = 0;
+                }
+                for (int i = 0; i < 13 && pending != null && filled < pending.length; i++) {
+                    pending[filled++] = field(line, 7 + 4 * i, 10 + 4 * i);
+                }
+            } else if (label.equals("# / TYPES OF OBSERV")) {
+                if (!field(line, 0, 6).isEmpty()) {
+                    pending = new String[Integer.parseInt(field(line, 0, 6))];
+                    filled = 0;
+                    for (char system : new char[]{'G', 'E', 'R', 'S'}) {
+                        obsTypes[system] = pending;
+                    }
+                }
+                for (int i = 0; i < 9 && pending != null && filled < pending.length; i++) {
+                    pending[filled++] = field(line, 10 + 6 * i, 12 + 6 * i);
+                }
+            } else if (label.equals("END OF HEADER")) {
+                dataStart = bufferOffset + pos;
+                return;
+            }
+        }
+        throw new IOException("RINEX header without END OF HEADER");
+    }
+
+    /**
+     * @return the columns of the first code in {@code codes} found in the file and of the
+     * matching phase, Doppler and C/N0 observables
+     */
+    private static int[] selectColumns(String[] types, String[] codes) {
+        int[] selected = {-1, -1, -1, -1};
+        if (types == null) {
+            return selected;
+        }
+        for (String code : codes) {
+            int column = indexOf(types, code);
+            if (column >= 0) {
+                String signal = code.startsWith("P") ? "1" : code.substring(1);
+                selected[0] = column;
+                selected[1] = indexOf(types, "L" + signal);
+                selected[2] = indexOf(types, "D" + signal);
+                selected[3] = indexOf(types, "S" + signal);
+                return selected;
+            }
+        }
+        return selected;
+    }
+
+    private static int indexOf(String[] types, String type) {
+        for (int i = 0; i < types.length; i++) {
+            if (type.equals(types[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes the epoch line at the current line; for RINEX 2 also the satellite list,
+     * which may continue on the following lines
+     */
+    private void readEpochHeader() throws IOException {
+        if (version >= 3) {
+            if (buf[lineStart] != '>') {
+                throw error("epoch record expected");
+            }
+            epochFlag = intField(31, 32);
+            epochSatellites = intField(32, 35);
+            if (epochFlag <= 1) {
+                epochNanos = GnssTime.ofGpsCalendar(intField(2, 6), intField(7, 9), intField(10, 12),
+                        intField(13, 15), intField(16, 18), number(18, 29)).getGpsNanos();
+            }
+            return;
+        }
+        epochFlag = intField(28, 29);
+        epochSatellites = intField(29, 32);
+        if (epochFlag > 1) {
+            return;
+        }
+        int year = intField(1, 3);
+        year += year < 80 ? 2000 : 1900;
+        epochNanos = GnssTime.ofGpsCalendar(year, intField(4, 6), intField(7, 9),
+                intField(10, 12), intField(13, 15), number(15, 26)).getGpsNanos();
+        if (satellitePrns.length < epochSatellites) {
+            satelliteSystems = new char[epochSatellites];
+            satellitePrns = new int[epochSatellites];
+        }
+        for (int s = 0; s < epochSatellites; s++) {
+            if (s > 0 && s % 12 == 0 && !nextLine()) {
+                throw error("truncated satellite list");
+            }
+            int column = 32 + 3 * (s % 12);
+            char system = charAt(column);
+            satelliteSystems[s] = system == ' ' ? 'G' : system;
+            satellitePrns[s] = intField(column + 1, column + 3);
+        }
+    }
+
+    private void readRecords(RinexEpoch out) throws IOException {
+        out.clear(epochNanos);
+        if (version >= 3) {
+            for (int s = 0; s < epochSatellites; s++) {
+                if (!nextLine()) {
+                    throw error("truncated epoch");
+                }
+                char system = charAt(0);
+                int[] selected = system < 128 ? columns[system] : null;
+                if (selected == null || selected[0] < 0) {
+                    continue;
+                }
+                double code = value(3 + 16 * selected[0]);
+                if (Double.isNaN(code) || code == 0.0) {
+                    continue;
+                }
+                int phaseColumn = 3 + 16 * selected[1];
+                out.add(system, intField(1, 3), code, selected[1] < 0 ? Double.NaN : value(phaseColumn),
+                        selected[2] < 0 ? Double.NaN : value(3 + 16 * selected[2]),
+                        selected[3] < 0 ? Double.NaN : value(3 + 16 * selected[3]),
+                        selected[1] < 0 ? 0 : digit(phaseColumn + 14), codeTypes[system]);
+            }
+            return;
+        }
+        int recordLines = (obsTypes['G'].length + 4) / 5;
+        for (int s = 0; s < epochSatellites; s++) {
+            char system = satelliteSystems[s];
+            int[] selected = system < 128 ? columns[system] : null;
+            double code = Double.NaN;
+            double phase = Double.NaN;
+            double doppler = Double.NaN;
+            double cn0 = Double.NaN;
+            int lli = 0;
+            for (int l = 0; l < recordLines; l++) {
+                if (!nextLine()) {
+                    throw error("truncated epoch");
+                }
+                if (selected == null) {
+                    continue;
+                }
+                if (selected[0] / 5 == l && selected[0] >= 0) code = value(16 * (selected[0] % 5));
+                if (selected[1] / 5 == l && selected[1] >= 0) {
+                    phase = value(16 * (selected[1] % 5));
+                    lli = digit(16 * (selected[1] % 5) + 14);
+                }
+                if (selected[2] / 5 == l && selected[2] >= 0) doppler = value(16 * (selected[2] % 5));
+                if (selected[3] / 5 == l && selected[3] >= 0) cn0 = value(16 * (selected[3] % 5));
+            }
+            if (!Double.isNaN(code) && code != 0.0) {
+                out.add(system, satellitePrns[s], code, phase, doppler, cn0, lli, codeTypes[system]);
+            }
+        }
+    }
+
+    private void skipRecords() throws IOException {
+        int lines = version >= 3 ? epochSatellites : epochSatellites * ((obsTypes['G'].length + 4) / 5);
+        skipLines(lines);
+    }
+
+    private void addToIndex(long offset) {
+        if (indexed > 0 && indexOffsets[indexed - 1] >= offset) {
+            return;
+        }
+        if (indexed == indexTimes.length) {
+            indexTimes = Arrays.copyOf(indexTimes, indexed * 2);
+            indexOffsets = Arrays.copyOf(indexOffsets, indexed * 2);
+        }
+        indexTimes[indexed] = epochNanos;
+        indexOffsets[indexed] = offset;
+        indexed++;
+    }
+
+    private RawEpoch toRawEpoch(RinexEpoch e) {
+        long gpsNanos = e.getGpsNanos();
+        if (!fullBiasInitialized) {
+            // a whole number of seconds keeps the pipeline's double arithmetic on the clock exact
+            fullBiasNanos = -(gpsNanos - gpsNanos % GnssTime.NANOS_PER_SECOND);
+            fullBiasInitialized = true;
+        }
+        RawClock clock = new RawClock(gpsNanos + fullBiasNanos, fullBiasNanos, 0.0);
+        long towNanos = gpsNanos % GnssTime.NANOS_PER_WEEK;
+        double wavelength = Constants.SPEED_OF_LIGHT / Constants.FL1;
+        RawMeasurement[] measurements = new RawMeasurement[e.size()];
+        for (int i = 0; i < e.size(); i++) {
+            RawMeasurement measurement = new RawMeasurement();
+            measurement.setSvid(e.getPrn(i));
+            int state = RawMeasurement.STATE_CODE_LOCK | RawMeasurement.STATE_TOW_DECODED | RawMeasurement.STATE_TOW_KNOWN;
+            if (e.getSystem(i) == 'E') {
+                measurement.setConstellationType(RawMeasurement.CONSTELLATION_GALILEO);
+                state |= RawMeasurement.STATE_GAL_E1BC_CODE_LOCK;
+            } else {
+                measurement.setConstellationType(RawMeasurement.CONSTELLATION_GPS);
+            }
+            measurement.setState(state);
+            measurement.setReceivedSvTimeNanos(towNanos - Math.round(e.getCode(i) / Constants.SPEED_OF_LIGHT * 1e9));
+            measurement.setCarrierFrequencyHz(Constants.FL1);
+            double phase = e.getPhase(i);
+            if (!Double.isNaN(phase) && phase != 0.0) {
+                measurement.setAccumulatedDeltaRangeMeters(phase * wavelength);
+                int adrState = RawMeasurement.ADR_STATE_VALID;
+                if ((e.getLossOfLock(i) & 1) != 0) {
+                    adrState |= RawMeasurement.ADR_STATE_CYCLE_SLIP;
+                }
+                measurement.setAccumulatedDeltaRangeState(adrState);
+            }
+            if (!Double.isNaN(e.getDoppler(i))) {
+                measurement.setPseudorangeRateMetersPerSecond(-e.getDoppler(i) * wavelength);
+            }
+            if (!Double.isNaN(e.getCn0(i))) {
+                measurement.setCn0DbHz(e.getCn0(i));
+            }
+            measurement.setCodeType(String.valueOf(e.getCodeType(i)));
+            measurements[i] = measurement;
+        }
+        return new RawEpoch(clock, Arrays.asList(measurements));
+    }
+
+    // line access
+
+    /**
+     * Moves to the next line of the buffer, refilling it as needed
+     *
+     * @return false at the end of the input
+     */
+    private boolean nextLine() throws IOException {
+        int scan = pos;
+        while (true) {
+            byte[] b = buf;
+            for (int i = scan; i < limit; i++) {
+                if (b[i] == '\n') {
+                    setLine(pos, i);
+                    pos = i + 1;
+                    return true;
+                }
+            }
+            if (eof) {
+                if (pos < limit) {
+                    setLine(pos, limit);
+                    pos = limit;
+                    return true;
+                }
+                return false;
+            }
+            scan = limit - pos;
+            fill();
+        }
+    }
+
+    private void setLine(int start, int end) {
+        lineStart = start;
+        lineEnd = end > start && buf[end - 1] == '\r' ? end - 1 : end;
+    }
+
+    private void skipLines(int lines) throws IOException {
+        for (int i = 0; i < lines; i++) {
+            if (!nextLine()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves the unread bytes to the front of the buffer and reads more after them
+     */
+    private void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            bufferOffset += pos;
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buf.length) {
+            buf = Arrays.copyOf(buf, buf.length * 2);
+            window = ByteBuffer.wrap(buf);
+        }
+        window.limit(buf.length).position(limit);
+        int n = channel.read(window);
+        if (n < 0) {
+            eof = true;
+        } else {
+            limit += n;
+        }
+    }
+
+    private void position(long offset) throws IOException {
+        seekable.position(offset);
+        bufferOffset = offset;
+        pos = 0;
+        limit = 0;
+        eof = false;
+    }
+
+    private boolean isBlankLine() {
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (buf[i] != ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private char charAt(int column) {
+        int i = lineStart + column;
+        return i < lineEnd ? (char) buf[i] : ' ';
+    }
+
+    private int digit(int column) {
+        char c = charAt(column);
+        return c >= '0' && c <= '9' ? c - '0' : 0;
+    }
+
+    /**
+     * @return the F14.3 observation starting at {@code column}, NaN when blank
+     */
+    private double value(int column) throws IOException {
+        return number(column, column + 14);
+    }
+
+    /**
+     * Decodes a fixed point decimal field in place. Up to 15 digits the mantissa is exact
+     * and one division by a power of ten rounds as {@link Double#parseDouble} does.
+     *
+     * @return NaN when the field is blank
+     */
+    private double number(int start, int end) throws IOException {
+        int s = lineStart + start;
+        int e = Math.min(lineStart + end, lineEnd);
+        while (s < e && buf[s] == ' ') s++;
+        while (e > s && buf[e - 1] == ' ') e--;
+        if (s >= e) {
+            return Double.NaN;
+        }
+        int i = s;
+        boolean negative = buf[i] == '-';
+        if (negative || buf[i] == '+') {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < e; i++) {
+            byte c = buf[i];
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else if (c == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                return parseSlow(s, e);
+            }
+        }
+        if (digits == 0 || digits > 15) {
+            return parseSlow(s, e);
+        }
+        double value = decimals > 0 ? mantissa / POW10[decimals] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private double parseSlow(int s, int e) throws IOException {
+        String f = new String(buf, s, e - s, StandardCharsets.US_ASCII).replace('D', 'E');
+        try {
+            return Double.parseDouble(f);
+        } catch (NumberFormatException ex) {
+            throw error("invalid number '" + f + "'");
+        }
+    }
+
+    /**
+     * @return the integer field, 0 when blank
+     */
+    private int intField(int start, int end) throws IOException {
+        int s = lineStart + start;
+        int e = Math.min(lineStart + end, lineEnd);
+        while (s < e && buf[s] == ' ') s++;
+        boolean negative = s < e && buf[s] == '-';
+        if (negative) {
+            s++;
+        }
+        int value = 0;
+        for (int i = s; i < e; i++) {
+            byte c = buf[i];
+            if (c < '0' || c > '9') {
+                if (c == ' ' && isBlank(i, e)) {
+                    break;
+                }
+                throw error("invalid integer '" + new String(buf, lineStart + start, e - lineStart - start,
+                        StandardCharsets.US_ASCII) + "'");
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private boolean isBlank(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] != ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private IOException error(String message) {
+        return new IOException("Byte offset " + (bufferOffset + lineStart) + ": " + message);
+    }
+
+    private static String field(String line, int start, int end) {
+        if (start >= line.length()) {
+            return "";
+        }
+        return line.substring(start, Math.min(end, line.length())).trim();
+    }
+}
@@ -0,0 +1,51 @@
+package com.gnss.ppptesttwo;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Conversions of {@link GnssTime} against known epochs and the legacy {@link Time}.
+ */
+public class GnssTimeTest {
+
+    @Test
+    public void leapSeconds() {
+        // 2020-04-07 00:00:00 UTC
+        long utc = 1586217600000L;
+        GnssTime t = GnssTime.fromUtcMillis(utc);
+        assertEquals(18, t.getLeapSeconds());
+        assertEquals(utc, t.toUtcMillis());
+        assertEquals(2100, t.getGpsWeek());
+        assertEquals(2 * 86400 + 18, t.getGpsSecondsOfWeek(), 1e-9);
+
+        // 2016-12-31 23:59:59 UTC, one second before the last leap second
+        assertEquals(17, GnssTime.fromUtcMillis(1483228799000L).getLeapSeconds());
+        assertEquals(18, GnssTime.fromUtcMillis(1483228800000L).getLeapSeconds());
+    }
+
+    @Test
+    public void otherTimeScales() {
+        GnssTime t = GnssTime.ofGpsWeek(2100, 100.0);
+        assertEquals(2100 - 1024, t.getGalileoWeek());
+        assertEquals(100.0, t.getGalileoSecondsOfWeek(), 1e-9);
+        assertEquals(2100 - 1356, t.getBeidouWeek());
+        assertEquals(86.0, t.getBeidouSecondsOfWeek(), 1e-9);
+        assertEquals(t, GnssTime.ofBeidouWeek(t.getBeidouWeek(), t.getBeidouSecondsOfWeek()));
+    }
+
+    @Test
+    public void matchesLegacyTime() throws Exception {
+        Time legacy = new Time(2100, 345678.25);
+        GnssTime t = GnssTime.ofGpsWeek(2100, 345678.25);
+        assertEquals(legacy.getMsec(), t.getMillis());
+        assertEquals(legacy.getGpsTime(), GnssTime.ofMillis(legacy.getMsec()).getGpsSecondsOfWeek(), 1e-9);
+
+        Time parsed = new Time("2020 04 07 13 45 30.000");
+        assertEquals(2020, parsed.getYear());
+        assertEquals(98, parsed.getDayOfYear());
+        assertEquals(3, parsed.getMonth());
+        assertEquals(13, parsed.getHourUTC());
+        assertEquals("hour0980.20n.Z", parsed.formatTemplate("hour${ddd}0.${yy}n.Z"));
+    }
+}
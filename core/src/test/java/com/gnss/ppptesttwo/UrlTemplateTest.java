@@ -0,0 +1,71 @@
+package com.gnss.ppptesttwo;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Rendering of compiled URL templates and enumeration of the paths of a time range.
+ */
+public class UrlTemplateTest {
+
+    /**
+     * 2020-03-01 00:00 GPS time, a Sunday of GPS week 2095
+     */
+    private static final long DAY = 1583020800000L;
+    private static final long HOUR = 3600 * 1000L;
+
+    private static final String ALL_FIELDS = "${wwww}/${d}/${ddd}/${yy}/${yyyy}/${hh}/${hh4}/${h}/${ssss}";
+
+    @Test
+    public void rendersEveryField() {
+        UrlTemplate template = UrlTemplate.of(ALL_FIELDS);
+        assertEquals("2095/0/061/20/2020/15/14/p/${ssss}", template.format(DAY + 15 * HOUR + 59 * 60 * 1000L));
+        assertEquals("2095/6/067/20/2020/00/00/a/${ssss}", template.format(DAY + 6 * 24 * HOUR));
+        // 2020-01-01 is day 1
+        assertEquals("001", UrlTemplate.of("${ddd}").format(DAY - 60 * 24 * HOUR));
+    }
+
+    @Test
+    public void matchesTheRegexRendering() {
+        for (long t = DAY - 400 * 24 * HOUR; t < DAY + 400 * 24 * HOUR; t += 7 * HOUR + 123457) {
+            assertEquals(legacy(new Time(t), ALL_FIELDS), new Time(t).formatTemplate(ALL_FIELDS));
+        }
+    }
+
+    @Test
+    public void rendersIntoTheGivenBuffer() {
+        StringBuilder out = new StringBuilder("ftp://");
+        UrlTemplate.of("host/${yyyy}/${ddd}/").render(DAY, out);
+        assertEquals("ftp://host/2020/061/", out.toString());
+    }
+
+    @Test
+    public void pathsCoverTheRange() {
+        assertEquals(Arrays.asList("brdc0600.20n", "brdc0610.20n", "brdc0620.20n"),
+                UrlTemplate.of("brdc${ddd}0.${yy}n").paths(DAY - 1, DAY + 24 * HOUR + 1));
+        assertEquals(Arrays.asList("zim2061a.20n", "zim2061b.20n"),
+                UrlTemplate.of("zim2${ddd}${h}.${yy}n").paths(DAY, DAY + 2 * HOUR));
+        assertEquals(Arrays.asList("igs20950.sp3", "igs20951.sp3"),
+                UrlTemplate.of("igs${wwww}${d}.sp3").paths(DAY + 10 * HOUR, DAY + 36 * HOUR));
+        assertEquals(24 * 3600 * 1000L, UrlTemplate.of("brdc${ddd}0.${yy}n").getPeriodMillis());
+        assertEquals(2 * 3600 * 1000L, UrlTemplate.of("${yyyy}/${ddd}/x${hh4}").getPeriodMillis());
+    }
+
+    /**
+     * The previous implementation of {@link Time#formatTemplate}
+     */
+    private static String legacy(Time time, String template) {
+        String tmpl = template.replaceAll("\\$\\{wwww\\}", new java.text.DecimalFormat("0000").format(time.getGpsWeek()));
+        tmpl = tmpl.replaceAll("\\$\\{d\\}", new java.text.DecimalFormat("0").format(time.getGpsWeekDay()));
+        tmpl = tmpl.replaceAll("\\$\\{ddd\\}", new java.text.DecimalFormat("000").format(time.getDayOfYear()));
+        tmpl = tmpl.replaceAll("\\$\\{yy\\}", new java.text.DecimalFormat("00").format(time.getYear2c()));
+        tmpl = tmpl.replaceAll("\\$\\{yyyy\\}", new java.text.DecimalFormat("0000").format(time.getYear()));
+        int hour = time.getGpsHourInDay();
+        tmpl = tmpl.replaceAll("\\$\\{hh\\}", new java.text.DecimalFormat("00").format(hour));
+        tmpl = tmpl.replaceAll("\\$\\{hh4\\}", new java.text.DecimalFormat("00").format(hour / 2 * 2));
+        return tmpl.replaceAll("\\$\\{h\\}", time.getHourOfDayLetter());
+    }
+}
@@ -0,0 +1,55 @@
+package com.gnss.ppptesttwo.adjust;
+
+import java.util.Random;
+
+/**
+ * Synthetic linearized epochs shared by the solver tests and the RAIM benchmark: a random
+ * sky, equal weights and white pseudorange noise.
+ */
+public final class AdjustFixtures {
+
+    /**
+     * Pseudorange standard deviation [m]
+     */
+    public static final double SIGMA = 5.0;
+
+    private static final int P = NormalEquations.N_PARAMS;
+
+    private AdjustFixtures() {
+    }
+
+    /**
+     * Random sky above the horizon, rows are [-los, 1] like in the solver
+     */
+    public static double[] geometry(int n, Random random) {
+        double[] h = new double[n * P];
+        for (int i = 0; i < n; i++) {
+            double az = random.nextDouble() * 2 * Math.PI;
+            double el = Math.toRadians(10 + random.nextDouble() * 80);
+            h[i * P] = -Math.cos(el) * Math.sin(az);
+            h[i * P + 1] = -Math.cos(el) * Math.cos(az);
+            h[i * P + 2] = -Math.sin(el);
+            h[i * P + 3] = 1.0;
+        }
+        return h;
+    }
+
+    /**
+     * @return {@code 1 / SIGMA^2} for every observation
+     */
+    public static double[] weights(int n) {
+        double[] w = new double[n];
+        for (int i = 0; i < n; i++) {
+            w[i] = 1.0 / (SIGMA * SIGMA);
+        }
+        return w;
+    }
+
+    public static double[] noise(int n, Random random) {
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            y[i] = SIGMA * random.nextGaussian();
+        }
+        return y;
+    }
+}
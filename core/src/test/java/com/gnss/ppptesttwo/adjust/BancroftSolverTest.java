@@ -0,0 +1,56 @@
+package com.gnss.ppptesttwo.adjust;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Recovers a known receiver position from simulated pseudoranges.
+ */
+public class BancroftSolverTest {
+
+    private static final double ORBIT_RADIUS = 26560e3;
+
+    @Test
+    public void recoversPositionAndClock() {
+        Random random = new Random(7);
+        // Wuhan, roughly
+        double[] rx = {-2267750.0, 5009150.0, 3220960.0};
+        double clock = 12345.6;
+        int n = 8;
+        double[] sat = new double[n * 3];
+        double[] pr = new double[n];
+        double rxNorm = Math.sqrt(rx[0] * rx[0] + rx[1] * rx[1] + rx[2] * rx[2]);
+        int i = 0;
+        while (i < n) {
+            double[] d = {random.nextGaussian(), random.nextGaussian(), random.nextGaussian()};
+            double dn = Math.sqrt(d[0] * d[0] + d[1] * d[1] + d[2] * d[2]);
+            double up = (d[0] * rx[0] + d[1] * rx[1] + d[2] * rx[2]) / (dn * rxNorm);
+            if (up < 0.3) continue;
+            double dist = 0.0;
+            for (int k = 0; k < 3; k++) {
+                sat[i * 3 + k] = d[k] / dn * ORBIT_RADIUS;
+                double delta = sat[i * 3 + k] - rx[k];
+                dist += delta * delta;
+            }
+            pr[i] = Math.sqrt(dist) + clock;
+            i++;
+        }
+
+        double[] out = new double[4];
+        assertTrue(new BancroftSolver().solve(n, sat, pr, out));
+        for (int k = 0; k < 3; k++) {
+            assertEquals(rx[k], out[k], 1e-3);
+        }
+        assertEquals(clock, out[3], 1e-3);
+    }
+
+    @Test
+    public void needsFourSatellites() {
+        assertFalse(new BancroftSolver().solve(3, new double[9], new double[3], new double[4]));
+    }
+}
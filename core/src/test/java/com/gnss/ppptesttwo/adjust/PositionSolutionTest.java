@@ -0,0 +1,53 @@
+package com.gnss.ppptesttwo.adjust;
+
+import com.gnss.ppptesttwo.navifromftp.Ecef;
+import com.gnss.ppptesttwo.navifromftp.Geodetic;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.gnss.ppptesttwo.adjust.AdjustFixtures.geometry;
+import static com.gnss.ppptesttwo.adjust.AdjustFixtures.noise;
+import static com.gnss.ppptesttwo.adjust.AdjustFixtures.weights;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * DOP derived from the copied geometry matrix, as the solution writer does it.
+ */
+public class PositionSolutionTest {
+
+    private static final int P = NormalEquations.N_PARAMS;
+
+    @Test
+    public void hdopFromTheGeometryMatrix() {
+        Random random = new Random(8);
+        int n = 9;
+        double[] h = geometry(n, random);
+        double[] w = weights(n);
+        w[2] = 0.0;
+        Ecef position = new Geodetic(52.0, 4.37, 50.0).toEcef();
+        PositionSolution solution = new PositionSolution(position.getX(), position.getY(), position.getZ(),
+                0.0, n, h, w, noise(n, random), new double[P * P]);
+
+        double[] matrix = new double[P * P];
+        solution.getGeometryMatrix(matrix);
+        double hdop = PositionSolution.hdop(matrix, solution.getLatitude(), solution.getLongitude(), new double[2 * P]);
+
+        assertTrue(hdop > 0);
+        assertEquals(solution.getHdop(), hdop, 1e-12);
+    }
+
+    @Test
+    public void singularGeometryHasNoHdop() {
+        Random random = new Random(9);
+        int n = 3;
+        PositionSolution solution = new PositionSolution(4e6, 3e5, 5e6, 0.0, n, geometry(n, random), weights(n),
+                noise(n, random), new double[P * P]);
+
+        double[] matrix = new double[P * P];
+        solution.getGeometryMatrix(matrix);
+        assertTrue(Double.isNaN(PositionSolution.hdop(matrix, 52.0, 4.37, new double[2 * P])));
+    }
+}
@@ -0,0 +1,122 @@
+package com.gnss.ppptesttwo.adjust;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.gnss.ppptesttwo.adjust.AdjustFixtures.geometry;
+import static com.gnss.ppptesttwo.adjust.AdjustFixtures.noise;
+import static com.gnss.ppptesttwo.adjust.AdjustFixtures.weights;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the downdated leave-one-out solutions against a naive re-solve and the
+ * exclusion of a single faulty pseudorange.
+ */
+public class RaimFdeTest {
+
+    private static final int P = NormalEquations.N_PARAMS;
+
+    private static boolean naiveLeaveOneOut(int n, double[] h, double[] w, double[] y, int index, double[] out) {
+        NormalEquations normal = new NormalEquations();
+        for (int i = 0; i < n; i++) {
+            if (i != index) normal.add(h, i, w[i], y[i]);
+        }
+        if (!normal.factor()) return false;
+        normal.solve(out);
+        return true;
+    }
+
+    @Test
+    public void leaveOneOutMatchesNaiveResolve() {
+        Random random = new Random(1);
+        int n = 32;
+        double[] h = geometry(n, random);
+        double[] w = weights(n);
+        double[] y = noise(n, random);
+
+        RaimFde raim = new RaimFde();
+        double[] fast = new double[P];
+        double[] naive = new double[P];
+        assertFalse(raim.leaveOneOut(0, fast));
+        assertTrue(raim.factorSet(n, h, w, y));
+        for (int i = 0; i < n; i++) {
+            assertTrue(raim.leaveOneOut(i, fast));
+            assertTrue(naiveLeaveOneOut(n, h, w, y, i, naive));
+            for (int k = 0; k < P; k++) {
+                assertEquals(naive[k], fast[k], 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void consistentSetPasses() {
+        Random random = new Random(2);
+        int n = 12;
+        double[] h = geometry(n, random);
+        RaimFde.Result result = new RaimFde().process(n, h, weights(n), noise(n, random), 45.0, 9.0);
+
+        assertTrue(result.isAvailable());
+        assertTrue(result.isConsistent());
+        assertEquals(0, result.getExcludedCount());
+        assertTrue(result.getHpl() > 0);
+        assertTrue(result.getVpl() > 0);
+    }
+
+    @Test
+    public void faultySatelliteIsExcluded() {
+        Random random = new Random(3);
+        int n = 12;
+        double[] h = geometry(n, random);
+        double[] y = noise(n, random);
+        y[7] += 150.0;
+
+        RaimFde.Result result = new RaimFde().process(n, h, weights(n), y, 45.0, 9.0);
+
+        assertTrue(result.isFaultDetected());
+        assertTrue(result.isConsistent());
+        assertEquals(1, result.getExcludedCount());
+        assertEquals(7, result.getExcluded(0));
+        assertEquals(n - 1, result.getUsedSatellites());
+    }
+
+    @Test
+    public void factorIsThatOfTheAcceptedSet() {
+        Random random = new Random(3);
+        int n = 12;
+        double[] h = geometry(n, random);
+        double[] w = weights(n);
+        double[] y = noise(n, random);
+        y[7] += 150.0;
+
+        RaimFde raim = new RaimFde();
+        assertEquals(1, raim.process(n, h, w, y, 45.0, 9.0).getExcludedCount());
+
+        NormalEquations normal = new NormalEquations();
+        for (int i = 0; i < n; i++) {
+            if (i != 7) normal.add(h, i, w[i], y[i]);
+        }
+        assertTrue(normal.factor());
+        for (int k = 0; k < P * P; k++) {
+            assertEquals(normal.getFactor()[k], raim.getFactor()[k], 1e-12);
+        }
+    }
+
+    @Test
+    public void noRedundancyIsUnavailable() {
+        Random random = new Random(4);
+        int n = 4;
+        RaimFde.Result result = new RaimFde().process(n, geometry(n, random), weights(n), noise(n, random), 45.0, 9.0);
+        assertFalse(result.isAvailable());
+    }
+
+    @Test
+    public void chiSquareThresholdIsAccurate() {
+        // tabulated 0.999 quantiles
+        assertEquals(10.828, RaimFde.chiSquareQuantile(1, 0.999), 1e-3);
+        assertEquals(29.588, RaimFde.chiSquareQuantile(10, 0.999), 1e-3);
+        assertEquals(59.703, RaimFde.chiSquareQuantile(30, 0.999), 1e-3);
+    }
+}
@@ -0,0 +1,72 @@
+package com.gnss.ppptesttwo.adjust;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.gnss.ppptesttwo.adjust.AdjustFixtures.geometry;
+import static com.gnss.ppptesttwo.adjust.AdjustFixtures.noise;
+import static com.gnss.ppptesttwo.adjust.AdjustFixtures.weights;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the reweighting limits the effect of a multipath-like outlier.
+ */
+public class RobustEstimatorTest {
+
+    private static final int P = NormalEquations.N_PARAMS;
+
+    private static double positionError(RobustEstimator.Mode mode, int n, double[] h, double[] y) {
+        double[] w = weights(n);
+        double[] x = new double[P];
+        assertTrue(new RobustEstimator(mode).solve(n, h, w, y, x));
+        return Math.sqrt(x[0] * x[0] + x[1] * x[1] + x[2] * x[2]);
+    }
+
+    @Test
+    public void outlierIsDownweighted() {
+        Random random = new Random(5);
+        int n = 10;
+        double[] h = geometry(n, random);
+        double[] y = noise(n, random);
+        y[3] += 80.0;
+
+        double plain = positionError(RobustEstimator.Mode.NONE, n, h, y);
+        assertTrue(positionError(RobustEstimator.Mode.HUBER, n, h, y) < plain);
+        assertTrue(positionError(RobustEstimator.Mode.IGG3, n, h, y) < plain);
+    }
+
+    @Test
+    public void factorMatchesTheRobustWeights() {
+        Random random = new Random(6);
+        int n = 10;
+        double[] h = geometry(n, random);
+        double[] w = weights(n);
+        double[] y = noise(n, random);
+        y[3] += 80.0;
+
+        RobustEstimator robust = new RobustEstimator(RobustEstimator.Mode.IGG3);
+        assertTrue(robust.solve(n, h, w, y, new double[P]));
+
+        NormalEquations normal = new NormalEquations();
+        for (int i = 0; i < n; i++) {
+            normal.add(h, i, w[i], y[i]);
+        }
+        assertTrue(normal.factor());
+        for (int k = 0; k < P * P; k++) {
+            assertEquals(normal.getFactor()[k], robust.getFactor()[k], 1e-9);
+        }
+    }
+
+    @Test
+    public void weightFunctions() {
+        RobustEstimator huber = new RobustEstimator(RobustEstimator.Mode.HUBER);
+        RobustEstimator igg = new RobustEstimator(RobustEstimator.Mode.IGG3);
+        assertEquals(1.0, huber.factor(1.0), 0.0);
+        assertEquals(0.5, huber.factor(3.0), 1e-12);
+        assertEquals(1.0, igg.factor(1.0), 0.0);
+        assertTrue(igg.factor(2.0) < 1.0);
+        assertTrue(igg.factor(10.0) < 1e-3);
+    }
+}
@@ -0,0 +1,46 @@
+package com.gnss.ppptesttwo.adjust;
+
+import com.gnss.ppptesttwo.constellations.GnssConstellation;
+import com.gnss.ppptesttwo.constellations.SkyFixtures;
+import com.gnss.ppptesttwo.navifromftp.Coordinates;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Fixes of the iterative solver over consecutive epochs.
+ */
+public class WeightedLeastSquaresTest {
+
+    @Test
+    public void failedEpochClearsThePreviousFix() {
+        WeightedLeastSquares solver = new WeightedLeastSquares();
+        Coordinates rx = SkyFixtures.receiver();
+
+        GnssConstellation good = SkyFixtures.constellation(10, 7L);
+        good.setRxPos(Coordinates.globalXYZInstance(rx.getX() + 60.0, rx.getY() - 50.0, rx.getZ() + 60.0));
+        solver.calculatePose(good);
+        PositionSolution solution = solver.getSolution();
+        assertNotNull(solution);
+        assertNotNull(solver.getRaimResult());
+        assertEquals(rx.getX(), solution.getX(), 10.0);
+
+        // one satellite cleared by the measurement thread while the epoch is being solved
+        GnssConstellation failing = new GnssConstellation(true, false, false, false) {
+            @Override
+            public int getUsedConstellationSize() {
+                return super.getUsedConstellationSize() + 1;
+            }
+        };
+        failing.getSatellites().addAll(Arrays.asList(SkyFixtures.observations(9, 8L)));
+        failing.setRxPos(rx);
+        solver.calculatePose(failing);
+        assertNull(solver.getSolution());
+        assertNull(solver.getRaimResult());
+    }
+}
@@ -0,0 +1,84 @@
+package com.gnss.ppptesttwo.constellations;
+
+import com.gnss.ppptesttwo.Constants;
+import com.gnss.ppptesttwo.raw.RawClock;
+import com.gnss.ppptesttwo.raw.RawEpoch;
+import com.gnss.ppptesttwo.raw.RawMeasurement;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pseudoranges built from the platform neutral raw measurements.
+ */
+public class GpsConstellationTest {
+
+    private static final long WEEK_NANOS = 604800L * 1000000000L;
+
+    @Test
+    public void pseudorangeFromRawMeasurement() {
+        // receiver clock 1000 s after boot, GPS week 2100 + 3600 s
+        long timeNanos = 1000000000000L;
+        long gpsNanos = 2100 * WEEK_NANOS + 3600000000000L;
+        RawClock clock = new RawClock(timeNanos, -(gpsNanos - timeNanos), 0.0);
+
+        RawMeasurement tracked = measurement(5, RawMeasurement.STATE_CODE_LOCK | RawMeasurement.STATE_TOW_DECODED);
+        tracked.setReceivedSvTimeNanos(3600000000000L - 75000000L);
+        RawMeasurement notLocked = measurement(7, RawMeasurement.STATE_BIT_SYNC);
+        RawMeasurement galileo = measurement(11, RawMeasurement.STATE_CODE_LOCK | RawMeasurement.STATE_TOW_DECODED);
+        galileo.setConstellationType(RawMeasurement.CONSTELLATION_GALILEO);
+        RawMeasurement l5 = measurement(9, RawMeasurement.STATE_CODE_LOCK | RawMeasurement.STATE_TOW_DECODED);
+        l5.setCarrierFrequencyHz(1176.45e6);
+
+        GpsConstellation constellation = new GpsConstellation();
+        constellation.updateMeasurements(new RawEpoch(clock, Arrays.asList(tracked, notLocked, galileo, l5)));
+
+        assertEquals(1, constellation.getSatellites().size());
+        assertEquals(1, constellation.getUnusedSatellites().size());
+        SatelliteParameters sat = constellation.getSatellites().get(0);
+        assertEquals(5, sat.getSatId());
+        assertEquals(75000000 * 1e-9 * Constants.SPEED_OF_LIGHT, sat.getPseudorange(), 1e-6);
+        assertEquals(gpsNanos, constellation.getTime().getGpsNanos());
+    }
+
+    @Test
+    public void carrierPhaseAndDopplerFromRawMeasurement() {
+        long timeNanos = 1000000000000L;
+        RawClock clock = new RawClock(timeNanos, -(2100 * WEEK_NANOS + 3600000000000L - timeNanos), 0.0);
+        double wavelength = Constants.SPEED_OF_LIGHT / 1575.42e6;
+
+        RawMeasurement valid = measurement(5, RawMeasurement.STATE_CODE_LOCK | RawMeasurement.STATE_TOW_DECODED);
+        valid.setReceivedSvTimeNanos(3600000000000L - 75000000L);
+        valid.setPseudorangeRateMetersPerSecond(-100.0);
+        valid.setAccumulatedDeltaRangeState(RawMeasurement.ADR_STATE_VALID);
+        valid.setAccumulatedDeltaRangeMeters(1000.0);
+        RawMeasurement slipped = measurement(6, RawMeasurement.STATE_CODE_LOCK | RawMeasurement.STATE_TOW_DECODED);
+        slipped.setReceivedSvTimeNanos(3600000000000L - 70000000L);
+        slipped.setAccumulatedDeltaRangeState(RawMeasurement.ADR_STATE_CYCLE_SLIP);
+
+        GpsConstellation constellation = new GpsConstellation();
+        constellation.updateMeasurements(new RawEpoch(clock, Arrays.asList(valid, slipped)));
+
+        SatelliteParameters sat = constellation.getSatellites().get(0);
+        assertEquals(1000.0 / wavelength, sat.getCarrierPhase(), 1e-6);
+        assertEquals(100.0 / wavelength, sat.getDoppler(), 1e-6);
+        assertFalse(sat.isLossOfLock());
+        SatelliteParameters other = constellation.getSatellites().get(1);
+        assertEquals(Double.NaN, other.getCarrierPhase(), 0.0);
+        assertTrue(other.isLossOfLock());
+    }
+
+    private static RawMeasurement measurement(int svid, int state) {
+        RawMeasurement measurement = new RawMeasurement();
+        measurement.setSvid(svid);
+        measurement.setConstellationType(RawMeasurement.CONSTELLATION_GPS);
+        measurement.setState(state);
+        measurement.setCn0DbHz(40);
+        return measurement;
+    }
+}
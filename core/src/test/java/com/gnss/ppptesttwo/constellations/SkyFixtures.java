@@ -0,0 +1,99 @@
+package com.gnss.ppptesttwo.constellations;
+
+import com.gnss.ppptesttwo.GnssTime;
+import com.gnss.ppptesttwo.navifromftp.Coordinates;
+import com.gnss.ppptesttwo.navifromftp.SatellitePosition;
+
+import java.util.Random;
+
+/**
+ * Synthetic sky of a receiver in Delft shared by the solver tests and the benchmarks:
+ * satellite positions and the constellation observing them, generated from fixed seeds.
+ */
+public final class SkyFixtures {
+
+    /**
+     * 2020-03-15 00:00:00 GPS time, the start of GPS week 2097
+     */
+    public static final int GPS_WEEK = 2097;
+    public static final GnssTime START = GnssTime.ofGpsWeek(GPS_WEEK, 0.0);
+
+    /**
+     * Receiver in Delft: 52.0 N, 4.37 E, 50 m
+     */
+    public static final double RX_LAT = 52.0;
+    public static final double RX_LON = 4.37;
+    public static final double RX_HEIGHT = 50.0;
+
+    /**
+     * Receiver clock bias used in the synthetic pseudoranges [m]
+     */
+    public static final double RX_CLOCK_BIAS = 30.0;
+
+    private SkyFixtures() {
+    }
+
+    public static Coordinates receiver() {
+        return Coordinates.globalGeodInstance(RX_LAT, RX_LON, RX_HEIGHT);
+    }
+
+    /**
+     * Satellites spread over the sky of the receiver, 20000 km up to 26000 km away along
+     * their line of sight
+     */
+    public static SatellitePosition[] skyPositions(int satellites, long seed) {
+        Coordinates rx = receiver();
+        double phi = Math.toRadians(RX_LAT), lam = Math.toRadians(RX_LON);
+        double sp = Math.sin(phi), cp = Math.cos(phi), sl = Math.sin(lam), cl = Math.cos(lam);
+        Random random = new Random(seed);
+        SatellitePosition[] positions = new SatellitePosition[satellites];
+        for (int i = 0; i < satellites; i++) {
+            // golden angle spiral in azimuth, elevations from 10 to 85 degrees
+            double az = i * 2.39996;
+            double el = Math.toRadians(10.0 + 75.0 * ((i * 0.618034) % 1.0));
+            double e = Math.cos(el) * Math.sin(az), n = Math.cos(el) * Math.cos(az), u = Math.sin(el);
+            double range = 20000e3 + 6000e3 * (1.0 - Math.sin(el)) + 1000.0 * random.nextDouble();
+            double dx = -sl * e - sp * cl * n + cp * cl * u;
+            double dy = cl * e - sp * sl * n + cp * sl * u;
+            double dz = cp * n + sp * u;
+            positions[i] = new SatellitePosition(START.getMillis(), i + 1, 'G',
+                    rx.getX() + range * dx, rx.getY() + range * dy, rx.getZ() + range * dz);
+        }
+        return positions;
+    }
+
+    /**
+     * @return observations of the synthetic sky, with pseudoranges carrying the receiver
+     * clock bias and 2 m of noise
+     */
+    public static SatelliteParameters[] observations(int satellites, long seed) {
+        Coordinates rx = receiver();
+        Random random = new Random(seed);
+        SatellitePosition[] positions = skyPositions(satellites, seed);
+        SatelliteParameters[] observations = new SatelliteParameters[satellites];
+        for (int i = 0; i < satellites; i++) {
+            SatellitePosition sat = positions[i];
+            double dx = sat.getX() - rx.getX(), dy = sat.getY() - rx.getY(), dz = sat.getZ() - rx.getZ();
+            double pr = Math.sqrt(dx * dx + dy * dy + dz * dz) + RX_CLOCK_BIAS + 2.0 * random.nextGaussian();
+            SatelliteParameters parameters = new SatelliteParameters(i + 1, new Pseudorange(pr, 0.0));
+            parameters.setUniqueSatId("G" + (i + 1));
+            parameters.setSatellitePosition(sat);
+            parameters.setClockBias(0.0);
+            parameters.setAccumulatedCorrection(0.0);
+            parameters.setSignalStrength(40.0);
+            observations[i] = parameters;
+        }
+        return observations;
+    }
+
+    /**
+     * @return a constellation holding {@code satellites} observations of the synthetic sky
+     */
+    public static GnssConstellation constellation(int satellites, long seed) {
+        GnssConstellation constellation = new GnssConstellation(true, false, false, false);
+        for (SatelliteParameters observation : observations(satellites, seed)) {
+            constellation.getSatellites().add(observation);
+        }
+        return constellation;
+    }
+}
@@ -0,0 +1,282 @@
+package com.gnss.ppptesttwo.download;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local FTP server standing in for the product servers in the download tests: anonymous
+ * login, passive mode, SIZE, MDTM, REST and RETR of in-memory files, one thread per
+ * session. Transfers can be made to stall or to break.
+ */
+class FtpStandIn implements Closeable {
+
+    private final ServerSocket server;
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final Map<String, Long> modified = new ConcurrentHashMap<>();
+    private final Map<String, Integer> drops = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong(1583020800000L);
+    private final AtomicLong bytesSent = new AtomicLong();
+    private volatile long lastRestart;
+    private final Set<String> stalled = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final AtomicInteger retrievals = new AtomicInteger();
+    private final AtomicInteger aborted = new AtomicInteger();
+    private volatile boolean closed;
+
+    FtpStandIn() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "FtpStandIn");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @param path absolute path on the server, e.g. {@code /pub/brdc0010.20n}
+     */
+    String url(String path) {
+        return "ftp://127.0.0.1:" + server.getLocalPort() + path;
+    }
+
+    /**
+     * Stores a new version of {@code path}, with a modification time one minute after the
+     * previous version
+     */
+    void put(String path, byte[] content) {
+        modified.put(path, versions.addAndGet(60000));
+        files.put(path, content);
+    }
+
+    /**
+     * The next transfer of {@code path} is cut after {@code bytes}, as by a dropped connection
+     */
+    void dropAfter(String path, int bytes) {
+        drops.put(path, bytes);
+    }
+
+    long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * @return offset of the last REST command
+     */
+    long getLastRestart() {
+        return lastRestart;
+    }
+
+    /**
+     * The transfer of {@code path} opens and then sends nothing until the client gives up
+     */
+    void stall(String path) {
+        stalled.add(path);
+    }
+
+    /**
+     * @return number of files sent, complete or not
+     */
+    int getRetrievals() {
+        return retrievals.get();
+    }
+
+    /**
+     * @return number of transfers closed by the client before the end
+     */
+    int getAborted() {
+        return aborted.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                final Socket socket = server.accept();
+                Thread session = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            serve(socket);
+                        } catch (IOException e) {
+                            // client gone
+                        } finally {
+                            try {
+                                socket.close();
+                            } catch (IOException e) {
+                                // do nothing
+                            }
+                        }
+                    }
+                }, "FtpStandIn session");
+                session.setDaemon(true);
+                session.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII);
+        reply(out, "220 stand-in ready");
+        String directory = "/";
+        ServerSocket passive = null;
+        long restart = 0;
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                int space = line.indexOf(' ');
+                String command = (space < 0 ? line : line.substring(0, space)).toUpperCase();
+                String argument = space < 0 ? "" : line.substring(space + 1);
+                switch (command) {
+                    case "USER":
+                        reply(out, "331 password please");
+                        break;
+                    case "PASS":
+                        reply(out, "230 logged in");
+                        break;
+                    case "SYST":
+                        reply(out, "215 UNIX Type: L8");
+                        break;
+                    case "TYPE":
+                        reply(out, "200 type set");
+                        break;
+                    case "CWD":
+                        String target = argument.endsWith("/") ? argument : argument + "/";
+                        if (hasDirectory(target)) {
+                            directory = target;
+                            reply(out, "250 directory changed");
+                        } else {
+                            reply(out, "550 no such directory");
+                        }
+                        break;
+                    case "PASV":
+                        if (passive != null) {
+                            passive.close();
+                        }
+                        passive = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+                        int port = passive.getLocalPort();
+                        reply(out, "227 Entering Passive Mode (127,0,0,1," + (port >> 8) + "," + (port & 0xFF) + ")");
+                        break;
+                    case "SIZE":
+                        byte[] sized = files.get(resolve(directory, argument));
+                        reply(out, sized == null ? "550 no such file" : "213 " + sized.length);
+                        break;
+                    case "MDTM":
+                        Long time = modified.get(resolve(directory, argument));
+                        reply(out, time == null ? "550 no such file" : "213 " + mdtm(time));
+                        break;
+                    case "REST":
+                        restart = Long.parseLong(argument.trim());
+                        lastRestart = restart;
+                        reply(out, "350 restarting at " + restart);
+                        break;
+                    case "RETR":
+                        String file = resolve(directory, argument);
+                        byte[] content = files.get(file);
+                        if (content == null || passive == null) {
+                            reply(out, "550 no such file");
+                            break;
+                        }
+                        reply(out, "150 opening data connection");
+                        retrievals.incrementAndGet();
+                        Socket data = passive.accept();
+                        try {
+                            if (stalled.contains(file)) {
+                                try {
+                                    while (data.getInputStream().read() >= 0) {
+                                        // wait for the client to close
+                                    }
+                                } catch (IOException e) {
+                                    // reset by the client
+                                }
+                                aborted.incrementAndGet();
+                                reply(out, "426 transfer aborted");
+                                break;
+                            }
+                            OutputStream dataOut = data.getOutputStream();
+                            int length = content.length - (int) restart;
+                            Integer drop = drops.remove(file);
+                            if (drop != null && drop < length) {
+                                dataOut.write(content, (int) restart, drop);
+                                dataOut.flush();
+                                bytesSent.addAndGet(drop);
+                                reply(out, "426 connection closed; transfer aborted");
+                                break;
+                            }
+                            dataOut.write(content, (int) restart, length);
+                            dataOut.flush();
+                            bytesSent.addAndGet(length);
+                        } finally {
+                            data.close();
+                            passive.close();
+                            passive = null;
+                            restart = 0;
+                        }
+                        reply(out, "226 transfer complete");
+                        break;
+                    case "QUIT":
+                        reply(out, "221 bye");
+                        return;
+                    default:
+                        reply(out, "502 not implemented");
+                }
+            }
+        } finally {
+            if (passive != null) {
+                passive.close();
+            }
+        }
+    }
+
+    private static String resolve(String directory, String name) {
+        return name.startsWith("/") ? name : directory + name;
+    }
+
+    private static String mdtm(long time) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMddHHmmss", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(time));
+    }
+
+    private boolean hasDirectory(String directory) {
+        for (String path : files.keySet()) {
+            if (path.startsWith(directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void reply(Writer out, String line) throws IOException {
+        out.write(line + "\r\n");
+        out.flush();
+    }
+}
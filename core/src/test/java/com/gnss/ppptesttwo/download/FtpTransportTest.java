@@ -0,0 +1,107 @@
+package com.gnss.ppptesttwo.download;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Resumed FTP downloads against a local FTP server.
+ */
+public class FtpTransportTest {
+
+    private static final String PATH = "/pub/hour0610.20n.Z";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FtpStandIn server;
+    private final FtpTransport transport = new FtpTransport(5000);
+
+    @Before
+    public void startServer() throws IOException {
+        server = new FtpStandIn();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void resumesADroppedTransferFromThePartialFile() throws IOException {
+        byte[] content = content(100000, 1);
+        server.put(PATH, content);
+        server.dropAfter(PATH, 40000);
+        File partial = new File(folder.getRoot(), "hour0610.20n.Z.part");
+
+        try {
+            transport.download(server.url(PATH), partial, new Cancellation());
+            fail();
+        } catch (IOException expected) {
+        }
+        long received = partial.length();
+        assertTrue(received > 0 && received <= 40000);
+
+        transport.download(server.url(PATH), partial, new Cancellation());
+        assertArrayEquals(content, Files.readAllBytes(partial.toPath()));
+        assertEquals(received, server.getLastRestart());
+        // every byte that arrived was kept
+        assertEquals(content.length, transport.getBytesReceived());
+    }
+
+    @Test
+    public void restartsWhenTheServerFileChanged() throws IOException {
+        server.put(PATH, content(100000, 1));
+        server.dropAfter(PATH, 40000);
+        File partial = new File(folder.getRoot(), "hour0610.20n.Z.part");
+        try {
+            transport.download(server.url(PATH), partial, new Cancellation());
+            fail();
+        } catch (IOException expected) {
+        }
+
+        // republished with the next hour: the start of the old version is useless
+        byte[] republished = content(120000, 2);
+        server.put(PATH, republished);
+        transport.download(server.url(PATH), partial, new Cancellation());
+        assertArrayEquals(republished, Files.readAllBytes(partial.toPath()));
+        assertEquals(0, server.getLastRestart());
+    }
+
+    @Test
+    public void completeFileIsNotSentAgain() throws IOException {
+        byte[] content = content(5000, 3);
+        server.put(PATH, content);
+        File file = folder.newFile();
+        transport.download(server.url(PATH), file, new Cancellation());
+        transport.download(server.url(PATH), file, new Cancellation());
+
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertEquals(1, server.getRetrievals());
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void missingFileIsNotFound() throws IOException {
+        server.put("/nav/brdc0010.20n", content(10, 4));
+        transport.download(server.url("/nav/brdc0020.20n"), folder.newFile(), new Cancellation());
+    }
+
+    static byte[] content(int length, long seed) {
+        byte[] content = new byte[length];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+}
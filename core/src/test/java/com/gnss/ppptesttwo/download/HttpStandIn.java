@@ -0,0 +1,185 @@
+package com.gnss.ppptesttwo.download;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local HTTP server standing in for the product servers in the download tests: GET of
+ * in-memory files with {@code Last-Modified}, {@code ETag}, {@code Range}, {@code If-Range},
+ * conditional requests and gzip content encoding. Transfers can be made to break.
+ */
+class HttpStandIn implements Closeable {
+
+    private final HttpServer server;
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private final Map<String, Long> modified = new ConcurrentHashMap<>();
+    private final Map<String, Integer> drops = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong(1583020800000L);
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final Set<Integer> connections = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    private volatile String lastRange;
+    private volatile int lastStatus;
+
+    HttpStandIn() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    serve(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * Stores a new version of {@code path}, modified one minute after the previous version
+     */
+    void put(String path, byte[] content) {
+        modified.put(path, versions.addAndGet(60000));
+        files.put(path, content);
+    }
+
+    /**
+     * Stores a new version of {@code path} made of the current one followed by {@code end}
+     */
+    void append(String path, byte[] end) {
+        byte[] content = files.get(path);
+        byte[] grown = Arrays.copyOf(content, content.length + end.length);
+        System.arraycopy(end, 0, grown, content.length, end.length);
+        put(path, grown);
+    }
+
+    /**
+     * The next transfer of {@code path} is cut after {@code bytes}, as by a dropped connection
+     */
+    void dropAfter(String path, int bytes) {
+        drops.put(path, bytes);
+    }
+
+    /**
+     * @return body bytes sent, as transferred when compressed
+     */
+    long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * @return client connections served so far
+     */
+    int getConnections() {
+        return connections.size();
+    }
+
+    int getLastStatus() {
+        return lastStatus;
+    }
+
+    /**
+     * @return Range header of the last request that was honoured, null for a full transfer
+     */
+    String getLastRange() {
+        return lastRange;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        connections.add(exchange.getRemoteAddress().getPort());
+        String path = exchange.getRequestURI().getPath();
+        byte[] content = files.get(path);
+        if (content == null) {
+            respond(exchange, 404, -1);
+            return;
+        }
+        long time = modified.get(path);
+        String lastModified = HttpTransport.httpDate(time);
+        String etag = "\"" + Long.toHexString(time) + "\"";
+        exchange.getResponseHeaders().set("Last-Modified", lastModified);
+        exchange.getResponseHeaders().set("ETag", etag);
+
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        if (ifNoneMatch != null ? ifNoneMatch.equals(etag) : lastModified.equals(ifModifiedSince)) {
+            respond(exchange, 304, -1);
+            return;
+        }
+        int start = 0;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        boolean gzip = false;
+        if (range != null && (ifRange == null || ifRange.equals(lastModified) || ifRange.equals(etag))) {
+            start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+            if (start >= content.length) {
+                exchange.getResponseHeaders().set("Content-Range", "bytes */" + content.length);
+                respond(exchange, 416, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + start + "-" + (content.length - 1) + "/" + content.length);
+            lastRange = range;
+            respond(exchange, 206, content.length - start);
+        } else {
+            lastRange = null;
+            String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            gzip = accepted != null && accepted.contains("gzip");
+            if (gzip) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            respond(exchange, 200, gzip ? 0 : content.length);
+        }
+        OutputStream out = exchange.getResponseBody();
+        if (gzip) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            GZIPOutputStream zip = new GZIPOutputStream(compressed);
+            zip.write(content);
+            zip.close();
+            out.write(compressed.toByteArray());
+            bytesSent.addAndGet(compressed.size());
+            return;
+        }
+        int length = content.length - start;
+        Integer drop = drops.remove(path);
+        if (drop != null && drop < length) {
+            out.write(content, start, drop);
+            out.flush();
+            bytesSent.addAndGet(drop);
+            // the server closes the connection short of the announced length
+            throw new IOException("dropped");
+        }
+        out.write(content, start, length);
+        bytesSent.addAndGet(length);
+    }
+
+    private void respond(HttpExchange exchange, int status, long length) throws IOException {
+        lastStatus = status;
+        exchange.sendResponseHeaders(status, length);
+    }
+}
@@ -0,0 +1,164 @@
+package com.gnss.ppptesttwo.download;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static com.gnss.ppptesttwo.download.FtpTransportTest.content;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Resumed, conditional and compressed HTTP downloads against a local HTTP server.
+ */
+public class HttpTransportTest {
+
+    private static final String PATH = "/pub/rinex/2020/061/auto0610.20n.Z";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpStandIn server;
+    private final HttpTransport transport = new HttpTransport(5000);
+
+    @Before
+    public void startServer() throws IOException {
+        server = new HttpStandIn();
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void resumesADroppedTransferWithARange() throws IOException {
+        byte[] content = content(100000, 1);
+        server.put(PATH, content);
+        server.dropAfter(PATH, 30000);
+        File partial = new File(folder.getRoot(), "auto0610.20n.Z.part");
+
+        try {
+            transport.download(server.url(PATH), partial, new Cancellation());
+            fail();
+        } catch (IOException expected) {
+        }
+        long received = partial.length();
+        assertTrue(received > 0 && received <= 30000);
+
+        transport.download(server.url(PATH), partial, new Cancellation());
+        assertArrayEquals(content, Files.readAllBytes(partial.toPath()));
+        assertEquals("bytes=" + received + "-", server.getLastRange());
+        // every byte that arrived was kept
+        assertEquals(content.length, transport.getBytesReceived());
+    }
+
+    @Test
+    public void restartsWhenTheServerFileChanged() throws IOException {
+        server.put(PATH, content(100000, 1));
+        server.dropAfter(PATH, 30000);
+        File partial = new File(folder.getRoot(), "auto0610.20n.Z.part");
+        try {
+            transport.download(server.url(PATH), partial, new Cancellation());
+            fail();
+        } catch (IOException expected) {
+        }
+
+        byte[] republished = content(90000, 2);
+        server.put(PATH, republished);
+        transport.download(server.url(PATH), partial, new Cancellation());
+        assertArrayEquals(republished, Files.readAllBytes(partial.toPath()));
+        // If-Range no longer matched, the server sent the whole file
+        assertNull(server.getLastRange());
+    }
+
+    @Test
+    public void completeFileIsNotSentAgain() throws IOException {
+        byte[] content = content(5000, 3);
+        server.put(PATH, content);
+        File file = folder.newFile();
+        transport.download(server.url(PATH), file, new Cancellation());
+        transport.download(server.url(PATH), file, new Cancellation());
+
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertEquals(content.length, server.getBytesSent());
+    }
+
+    @Test
+    public void unchangedFileIsNotModified() throws IOException {
+        server.put(PATH, content(50000, 4));
+        server.put("/pub/rinex/2020/061/zim20610.20n.Z", content(5000, 5));
+        File file = folder.newFile();
+        transport.download(server.url(PATH), file, new Cancellation());
+        transport.download(server.url("/pub/rinex/2020/061/zim20610.20n.Z"), folder.newFile(), new Cancellation());
+        transport.download(server.url(PATH), file, new Cancellation());
+
+        assertEquals(304, server.getLastStatus());
+        assertEquals(55000, server.getBytesSent());
+        // every request went through the first connection
+        assertEquals(1, server.getConnections());
+    }
+
+    @Test
+    public void grownFileOnlySendsItsNewEnd() throws IOException {
+        byte[] start = content(100000, 5);
+        byte[] end = content(3000, 6);
+        server.put(PATH, start);
+        File file = folder.newFile();
+        transport.download(server.url(PATH), file, new Cancellation());
+
+        server.append(PATH, end);
+        transport.download(server.url(PATH), file, new Cancellation());
+        byte[] grown = Files.readAllBytes(file.toPath());
+        assertEquals(start.length + end.length, grown.length);
+        assertArrayEquals(end, Arrays.copyOfRange(grown, start.length, grown.length));
+        assertEquals("bytes=" + (start.length - HttpTransport.OVERLAP_BYTES) + "-", server.getLastRange());
+        assertEquals(start.length + HttpTransport.OVERLAP_BYTES + end.length, server.getBytesSent());
+    }
+
+    @Test
+    public void rewrittenFileIsSentInFull() throws IOException {
+        server.put(PATH, content(100000, 7));
+        File file = folder.newFile();
+        transport.download(server.url(PATH), file, new Cancellation());
+
+        byte[] rewritten = content(103000, 8);
+        server.put(PATH, rewritten);
+        transport.download(server.url(PATH), file, new Cancellation());
+        assertArrayEquals(rewritten, Files.readAllBytes(file.toPath()));
+        assertNull(server.getLastRange());
+    }
+
+    @Test
+    public void uncompressedFileIsTransferredWithGzip() throws IOException {
+        StringBuilder rinex = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            rinex.append(" 5 20  3  1  0  0  0.0 -.123456789012D-03 -.454747350886D-11  .000000000000D+00\n");
+        }
+        byte[] content = rinex.toString().getBytes(StandardCharsets.US_ASCII);
+        String path = "/pub/rinex/2020/061/brdc0610.20n";
+        server.put(path, content);
+        File file = folder.newFile();
+        transport.download(server.url(path), file, new Cancellation());
+
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertTrue(server.getBytesSent() < content.length / 10);
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void missingFileIsNotFound() throws IOException {
+        transport.download(server.url("/pub/none.20n"), folder.newFile(), new Cancellation());
+    }
+}
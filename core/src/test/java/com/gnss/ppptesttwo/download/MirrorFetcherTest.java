@@ -0,0 +1,196 @@
+package com.gnss.ppptesttwo.download;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Hedged downloads from two local FTP servers standing in for the mirrors.
+ */
+public class MirrorFetcherTest {
+
+    private static final String PATH = "/pub/brdc0610.20n";
+    private static final byte[] RINEX = ("     2.11           N: GPS NAV DATA                         RINEX VERSION / TYPE\n")
+            .getBytes(StandardCharsets.US_ASCII);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FtpStandIn primary;
+    private FtpStandIn secondary;
+    private MirrorFetcher fetcher;
+
+    @Before
+    public void startServers() throws IOException {
+        primary = new FtpStandIn();
+        secondary = new FtpStandIn();
+        fetcher = new MirrorFetcher(new FtpTransport(20000), MirrorFetcher.RINEX_HEADER, 300, 2);
+    }
+
+    @After
+    public void stopServers() throws IOException {
+        fetcher.close();
+        primary.close();
+        secondary.close();
+    }
+
+    @Test
+    public void hedgesToTheSecondMirrorWhenThePrimaryStalls() throws Exception {
+        primary.put(PATH, RINEX);
+        primary.stall(PATH);
+        secondary.put(PATH, RINEX);
+
+        long start = System.nanoTime();
+        File file = fetcher.fetch(mirrors(), folder.getRoot(), new Cancellation());
+        long millis = (System.nanoTime() - start) / 1000000;
+
+        assertArrayEquals(RINEX, Files.readAllBytes(file.toPath()));
+        assertTrue("took " + millis + " ms", millis < 5000);
+        assertEquals(1, stats(secondary).getSuccesses());
+        assertEquals(1, stats(primary).getCancellations());
+        // the stalled transfer was closed, not left to its timeout
+        waitUntilAborted(primary);
+        assertTrue(new File(folder.getRoot(), "brdc0610.20n").isFile());
+    }
+
+    @Test
+    public void failureStartsTheNextMirrorAtOnce() throws Exception {
+        fetcher.close();
+        fetcher = new MirrorFetcher(new FtpTransport(20000), MirrorFetcher.RINEX_HEADER, 20000, 2);
+        secondary.put(PATH, RINEX);
+
+        long start = System.nanoTime();
+        fetcher.fetch(mirrors(), folder.getRoot(), new Cancellation());
+        assertTrue((System.nanoTime() - start) / 1000000 < 5000);
+        assertEquals(1, stats(primary).getFailures());
+
+        // the failed mirror is asked last from now on
+        assertEquals(secondary.url(PATH), fetcher.order(mirrors()).get(0));
+    }
+
+    @Test
+    public void fileWithoutHeaderLosesToAValidOne() throws Exception {
+        primary.put(PATH, "<html>maintenance</html>\n".getBytes(StandardCharsets.US_ASCII));
+        secondary.put(PATH, RINEX);
+
+        File file = fetcher.fetch(mirrors(), folder.getRoot(), new Cancellation());
+        assertArrayEquals(RINEX, Files.readAllBytes(file.toPath()));
+        assertEquals(1, stats(primary).getFailures());
+    }
+
+    @Test
+    public void nextFetchResumesTheTransferOfAFailedAttempt() throws Exception {
+        byte[] content = new byte[RINEX.length + 50000];
+        System.arraycopy(RINEX, 0, content, 0, RINEX.length);
+        primary.put(PATH, content);
+        primary.dropAfter(PATH, 20000);
+        List<String> urls = Arrays.asList(primary.url(PATH));
+
+        try {
+            fetcher.fetch(urls, folder.getRoot(), new Cancellation());
+            fail();
+        } catch (IOException expected) {
+        }
+        File file = fetcher.fetch(urls, folder.getRoot(), new Cancellation());
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+        assertTrue(primary.getLastRestart() > 0);
+        assertArrayEquals(new String[]{"brdc0610.20n"}, folder.getRoot().list());
+    }
+
+    @Test
+    public void refreshStartsFromThePreviousVersion() throws Exception {
+        HttpStandIn server = new HttpStandIn();
+        try {
+            byte[] content = new byte[RINEX.length + 50000];
+            System.arraycopy(RINEX, 0, content, 0, RINEX.length);
+            server.put(PATH, content);
+            MirrorFetcher http = new MirrorFetcher(new HttpTransport(20000), MirrorFetcher.RINEX_HEADER, 300, 1);
+            List<String> urls = Arrays.asList(server.url(PATH));
+            http.fetch(urls, folder.getRoot(), new Cancellation());
+            long sent = server.getBytesSent();
+
+            server.append(PATH, RINEX);
+            File file = http.fetch(urls, folder.getRoot(), new Cancellation());
+            assertEquals(content.length + RINEX.length, file.length());
+            assertEquals(HttpTransport.OVERLAP_BYTES + RINEX.length, server.getBytesSent() - sent);
+            assertArrayEquals(new String[]{"brdc0610.20n"}, folder.getRoot().list());
+            http.close();
+        } finally {
+            server.close();
+        }
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void notFoundWhenNoMirrorHasTheFile() throws IOException {
+        fetcher.fetch(mirrors(), folder.getRoot(), new Cancellation());
+    }
+
+    @Test
+    public void cancellationStopsEveryAttempt() throws Exception {
+        primary.put(PATH, RINEX);
+        primary.stall(PATH);
+        secondary.put(PATH, RINEX);
+        secondary.stall(PATH);
+        final Cancellation cancellation = new Cancellation();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                cancellation.cancel();
+            }
+        }).start();
+
+        long start = System.nanoTime();
+        try {
+            fetcher.fetch(mirrors(), folder.getRoot(), cancellation);
+            fail();
+        } catch (InterruptedIOException expected) {
+        }
+        assertTrue((System.nanoTime() - start) / 1000000 < 5000);
+        waitUntilAborted(primary);
+        waitUntilAborted(secondary);
+        assertEquals(0, stats(primary).getFailures() + stats(secondary).getFailures());
+    }
+
+    private List<String> mirrors() {
+        return Arrays.asList(primary.url(PATH), secondary.url(PATH));
+    }
+
+    private MirrorStats stats(FtpStandIn server) {
+        String mirror = MirrorFetcher.mirrorOf(server.url(PATH));
+        for (MirrorStats stats : fetcher.getStats()) {
+            if (stats.getMirror().equals(mirror)) {
+                return stats;
+            }
+        }
+        throw new AssertionError("No statistics for " + mirror);
+    }
+
+    private static void waitUntilAborted(FtpStandIn server) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getAborted() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, server.getAborted());
+    }
+}
@@ -0,0 +1,184 @@
+package com.gnss.ppptesttwo.download;
+
+import com.gnss.ppptesttwo.Constants;
+import com.gnss.ppptesttwo.Time;
+import com.gnss.ppptesttwo.constellations.GnssConstellation;
+import com.gnss.ppptesttwo.navifromftp.RinexNavigationGalileo;
+import com.gnss.ppptesttwo.navifromftp.RinexNavigationGps;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Schedules derived from the URL templates, and the prefetcher against a local FTP server.
+ */
+public class NavigationPrefetcherTest {
+
+    private static final String HOURLY = "/pub/gps/data/hourly/${yyyy}/${ddd}/hour${ddd}0.${yy}n";
+    private static final String DAILY = "/nav/${yyyy}/${ddd}/brdc${ddd}0.${yy}n";
+    private static final byte[] CONTENT = ("     2.11           N: GPS NAV DATA                         RINEX VERSION / TYPE\n")
+            .getBytes(StandardCharsets.US_ASCII);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FtpStandIn server;
+    private NavigationPrefetcher prefetcher;
+    private final List<File> installed = new CopyOnWriteArrayList<>();
+    private final NavigationPrefetcher.Installer installer = new NavigationPrefetcher.Installer() {
+        @Override
+        public void install(File file, long slot) throws IOException {
+            assertArrayEquals(CONTENT, Files.readAllBytes(file.toPath()));
+            installed.add(file);
+        }
+    };
+
+    @Before
+    public void startServer() throws IOException {
+        server = new FtpStandIn();
+    }
+
+    @After
+    public void stop() throws IOException {
+        if (prefetcher != null) {
+            prefetcher.close();
+        }
+        server.close();
+    }
+
+    @Test
+    public void schedulesFollowTheTemplateFields() {
+        ProductSchedule gps = ProductSchedule.fromTemplate(GnssConstellation.NASA_NAVIGATION_HOURLY);
+        assertEquals(ProductSchedule.DAY_MILLIS, gps.getPeriodMillis());
+        assertEquals(ProductSchedule.HOUR_MILLIS, gps.getRefreshMillis());
+        assertEquals(ProductSchedule.HOURLY_LATENCY_MILLIS, gps.getLatencyMillis());
+
+        ProductSchedule galileo = ProductSchedule.fromTemplate(GnssConstellation.NASA_NAVIGATION_HOURLY_Galileo);
+        assertEquals(2 * ProductSchedule.HOUR_MILLIS, galileo.getPeriodMillis());
+        assertEquals(ProductSchedule.HOUR_MILLIS, galileo.getRefreshMillis());
+
+        ProductSchedule zim2 = ProductSchedule.fromTemplate(RinexNavigationGps.IGN_NAVIGATION_HOURLY_ZIM2);
+        assertEquals(ProductSchedule.HOUR_MILLIS, zim2.getPeriodMillis());
+
+        ProductSchedule bkg = ProductSchedule.fromTemplate(RinexNavigationGalileo.BKG_GALILEO_RINEX);
+        assertEquals(ProductSchedule.DAY_MILLIS, bkg.getPeriodMillis());
+        assertEquals(ProductSchedule.DAY_MILLIS, bkg.getRefreshMillis());
+        assertEquals(ProductSchedule.DAILY_LATENCY_MILLIS, bkg.getLatencyMillis());
+
+        // weekly slots start on Sunday, with the GPS week
+        ProductSchedule weekly = ProductSchedule.fromTemplate("ftp://host/${wwww}/igs${wwww}.sp3");
+        long sunday = (Constants.UNIX_GPS_DAYS_DIFF + 2097 * 7) * ProductSchedule.DAY_MILLIS;
+        assertEquals(sunday, weekly.slotStart(sunday + 3 * ProductSchedule.DAY_MILLIS));
+        assertEquals(2097, new Time(weekly.slotStart(sunday + 3 * ProductSchedule.DAY_MILLIS)).getGpsWeek());
+
+        try {
+            ProductSchedule.fromTemplate("ftp://host/static.nav");
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void startsWithThePreviousSlotUntilTheCurrentOneIsPublished() throws Exception {
+        // 2020-03-01 00:05 UTC: the file of the new day is due at 00:10
+        final long now = 1583020800000L + 5 * 60 * 1000L;
+        server.put("/pub/gps/data/hourly/2020/060/hour0600.20n", CONTENT);
+        server.put("/pub/gps/data/hourly/2020/061/hour0610.20n", CONTENT);
+        prefetcher = new NavigationPrefetcher(new FtpTransport(5000), folder.getRoot()) {
+            @Override
+            protected long currentTimeMillis() {
+                return now;
+            }
+        };
+        prefetcher.add(server.url(HOURLY), installer);
+
+        waitFor(1);
+        assertEquals("hour0600.20n", installed.get(0).getName());
+        assertEquals(1, server.getRetrievals());
+        assertArrayEquals(new String[]{"hour0600.20n", ProductCache.INDEX}, sorted(folder.getRoot().list()));
+    }
+
+    @Test
+    public void restartInstallsTheCachedFileWithoutDownloading() throws Exception {
+        final long now = 1583020800000L + 5 * 60 * 1000L;
+        server.put("/pub/gps/data/hourly/2020/060/hour0600.20n", CONTENT);
+        for (int run = 1; run <= 2; run++) {
+            if (prefetcher != null) {
+                prefetcher.close();
+            }
+            prefetcher = new NavigationPrefetcher(new FtpTransport(5000), folder.getRoot()) {
+                @Override
+                protected long currentTimeMillis() {
+                    return now;
+                }
+            };
+            prefetcher.add(server.url(HOURLY), installer);
+            waitFor(run);
+        }
+        assertEquals(1, server.getRetrievals());
+    }
+
+    @Test
+    public void retriesWithBackoffUntilTheFileIsPublished() throws Exception {
+        prefetcher = new NavigationPrefetcher(new MirrorFetcher(new FtpTransport(5000)), cache(), 20, 80);
+        String template = server.url(DAILY);
+        prefetcher.add(template, new ProductSchedule(ProductSchedule.DAY_MILLIS, ProductSchedule.DAY_MILLIS, 0), installer);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (prefetcher.getFailures() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(prefetcher.getFailures() >= 3);
+        assertTrue(installed.isEmpty());
+
+        String url = new Time(System.currentTimeMillis()).formatTemplate(template);
+        server.put(url.substring(url.indexOf('/', "ftp://".length())), CONTENT);
+        waitFor(1);
+        assertEquals(1, server.getRetrievals());
+    }
+
+    @Test
+    public void downloadsAgainAtEveryRefreshSlot() throws Exception {
+        String template = server.url(DAILY);
+        String url = new Time(System.currentTimeMillis()).formatTemplate(template);
+        server.put(url.substring(url.indexOf('/', "ftp://".length())), CONTENT);
+        prefetcher = new NavigationPrefetcher(new MirrorFetcher(new FtpTransport(5000)), cache(), 20, 80);
+        prefetcher.add(template, new ProductSchedule(400, 200, 0), installer);
+
+        waitFor(3);
+        assertEquals(0, prefetcher.getFailures());
+    }
+
+    private ProductCache cache() {
+        return new ProductCache(folder.getRoot(), ProductCache.DEFAULT_MAX_BYTES);
+    }
+
+    private static String[] sorted(String[] names) {
+        Arrays.sort(names);
+        return names;
+    }
+
+    private void waitFor(int installs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (installed.size() < installs && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue("installed " + installed.size() + " files", installed.size() >= installs);
+    }
+}
@@ -0,0 +1,232 @@
+package com.gnss.ppptesttwo.download;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Index, eviction and negative answers of the on-disk product cache.
+ */
+public class ProductCacheTest {
+
+    private static final String PRODUCT = "ftp://host/${yyyy}/${ddd}/brdc${ddd}0.${yy}n";
+    private static final ProductSchedule DAILY = new ProductSchedule(ProductSchedule.DAY_MILLIS, ProductSchedule.DAY_MILLIS, 0);
+    private static final ProductSchedule HOURLY = new ProductSchedule(ProductSchedule.DAY_MILLIS, ProductSchedule.HOUR_MILLIS, 0);
+    /**
+     * 2020-03-01 00:00 UTC
+     */
+    private static final long DAY = 1583020800000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void filesAreFoundByTimeAfterReopening() throws IOException {
+        ProductCache cache = new ProductCache(folder.getRoot(), 1000);
+        cache.put(PRODUCT, DAILY, DAY, "ftp://host/2020/061/brdc0610.20n", write("brdc0610.20n", 100, 1));
+
+        cache = new ProductCache(folder.getRoot(), 1000);
+        File file = cache.get(PRODUCT, DAILY, DAY + 13 * ProductSchedule.HOUR_MILLIS);
+        assertEquals("brdc0610.20n", file.getName());
+        assertNull(cache.get(PRODUCT, DAILY, DAY - 1));
+        assertNull(cache.get("other", DAILY, DAY));
+        assertEquals(100, cache.getTotalBytes());
+    }
+
+    @Test
+    public void leastRecentlyUsedFilesAreEvicted() throws IOException {
+        ProductCache cache = new ProductCache(folder.getRoot(), 250);
+        cache.put(PRODUCT, DAILY, DAY, "a", write("a.n", 100, 1));
+        cache.put(PRODUCT, DAILY, DAY + ProductSchedule.DAY_MILLIS, "b", write("b.n", 100, 2));
+        assertTrue(cache.get(PRODUCT, DAILY, DAY) != null);
+
+        cache.put(PRODUCT, DAILY, DAY + 2 * ProductSchedule.DAY_MILLIS, "c", write("c.n", 100, 3));
+        assertNull(cache.get(PRODUCT, DAILY, DAY + ProductSchedule.DAY_MILLIS));
+        assertFalse(new File(folder.getRoot(), "b.n").exists());
+        assertEquals(200, cache.getTotalBytes());
+
+        // the access order survives a restart
+        cache = new ProductCache(folder.getRoot(), 250);
+        cache.put(PRODUCT, DAILY, DAY + 3 * ProductSchedule.DAY_MILLIS, "d", write("d.n", 100, 4));
+        assertNull(cache.get(PRODUCT, DAILY, DAY));
+        assertTrue(cache.get(PRODUCT, DAILY, DAY + 2 * ProductSchedule.DAY_MILLIS) != null);
+    }
+
+    @Test
+    public void fileChangedOnDiskIsDropped() throws IOException {
+        ProductCache cache = new ProductCache(folder.getRoot(), 1000);
+        File file = write("a.n", 100, 1);
+        cache.put(PRODUCT, DAILY, DAY, "a", file);
+        long modified = file.lastModified();
+        write("a.n", 100, 2);
+        // a later write, even within the resolution of the file times
+        assertTrue(file.setLastModified(modified + 2000));
+
+        assertNull(cache.get(PRODUCT, DAILY, DAY));
+        assertFalse(new File(folder.getRoot(), "a.n").exists());
+        assertEquals(0, cache.getTotalBytes());
+    }
+
+    @Test
+    public void checksumIsVerifiedOnceAfterARestart() throws IOException {
+        ProductCache cache = new ProductCache(folder.getRoot(), 1000);
+        File file = write("a.n", 100, 1);
+        cache.put(PRODUCT, DAILY, DAY, "a", file);
+        long modified = file.lastModified();
+
+        // same size and time: not read again in this process
+        write("a.n", 100, 2);
+        assertTrue(file.setLastModified(modified));
+        assertEquals(file, cache.get(PRODUCT, DAILY, DAY));
+
+        // but on the first hit after a restart
+        cache = new ProductCache(folder.getRoot(), 1000);
+        assertNull(cache.get(PRODUCT, DAILY, DAY));
+    }
+
+    @Test
+    public void hitsAreSavedInBatches() throws IOException {
+        ProductCache cache = new ProductCache(folder.getRoot(), 1000);
+        cache.put(PRODUCT, DAILY, DAY, "a", write("a.n", 100, 1));
+        File index = new File(folder.getRoot(), ProductCache.INDEX);
+        assertTrue(index.setLastModified(0));
+
+        assertTrue(cache.get(PRODUCT, DAILY, DAY) != null);
+        assertTrue(cache.get(PRODUCT, DAILY, DAY) != null);
+        assertEquals(0, index.lastModified());
+
+        cache.flush();
+        assertTrue(index.lastModified() > 0);
+    }
+
+    @Test
+    public void fileRepublishedUnderTheSameNameReplacesTheEarlierSlot() throws IOException {
+        ProductCache cache = new ProductCache(folder.getRoot(), 1000);
+        cache.put(PRODUCT, HOURLY, DAY + 9 * ProductSchedule.HOUR_MILLIS, "a", write("hour0610.20n", 100, 1));
+        cache.put(PRODUCT, HOURLY, DAY + 10 * ProductSchedule.HOUR_MILLIS, "a", write("hour0610.20n", 120, 2));
+
+        assertNull(cache.get(PRODUCT, HOURLY, DAY + 9 * ProductSchedule.HOUR_MILLIS));
+        assertEquals(120, cache.get(PRODUCT, HOURLY, DAY + 10 * ProductSchedule.HOUR_MILLIS).length());
+        assertEquals(120, cache.getTotalBytes());
+    }
+
+    @Test
+    public void earlierSlotDoesNotDropAFileBeingInstalled() throws Exception {
+        final String hourly = "ftp://host/${yyyy}/${ddd}/hour${ddd}0.${yy}n";
+        final ProductCache cache = new ProductCache(folder.getRoot(), 1000);
+        cache.put(hourly, HOURLY, DAY + 9 * ProductSchedule.HOUR_MILLIS, "a", write("hour0610.20n", 100, 1));
+
+        ProductTransport transport = new ProductTransport() {
+            @Override
+            public void download(String url, File destination, Cancellation cancellation) throws IOException {
+                OutputStream out = new FileOutputStream(destination);
+                try {
+                    out.write(FtpTransportTest.content(120, 2));
+                } finally {
+                    out.close();
+                }
+            }
+        };
+        MirrorFetcher.Validator any = new MirrorFetcher.Validator() {
+            @Override
+            public void validate(String url, File file) {
+            }
+        };
+        final File[] earlier = new File[1];
+        final Thread[] reader = new Thread[1];
+        MirrorFetcher fetcher = new MirrorFetcher(transport, any, 300, 1) {
+            @Override
+            public File fetch(List<String> urls, File directory, Cancellation cancellation, final Installer installer)
+                    throws IOException {
+                return super.fetch(urls, directory, cancellation, new Installer() {
+                    @Override
+                    public void install(String url, File partial, File file) throws IOException {
+                        // the earlier slot is looked up right after the rename
+                        installer.install(url, new File(partial.getPath()) {
+                            @Override
+                            public boolean renameTo(File dest) {
+                                boolean renamed = super.renameTo(dest);
+                                reader[0] = new Thread(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        earlier[0] = cache.get(hourly, HOURLY, DAY + 9 * ProductSchedule.HOUR_MILLIS);
+                                    }
+                                });
+                                reader[0].start();
+                                try {
+                                    reader[0].join(200);
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                }
+                                return renamed;
+                            }
+                        }, file);
+                    }
+                });
+            }
+        };
+        try {
+            File file = cache.fetch(fetcher, Collections.singletonList(hourly), HOURLY,
+                    DAY + 10 * ProductSchedule.HOUR_MILLIS, 1000, new Cancellation());
+            reader[0].join();
+            assertNull(earlier[0]);
+            assertEquals(120, file.length());
+            assertEquals(file, cache.get(hourly, HOURLY, DAY + 10 * ProductSchedule.HOUR_MILLIS));
+            assertEquals(120, cache.getTotalBytes());
+        } finally {
+            fetcher.close();
+        }
+    }
+
+    @Test
+    public void missingAnswersPersistUntilTheyExpire() throws Exception {
+        ProductCache cache = new ProductCache(folder.getRoot(), 1000);
+        cache.putMissing(PRODUCT, DAILY, DAY, ProductSchedule.HOUR_MILLIS);
+        cache.putMissing(PRODUCT, DAILY, DAY + ProductSchedule.DAY_MILLIS, 50);
+
+        cache = new ProductCache(folder.getRoot(), 1000);
+        assertTrue(cache.isMissing(PRODUCT, DAILY, DAY + 1));
+        Thread.sleep(100);
+        assertFalse(cache.isMissing(PRODUCT, DAILY, DAY + ProductSchedule.DAY_MILLIS));
+
+        // the file appears
+        cache.put(PRODUCT, DAILY, DAY, "a", write("a.n", 10, 1));
+        assertFalse(cache.isMissing(PRODUCT, DAILY, DAY));
+    }
+
+    @Test
+    public void unknownFilesAreDeletedAndPartialsOnceTheFileIsAdded() throws IOException {
+        write("stale.n", 10, 1);
+        File partial = write("a.n@host_21.part", 10, 2);
+
+        ProductCache cache = new ProductCache(folder.getRoot(), 1000);
+        assertFalse(new File(folder.getRoot(), "stale.n").exists());
+        assertTrue(partial.exists());
+
+        cache.put(PRODUCT, DAILY, DAY, "ftp://host:2121/a.n", write("a.n", 10, 3));
+        assertFalse(partial.exists());
+    }
+
+    private File write(String name, int length, int seed) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(FtpTransportTest.content(length, seed));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,90 @@
+package com.gnss.ppptesttwo.navifromftp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Accuracy of the closed-form ECEF to geodetic conversion over a global grid, from below
+ * the surface up to GNSS altitudes, against the forward conversion and against the
+ * previous implementation.
+ */
+public class GeodeticConversionTest {
+
+    private static final double EARTH_RADIUS = 6378137.0;
+
+    /**
+     * Required accuracy of the closed form, 0.1 mm
+     */
+    private static final double TOLERANCE = 1e-4;
+
+    private static final double[] HEIGHTS = {-1000.0, 0.0, 100.0, 9000.0, 1e5, 1e6, 20200e3, 35786e3};
+
+    @Test
+    public void closedFormRoundTrip() {
+        double maxError = 0.0;
+        for (double h : HEIGHTS) {
+            for (double lat = -90.0; lat <= 90.0; lat += 2.5) {
+                for (double lon = -180.0; lon < 180.0; lon += 7.5) {
+                    Geodetic truth = new Geodetic(lat, lon, h);
+                    Geodetic g = truth.toEcef().toGeodetic();
+                    maxError = Math.max(maxError, error(truth, g));
+                }
+            }
+        }
+        assertTrue("max error " + maxError + " m", maxError < TOLERANCE);
+    }
+
+    @Test
+    public void matchesPreviousImplementationNearTheSurface() {
+        for (double h : new double[]{-1000.0, 0.0, 100.0, 9000.0}) {
+            for (double lat = -89.0; lat <= 89.0; lat += 2.0) {
+                for (double lon = -180.0; lon < 180.0; lon += 10.0) {
+                    Ecef ecef = new Geodetic(lat, lon, h).toEcef();
+                    assertTrue(error(ecef.toGeodeticLegacy(), ecef.toGeodetic()) < TOLERANCE);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void neverWorseThanPreviousImplementation() {
+        for (double h : HEIGHTS) {
+            for (double lat = -89.0; lat <= 89.0; lat += 2.0) {
+                Geodetic truth = new Geodetic(lat, 45.0, h);
+                Ecef ecef = truth.toEcef();
+                double fast = error(truth, ecef.toGeodetic());
+                double legacy = error(truth, ecef.toGeodeticLegacy());
+                assertTrue(fast <= legacy + 1e-6);
+            }
+        }
+    }
+
+    @Test
+    public void coordinatesUsesClosedFormAndMemoizes() {
+        Ecef ecef = new Geodetic(30.5, 114.3, 25.0).toEcef();
+        Coordinates c = Coordinates.globalXYZInstance(ecef.getX(), ecef.getY(), ecef.getZ());
+        assertEquals(30.5, c.getGeodeticLatitude(), 1e-10);
+        assertEquals(114.3, c.getGeodeticLongitude(), 1e-10);
+        assertEquals(25.0, c.getGeodeticHeight(), TOLERANCE);
+
+        c.setXYZ(ecef.getX() + 1000.0, ecef.getY(), ecef.getZ());
+        c.computeGeodetic();
+        assertTrue(Math.abs(c.getGeodeticLongitude() - 114.3) > 1e-4);
+        assertTrue(ecef.toGeodetic() == ecef.toGeodetic());
+    }
+
+    /**
+     * Distance between two geodetic points, as latitude, longitude and height components [m]
+     */
+    private static double error(Geodetic a, Geodetic b) {
+        double r = EARTH_RADIUS + Math.max(a.getHeight(), 0.0);
+        double dLat = Math.toRadians(a.getLatitude() - b.getLatitude()) * r;
+        double dLonDeg = a.getLongitude() - b.getLongitude();
+        dLonDeg -= 360.0 * Math.rint(dLonDeg / 360.0);
+        double dLon = Math.toRadians(dLonDeg) * r * Math.cos(Math.toRadians(a.getLatitude()));
+        double dH = a.getHeight() - b.getHeight();
+        return Math.sqrt(dLat * dLat + dLon * dLon + dH * dH);
+    }
+}
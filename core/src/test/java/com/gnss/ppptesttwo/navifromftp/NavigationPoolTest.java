@@ -0,0 +1,112 @@
+package com.gnss.ppptesttwo.navifromftp;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Single-flight loads and eviction of the parsed navigation pool.
+ */
+public class NavigationPoolTest {
+
+    private static final String PRODUCT = "ftp://host/${yyyy}/${ddd}/brdc${ddd}0.${yy}n";
+    private static final long HOUR = 3600 * 1000L;
+
+    @Test
+    public void concurrentRequestsShareOneLoad() throws Exception {
+        final NavigationPool<Object> pool = new NavigationPool<>();
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final NavigationPool.Loader<Object> loader = new NavigationPool.Loader<Object>() {
+            @Override
+            public Object load() throws IOException {
+                loads.incrementAndGet();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return new Object();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws IOException {
+                        return pool.get(PRODUCT, 0, HOUR, loader);
+                    }
+                }));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            Object first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<Object> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+            assertSame(first, pool.get(PRODUCT, 0, HOUR, loader));
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failedLoadIsRetried() throws IOException {
+        NavigationPool<String> pool = new NavigationPool<>();
+        try {
+            pool.get(PRODUCT, 0, HOUR, new NavigationPool.Loader<String>() {
+                @Override
+                public String load() throws IOException {
+                    throw new IOException("not published");
+                }
+            });
+            fail();
+        } catch (IOException expected) {
+            assertEquals("not published", expected.getMessage());
+        }
+        assertEquals(0, pool.size());
+        assertEquals("parsed", pool.get(PRODUCT, 0, HOUR, constant("parsed")));
+    }
+
+    @Test
+    public void windowsBeforeTheProcessingTimeAreEvicted() throws IOException {
+        NavigationPool<String> pool = new NavigationPool<>();
+        pool.get(PRODUCT, 0, HOUR, constant("first"));
+        pool.get(PRODUCT, HOUR, 2 * HOUR, constant("second"));
+        assertEquals(2, pool.size());
+
+        pool.setProcessingTime(HOUR + 1);
+        assertEquals("third", pool.get(PRODUCT, 2 * HOUR, 3 * HOUR, constant("third")));
+        assertEquals(2, pool.size());
+        // still cached
+        assertEquals("second", pool.get(PRODUCT, HOUR, 2 * HOUR, constant("reloaded")));
+        // loaded again
+        assertEquals("reloaded", pool.get(PRODUCT, 0, HOUR, constant("reloaded")));
+    }
+
+    private static NavigationPool.Loader<String> constant(final String value) {
+        return new NavigationPool.Loader<String>() {
+            @Override
+            public String load() {
+                return value;
+            }
+        };
+    }
+}
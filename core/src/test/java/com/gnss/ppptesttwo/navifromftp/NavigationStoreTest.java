@@ -0,0 +1,110 @@
+package com.gnss.ppptesttwo.navifromftp;
+
+import com.gnss.ppptesttwo.Time;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Merging of overlapping navigation files and publication of the merged versions.
+ */
+public class NavigationStoreTest {
+
+    /**
+     * 2020-03-01 00:00 UTC
+     */
+    private static final long DAY = 1583020800000L;
+    private static final long HOUR = 3600 * 1000L;
+
+    @Test
+    public void ephemerisIsTheClosestWithinItsValidity() {
+        RinexNavigationParserGps navigation = file(eph(5, DAY), eph(5, DAY + 2 * HOUR), eph(7, DAY + 4 * HOUR));
+
+        assertEquals(DAY + 2 * HOUR, navigation.findEph(DAY + HOUR + 1, 5, 'G').getRefTime().getMsec());
+        assertEquals(DAY, navigation.findEph(DAY + HOUR - 1, 5, 'G').getRefTime().getMsec());
+        // two hours after the last set
+        assertEquals(DAY + 2 * HOUR, navigation.findEph(DAY + 4 * HOUR, 5, 'G').getRefTime().getMsec());
+        assertNull(navigation.findEph(DAY + 4 * HOUR + 1000, 5, 'G'));
+        assertNull(navigation.findEph(DAY, 9, 'G'));
+    }
+
+    @Test
+    public void rangeIsThatOfTheSatellite() {
+        RinexNavigationParserGps navigation = file(eph(5, DAY), eph(7, DAY + 4 * HOUR));
+
+        assertTrue(navigation.isTimestampInEpocsRange(DAY - 2 * HOUR, 5, 'G'));
+        assertTrue(navigation.isTimestampInEpocsRange(DAY + 2 * HOUR, 5, 'G'));
+        assertFalse(navigation.isTimestampInEpocsRange(DAY - 2 * HOUR - 1000, 5, 'G'));
+        // satellite 7 still has a valid set, satellite 5 no longer
+        assertFalse(navigation.isTimestampInEpocsRange(DAY + 3 * HOUR, 5, 'G'));
+        assertTrue(navigation.isTimestampInEpocsRange(DAY + 3 * HOUR, 7, 'G'));
+        assertTrue(navigation.isTimestampInEpocsRange(DAY + 6 * HOUR, 7, 'G'));
+        assertFalse(navigation.isTimestampInEpocsRange(DAY + 6 * HOUR + 1000, 7, 'G'));
+        assertFalse(navigation.isTimestampInEpocsRange(DAY, 9, 'G'));
+        assertFalse(file().isTimestampInEpocsRange(DAY, 5, 'G'));
+    }
+
+    @Test
+    public void rolloverKeepsTheSatellitesOfThePreviousFile() {
+        EphGps old = eph(5, DAY + 22 * HOUR);
+        EphGps replaced = eph(7, DAY + 22 * HOUR);
+        RinexNavigationParserGps previous = file(eph(5, DAY - 2 * HOUR), old, replaced);
+        EphGps update = eph(7, DAY + 22 * HOUR);
+        RinexNavigationParserGps next = file(update, eph(9, DAY + 24 * HOUR));
+
+        RinexNavigationParserGps merged = RinexNavigationParserGps.merge(previous, next);
+        assertSame(old, merged.findEph(DAY + 23 * HOUR, 5, 'G'));
+        assertSame(update, merged.findEph(DAY + 23 * HOUR, 7, 'G'));
+        assertEquals(DAY + 24 * HOUR, merged.findEph(DAY + 23 * HOUR, 9, 'G').getRefTime().getMsec());
+        // older than a day before the newest set
+        assertEquals(3, merged.getEphSize());
+        // the inputs are untouched
+        assertEquals(3, previous.getEphSize());
+        assertNull(next.findEph(DAY + 23 * HOUR, 5, 'G'));
+    }
+
+    @Test
+    public void pinnedVersionIsNotChangedByAnInstall() {
+        NavigationStore<RinexNavigationParserGps> store = new NavigationStore<>(
+                new NavigationStore.Merger<RinexNavigationParserGps>() {
+                    @Override
+                    public RinexNavigationParserGps merge(RinexNavigationParserGps current, RinexNavigationParserGps newer) {
+                        return RinexNavigationParserGps.merge(current, newer);
+                    }
+                });
+        assertNull(store.pin());
+
+        store.install(file(eph(5, DAY)));
+        NavigationStore.Version<RinexNavigationParserGps> pinned = store.pin();
+        assertEquals(1, pinned.getNumber());
+
+        store.install(file(eph(7, DAY)));
+        assertNull(pinned.getNavigation().findEph(DAY, 7, 'G'));
+        assertEquals(2, store.pin().getNumber());
+        assertTrue(store.pin().getNavigation().findEph(DAY, 5, 'G') != null);
+        assertTrue(store.pin().getNavigation().findEph(DAY, 7, 'G') != null);
+    }
+
+    private static RinexNavigationParserGps file(EphGps... ephemerides) {
+        RinexNavigationParserGps navigation = new RinexNavigationParserGps((File) null);
+        for (EphGps eph : ephemerides) {
+            navigation.addEph(eph);
+        }
+        return navigation;
+    }
+
+    private static EphGps eph(int satID, long refTime) {
+        EphGps eph = new EphGps();
+        eph.setSatType('G');
+        eph.setSatID(satID);
+        eph.setRefTime(new Time(refTime));
+        return eph;
+    }
+}
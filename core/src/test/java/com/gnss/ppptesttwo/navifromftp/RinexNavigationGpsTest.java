@@ -0,0 +1,52 @@
+package com.gnss.ppptesttwo.navifromftp;
+
+import com.gnss.ppptesttwo.constellations.GnssConstellation;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Files handed over by the prefetcher go through the parse pool.
+ */
+public class RinexNavigationGpsTest {
+
+    private static final String PRODUCT = GnssConstellation.NASA_NAVIGATION_HOURLY;
+    private static final long HOUR = 3600 * 1000L;
+    private static final long SLOT = 438000 * HOUR;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void aSlotIsInstalledOnce() throws IOException {
+        RinexNavigationGps navigation = new RinexNavigationGps();
+        File file = header(folder.newFile("hour0010.20n"));
+
+        navigation.loadFromFile(PRODUCT, SLOT, file);
+        RinexNavigationParserGps installed = navigation.pin();
+        assertNotNull(installed);
+
+        navigation.loadFromFile(PRODUCT, SLOT, file);
+        assertSame(installed, navigation.pin(SLOT + 1000));
+
+        navigation.loadFromFile(PRODUCT, SLOT + HOUR, file);
+        assertNotSame(installed, navigation.pin());
+    }
+
+    private static File header(File file) throws IOException {
+        Files.write(file.toPath(), ("     2.11           N: GPS NAV DATA                         RINEX VERSION / TYPE\n"
+                + "                                                            END OF HEADER\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+}
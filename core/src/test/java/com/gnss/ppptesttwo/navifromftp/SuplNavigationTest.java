@@ -0,0 +1,129 @@
+package com.gnss.ppptesttwo.navifromftp;
+
+import com.gnss.ppptesttwo.Time;
+import com.google.location.suplclient.ephemeris.EphemerisResponse;
+import com.google.location.suplclient.ephemeris.GalEphemeris;
+import com.google.location.suplclient.ephemeris.GnssEphemeris;
+import com.google.location.suplclient.ephemeris.GpsEphemeris;
+import com.google.location.suplclient.ephemeris.IonosphericModel;
+import com.google.location.suplclient.ephemeris.KeplerianModel;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * SUPL assistance against a stand-in answering with fixed ephemerides.
+ */
+public class SuplNavigationTest {
+
+    private static final int WEEK = 2095;
+    private static final double TOC = 7200;
+
+    @Test
+    public void installsTheEphemeridesOfEverySystemInUse() throws IOException {
+        SuplStandIn server = new SuplStandIn(gps(5), gps(7), galileo(11));
+        RinexNavigationGps gps = new RinexNavigationGps();
+        RinexNavigationGalileo galileo = new RinexNavigationGalileo();
+
+        assertEquals(3, new SuplNavigation(server).load(46.0123456, 8.9654321, gps, galileo));
+        assertEquals(460123456L, server.latE7);
+        assertEquals(89654321L, server.lngE7);
+
+        long refTime = new Time(WEEK, TOC, 'G').getMsec();
+        assertNotNull(gps.pin().findEph(refTime, 5, 'G'));
+        assertNotNull(gps.pin().findEph(refTime, 7, 'G'));
+        assertEquals(1.2e-8f, gps.getIonoGps().getAlpha(1), 1e-12);
+        assertEquals(1, galileo.pin().getEphSize());
+    }
+
+    @Test
+    public void systemsNotInUseAreSkipped() throws IOException {
+        RinexNavigationGps gps = new RinexNavigationGps();
+        assertEquals(1, new SuplNavigation(new SuplStandIn(gps(5), galileo(11))).load(0, 0, gps, null));
+        assertEquals(1, gps.pin().getEphSize());
+
+        try {
+            new SuplNavigation(new SuplStandIn(galileo(11))).load(0, 0, new RinexNavigationGps(), null);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void failedExchangeInstallsNothing() {
+        RinexNavigationGps gps = new RinexNavigationGps();
+        try {
+            new SuplNavigation(new SuplNavigation.Client() {
+                @Override
+                public EphemerisResponse request(long latE7, long lngE7) throws IOException {
+                    throw new IOException("connection refused");
+                }
+            }).load(0, 0, gps, null);
+            fail();
+        } catch (IOException expected) {
+        }
+        assertNull(gps.pin());
+        assertNull(gps.getIonoGps());
+    }
+
+    /**
+     * Answers every request with the same assistance data
+     */
+    private static final class SuplStandIn implements SuplNavigation.Client {
+        private final List<GnssEphemeris> ephemerides;
+        long latE7;
+        long lngE7;
+
+        SuplStandIn(GnssEphemeris... ephemerides) {
+            this.ephemerides = Arrays.asList(ephemerides);
+        }
+
+        @Override
+        public EphemerisResponse request(long latE7, long lngE7) {
+            this.latE7 = latE7;
+            this.lngE7 = lngE7;
+            EphemerisResponse response = new EphemerisResponse();
+            response.ephList = new ArrayList<>(ephemerides);
+            response.ionoProto = new IonosphericModel();
+            response.ionoProto.alpha = new double[]{1.1e-8, 1.2e-8, -5.96e-8, -1.19e-7};
+            response.ionoProto.beta = new double[]{90112, 0, -196608, -65536};
+            return response;
+        }
+    }
+
+    private static GpsEphemeris gps(int svid) {
+        GpsEphemeris eph = new GpsEphemeris();
+        eph.svid = svid;
+        eph.week = WEEK;
+        eph.tocS = TOC;
+        eph.keplerModel = kepler();
+        return eph;
+    }
+
+    private static GalEphemeris galileo(int svid) {
+        GalEphemeris eph = new GalEphemeris();
+        eph.svid = svid;
+        eph.week = WEEK;
+        eph.tocS = TOC;
+        eph.keplerModel = kepler();
+        return eph;
+    }
+
+    private static KeplerianModel kepler() {
+        KeplerianModel model = new KeplerianModel();
+        model.toeS = TOC;
+        model.sqrtA = 5153.7;
+        model.eccentricity = 0.01;
+        model.i0 = 0.96;
+        return model;
+    }
+}
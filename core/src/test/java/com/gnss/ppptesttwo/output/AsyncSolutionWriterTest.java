@@ -0,0 +1,129 @@
+package com.gnss.ppptesttwo.output;
+
+import com.gnss.ppptesttwo.GnssTime;
+import com.gnss.ppptesttwo.navifromftp.Coordinates;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Output of the three solution formats through the background writer.
+ */
+public class AsyncSolutionWriterTest {
+
+    // 2020-04-07 12:34:56.5 UTC
+    private static final GnssTime TIME = GnssTime.fromUtcMillis(1586262896500L);
+    private static final Coordinates DELFT = Coordinates.globalGeodInstance(52.0, 4.37, 50.0);
+
+    @Test
+    public void csv() throws IOException {
+        String[] lines = new String(write(new CsvSolutionFormat(), 3), StandardCharsets.US_ASCII).split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].startsWith("# week,"));
+        String[] fields = lines[1].split(",");
+        assertEquals("2100", fields[0]);
+        assertEquals(TIME.getGpsSecondsOfWeek(), Double.parseDouble(fields[1]), 1e-9);
+        assertEquals(DELFT.getX(), Double.parseDouble(fields[2]), 1e-4);
+        assertEquals(52.0, Double.parseDouble(fields[5]), 1e-9);
+        assertEquals(4.37, Double.parseDouble(fields[6]), 1e-9);
+        assertEquals(50.0, Double.parseDouble(fields[7]), 1e-3);
+        assertEquals("-12.500", fields[8]);
+        assertEquals("9", fields[9]);
+        assertEquals("1.25", fields[10]);
+    }
+
+    @Test
+    public void nmea() throws IOException {
+        String[] sentences = new String(write(new NmeaSolutionFormat(), 1), StandardCharsets.US_ASCII).split("\r\n");
+        assertEquals(2, sentences.length);
+        assertEquals("$GNGGA,123456.50,5200.000000,N,00422.200000,E,1,09,1.3,50.000,M,,M,,", sentences[0].substring(0, sentences[0].indexOf('*')));
+        assertEquals("$GNRMC,123456.50,A,5200.000000,N,00422.200000,E,,,070420,,,A", sentences[1].substring(0, sentences[1].indexOf('*')));
+        for (String sentence : sentences) {
+            int checksum = 0;
+            for (int i = 1; i < sentence.indexOf('*'); i++) {
+                checksum ^= sentence.charAt(i);
+            }
+            assertEquals(String.format("%02X", checksum), sentence.substring(sentence.indexOf('*') + 1));
+        }
+    }
+
+    @Test
+    public void binary() throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(write(new BinarySolutionFormat(), 2)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(BinarySolutionFormat.HEADER_SIZE + 2 * BinarySolutionFormat.RECORD_SIZE, in.remaining());
+        assertEquals(BinarySolutionFormat.MAGIC, in.getInt());
+        assertEquals(BinarySolutionFormat.VERSION, in.getInt());
+        SolutionRecord record = BinarySolutionFormat.read(in);
+        assertEquals(TIME.getGpsNanos(), record.getGpsNanos());
+        assertEquals(DELFT.getZ(), record.getZ(), 0.0);
+        assertEquals(9, record.getSatellites());
+        assertEquals(1.25, record.getHdop(), 0.0);
+        assertEquals(TIME.getGpsNanos() + 1000000000L, BinarySolutionFormat.read(in).getGpsNanos());
+    }
+
+    @Test
+    public void dropsWhenFullAndAfterClose() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // the writer thread only wakes up at the flush interval or when half the ring is used
+        AsyncSolutionWriter writer = new AsyncSolutionWriter(Channels.newChannel(bytes), new BinarySolutionFormat(),
+                4, 1 << 16, 60000);
+        int accepted = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (offer(writer, i)) {
+                accepted++;
+            }
+        }
+        writer.close();
+        assertEquals(accepted, writer.getWritten());
+        assertEquals(1000 - accepted, writer.getDropped());
+        assertEquals(BinarySolutionFormat.HEADER_SIZE + accepted * BinarySolutionFormat.RECORD_SIZE, bytes.size());
+        assertFalse(offer(writer, 0));
+    }
+
+    @Test
+    public void parksWhileIdle() throws IOException, InterruptedException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AsyncSolutionWriter writer = new AsyncSolutionWriter(Channels.newChannel(bytes), new CsvSolutionFormat(),
+                16, 1 << 16, 20);
+        // the header is written at the first deadline, then nothing is pending
+        Thread.sleep(300);
+        assertTrue(writer.getWakeups() <= 2);
+        assertEquals(1, writer.getFlushes());
+
+        assertTrue(offer(writer, 0));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writer.getFlushes() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, writer.getFlushes());
+        assertEquals(1, writer.getWritten());
+        writer.close();
+    }
+
+    private static byte[] write(SolutionFormat format, int solutions) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AsyncSolutionWriter writer = new AsyncSolutionWriter(Channels.newChannel(bytes), format);
+        for (int i = 0; i < solutions; i++) {
+            assertTrue(offer(writer, i));
+        }
+        writer.close();
+        assertEquals(solutions, writer.getWritten());
+        assertEquals(1, writer.getFlushes());
+        return bytes.toByteArray();
+    }
+
+    private static boolean offer(AsyncSolutionWriter writer, int second) {
+        return writer.offer(TIME.getGpsNanos() + second * 1000000000L, DELFT.getX(), DELFT.getY(), DELFT.getZ(),
+                -12.5, 9, 1.25);
+    }
+}
@@ -0,0 +1,133 @@
+package com.gnss.ppptesttwo.output;
+
+import com.gnss.ppptesttwo.GnssTime;
+import com.gnss.ppptesttwo.constellations.Pseudorange;
+import com.gnss.ppptesttwo.constellations.SatelliteParameters;
+import com.gnss.ppptesttwo.navifromftp.Coordinates;
+import com.gnss.ppptesttwo.raw.RawEpoch;
+import com.gnss.ppptesttwo.raw.RawMeasurement;
+import com.gnss.ppptesttwo.replay.RinexObservationReader;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * RINEX 3.04 observation records written from the constellation measurements.
+ */
+public class RinexObservationWriterTest {
+
+    private static final GnssTime TIME = GnssTime.ofGpsCalendar(2020, 4, 7, 12, 34, 56.5);
+
+    @Test
+    public void writesHeaderAndEpochRecords() throws IOException {
+        String[] lines = write(2).split("\n");
+        int epoch = indexOf(lines, "END OF HEADER") + 1;
+        for (int i = 0; i < epoch; i++) {
+            assertEquals(lines[i], 80, lines[i].length());
+        }
+        assertEquals("     3.04           OBSERVATION DATA    M                   RINEX VERSION / TYPE", lines[0]);
+        assertTrue(text(lines).contains("G    4 C1C L1C D1C S1C                                      SYS / # / OBS TYPES"));
+        assertTrue(text(lines).contains("  2020     4     7    12    34   56.5000000     GPS         TIME OF FIRST OBS"));
+
+        assertEquals("> 2020 04 07 12 34 56.5000000  0  3", lines[epoch]);
+        assertEquals("G05  21123456.789 7     12345.250 7     -1234.567 7        42.250  ", lines[epoch + 1]);
+        // no carrier phase, loss of lock on the second satellite
+        assertEquals("G12  23000000.123 6                       987.654 6        36.000  ", lines[epoch + 2]);
+        assertEquals("E03  25000000.500 5     -2000.00015       100.000 5        30.000  ", lines[epoch + 3]);
+        assertEquals("> 2020 04 07 12 34 56.6000000  0  3", lines[epoch + 4]);
+        assertEquals(epoch + 8, lines.length);
+    }
+
+    @Test
+    public void epochIsRoundedBeforeTheCalendarSplit() throws IOException {
+        GnssTime beforeMidnight = GnssTime.ofGpsCalendar(2020, 4, 7, 0, 0, 0.0).plusNanos(86400L * 1000000000L - 30);
+        String[] lines = write(beforeMidnight, 1).split("\n");
+        assertTrue(text(lines).contains("  2020     4     8     0     0    0.0000000     GPS         TIME OF FIRST OBS"));
+        assertEquals("> 2020 04 08 00 00 00.0000000  0  3", lines[indexOf(lines, "END OF HEADER") + 1]);
+
+        GnssTime beforeMinute = GnssTime.ofGpsCalendar(2020, 4, 7, 12, 34, 0.0).plusNanos(59999999960L);
+        lines = write(beforeMinute, 1).split("\n");
+        assertTrue(text(lines).contains("  2020     4     7    12    35    0.0000000     GPS         TIME OF FIRST OBS"));
+        assertEquals("> 2020 04 07 12 35 00.0000000  0  3", lines[indexOf(lines, "END OF HEADER") + 1]);
+    }
+
+    @Test
+    public void isReadBackByTheObservationReader() throws IOException {
+        try (RinexObservationReader reader = new RinexObservationReader(
+                new ByteArrayInputStream(write(3).getBytes(StandardCharsets.US_ASCII)))) {
+            RawEpoch epoch = reader.next();
+            assertEquals(3, epoch.getMeasurements().size());
+            RawMeasurement gps = epoch.getMeasurements().get(0);
+            assertEquals(RawMeasurement.CONSTELLATION_GPS, gps.getConstellationType());
+            assertEquals(5, gps.getSvid());
+            assertEquals(42.25, gps.getCn0DbHz(), 1e-9);
+            RawMeasurement galileo = epoch.getMeasurements().get(2);
+            assertEquals(RawMeasurement.CONSTELLATION_GALILEO, galileo.getConstellationType());
+            assertEquals(3, galileo.getSvid());
+            reader.next();
+            reader.next();
+            assertNull(reader.next());
+        }
+    }
+
+    private static String write(int epochs) throws IOException {
+        return write(TIME, epochs);
+    }
+
+    private static String write(GnssTime start, int epochs) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        RinexObservationWriter writer = new RinexObservationWriter(Channels.newChannel(bytes), "TEST",
+                Coordinates.globalGeodInstance(52.0, 4.37, 50.0));
+        for (int i = 0; i < epochs; i++) {
+            assertTrue(writer.offer(start.plusNanos(i * 100000000L), satellites()));
+        }
+        writer.close();
+        assertEquals(epochs, writer.getWritten());
+        return new String(bytes.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    private static List<SatelliteParameters> satellites() {
+        List<SatelliteParameters> satellites = new ArrayList<>();
+        satellites.add(satellite(RawMeasurement.CONSTELLATION_GPS, 5, 21123456.789, 12345.25, -1234.567, 42.25, false));
+        satellites.add(satellite(RawMeasurement.CONSTELLATION_GPS, 12, 23000000.123, Double.NaN, 987.654, 36.0, true));
+        satellites.add(satellite(RawMeasurement.CONSTELLATION_GALILEO, 3, 25000000.5, -2000.0, 100.0, 30.0, true));
+        // not recorded
+        satellites.add(satellite(RawMeasurement.CONSTELLATION_GLONASS, 7, 20000000.0, 0.0, 0.0, 40.0, false));
+        return satellites;
+    }
+
+    private static SatelliteParameters satellite(int constellation, int prn, double pseudorange, double phase,
+                                                 double doppler, double snr, boolean lossOfLock) {
+        SatelliteParameters satellite = new SatelliteParameters(prn, new Pseudorange(pseudorange, 0.0));
+        satellite.setConstellationType(constellation);
+        satellite.setCarrierPhase(phase);
+        satellite.setDoppler(doppler);
+        satellite.setSignalStrength(snr);
+        satellite.setLossOfLock(lossOfLock);
+        return satellite;
+    }
+
+    private static int indexOf(String[] lines, String label) {
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].substring(60).trim().equals(label)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String text(String[] lines) {
+        return String.join("\n", lines);
+    }
+}
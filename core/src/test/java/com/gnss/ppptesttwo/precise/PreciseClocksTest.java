@@ -0,0 +1,213 @@
+package com.gnss.ppptesttwo.precise;
+
+import com.gnss.ppptesttwo.GnssTime;
+import com.gnss.ppptesttwo.Time;
+import com.gnss.ppptesttwo.navifromftp.RinexNavigationParserGps;
+import com.gnss.ppptesttwo.navifromftp.SatellitePosition;
+import com.google.location.suplclient.ephemeris.EphemerisResponse;
+import com.google.location.suplclient.ephemeris.GnssEphemeris;
+import com.google.location.suplclient.ephemeris.GpsEphemeris;
+import com.google.location.suplclient.ephemeris.IonosphericModel;
+import com.google.location.suplclient.ephemeris.KeplerianModel;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * RINEX clock parsing, binary cache and use in place of the broadcast and SP3 clocks.
+ */
+public class PreciseClocksTest {
+
+    private static final long START = GnssTime.daysFromCivil(2020, 3, 1) * 86400000L;
+    private static final int EPOCHS = 120;
+    private static final int INTERVAL = 30;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keepsTheSatelliteRecords() throws IOException {
+        PreciseClocks clocks = parse(clk("3.00", 3, -1));
+
+        assertEquals(START, clocks.getStartMillis());
+        assertEquals(30000, clocks.getIntervalMillis());
+        assertEquals(EPOCHS, clocks.getEpochs());
+        assertEquals(START + 119 * 30000L, clocks.getEndMillis());
+        assertEquals(3, clocks.getSatelliteCount());
+        assertEquals(-1, clocks.slot('G', 2));
+
+        int slot = clocks.slot('E', 11);
+        assertEquals(bias(2, 40 * INTERVAL), clocks.bias[slot * EPOCHS + 40], 1e-17);
+    }
+
+    @Test
+    public void interpolatesBetweenEpochs() throws IOException {
+        PreciseClocks clocks = parse(clk("3.00", 3, 50));
+        int slot = clocks.slot('G', 7);
+
+        assertEquals(bias(1, 10 * INTERVAL), clocks.bias(slot, 10 * INTERVAL), 1e-17);
+        assertEquals((bias(1, 10 * INTERVAL) + bias(1, 11 * INTERVAL)) / 2, clocks.bias(slot, 10.5 * INTERVAL), 1e-17);
+        assertEquals(bias(1, 119 * INTERVAL), clocks.bias(slot, 119 * INTERVAL), 1e-17);
+        assertEquals(clocks.bias(slot, 20.25 * INTERVAL),
+                clocks.getClockBias('G', 7, START / 1000.0 + 20.25 * INTERVAL), 1e-17);
+
+        assertTrue(Double.isNaN(clocks.bias(slot, 49.5 * INTERVAL)));
+        assertTrue(Double.isNaN(clocks.bias(slot, 50 * INTERVAL)));
+        assertTrue(Double.isNaN(clocks.bias(slot, -1)));
+        assertTrue(Double.isNaN(clocks.bias(slot, 119 * INTERVAL + 1)));
+        assertTrue(Double.isNaN(clocks.getClockBias('G', 2, START / 1000.0)));
+    }
+
+    @Test
+    public void readsRinex304Names() throws IOException {
+        PreciseClocks v300 = parse(clk("3.00", 3, -1));
+        PreciseClocks v304 = parse(clk("3.04", 9, -1));
+
+        assertEquals(v300.slot('E', 11), v304.slot('E', 11));
+        assertArrayEquals(v300.bias, v304.bias, 0);
+    }
+
+    @Test
+    public void binaryCacheReplacesTheText() throws IOException {
+        File product = folder.newFile("cod20950.clk");
+        write(product, clk("3.00", 3, 50));
+        File cache = new File(folder.getRoot(), "cod20950.clk.bin");
+
+        PreciseClocks parsed = PreciseClocks.load(product, cache);
+        assertTrue(cache.isFile());
+
+        write(product, "not a clock file");
+        assertTrue(product.setLastModified(cache.lastModified() - 10000));
+        PreciseClocks cached = PreciseClocks.load(product, cache);
+
+        assertEquals(parsed.getStartMillis(), cached.getStartMillis());
+        assertEquals(parsed.getIntervalMillis(), cached.getIntervalMillis());
+        assertEquals(parsed.getEpochs(), cached.getEpochs());
+        assertEquals(parsed.slot('G', 7), cached.slot('G', 7));
+        assertArrayEquals(parsed.bias, cached.bias, 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void recordsOffTheGridAreRejected() throws IOException {
+        String text = clk("3.00", 3, -1);
+        parse(text.replace("2020 03 01 00 01  0.000000", "2020 03 01 00 01 10.000000"));
+    }
+
+    @Test(expected = IOException.class)
+    public void otherTimeSystemsAreRejected() throws IOException {
+        parse(clk("3.00", 3, -1).replace("   GPS ", "   UTC "));
+    }
+
+    @Test
+    public void replacesTheBroadcastClock() {
+        EphemerisResponse response = new EphemerisResponse();
+        response.ephList = new ArrayList<GnssEphemeris>();
+        response.ephList.add(gps(5));
+        response.ionoProto = new IonosphericModel();
+        response.ionoProto.alpha = new double[4];
+        response.ionoProto.beta = new double[4];
+        RinexNavigationParserGps navigation = new RinexNavigationParserGps(response);
+        long time = new Time(2095, 7800).getMsec();
+
+        SatellitePosition broadcast = navigation.getSatPositionAndVelocities(time, 2.2e7, 5, 'G', 0);
+        SatellitePosition precise = navigation.getSatPositionAndVelocities(time, 2.2e7, 5, 'G', 0, constant(1e-4));
+        SatellitePosition uncovered = navigation.getSatPositionAndVelocities(time, 2.2e7, 5, 'G', 0, constant(Double.NaN));
+
+        // no clock polynomial in the ephemeris: the relativistic term is left
+        assertEquals(broadcast.getSatelliteClockError() + 1e-4, precise.getSatelliteClockError(), 1e-15);
+        assertEquals(broadcast.getSatelliteClockError(), uncovered.getSatelliteClockError(), 0);
+    }
+
+    @Test
+    public void replacesTheSp3Clocks() throws IOException {
+        Sp3Interpolator interpolator = new Sp3Interpolator(
+                Sp3Parser.parse(new ByteArrayInputStream(Sp3OrbitsTest.sp3(-1).getBytes(StandardCharsets.US_ASCII))));
+        long time = interpolator.getOrbits().getStartMillis() + 20000250;
+
+        interpolator.setClocks(constant(2e-4));
+        assertEquals(2e-4 - 5e-9, interpolator.getSatPositionAndVelocities(time, 2.2e7, 7, 'G', 0, 5e-9).getSatelliteClockError(), 1e-12);
+
+        interpolator.setClocks(constant(Double.NaN));
+        assertEquals(Sp3OrbitsTest.clock(1, 20000.25 - 2.2e7 / 299792458.0),
+                interpolator.getSatPositionAndVelocities(time, 2.2e7, 7, 'G', 0, 0).getSatelliteClockError(), 1e-12);
+    }
+
+    private static PreciseClocks parse(String text) throws IOException {
+        return RinexClockParser.parse(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static void write(File file, String text) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes(StandardCharsets.US_ASCII));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static SatelliteClocks constant(final double bias) {
+        return new SatelliteClocks() {
+            @Override
+            public double getClockBias(char satType, int satID, double unixSeconds) {
+                return bias;
+            }
+        };
+    }
+
+    /**
+     * @param nameWidth 3 for RINEX clock 3.00, 9 for 3.04
+     * @param missing   epoch without a G07 record, -1 for none
+     */
+    private static String clk(String version, int nameWidth, int missing) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%9s%11s%-20s%-20s%s\n", version, "", "C", "M", "RINEX VERSION / TYPE"));
+        sb.append(String.format(Locale.US, "%-60s%s\n", "   GPS", "TIME SYSTEM ID"));
+        sb.append(String.format(Locale.US, "%-60s%s\n", "    2    AS    AR", "# / TYPES OF DATA"));
+        sb.append(String.format(Locale.US, "%-60s%s\n", "", "END OF HEADER"));
+        String[] names = {"G01", "G07", "E11"};
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            int seconds = epoch * INTERVAL;
+            String date = String.format(Locale.US, "2020 03 01 %02d %02d %9.6f", seconds / 3600, seconds / 60 % 60, (double) (seconds % 60));
+            sb.append(String.format(Locale.US, "AR %-" + nameWidth + "s %s  1   %19.12E\n", "ALGO", date, 1.5e-9 * epoch));
+            for (int satellite = 0; satellite < 3; satellite++) {
+                if (satellite == 1 && epoch == missing) {
+                    continue;
+                }
+                sb.append(String.format(Locale.US, "AS %-" + nameWidth + "s %s  2   %19.12E %19.12E\n",
+                        names[satellite], date, bias(satellite, seconds), 1.2e-11));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static double bias(int satellite, double t) {
+        return (satellite + 1) * 1e-4 + 3e-12 * t + 1e-16 * t * t;
+    }
+
+    private static GpsEphemeris gps(int svid) {
+        GpsEphemeris eph = new GpsEphemeris();
+        eph.svid = svid;
+        eph.week = 2095;
+        eph.tocS = 7200;
+        eph.keplerModel = new KeplerianModel();
+        eph.keplerModel.toeS = 7200;
+        eph.keplerModel.sqrtA = 5153.7;
+        eph.keplerModel.eccentricity = 0.01;
+        eph.keplerModel.i0 = 0.96;
+        return eph;
+    }
+}
@@ -0,0 +1,217 @@
+package com.gnss.ppptesttwo.precise;
+
+import com.gnss.ppptesttwo.Constants;
+import com.gnss.ppptesttwo.GnssTime;
+import com.gnss.ppptesttwo.navifromftp.SatellitePosition;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SP3 parsing, binary cache and interpolation on a product generated from circular orbits.
+ */
+public class Sp3OrbitsTest {
+
+    private static final long START = GnssTime.daysFromCivil(2020, 3, 1) * 86400000L;
+    private static final int EPOCHS = 96;
+    private static final double INTERVAL = 900;
+    private static final double RADIUS = 26560e3;
+    private static final double RATE = 2 * Math.PI / 43082;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void parsesTheOrbitTable() throws IOException {
+        Sp3Orbits orbits = parse(sp3(-1));
+
+        assertEquals(START, orbits.getStartMillis());
+        assertEquals(900000, orbits.getIntervalMillis());
+        assertEquals(EPOCHS, orbits.getEpochs());
+        assertEquals(START + 95 * 900000L, orbits.getEndMillis());
+        assertEquals(3, orbits.getSatelliteCount());
+        assertEquals(-1, orbits.slot('G', 3));
+        assertEquals(-1, orbits.slot('X', 1));
+
+        int slot = orbits.slot('E', 11);
+        double[] expected = orbit(2, 10 * INTERVAL);
+        assertEquals(expected[0], orbits.x[slot * EPOCHS + 10], 1e-3);
+        assertEquals(expected[2], orbits.z[slot * EPOCHS + 10], 1e-3);
+        assertEquals(clock(2, 10 * INTERVAL), orbits.clock[slot * EPOCHS + 10], 1e-12);
+    }
+
+    @Test
+    public void interpolatesPositionsAndVelocities() throws IOException {
+        Sp3Interpolator interpolator = new Sp3Interpolator(parse(sp3(-1)));
+        double[] out = new double[6];
+        for (int satellite = 0; satellite < 3; satellite++) {
+            int slot = interpolator.getOrbits().slot(satellite == 2 ? 'E' : 'G', prn(satellite));
+            for (double t = 0; t <= 95 * INTERVAL; t += 337.5) {
+                assertTrue(interpolator.interpolate(slot, t, out));
+                double[] expected = orbit(satellite, t);
+                for (int i = 0; i < 6; i++) {
+                    assertEquals("t " + t + " component " + i, expected[i], out[i], i < 3 ? 0.005 : 1e-4);
+                }
+            }
+        }
+        // on the nodes the tabulated values
+        int slot = interpolator.getOrbits().slot('G', 1);
+        assertTrue(interpolator.interpolate(slot, 40 * INTERVAL, out));
+        assertEquals(interpolator.getOrbits().x[slot * EPOCHS + 40], out[0], 0);
+        assertEquals(orbit(0, 40 * INTERVAL)[3], out[3], 1e-5);
+
+        assertFalse(interpolator.interpolate(slot, -INTERVAL, out));
+        assertFalse(interpolator.interpolate(slot, 96 * INTERVAL, out));
+        assertFalse(interpolator.interpolate(-1, 0, out));
+    }
+
+    @Test
+    public void computesTheSatelliteAtTransmission() throws IOException {
+        Sp3Interpolator interpolator = new Sp3Interpolator(parse(sp3(-1)));
+        double reception = 20000.25;
+        double range = 2.2e7;
+        double tgd = 5e-9;
+        SatellitePosition sp = interpolator.getSatPositionAndVelocities(
+                START + (long) (reception * 1000), range, 7, 'G', 0, tgd);
+
+        double clock = clock(1, reception - range / Constants.SPEED_OF_LIGHT);
+        double transmission = reception - range / Constants.SPEED_OF_LIGHT - clock;
+        double[] expected = orbit(1, transmission);
+        double omegatau = Constants.EARTH_ANGULAR_VELOCITY * (reception - transmission);
+        assertEquals(Math.cos(omegatau) * expected[0] + Math.sin(omegatau) * expected[1], sp.getX(), 0.005);
+        assertEquals(-Math.sin(omegatau) * expected[0] + Math.cos(omegatau) * expected[1], sp.getY(), 0.005);
+        assertEquals(expected[2], sp.getZ(), 0.005);
+        // no relativistic term on a circular orbit
+        assertEquals(clock - tgd, sp.getSatelliteClockError(), 1e-12);
+    }
+
+    @Test
+    public void missingValuesAreNotInterpolated() throws IOException {
+        Sp3Interpolator interpolator = new Sp3Interpolator(parse(sp3(50)));
+        int slot = interpolator.getOrbits().slot('G', 1);
+        double[] out = new double[6];
+
+        assertTrue(Double.isNaN(interpolator.getOrbits().x[slot * EPOCHS + 50]));
+        assertTrue(Double.isNaN(interpolator.getOrbits().clock[slot * EPOCHS + 50]));
+        assertFalse(interpolator.interpolate(slot, 48 * INTERVAL, out));
+        assertTrue(interpolator.interpolate(slot, 20 * INTERVAL, out));
+        assertNull(interpolator.getSatPositionAndVelocities(START + (long) (50 * INTERVAL * 1000), 2.2e7, 1, 'G', 0, 0));
+        assertNull(interpolator.getSatPositionAndVelocities(START + 1000000, 2.2e7, 3, 'G', 0, 0));
+    }
+
+    @Test
+    public void binaryCacheReplacesTheText() throws IOException {
+        File product = folder.newFile("igs20950.sp3");
+        write(product, sp3(50));
+        File cache = new File(folder.getRoot(), "igs20950.sp3.bin");
+
+        Sp3Orbits parsed = Sp3Orbits.load(product, cache);
+        assertTrue(cache.isFile());
+
+        // a cache newer than the product is used without reading the product
+        write(product, "not an SP3 file");
+        assertTrue(product.setLastModified(cache.lastModified() - 10000));
+        Sp3Orbits cached = Sp3Orbits.load(product, cache);
+
+        assertEquals(parsed.getStartMillis(), cached.getStartMillis());
+        assertEquals(parsed.getIntervalMillis(), cached.getIntervalMillis());
+        assertEquals(parsed.getEpochs(), cached.getEpochs());
+        assertEquals(parsed.slot('E', 11), cached.slot('E', 11));
+        assertArrayEquals(parsed.x, cached.x, 0);
+        assertArrayEquals(parsed.y, cached.y, 0);
+        assertArrayEquals(parsed.z, cached.z, 0);
+        assertArrayEquals(parsed.clock, cached.clock, 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void otherTimeSystemsAreRejected() throws IOException {
+        parse(sp3(-1).replace("%c M  cc GPS", "%c M  cc UTC"));
+    }
+
+    private static Sp3Orbits parse(String text) throws IOException {
+        return Sp3Parser.parse(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static void write(File file, String text) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(text.getBytes(StandardCharsets.US_ASCII));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static int prn(int satellite) {
+        return new int[]{1, 7, 11}[satellite];
+    }
+
+    /**
+     * @param missing epoch at which G01 has no position and no clock, -1 for none
+     */
+    static String sp3(int missing) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "#dP%4d %2d %2d %2d %2d %11.8f %7d ORBIT IGS14 FIT  IGS\n", 2020, 3, 1, 0, 0, 0.0, EPOCHS));
+        sb.append(String.format(Locale.US, "## %4d %15.8f %14.8f %5d %15.13f\n", 2095, 0.0, INTERVAL, 58909, 0.0));
+        sb.append("+    3   G01G07E11  0  0  0  0  0  0  0  0  0  0  0  0  0  0\n");
+        sb.append("++         2  2  2  0  0  0  0  0  0  0  0  0  0  0  0  0  0\n");
+        sb.append("%c M  cc GPS ccc cccc cccc cccc cccc ccccc ccccc ccccc ccccc\n");
+        sb.append("/* synthetic circular orbits\n");
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            double t = epoch * INTERVAL;
+            int seconds = (int) t;
+            sb.append(String.format(Locale.US, "*  %4d %2d %2d %2d %2d %11.8f\n",
+                    2020, 3, 1, seconds / 3600, seconds / 60 % 60, 0.0));
+            for (int satellite = 0; satellite < 3; satellite++) {
+                double[] p = orbit(satellite, t);
+                String id = (satellite == 2 ? "E" : "G") + String.format(Locale.US, "%02d", prn(satellite));
+                if (satellite == 0 && epoch == missing) {
+                    sb.append(String.format(Locale.US, "P%s%14.6f%14.6f%14.6f%14.6f\n", id, 0.0, 0.0, 0.0, 999999.999999));
+                } else {
+                    sb.append(String.format(Locale.US, "P%s%14.6f%14.6f%14.6f%14.6f\n",
+                            id, p[0] / 1000, p[1] / 1000, p[2] / 1000, clock(satellite, t) * 1e6));
+                }
+            }
+        }
+        sb.append("EOF\n");
+        return sb.toString();
+    }
+
+    /**
+     * @return position [m] and velocity [m/s] on an orbit inclined by 55 degrees
+     */
+    static double[] orbit(int satellite, double t) {
+        double u = RATE * t + satellite * 2.1;
+        double node = satellite * 1.2;
+        double inclination = Math.toRadians(55);
+        double px = RADIUS * Math.cos(u);
+        double py = RADIUS * Math.sin(u);
+        double vx = -RADIUS * RATE * Math.sin(u);
+        double vy = RADIUS * RATE * Math.cos(u);
+        double ci = Math.cos(inclination);
+        double si = Math.sin(inclination);
+        double cn = Math.cos(node);
+        double sn = Math.sin(node);
+        return new double[]{
+                cn * px - sn * ci * py, sn * px + cn * ci * py, si * py,
+                cn * vx - sn * ci * vy, sn * vx + cn * ci * vy, si * vy};
+    }
+
+    static double clock(int satellite, double t) {
+        return (satellite + 1) * 1e-4 + (satellite - 1) * 1e-11 * t;
+    }
+}
@@ -0,0 +1,239 @@
+package com.gnss.ppptesttwo.recording;
+
+import com.gnss.ppptesttwo.GnssTime;
+import com.gnss.ppptesttwo.raw.RawClock;
+import com.gnss.ppptesttwo.raw.RawEpoch;
+import com.gnss.ppptesttwo.raw.RawMeasurement;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round trip, random access and size of the binary raw measurement recordings.
+ */
+public class RawRecorderTest {
+
+    private static final double C = 299792458.0;
+    private static final long FULL_BIAS = -1268260000000000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripKeepsEveryField() throws IOException {
+        List<RawEpoch> epochs = epochs(150);
+        File file = record(epochs);
+
+        try (RawRecordingReader reader = new RawRecordingReader(file)) {
+            assertEquals(3, reader.getSegmentCount());
+            for (RawEpoch expected : epochs) {
+                assertSame(expected, reader.next());
+            }
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void seeksToTheFirstEpochAtOrAfterTime() throws IOException {
+        List<RawEpoch> epochs = epochs(150);
+        File file = record(epochs);
+
+        try (RawRecordingReader reader = new RawRecordingReader(file)) {
+            assertEquals(gpsNanos(epochs.get(0)), reader.getStartTime().getGpsNanos());
+            assertEquals(gpsNanos(epochs.get(149)), reader.getEndTime().getGpsNanos());
+
+            reader.seek(GnssTime.ofGpsNanos(gpsNanos(epochs.get(97)) - 1000));
+            assertSame(epochs.get(97), reader.next());
+            assertSame(epochs.get(98), reader.next());
+
+            reader.seek(GnssTime.ofGpsNanos(gpsNanos(epochs.get(12))));
+            assertSame(epochs.get(12), reader.next());
+
+            reader.seek(GnssTime.ofGpsNanos(gpsNanos(epochs.get(149)) + 1));
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void recoversTheSegmentsOfAnUnclosedRecording() throws IOException {
+        List<RawEpoch> epochs = epochs(150);
+        File file = record(epochs);
+        // drop the index and half of the last segment, as after a crash
+        try (RawRecordingReader reader = new RawRecordingReader(file);
+             RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            reader.seek(GnssTime.ofGpsNanos(gpsNanos(epochs.get(120))));
+            raf.setLength(raf.length() - 500);
+        }
+        try (RawRecordingReader reader = new RawRecordingReader(file)) {
+            assertEquals(2, reader.getSegmentCount());
+            int count = 0;
+            while (reader.next() != null) {
+                count++;
+            }
+            assertEquals(120, count);
+        }
+    }
+
+    @Test
+    public void flushWaitsForTheWriterThread() throws IOException {
+        List<RawEpoch> epochs = epochs(100);
+        File file = folder.newFile("flushed.graw");
+        try (RawRecorder recorder = RawRecorder.open(file, true)) {
+            for (RawEpoch epoch : epochs.subList(0, 70)) {
+                recorder.record(epoch);
+            }
+            recorder.flush();
+            assertEquals(file.length(), recorder.getBytesWritten());
+            // no index yet: read like an unclosed recording
+            try (RawRecordingReader reader = new RawRecordingReader(file)) {
+                assertEquals(2, reader.getSegmentCount());
+                for (RawEpoch expected : epochs.subList(0, 70)) {
+                    assertSame(expected, reader.next());
+                }
+                assertNull(reader.next());
+            }
+            for (RawEpoch epoch : epochs.subList(70, 100)) {
+                recorder.record(epoch);
+            }
+            assertEquals(0, recorder.getDropped());
+        }
+        try (RawRecordingReader reader = new RawRecordingReader(file)) {
+            assertEquals(3, reader.getSegmentCount());
+            for (RawEpoch expected : epochs) {
+                assertSame(expected, reader.next());
+            }
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void isSeveralTimesSmallerThanCsv() throws IOException {
+        List<RawEpoch> epochs = epochs(300);
+        File file = record(epochs);
+        long csv = 0;
+        for (RawEpoch epoch : epochs) {
+            for (RawMeasurement m : epoch.getMeasurements()) {
+                csv += csvLine(epoch.getClock(), m).length() + 1;
+            }
+        }
+        assertTrue("binary " + file.length() + " B, csv " + csv + " B", file.length() * 5 < csv);
+    }
+
+    private File record(List<RawEpoch> epochs) throws IOException {
+        File file = folder.newFile("test.graw");
+        try (RawRecorder recorder = RawRecorder.open(file, true)) {
+            for (RawEpoch epoch : epochs) {
+                recorder.record(epoch);
+            }
+            assertEquals(epochs.size(), recorder.getEpochs());
+        }
+        return file;
+    }
+
+    /**
+     * 1 Hz epochs of 14 GPS L1, 6 GPS L5 and 10 Galileo E1 signals on smooth orbits.
+     */
+    private static List<RawEpoch> epochs(int count) {
+        Random random = new Random(7);
+        List<RawEpoch> epochs = new ArrayList<>();
+        long tow = 345600L * 1000000000L;
+        for (int t = 0; t < count; t++) {
+            RawClock clock = new RawClock(5000000000L + t * 1000000000L, FULL_BIAS - 60L * t, random.nextDouble());
+            clock.setBiasUncertaintyNanos(20 + random.nextDouble());
+            clock.setDriftNanosPerSecond(-60 + random.nextGaussian());
+            clock.setDriftUncertaintyNanosPerSecond(1.5);
+            clock.setHardwareClockDiscontinuityCount(t < 100 ? 3 : 4);
+            List<RawMeasurement> measurements = new ArrayList<>();
+            for (int k = 0; k < 30; k++) {
+                int constellation = k < 20 ? RawMeasurement.CONSTELLATION_GPS : RawMeasurement.CONSTELLATION_GALILEO;
+                int svid = k < 20 ? 1 + k % 14 : k - 15;
+                double frequency = k < 14 ? 1575.42e6 : k < 20 ? 1176.45e6 : 1575.42e6;
+                double rate = -700 + 50 * k;
+                double range = 2.1e7 + 1.5e5 * k + rate * t + 0.1 * t * t;
+                RawMeasurement m = new RawMeasurement();
+                m.setConstellationType(constellation);
+                m.setSvid(svid);
+                m.setState(k < 20 ? 16399 : 2255);
+                m.setReceivedSvTimeNanos(tow + t * 1000000000L - Math.round(range / C * 1e9) + 60L * t);
+                m.setReceivedSvTimeUncertaintyNanos(10 + random.nextInt(20));
+                m.setCn0DbHz(35 + k % 10 + random.nextGaussian());
+                m.setPseudorangeRateMetersPerSecond(rate + 0.2 * t + 0.05 * random.nextGaussian());
+                m.setPseudorangeRateUncertaintyMetersPerSecond(0.05 + 0.01 * random.nextDouble());
+                m.setAccumulatedDeltaRangeState(k % 3 == 0 ? 0 : 17);
+                m.setAccumulatedDeltaRangeMeters(k % 3 == 0 ? 0 : range - 2.1e7 + 0.002 * random.nextGaussian());
+                m.setAccumulatedDeltaRangeUncertaintyMeters(k % 3 == 0 ? 0 : 0.003);
+                m.setCarrierFrequencyHz(frequency);
+                m.setMultipathIndicator(k == 5 ? 2 : 0);
+                m.setCodeType(k < 14 || k >= 20 ? "C" : "Q");
+                measurements.add(m);
+            }
+            epochs.add(new RawEpoch(clock, measurements));
+        }
+        return epochs;
+    }
+
+    private static long gpsNanos(RawEpoch epoch) {
+        return RawEpochCodec.gpsNanos(epoch.getClock());
+    }
+
+    private static void assertSame(RawEpoch expected, RawEpoch actual) {
+        RawClock a = expected.getClock();
+        RawClock b = actual.getClock();
+        assertEquals(a.getTimeNanos(), b.getTimeNanos());
+        assertEquals(a.getFullBiasNanos(), b.getFullBiasNanos());
+        assertEquals(a.getBiasNanos(), b.getBiasNanos(), 1e-6);
+        assertEquals(a.getBiasUncertaintyNanos(), b.getBiasUncertaintyNanos(), 1e-6);
+        assertEquals(a.getDriftNanosPerSecond(), b.getDriftNanosPerSecond(), 1e-6);
+        assertEquals(a.getDriftUncertaintyNanosPerSecond(), b.getDriftUncertaintyNanosPerSecond(), 1e-6);
+        assertEquals(a.getHardwareClockDiscontinuityCount(), b.getHardwareClockDiscontinuityCount());
+        assertEquals(a.hasLeapSecond(), b.hasLeapSecond());
+        assertEquals(expected.getMeasurements().size(), actual.getMeasurements().size());
+        for (int i = 0; i < expected.getMeasurements().size(); i++) {
+            RawMeasurement x = expected.getMeasurements().get(i);
+            RawMeasurement y = actual.getMeasurements().get(i);
+            assertEquals(x.getConstellationType(), y.getConstellationType());
+            assertEquals(x.getSvid(), y.getSvid());
+            assertEquals(x.getState(), y.getState());
+            assertEquals(x.getReceivedSvTimeNanos(), y.getReceivedSvTimeNanos());
+            assertEquals(x.getReceivedSvTimeUncertaintyNanos(), y.getReceivedSvTimeUncertaintyNanos());
+            assertEquals(x.getCn0DbHz(), y.getCn0DbHz(), 1e-3);
+            assertEquals(x.getPseudorangeRateMetersPerSecond(), y.getPseudorangeRateMetersPerSecond(), 1e-6);
+            assertEquals(x.getPseudorangeRateUncertaintyMetersPerSecond(), y.getPseudorangeRateUncertaintyMetersPerSecond(), 1e-6);
+            assertEquals(x.getAccumulatedDeltaRangeState(), y.getAccumulatedDeltaRangeState());
+            assertEquals(x.getAccumulatedDeltaRangeMeters(), y.getAccumulatedDeltaRangeMeters(), 1e-6);
+            assertEquals(x.getAccumulatedDeltaRangeUncertaintyMeters(), y.getAccumulatedDeltaRangeUncertaintyMeters(), 1e-6);
+            assertEquals(x.getCarrierFrequencyHz(), y.getCarrierFrequencyHz(), 1e-3);
+            assertEquals(x.getTimeOffsetNanos(), y.getTimeOffsetNanos(), 1e-6);
+            assertEquals(x.getMultipathIndicator(), y.getMultipathIndicator());
+            assertEquals(x.getCodeType(), y.getCodeType());
+        }
+    }
+
+    /**
+     * A GnssLogger "Raw" record of the same measurement.
+     */
+    private static String csvLine(RawClock c, RawMeasurement m) {
+        return "Raw," + c.getTimeNanos() / 1000000 + "," + c.getTimeNanos() + ",," + c.getFullBiasNanos()
+                + "," + c.getBiasNanos() + "," + c.getBiasUncertaintyNanos() + "," + c.getDriftNanosPerSecond()
+                + "," + c.getDriftUncertaintyNanosPerSecond() + "," + c.getHardwareClockDiscontinuityCount()
+                + "," + m.getSvid() + "," + m.getTimeOffsetNanos() + "," + m.getState()
+                + "," + m.getReceivedSvTimeNanos() + "," + m.getReceivedSvTimeUncertaintyNanos()
+                + "," + m.getCn0DbHz() + "," + m.getPseudorangeRateMetersPerSecond()
+                + "," + m.getPseudorangeRateUncertaintyMetersPerSecond() + "," + m.getAccumulatedDeltaRangeState()
+                + "," + m.getAccumulatedDeltaRangeMeters() + "," + m.getAccumulatedDeltaRangeUncertaintyMeters()
+                + "," + (float) m.getCarrierFrequencyHz() + ",,,," + m.getMultipathIndicator()
+                + ",," + m.getConstellationType() + ",,," + m.getCodeType();
+    }
+}
@@ -0,0 +1,56 @@
+package com.gnss.ppptesttwo.replay;
+
+import com.gnss.ppptesttwo.raw.RawEpoch;
+import com.gnss.ppptesttwo.raw.RawMeasurement;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Parsing of GnssLogger CSV logs into epochs.
+ */
+public class GnssLoggerReaderTest {
+
+    @Test
+    public void groupsRecordsByClockAndLocatesColumnsFromHeader() throws IOException {
+        String log = "# Header of a GnssLogger log\n"
+                + "# Raw,ElapsedRealtimeMillis,TimeNanos,FullBiasNanos,BiasNanos,Svid,State,"
+                + "ReceivedSvTimeNanos,Cn0DbHz,CarrierFrequencyHz,ConstellationType,TimeOffsetNanos\n"
+                + "Fix,gps,52.0,4.37,50.0\n"
+                + "Raw,100,5000000000,-1268260000000000000,0.5,3,16399,345600000000000,41.5,1575420030,1,0.0\n"
+                + "Raw,100,5000000000,-1268260000000000000,0.5,11,16399,345600010000000,37.0,,6,12.5\n"
+                + "Status,ignored\n"
+                + "Raw,1100,6000000000,-1268260000000000000,0.6,3,16399,345601000000000,41.0,1575420030,1,0.0\n";
+        try (GnssLoggerReader reader = new GnssLoggerReader(new StringReader(log))) {
+            RawEpoch first = reader.next();
+            assertEquals(5000000000L, first.getClock().getTimeNanos());
+            assertEquals(-1268260000000000000L, first.getClock().getFullBiasNanos());
+            assertEquals(0.5, first.getClock().getBiasNanos(), 0.0);
+            assertEquals(2, first.getMeasurements().size());
+
+            RawMeasurement gps = first.getMeasurements().get(0);
+            assertEquals(3, gps.getSvid());
+            assertEquals(RawMeasurement.CONSTELLATION_GPS, gps.getConstellationType());
+            assertEquals(345600000000000L, gps.getReceivedSvTimeNanos());
+            assertEquals(41.5, gps.getCn0DbHz(), 0.0);
+            assertTrue(gps.hasCarrierFrequencyHz());
+
+            RawMeasurement galileo = first.getMeasurements().get(1);
+            assertEquals(RawMeasurement.CONSTELLATION_GALILEO, galileo.getConstellationType());
+            assertEquals(12.5, galileo.getTimeOffsetNanos(), 0.0);
+            assertFalse(galileo.hasCarrierFrequencyHz());
+
+            RawEpoch second = reader.next();
+            assertEquals(6000000000L, second.getClock().getTimeNanos());
+            assertEquals(1, second.getMeasurements().size());
+            assertNull(reader.next());
+        }
+    }
+}
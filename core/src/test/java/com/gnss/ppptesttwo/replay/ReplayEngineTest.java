@@ -0,0 +1,97 @@
+package com.gnss.ppptesttwo.replay;
+
+import com.gnss.ppptesttwo.adjust.WeightedLeastSquares;
+import com.gnss.ppptesttwo.constellations.GnssConstellation;
+import com.gnss.ppptesttwo.constellations.SatelliteParameters;
+import com.gnss.ppptesttwo.constellations.SkyFixtures;
+import com.gnss.ppptesttwo.navifromftp.Coordinates;
+import com.gnss.ppptesttwo.raw.RawClock;
+import com.gnss.ppptesttwo.raw.RawEpoch;
+import com.gnss.ppptesttwo.raw.RawMeasurement;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Solved and failed epochs of a replay.
+ */
+public class ReplayEngineTest {
+
+    @Test
+    public void failedEpochIsNotASolution() throws IOException {
+        SatelliteParameters[] sky = SkyFixtures.observations(10, 7L);
+        // every satellite in the same direction: no geometry to solve
+        SatelliteParameters[] degenerate = new SatelliteParameters[6];
+        Arrays.fill(degenerate, sky[0]);
+        ScriptedConstellation constellation = new ScriptedConstellation(sky, degenerate, sky);
+
+        final List<ReplayReport.TrackPoint> notified = new ArrayList<>();
+        ReplayEngine engine = new ReplayEngine(constellation, new WeightedLeastSquares());
+        engine.setListener(new ReplayEngine.Listener() {
+            @Override
+            public void onSolution(RawEpoch epoch, ReplayReport.TrackPoint point) {
+                notified.add(point);
+            }
+        });
+        ReplayReport report = engine.run(epochs(3));
+
+        assertEquals(3, report.getEpochs());
+        assertEquals(2, report.getSolutions());
+        assertEquals(1, report.getFailures());
+        assertEquals(report.getTrack(), notified);
+        Coordinates rx = SkyFixtures.receiver();
+        for (ReplayReport.TrackPoint point : report.getTrack()) {
+            assertEquals(rx.getX(), point.getPosition().getX(), 10.0);
+            assertEquals(10, point.getSatellites());
+        }
+    }
+
+    private static EpochSource epochs(final int count) {
+        return new EpochSource() {
+            private int read;
+
+            @Override
+            public RawEpoch next() {
+                return read++ < count ? new RawEpoch(new RawClock(), Collections.<RawMeasurement>emptyList()) : null;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Observes the given satellites, one set per epoch, with their positions and
+     * corrections already computed
+     */
+    private static final class ScriptedConstellation extends GnssConstellation {
+
+        private final Queue<SatelliteParameters[]> epochs = new ArrayDeque<>();
+
+        ScriptedConstellation(SatelliteParameters[]... epochs) {
+            super(true, false, false, false);
+            this.epochs.addAll(Arrays.asList(epochs));
+        }
+
+        @Override
+        public void updateMeasurements(RawEpoch event) {
+            observedSatellites.clear();
+            observedSatellites.addAll(Arrays.asList(epochs.remove()));
+        }
+
+        @Override
+        public void calculateSatPosition(Coordinates position) {
+            setRxPos(position);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.gnss.ppptesttwo.replay;
+
+import com.gnss.ppptesttwo.GnssTime;
+import com.gnss.ppptesttwo.constellations.GpsConstellation;
+import com.gnss.ppptesttwo.raw.RawEpoch;
+import com.gnss.ppptesttwo.raw.RawMeasurement;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * RINEX observation files turned into raw measurements that give back the file's
+ * pseudoranges.
+ */
+public class RinexObservationReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String V3 =
+            "     3.04           OBSERVATION DATA    M (MIXED)           RINEX VERSION / TYPE\n"
+            + "G    4 C1C L1C D1C S1C                                      SYS / # / OBS TYPES\n"
+            + "E    2 C1X S1X                                              SYS / # / OBS TYPES\n"
+            + "R    1 C1C                                                  SYS / # / OBS TYPES\n"
+            + "                                                            END OF HEADER\n"
+            + "> 2020 04 07 00 00 10.0000000  0  3\n"
+            + "G05  21345678.123   112173892.456 7     -1234.567          43.000\n"
+            + "E11  23456789.987          39.000\n"
+            + "R07  20123456.000\n"
+            + "> 2020 04 07 00 00 11.0000000  4  1\n"
+            + "                                                            COMMENT\n"
+            + "> 2020 04 07 00 00 11.0000000  0  1\n"
+            + "G05  21345878.321   112174943.000 7     -1234.000          43.250\n";
+
+    private static final String V2 =
+            "     2.11           OBSERVATION DATA    G (GPS)             RINEX VERSION / TYPE\n"
+            + "     6    L1    L2    C1    P2    D1    S1                  # / TYPES OF OBSERV\n"
+            + "                                                            END OF HEADER\n"
+            + " 20  4  7  0  0 10.0000000  0  2G05G12\n"
+            + " 112173892.456 7  87408226.11247  21345678.123    21345680.001       -1234.567  \n"
+            + "        43.000  \n"
+            + " 123456789.000 6  96199966.00046  23492000.500                                  \n"
+            + "        31.000  \n";
+
+    @Test
+    public void readsRinex3() throws IOException {
+        try (RinexObservationReader reader = reader(V3)) {
+            assertEquals(3.04, reader.getVersion(), 0.0);
+
+            RawEpoch first = reader.next();
+            assertEquals(2, first.getMeasurements().size());
+            RawMeasurement gps = first.getMeasurements().get(0);
+            assertEquals(5, gps.getSvid());
+            assertEquals(43.0, gps.getCn0DbHz(), 0.0);
+            assertEquals(RawMeasurement.ADR_STATE_VALID, gps.getAccumulatedDeltaRangeState());
+            assertEquals(112173892.456 * 0.19029367279836487, gps.getAccumulatedDeltaRangeMeters(), 1e-6);
+            assertEquals(1234.567 * 0.19029367279836487, gps.getPseudorangeRateMetersPerSecond(), 1e-6);
+            assertEquals("C", gps.getCodeType());
+            RawMeasurement galileo = first.getMeasurements().get(1);
+            assertEquals(RawMeasurement.CONSTELLATION_GALILEO, galileo.getConstellationType());
+            assertEquals("X", galileo.getCodeType());
+
+            assertPseudorange(first, 21345678.123);
+
+            // the event record with flag 4 is skipped
+            RawEpoch second = reader.next();
+            assertEquals(1000000000L, second.getClock().getTimeNanos() - first.getClock().getTimeNanos());
+            assertPseudorange(second, 21345878.321);
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void readsRinex2() throws IOException {
+        try (RinexObservationReader reader = reader(V2)) {
+            RawEpoch epoch = reader.next();
+            assertEquals(2, epoch.getMeasurements().size());
+            assertEquals(12, epoch.getMeasurements().get(1).getSvid());
+            assertEquals(31.0, epoch.getMeasurements().get(1).getCn0DbHz(), 0.0);
+            assertPseudorange(epoch, 21345678.123);
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void epochTime() throws IOException {
+        try (RinexObservationReader reader = reader(V3)) {
+            RawEpoch epoch = reader.next();
+            GpsConstellation constellation = new GpsConstellation();
+            constellation.updateMeasurements(epoch);
+            // 2020-04-07 is the Tuesday of GPS week 2100
+            assertEquals(GnssTime.ofGpsWeek(2100, 2 * 86400 + 10.0), constellation.getTime());
+        }
+    }
+
+    @Test
+    public void fillsReusableEpochBuffer() throws IOException {
+        try (RinexObservationReader reader = reader(V3.replace("112174943.000 7", "112174943.00017").replace("\n", "\r\n"))) {
+            RinexEpoch epoch = new RinexEpoch();
+            assertTrue(reader.readEpoch(epoch));
+            assertEquals(GnssTime.ofGpsCalendar(2020, 4, 7, 0, 0, 10.0).getGpsNanos(), epoch.getGpsNanos());
+            assertEquals(2, epoch.size());
+            assertEquals('G', epoch.getSystem(0));
+            assertEquals(21345678.123, epoch.getCode(0), 0.0);
+            assertEquals(112173892.456, epoch.getPhase(0), 0.0);
+            assertEquals(-1234.567, epoch.getDoppler(0), 0.0);
+            assertEquals(0, epoch.getLossOfLock(0));
+            assertEquals('E', epoch.getSystem(1));
+            assertEquals(11, epoch.getPrn(1));
+            assertTrue(Double.isNaN(epoch.getPhase(1)));
+            assertEquals(39.0, epoch.getCn0(1), 0.0);
+            assertEquals('X', epoch.getCodeType(1));
+
+            assertTrue(reader.readEpoch(epoch));
+            assertEquals(1, epoch.size());
+            assertEquals(1, epoch.getLossOfLock(0));
+            assertFalse(reader.readEpoch(epoch));
+        }
+    }
+
+    @Test
+    public void seeksThroughTheEpochIndex() throws IOException {
+        StringBuilder text = new StringBuilder(V3.substring(0, V3.indexOf('>')));
+        for (int i = 0; i < 100; i++) {
+            text.append(String.format(Locale.US, "> 2020 04 07 00 %02d %02d.0000000  0  1\n", i / 60, i % 60));
+            text.append(String.format(Locale.US, "G05  %14.3f          43.000\n", 21000000.0 + i));
+        }
+        File file = folder.newFile("seek.20o");
+        Files.write(file.toPath(), text.toString().getBytes(StandardCharsets.US_ASCII));
+
+        RinexEpoch epoch = new RinexEpoch();
+        try (RinexObservationReader reader = new RinexObservationReader(file)) {
+            // ahead of the index: skips and indexes the epochs on the way
+            reader.seek(GnssTime.ofGpsCalendar(2020, 4, 7, 0, 1, 10.5));
+            assertTrue(reader.readEpoch(epoch));
+            assertEquals(21000071.0, epoch.getCode(0), 0.0);
+            assertEquals(72, reader.getIndexedEpochs());
+
+            // back into the index
+            reader.seek(GnssTime.ofGpsCalendar(2020, 4, 7, 0, 0, 3.0));
+            assertTrue(reader.readEpoch(epoch));
+            assertEquals(21000003.0, epoch.getCode(0), 0.0);
+            assertEquals(72, reader.getIndexedEpochs());
+
+            reader.seek(GnssTime.ofGpsCalendar(2020, 4, 7, 0, 2, 0.0));
+            assertFalse(reader.readEpoch(epoch));
+            assertEquals(100, reader.getIndexedEpochs());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void cannotSeekInAStream() throws IOException {
+        try (RinexObservationReader reader = reader(V3)) {
+            reader.seek(GnssTime.ofGpsCalendar(2020, 4, 7, 0, 0, 11.0));
+        }
+    }
+
+    private static RinexObservationReader reader(String text) throws IOException {
+        return new RinexObservationReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * The first satellite's pseudorange as computed by the live pipeline
+     */
+    private static void assertPseudorange(RawEpoch epoch, double expected) {
+        GpsConstellation constellation = new GpsConstellation();
+        constellation.updateMeasurements(epoch);
+        assertEquals(expected, constellation.getSatellites().get(0).getPseudorange(), 0.15);
+    }
+}